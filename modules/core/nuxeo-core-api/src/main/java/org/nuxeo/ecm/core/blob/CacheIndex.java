@@ -0,0 +1,307 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.blob;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * In-memory index of the files of a cache directory, in least recently used order.
+ * <p>
+ * Recording an access is O(1), and the files to evict are found without listing the directory. The index is shared by
+ * all the caches using the same directory.
+ * <p>
+ * The index is saved in the directory on {@link #close}, and loaded back when the cache is next created, so that a
+ * restart doesn't need to list the directory. If there is no saved index (first use, or after a crash), the directory
+ * is listed once in the background, using the file modification times as last access times.
+ * <p>
+ * The saved index is only reused when the cache directory is configured with
+ * {@link CachingConfiguration#CACHE_DIR_PROPERTY}, otherwise a new temporary directory is used on each start.
+ *
+ * @since 11.5
+ */
+public class CacheIndex {
+
+    private static final Logger log = LogManager.getLogger(CacheIndex.class);
+
+    public static final String INDEX_FILE = ".cacheindex";
+
+    protected static final Map<Path, CacheIndex> INDEXES = new ConcurrentHashMap<>();
+
+    protected final Path dir;
+
+    // least recently used first, the entries are moved to the end explicitly so that lookups don't reorder them
+    protected final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    protected long size;
+
+    // names removed while the initial scan is running, so that the scan doesn't add them back
+    protected Set<String> removedDuringScan;
+
+    protected static class Entry {
+
+        protected final long size;
+
+        protected long time;
+
+        protected Entry(long size, long time) {
+            this.size = size;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Gets the index for a cache directory, loading it if needed.
+     */
+    public static CacheIndex get(Path dir) {
+        return INDEXES.computeIfAbsent(dir, CacheIndex::new);
+    }
+
+    /**
+     * Saves the index for a cache directory, if it has been loaded, so that it can be reused after a restart.
+     */
+    public static void close(Path dir) {
+        CacheIndex index = INDEXES.remove(dir);
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    protected CacheIndex(Path dir) {
+        this.dir = dir;
+        load();
+    }
+
+    protected void load() {
+        Path indexFile = dir.resolve(INDEX_FILE);
+        if (Files.exists(indexFile)) { // NOSONAR (squid:S3725)
+            try {
+                try (BufferedReader reader = Files.newBufferedReader(indexFile, UTF_8)) {
+                    for (String line; (line = reader.readLine()) != null;) {
+                        String[] parts = line.split(" ", 3);
+                        entries.put(parts[2], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[0])));
+                        size += Long.parseLong(parts[1]);
+                    }
+                }
+                log.debug("Loaded cache index for: {} with {} files", dir, entries.size());
+                // the index is not valid anymore once the cache is used, a crash will trigger a scan
+                Files.delete(indexFile);
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Cannot read cache index: {}, scanning directory", indexFile, e);
+                clear();
+            }
+        }
+        if (isEmpty(dir)) {
+            return;
+        }
+        removedDuringScan = new HashSet<>();
+        Thread thread = new Thread(this::scan, "Nuxeo-CacheIndex-scan-" + dir.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    protected static boolean isEmpty(Path dir) {
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            return !ds.iterator().hasNext();
+        } catch (IOException e) {
+            log.warn("Cannot list cache directory: {}", dir, e);
+            return true;
+        }
+    }
+
+    /**
+     * Adds to the index the files of the directory that it doesn't know about.
+     */
+    protected void scan() {
+        List<Object[]> found = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path path : ds) {
+                String name = path.getFileName().toString();
+                if (name.equals(INDEX_FILE) || isTempFile(name)) {
+                    continue;
+                }
+                try {
+                    found.add(new Object[] { name, Files.size(path), Files.getLastModifiedTime(path).toMillis() });
+                } catch (NoSuchFileException e) {
+                    // ignore
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot scan cache directory: {}", dir, e);
+        }
+        // oldest first, so that they end up least recently used
+        found.sort(Comparator.comparingLong(info -> (long) info[2]));
+        synchronized (this) {
+            // files accessed since startup go after the ones found by the scan
+            Map<String, Entry> accessed = new LinkedHashMap<>(entries);
+            entries.clear();
+            for (Object[] info : found) {
+                String name = (String) info[0];
+                if (!accessed.containsKey(name) && !removedDuringScan.contains(name)) {
+                    entries.put(name, new Entry((long) info[1], (long) info[2]));
+                    size += (long) info[1];
+                }
+            }
+            entries.putAll(accessed);
+            removedDuringScan = null;
+        }
+        log.debug("Scanned cache directory: {}, found {} files", dir, found.size());
+    }
+
+    protected static boolean isTempFile(String name) {
+        return name.startsWith("bin_") && name.endsWith(".tmp");
+    }
+
+    /**
+     * Records an access to a file, making it the most recently used.
+     *
+     * @return {@code false} if the file is not in the index
+     */
+    public synchronized boolean touch(String name, long time) {
+        Entry entry = entries.remove(name);
+        if (entry == null) {
+            return false;
+        }
+        entry.time = time;
+        entries.put(name, entry);
+        return true;
+    }
+
+    /**
+     * Adds or replaces a file, making it the most recently used.
+     */
+    public synchronized void put(String name, long fileSize, long time) {
+        Entry previous = entries.remove(name);
+        entries.put(name, new Entry(fileSize, time));
+        if (previous != null) {
+            size -= previous.size;
+        }
+        size += fileSize;
+    }
+
+    /**
+     * Removes a file from the index.
+     */
+    public synchronized void remove(String name) {
+        if (removedDuringScan != null) {
+            removedDuringScan.add(name);
+        }
+        Entry previous = entries.remove(name);
+        if (previous != null) {
+            size -= previous.size;
+        }
+    }
+
+    /**
+     * Removes a file from the index if it has not been accessed since the given time. A file that is kept is not
+     * considered accessed.
+     *
+     * @return {@code true} if the file was removed
+     */
+    public synchronized boolean removeIfOlder(String name, long threshold) {
+        Entry entry = entries.get(name);
+        if (entry == null || entry.time >= threshold) {
+            return false;
+        }
+        remove(name);
+        return true;
+    }
+
+    /**
+     * Gets the least recently used files to remove so that the cache fits the given limits. Files accessed after the
+     * threshold time are never returned.
+     */
+    public synchronized List<String> getFilesToEvict(long maxSize, long maxCount, long threshold) {
+        long remainingSize = size;
+        long remainingCount = entries.size();
+        if (remainingSize <= maxSize && remainingCount <= maxCount) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>();
+        for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext()
+                && (remainingSize > maxSize || remainingCount > maxCount);) {
+            Map.Entry<String, Entry> es = it.next();
+            if (es.getValue().time >= threshold) {
+                // all the following files are more recent
+                break;
+            }
+            names.add(es.getKey());
+            remainingSize -= es.getValue().size;
+            remainingCount--;
+        }
+        return names;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Saves the index in the directory.
+     */
+    protected synchronized void close() {
+        Path indexFile = dir.resolve(INDEX_FILE);
+        try {
+            Path tmp = Files.createTempFile(dir, "bin_", ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, UTF_8)) {
+                for (Map.Entry<String, Entry> es : entries.entrySet()) {
+                    Entry entry = es.getValue();
+                    writer.write(entry.time + " " + entry.size + " " + es.getKey());
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Saved cache index for: {} with {} files", dir, entries.size());
+        } catch (IOException e) {
+            log.warn("Cannot save cache index: {}", indexFile, e);
+        }
+    }
+
+}
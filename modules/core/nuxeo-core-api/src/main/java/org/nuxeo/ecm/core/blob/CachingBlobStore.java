@@ -22,20 +22,18 @@ import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.attribute.FileTime;
 import java.time.Clock;
 import java.time.Duration;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -54,6 +52,13 @@ public class CachingBlobStore extends AbstractBlobStore {
     // static because we want all caches to share the same locks
     protected static final Set<Path> LOCKED_FILES = ConcurrentHashMap.newKeySet();
 
+    // shared by all caches, evictions are short as they don't list directories
+    protected static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "Nuxeo-CachingBlobStore-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     protected final BlobStore store;
 
     protected final CachingConfiguration cacheConfig;
@@ -63,13 +68,14 @@ public class CachingBlobStore extends AbstractBlobStore {
 
     protected final BinaryGarbageCollector gc;
 
-    // lock to avoid doing redundant work in parallel, and protect access to clearOldBlobsLastTime
-    protected final Lock clearOldBlobsLock = new ReentrantLock();
+    /** @since 11.5 */
+    protected final CacheIndex cacheIndex;
 
-    protected long clearOldBlobsLastTime;
+    // whether a background eviction is already scheduled
+    protected final AtomicBoolean clearOldBlobsScheduled = new AtomicBoolean();
 
-    // not a constant for tests
-    protected long clearOldBlobsInterval = Duration.ofMinutes(1).toMillis();
+    // delay before a background eviction, not a constant for tests
+    protected long clearOldBlobsInterval = Duration.ofSeconds(1).toMillis();
 
     // not a constant for tests
     protected Clock clock = Clock.systemUTC();
@@ -86,6 +92,7 @@ public class CachingBlobStore extends AbstractBlobStore {
         this.store = store;
         this.cacheConfig = config;
         cacheStore = new LocalBlobStore(name, store.getKeyStrategy(), new PathStrategyFlat(config.dir));
+        cacheIndex = CacheIndex.get(config.dir);
         gc = new CachingBinaryGarbageCollector();
     }
 
@@ -111,6 +118,10 @@ public class CachingBlobStore extends AbstractBlobStore {
             // source key didn't exist
             return null;
         }
+        if (atomicMove) {
+            Path sourcePath = sourceStore.pathStrategy.getPathForKey(sourceKey);
+            getCacheIndex(sourcePath).remove(sourcePath.getFileName().toString());
+        }
         if (!returnedKey.equals(destKey)) {
             throw new IllegalStateException("Expected " + destKey + " but was " + returnedKey);
         }
@@ -134,7 +145,7 @@ public class CachingBlobStore extends AbstractBlobStore {
         // when using deduplication, check if it's in the cache already
         if (blobWriteContext.useDeDuplication() && getFileFromCache(key, true).isPresent()) {
             // delete tmp file, not needed anymore
-            cacheStore.deleteBlob(tmpKey);
+            deleteCachedBlob(cacheStore, tmpKey);
             return key;
         }
 
@@ -165,7 +176,7 @@ public class CachingBlobStore extends AbstractBlobStore {
         String returnedKey = store.copyOrMoveBlob(key, sourceStore, sourceKey, atomicMove);
         if (returnedKey != null && atomicMove && sourceCacheStore != null) {
             // clear source cache
-            sourceCacheStore.deleteBlob(sourceKey);
+            deleteCachedBlob(sourceCacheStore, sourceKey);
         }
         return returnedKey;
     }
@@ -240,40 +251,53 @@ public class CachingBlobStore extends AbstractBlobStore {
 
     @Override
     public void deleteBlob(String key) {
-        cacheStore.deleteBlob(key);
+        deleteCachedBlob(cacheStore, key);
         store.deleteBlob(key);
     }
 
     @Override
     public void clear() {
         cacheStore.clear();
+        cacheIndex.clear();
         store.clear();
     }
 
     /**
-     * Clear old blobs from the cache, but not too often (as doing directory listings has a cost).
+     * Clear old blobs from the cache if it is over its limits.
+     * <p>
+     * The eviction is done in the background, shortly after the cache goes over its limits, or immediately if
+     * {@link #clearOldBlobsInterval} is 0.
      *
      * @since 11.5
      */
     protected void clearOldBlobs() {
-        if (clearOldBlobsLock.tryLock()) {
-            try {
-                if (clock.millis() > clearOldBlobsLastTime + clearOldBlobsInterval) {
+        if (clearOldBlobsInterval == 0) {
+            clearOldBlobsNow();
+            return;
+        }
+        if (cacheIndex.getSize() <= cacheConfig.maxSize && cacheIndex.getCount() <= cacheConfig.maxCount) {
+            return;
+        }
+        if (clearOldBlobsScheduled.compareAndSet(false, true)) {
+            EVICTOR.schedule(() -> {
+                clearOldBlobsScheduled.set(false);
+                try {
                     clearOldBlobsNow();
-                    clearOldBlobsLastTime = clock.millis();
+                } catch (RuntimeException e) {
+                    log.error("clearOldBlobs failed for dir: {}", cacheConfig.dir, e);
                 }
-            } finally {
-                clearOldBlobsLock.unlock();
-            }
+            }, clearOldBlobsInterval, TimeUnit.MILLISECONDS);
         }
-        // else don't do anything, another thread is already doing it
+        // else an eviction is already scheduled
     }
 
     /**
      * Clear old blobs from the cache.
      * <p>
-     * A blob is deleted if it has not been recently created or accessed (minimum age), and if in addition it would be
-     * too big for the maximum cache size in bytes, or if the cache would contain too many blobs.
+     * The least recently used blobs are deleted while the cache is too big for the maximum cache size in bytes, or
+     * contains too many blobs, but a blob is never deleted if it has been recently created or accessed (minimum age).
+     * <p>
+     * The blobs to delete are found from the {@link CacheIndex}, without listing the cache directory.
      *
      * @since 11.5
      */
@@ -282,105 +306,38 @@ public class CachingBlobStore extends AbstractBlobStore {
         long maxCount = cacheConfig.maxCount;
         long minAgeMillis = cacheConfig.minAge * 1000;
         long threshold = clock.millis() - minAgeMillis;
-        log.debug("clearOldBlobs starting, dir={} maxSize={}, maxCount={}, minAge={}s, threshold={}", cacheConfig.dir,
-                maxSize, maxCount, cacheConfig.minAge, threshold);
-
-        List<PathInfo> files = new ArrayList<>();
-        try (DirectoryStream<Path> ds = Files.newDirectoryStream(cacheConfig.dir)) {
-            for (Path path : ds) {
-                PathInfo pi;
-                try {
-                    pi = new PathInfo(path);
-                } catch (NoSuchFileException e) {
-                    log.trace("clearOldBlobs ignoring missing file: {}", path);
-                    continue;
-                } catch (IOException e) {
-                    log.warn(e.getMessage());
-                    continue;
-                }
-                if (cacheStore.pathStrategy.isTempFile(path)) {
-                    log.trace("clearOldBlobs ignoring temporary file: {} (timestamp {})", path, pi.time);
-                    continue;
-                }
-                files.add(pi);
-            }
-        } catch (IOException e) {
-            log.warn(e.getMessage());
+        List<String> names = cacheIndex.getFilesToEvict(maxSize, maxCount, threshold);
+        if (names.isEmpty()) {
+            return;
         }
-        Collections.sort(files); // sort by most recent first
-
-        log.debug("clearOldBlobs {} files to check", files.size());
-        long size = 0;
-        long count = 0;
-        long recentCount = 0;
-        for (PathInfo pi : files) {
-            size += pi.size;
-            count++;
-            // are there too many files, or do they occupy too much space?
-            if (count > maxCount || size > maxSize) {
-                // is the file old enough to be a candidate for deletion?
-                if (pi.time < threshold) {
-                    if (tryLock(pi.path)) {
-                        try {
-                            // re-check file age under lock
-                            long time = Files.getLastModifiedTime(pi.path).toMillis();
-                            if (time < threshold) {
-                                // delete the file
-                                log.trace(
-                                        "clearOldBlobs DELETING file: {} (timestamp {}, cumulative count {}, cumulative size {})",
-                                        pi.path, time, count, size);
-                                Files.delete(pi.path);
-                                size -= pi.size;
-                                count--;
-                            } else {
-                                recentCount++;
-                                log.trace("clearOldBlobs keeping file: {} because it's recent (timestamp {})", pi.path,
-                                        time);
-                            }
-                        } catch (IOException e) {
-                            log.warn(e.getMessage());
-                        } finally {
-                            unlock(pi.path);
-                        }
+        log.debug("clearOldBlobs starting, dir={} maxSize={}, maxCount={}, minAge={}s, threshold={}, candidates={}",
+                cacheConfig.dir, maxSize, maxCount, cacheConfig.minAge, threshold, names.size());
+        long deleted = 0;
+        for (String name : names) {
+            Path path = cacheConfig.dir.resolve(name);
+            if (tryLock(path)) {
+                try {
+                    // re-check access time under lock
+                    if (cacheIndex.removeIfOlder(name, threshold)) {
+                        log.trace("clearOldBlobs DELETING file: {}", path);
+                        Files.deleteIfExists(path);
+                        deleted++;
                     } else {
-                        log.trace("clearOldBlobs skipping file: {} because it's already locked", pi.path);
+                        log.trace("clearOldBlobs keeping file: {} because it's recent", path);
                     }
-                } else {
-                    recentCount++;
-                    log.trace("clearOldBlobs keeping file: {} because it's recent (timestamp {})", pi.path, pi.time);
+                } catch (IOException e) {
+                    log.warn(e.getMessage());
+                } finally {
+                    unlock(path);
                 }
             } else {
-                log.trace("clearOldBlobs keeping file: {}", pi.path);
+                log.trace("clearOldBlobs skipping file: {} because it's already locked", path);
             }
         }
         if (log.isDebugEnabled()) {
-            if (maxSize == 0) {
-                maxSize = 1; // shouldn't happen, but don't divide by zero
-            }
             log.debug(String.format(
-                    "clearOldBlobs done (keeping %d files out of %d (including %d recent), cache fill ratio now %.1f%%)",
-                    count, files.size(), recentCount, 100d * size / maxSize));
-        }
-    }
-
-    protected static class PathInfo implements Comparable<PathInfo> {
-
-        protected final Path path;
-
-        protected final long time;
-
-        protected final long size;
-
-        public PathInfo(Path path) throws IOException {
-            this.path = path;
-            this.time = Files.getLastModifiedTime(path).toMillis();
-            this.size = Files.size(path);
-        }
-
-        @Override
-        public int compareTo(PathInfo other) { // NOSONAR no need for equals
-            // compare in reverse order (most recent first)
-            return Long.compare(other.time, time);
+                    "clearOldBlobs done (deleted %d files, keeping %d files, cache fill ratio now %.1f%%)", deleted,
+                    cacheIndex.getCount(), 100d * cacheIndex.getSize() / Math.max(maxSize, 1)));
         }
     }
 
@@ -389,7 +346,7 @@ public class CachingBlobStore extends AbstractBlobStore {
     }
 
     /**
-     * Records access to a file by changing its modification time.
+     * Records access to a file by making it the most recently used in the cache index.
      * <p>
      * Recording access is also a form of locking against concurrent deletion by the clearing mechanism.
      *
@@ -398,8 +355,12 @@ public class CachingBlobStore extends AbstractBlobStore {
     protected void recordBlobAccess(Path path) {
         if (tryLock(path)) {
             try {
-                // note that the filesystem may round the time
-                Files.setLastModifiedTime(path, FileTime.fromMillis(clock.millis()));
+                CacheIndex index = getCacheIndex(path);
+                String name = path.getFileName().toString();
+                long time = clock.millis();
+                if (!index.touch(name, time)) {
+                    index.put(name, Files.size(path), time);
+                }
             } catch (NoSuchFileException e) {
                 // ignore
             } catch (IOException e) {
@@ -410,6 +371,27 @@ public class CachingBlobStore extends AbstractBlobStore {
         }
     }
 
+    /**
+     * Gets the index of the cache directory containing a file, which may be the directory of another cache.
+     *
+     * @since 11.5
+     */
+    protected CacheIndex getCacheIndex(Path path) {
+        Path dir = path.getParent();
+        return dir.equals(cacheConfig.dir) ? cacheIndex : CacheIndex.get(dir);
+    }
+
+    /**
+     * Deletes a file from a cache directory and from its index.
+     *
+     * @since 11.5
+     */
+    protected void deleteCachedBlob(LocalBlobStore localBlobStore, String key) {
+        localBlobStore.deleteBlob(key);
+        Path path = localBlobStore.pathStrategy.getPathForKey(key);
+        getCacheIndex(path).remove(path.getFileName().toString());
+    }
+
     // try to lock with exponential backoff
     protected static boolean tryLock(Path path) {
         long millis = 1;
@@ -19,7 +19,9 @@
 package org.nuxeo.ecm.core.blob;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Map;
 
 import org.nuxeo.common.utils.SizeUtils;
@@ -38,6 +40,14 @@ public class CachingConfiguration extends PropertyBasedConfiguration {
 
     public static final String CACHE_MIN_AGE_PROPERTY = "cacheminage";
 
+    /**
+     * The directory of the cache. If not defined, a new temporary directory is used. A fixed directory allows the
+     * cached files to be reused after a restart.
+     *
+     * @since 11.5
+     */
+    public static final String CACHE_DIR_PROPERTY = "cachedir";
+
     public static final String DEFAULT_CACHE_SIZE = "100 mb";
 
     public static final String DEFAULT_CACHE_COUNT = "10000";
@@ -54,7 +64,13 @@ public class CachingConfiguration extends PropertyBasedConfiguration {
 
     public CachingConfiguration(String systemPropertyPrefix, Map<String, String> properties) throws IOException {
         super(systemPropertyPrefix, properties);
-        dir = Framework.createTempDirectory("nxbincache.");
+        String dirProp = getProperty(CACHE_DIR_PROPERTY);
+        if (dirProp == null) {
+            dir = Framework.createTempDirectory("nxbincache.");
+        } else {
+            dir = Paths.get(Framework.expandVars(dirProp.trim()));
+            Files.createDirectories(dir);
+        }
         String maxSizeProp = getProperty(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE);
         String maxCountProp = getProperty(CACHE_COUNT_PROPERTY, DEFAULT_CACHE_COUNT);
         String minAgeProp = getProperty(CACHE_MIN_AGE_PROPERTY, DEFAULT_CACHE_MIN_AGE);
@@ -71,4 +87,14 @@ public class CachingConfiguration extends PropertyBasedConfiguration {
         this.minAge = minAge;
     }
 
+    /**
+     * Saves the index of the cache directory so that a restart doesn't have to scan it. This is only useful when
+     * {@link #CACHE_DIR_PROPERTY} is defined, as a temporary directory is not reused.
+     *
+     * @since 11.5
+     */
+    public void close() {
+        CacheIndex.close(dir);
+    }
+
 }
@@ -0,0 +1,70 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.blob;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.nuxeo.ecm.core.api.NuxeoException;
+
+/**
+ * A blob provider storing blobs on the local filesystem as deduplicated content-defined chunks.
+ * <p>
+ * The manifests of the blobs are stored in the usual data directory, and the chunks in a sibling {@value #CHUNKS}
+ * directory. The following properties are available in addition to the ones of {@link LocalBlobProvider}:
+ * <ul>
+ * <li>chunking.minsize: the minimum size of a chunk (default 256 kB)
+ * <li>chunking.avgsize: the average size of a chunk (default 1 MB)
+ * <li>chunking.maxsize: the maximum size of a chunk (default 4 MB)
+ * <li>chunking.cachesize: the size of the memory cache of chunks (default 64 MB)
+ * </ul>
+ *
+ * @see ChunkingBlobStore
+ * @since 11.5
+ */
+public class ChunkingBlobProvider extends LocalBlobProvider {
+
+    public static final String CHUNKS = "chunks";
+
+    protected ChunkingConfiguration chunkingConfig;
+
+    @Override
+    protected BlobStore getBlobStore(String blobProviderId, Map<String, String> properties) throws IOException {
+        chunkingConfig = new ChunkingConfiguration(null, properties);
+        return super.getBlobStore(blobProviderId, properties);
+    }
+
+    @Override
+    protected BlobStore newBlobStore(String name, KeyStrategy keyStrategy, PathStrategy pathStrategy) {
+        Path chunksDir = config.storageDir.resolveSibling(CHUNKS);
+        try {
+            Files.createDirectories(chunksDir);
+        } catch (IOException e) {
+            throw new NuxeoException(e);
+        }
+        BlobStore manifestStore = new LocalBlobStore(name, keyStrategy, pathStrategy);
+        PathStrategy chunkPathStrategy = new PathStrategySubDirs(chunksDir, config.descriptor.depth);
+        BlobStore chunkStore = new LocalBlobStore(name + "_chunks",
+                new KeyStrategyDigest(ChunkingBlobStore.CHUNK_DIGEST_ALGORITHM), chunkPathStrategy);
+        return new ChunkingBlobStore(blobProviderId, name, keyStrategy, manifestStore, chunkStore, chunkingConfig);
+    }
+
+}
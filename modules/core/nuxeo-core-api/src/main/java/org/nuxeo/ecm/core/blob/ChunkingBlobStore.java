@@ -0,0 +1,681 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.blob;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nuxeo.ecm.core.api.Blobs;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.blob.binary.BinaryGarbageCollector;
+import org.nuxeo.ecm.core.blob.binary.BinaryManagerStatus;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import io.dropwizard.metrics5.Counter;
+import io.dropwizard.metrics5.Gauge;
+import io.dropwizard.metrics5.MetricName;
+import io.dropwizard.metrics5.MetricRegistry;
+import io.dropwizard.metrics5.SharedMetricRegistries;
+
+/**
+ * Blob store deduplicating content at the level of chunks rather than whole blobs.
+ * <p>
+ * Each blob is cut into content-defined chunks by a {@link ChunkingOutputStream}. Each chunk is stored once in the
+ * chunk store, keyed by its digest, and a manifest listing the chunks of the blob is stored in the manifest store under
+ * the blob key. Blobs that differ only by a few insertions or deletions therefore share most of their chunks.
+ * <p>
+ * Reading a byte range only fetches the chunks overlapping it. Recently read chunks are kept in a memory cache bounded
+ * in size.
+ * <p>
+ * Deleting a blob only deletes its manifest, as its chunks may be shared. Unreferenced chunks are removed by the
+ * garbage collector.
+ *
+ * @since 11.5
+ */
+public class ChunkingBlobStore extends AbstractBlobStore {
+
+    private static final Logger log = LogManager.getLogger(ChunkingBlobStore.class);
+
+    public static final String CHUNK_DIGEST_ALGORITHM = "SHA-256";
+
+    protected static final String MANIFEST_MAGIC = "NXCHUNKS1";
+
+    protected final BlobStore manifestStore;
+
+    protected final BlobStore chunkStore;
+
+    protected final ChunkingConfiguration config;
+
+    protected final ChunkCache chunkCache;
+
+    protected final ChunkingBlobGarbageCollector gc;
+
+    protected final Counter bytesWritten;
+
+    protected final Counter bytesStored;
+
+    protected final Counter cacheHits;
+
+    protected final Counter cacheMisses;
+
+    /**
+     * @param manifestStore the store for the manifests, keyed by blob key
+     * @param chunkStore the store for the chunks, keyed by their {@value #CHUNK_DIGEST_ALGORITHM} digest
+     */
+    public ChunkingBlobStore(String blobProviderId, String name, KeyStrategy keyStrategy, BlobStore manifestStore,
+            BlobStore chunkStore, ChunkingConfiguration config) {
+        super(blobProviderId, name, keyStrategy);
+        this.manifestStore = manifestStore;
+        this.chunkStore = chunkStore;
+        this.config = config;
+        chunkCache = new ChunkCache(config.cacheSize);
+        gc = new ChunkingBlobGarbageCollector();
+        String tag = blobProviderId == null ? name : blobProviderId;
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        bytesWritten = registry.counter(
+                MetricName.build("nuxeo", "blobs", "chunking", "bytes", "written").tagged("store", tag));
+        bytesStored = registry.counter(
+                MetricName.build("nuxeo", "blobs", "chunking", "bytes", "stored").tagged("store", tag));
+        cacheHits = registry.counter(
+                MetricName.build("nuxeo", "blobs", "chunking", "cache", "hit").tagged("store", tag));
+        cacheMisses = registry.counter(
+                MetricName.build("nuxeo", "blobs", "chunking", "cache", "miss").tagged("store", tag));
+        MetricName dedupRatio = MetricName.build("nuxeo", "blobs", "chunking", "dedup", "ratio").tagged("store", tag);
+        registry.remove(dedupRatio);
+        registry.register(dedupRatio, (Gauge<Double>) this::getDedupRatio);
+        MetricName hitRatio = MetricName.build("nuxeo", "blobs", "chunking", "cache", "hit", "ratio")
+                                        .tagged("store", tag);
+        registry.remove(hitRatio);
+        registry.register(hitRatio, (Gauge<Double>) this::getCacheHitRatio);
+    }
+
+    /**
+     * Gets the ratio between the bytes written to this store and the bytes actually stored as new chunks.
+     */
+    public double getDedupRatio() {
+        long stored = bytesStored.getCount();
+        return stored == 0 ? 1 : (double) bytesWritten.getCount() / stored;
+    }
+
+    /**
+     * Gets the ratio of chunk reads served from the memory cache.
+     */
+    public double getCacheHitRatio() {
+        long hits = cacheHits.getCount();
+        long total = hits + cacheMisses.getCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    protected String writeBlobGeneric(BlobWriteContext blobWriteContext) throws IOException {
+        Manifest manifest = new Manifest();
+        try (ChunkingOutputStream out = new ChunkingOutputStream(config,
+                (bytes, length) -> writeChunk(bytes, length, manifest))) {
+            transfer(blobWriteContext, out);
+        }
+        String key = blobWriteContext.getKey(); // may depend on WriteObserver, for example for digests
+        writeManifest(key, manifest);
+        return key;
+    }
+
+    /**
+     * Writes a blob from a stream, computing its digest if the key is {@code null}.
+     */
+    protected String writeStream(String key, InputStream in) throws IOException {
+        MessageDigest digest;
+        if (key != null) {
+            digest = null;
+        } else if (keyStrategy instanceof KeyStrategyDigest) {
+            digest = DigestUtils.getDigest(((KeyStrategyDigest) keyStrategy).digestAlgorithm);
+        } else {
+            throw new NuxeoException("Cannot compute the key of a blob written to store: " + name
+                    + " without a digest key strategy: " + keyStrategy.getClass().getName());
+        }
+        Manifest manifest = new Manifest();
+        try (ChunkingOutputStream chunkingOut = new ChunkingOutputStream(config,
+                (bytes, length) -> writeChunk(bytes, length, manifest));
+                OutputStream out = digest == null ? chunkingOut : new DigestOutputStream(chunkingOut, digest)) {
+            IOUtils.copy(in, out);
+        }
+        if (key == null) {
+            key = Hex.encodeHexString(digest.digest());
+        }
+        writeManifest(key, manifest);
+        return key;
+    }
+
+    protected void writeChunk(byte[] bytes, int length, Manifest manifest) throws IOException {
+        MessageDigest messageDigest = DigestUtils.getDigest(CHUNK_DIGEST_ALGORITHM);
+        messageDigest.update(bytes, 0, length);
+        String digest = Hex.encodeHexString(messageDigest.digest());
+        manifest.add(digest, length);
+        bytesWritten.inc(length);
+        try {
+            OptionalOrUnknown<Path> fileOpt = chunkStore.getFile(digest);
+            if (fileOpt.isPresent() && touch(fileOpt.get())) {
+                // a reused chunk must look as recent as a new one, so that a GC started before the blob referencing
+                // it is marked doesn't delete it
+                logTrace("hnote right: chunk " + digest + " (dedup)");
+                return;
+            }
+            // missing, or cannot be refreshed in place: (re)write it
+            boolean exists = !fileOpt.isKnown() && streamExists(digest);
+            byte[] chunk = Arrays.copyOf(bytes, length);
+            BlobContext blobContext = new BlobContext(Blobs.createBlob(chunk));
+            chunkStore.writeBlob(new BlobWriteContext(blobContext, null, () -> digest, chunkStore.getKeyStrategy()));
+            if (exists) {
+                logTrace("hnote right: chunk " + digest + " (dedup, rewritten)");
+            } else {
+                bytesStored.inc(length);
+            }
+        } finally {
+            if (gc.isInProgress()) {
+                // the chunk may have been listed as unreferenced before this new reference
+                gc.chunkGC.mark(digest);
+            }
+        }
+    }
+
+    /**
+     * Sets the modification time of a chunk file to now.
+     *
+     * @return {@code false} if the file has been deleted concurrently
+     */
+    protected boolean touch(Path file) throws IOException {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    protected boolean streamExists(String digest) throws IOException {
+        OptionalOrUnknown<InputStream> streamOpt = chunkStore.getStream(digest);
+        if (streamOpt.isPresent()) {
+            streamOpt.get().close();
+            return true;
+        }
+        return false;
+    }
+
+    protected void writeManifest(String key, Manifest manifest) throws IOException {
+        BlobContext blobContext = new BlobContext(Blobs.createBlob(manifest.toBytes()));
+        // KeyStrategyDocId is used to mean "no deduplication"
+        manifestStore.writeBlob(new BlobWriteContext(blobContext, null, () -> key, KeyStrategyDocId.instance()));
+    }
+
+    /**
+     * Reads the manifest for a blob, or returns {@code null} if it doesn't exist.
+     */
+    protected Manifest readManifest(String key) throws IOException {
+        byte[] bytes = readFully(manifestStore, key);
+        return bytes == null ? null : Manifest.fromBytes(key, bytes);
+    }
+
+    /**
+     * Reads a chunk, from the cache if possible.
+     */
+    protected byte[] readChunk(Chunk chunk) throws IOException {
+        byte[] bytes = chunkCache.get(chunk.digest);
+        if (bytes != null) {
+            cacheHits.inc();
+            return bytes;
+        }
+        cacheMisses.inc();
+        bytes = readFully(chunkStore, chunk.digest);
+        if (bytes == null) {
+            throw new IOException("Missing chunk: " + chunk.digest);
+        }
+        if (bytes.length != chunk.length) {
+            throw new IOException("Invalid chunk: " + chunk.digest + ", length: " + bytes.length + " instead of: "
+                    + chunk.length);
+        }
+        chunkCache.put(chunk.digest, bytes);
+        return bytes;
+    }
+
+    protected byte[] readFully(BlobStore store, String key) throws IOException {
+        OptionalOrUnknown<InputStream> streamOpt = store.getStream(key);
+        if (streamOpt.isKnown()) {
+            if (!streamOpt.isPresent()) {
+                return null;
+            }
+            try (InputStream stream = streamOpt.get()) {
+                return IOUtils.toByteArray(stream);
+            }
+        }
+        // low-level store without stream, go through a temporary file
+        Path tmp = Framework.createTempFilePath("bin_", ".tmp");
+        try {
+            return store.readBlob(key, tmp) ? Files.readAllBytes(tmp) : null;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public boolean copyBlobIsOptimized(BlobStore sourceStore) {
+        return sourceStore.unwrap() == this;
+    }
+
+    @Override
+    public String copyOrMoveBlob(String key, BlobStore sourceStore, String sourceKey, boolean atomicMove)
+            throws IOException {
+        String returnedKey;
+        if (sourceStore.unwrap() == this) {
+            // only the manifest needs to be copied
+            Manifest manifest = readManifest(sourceKey);
+            if (manifest == null) {
+                return null;
+            }
+            returnedKey = key == null ? sourceKey : key;
+            if (returnedKey.equals(sourceKey)) {
+                return returnedKey;
+            }
+            writeManifest(returnedKey, manifest);
+        } else {
+            returnedKey = copyBlobGeneric(key, sourceStore, sourceKey);
+            if (returnedKey == null) {
+                return null;
+            }
+        }
+        if (atomicMove) {
+            sourceStore.deleteBlob(sourceKey);
+        }
+        return returnedKey;
+    }
+
+    protected String copyBlobGeneric(String key, BlobStore sourceStore, String sourceKey) throws IOException {
+        OptionalOrUnknown<InputStream> streamOpt = sourceStore.getStream(sourceKey);
+        if (streamOpt.isKnown()) {
+            if (!streamOpt.isPresent()) {
+                return null;
+            }
+            try (InputStream stream = streamOpt.get()) {
+                return writeStream(key, stream);
+            }
+        }
+        Path tmp = Framework.createTempFilePath("bin_", ".tmp");
+        try {
+            if (!sourceStore.readBlob(sourceKey, tmp)) {
+                return null;
+            }
+            try (InputStream stream = Files.newInputStream(tmp)) {
+                return writeStream(key, stream);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public OptionalOrUnknown<Path> getFile(String key) {
+        // blobs are never stored as a whole
+        return OptionalOrUnknown.unknown();
+    }
+
+    @Override
+    public OptionalOrUnknown<InputStream> getStream(String key) throws IOException {
+        ByteRange byteRange;
+        if (config.allowByteRange) {
+            MutableObject<String> keyHolder = new MutableObject<>(key);
+            byteRange = getByteRangeFromKey(keyHolder);
+            key = keyHolder.getValue();
+        } else {
+            byteRange = null;
+        }
+        Manifest manifest = readManifest(key);
+        if (manifest == null) {
+            return OptionalOrUnknown.missing();
+        }
+        long start;
+        long end;
+        if (byteRange == null) {
+            start = 0;
+            end = manifest.length;
+        } else {
+            start = Math.min(byteRange.getStart(), manifest.length);
+            end = Math.min(byteRange.getEnd() + 1, manifest.length);
+        }
+        logTrace("<-", "read " + (end - start) + " bytes");
+        logTrace("hnote right: " + key);
+        return OptionalOrUnknown.of(new ChunkedInputStream(manifest, start, end));
+    }
+
+    @Override
+    public boolean readBlob(String key, Path dest) throws IOException {
+        OptionalOrUnknown<InputStream> streamOpt = getStream(key);
+        if (!streamOpt.isPresent()) {
+            return false;
+        }
+        try (InputStream stream = streamOpt.get()) {
+            Files.copy(stream, dest, REPLACE_EXISTING);
+            return true;
+        }
+    }
+
+    @Override
+    public void deleteBlob(String key) {
+        // chunks may be shared with other blobs, they are removed by the GC
+        manifestStore.deleteBlob(key);
+    }
+
+    @Override
+    public void clear() {
+        manifestStore.clear();
+        chunkStore.clear();
+        chunkCache.clear();
+    }
+
+    @Override
+    public BinaryGarbageCollector getBinaryGarbageCollector() {
+        return gc;
+    }
+
+    /**
+     * A chunk of a blob, as listed in its manifest.
+     */
+    public static class Chunk {
+
+        public final String digest;
+
+        public final long offset;
+
+        public final int length;
+
+        public Chunk(String digest, long offset, int length) {
+            this.digest = digest;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * The list of chunks of a blob.
+     * <p>
+     * Serialized as text, the magic {@value ChunkingBlobStore#MANIFEST_MAGIC} followed by one line per chunk with its
+     * length and digest.
+     */
+    public static class Manifest {
+
+        public final List<Chunk> chunks = new ArrayList<>();
+
+        public long length;
+
+        public void add(String digest, int chunkLength) {
+            chunks.add(new Chunk(digest, length, chunkLength));
+            length += chunkLength;
+        }
+
+        /**
+         * Finds the index of the chunk containing the given offset.
+         */
+        public int indexOf(long offset) {
+            int low = 0;
+            int high = chunks.size() - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (chunks.get(mid).offset <= offset) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        public byte[] toBytes() {
+            StringBuilder sb = new StringBuilder(MANIFEST_MAGIC).append('\n');
+            for (Chunk chunk : chunks) {
+                sb.append(chunk.length).append(' ').append(chunk.digest).append('\n');
+            }
+            return sb.toString().getBytes(UTF_8);
+        }
+
+        public static Manifest fromBytes(String key, byte[] bytes) throws IOException {
+            Manifest manifest = new Manifest();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new ByteArrayInputStream(bytes), UTF_8))) {
+                if (!MANIFEST_MAGIC.equals(reader.readLine())) {
+                    throw new IOException("Invalid manifest (bad magic) for key: " + key);
+                }
+                for (String line; (line = reader.readLine()) != null;) {
+                    int sp = line.indexOf(' ');
+                    if (sp <= 0) {
+                        throw new IOException("Invalid manifest line: " + line + " for key: " + key);
+                    }
+                    try {
+                        manifest.add(line.substring(sp + 1), Integer.parseInt(line.substring(0, sp)));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Invalid manifest line: " + line + " for key: " + key, e);
+                    }
+                }
+            }
+            return manifest;
+        }
+    }
+
+    /**
+     * Input stream reading a range of a blob, fetching its chunks only when they are reached.
+     */
+    protected class ChunkedInputStream extends InputStream {
+
+        protected final Manifest manifest;
+
+        protected final long end;
+
+        protected long pos;
+
+        // index of the next chunk to fetch
+        protected int index;
+
+        protected byte[] current;
+
+        protected int currentPos;
+
+        protected int currentEnd;
+
+        protected ChunkedInputStream(Manifest manifest, long start, long end) {
+            this.manifest = manifest;
+            this.end = end;
+            pos = start;
+            index = manifest.indexOf(start);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (pos >= end) {
+                return -1;
+            }
+            if (current == null || currentPos >= currentEnd) {
+                Chunk chunk = manifest.chunks.get(index++);
+                current = readChunk(chunk);
+                currentPos = (int) (pos - chunk.offset);
+                currentEnd = (int) Math.min(chunk.length, end - chunk.offset);
+            }
+            int n = Math.min(len, currentEnd - currentPos);
+            System.arraycopy(current, currentPos, b, off, n);
+            currentPos += n;
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            if (n <= 0) {
+                return 0;
+            }
+            n = Math.min(n, end - pos);
+            if (current != null && n < currentEnd - currentPos) {
+                currentPos += n;
+            } else if (n > 0) {
+                // don't fetch the chunks skipped over
+                current = null;
+                index = manifest.indexOf(pos + n);
+            }
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return current == null ? 0 : currentEnd - currentPos;
+        }
+    }
+
+    /**
+     * Memory cache of chunks, bounded by the total size of the chunks and evicting the least recently used ones.
+     */
+    protected static class ChunkCache {
+
+        protected final long maxSize;
+
+        protected final Map<String, byte[]> map = new LinkedHashMap<>(16, 0.75f, true);
+
+        protected long size;
+
+        protected ChunkCache(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        protected synchronized byte[] get(String digest) {
+            return map.get(digest);
+        }
+
+        protected synchronized void put(String digest, byte[] bytes) {
+            if (bytes.length > maxSize) {
+                return;
+            }
+            byte[] previous = map.put(digest, bytes);
+            if (previous != null) {
+                size -= previous.length;
+            }
+            size += bytes.length;
+            for (Iterator<byte[]> it = map.values().iterator(); size > maxSize && it.hasNext();) {
+                size -= it.next().length;
+                it.remove();
+            }
+        }
+
+        protected synchronized void clear() {
+            map.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * Garbage collector for the manifests and the chunks.
+     * <p>
+     * Marking a blob marks its manifest and all its chunks in the GCs of the underlying stores, which do the actual
+     * deletion.
+     */
+    public class ChunkingBlobGarbageCollector extends AbstractBlobGarbageCollector {
+
+        protected final BinaryGarbageCollector manifestGC = manifestStore.getBinaryGarbageCollector();
+
+        protected final BinaryGarbageCollector chunkGC = chunkStore.getBinaryGarbageCollector();
+
+        @Override
+        public String getId() {
+            return manifestGC.getId();
+        }
+
+        @Override
+        public void computeToDelete() {
+            // deletion is delegated to the underlying GCs
+            toDelete = Collections.emptySet();
+            manifestGC.start();
+            chunkGC.start();
+        }
+
+        @Override
+        public void mark(String key) {
+            manifestGC.mark(key);
+            Manifest manifest;
+            try {
+                manifest = readManifest(key);
+            } catch (IOException e) {
+                log.warn("Cannot read manifest for key: {}", key, e);
+                return;
+            }
+            if (manifest == null) {
+                log.warn("Unknown blob for key: {}", key);
+                return;
+            }
+            manifest.chunks.forEach(chunk -> chunkGC.mark(chunk.digest));
+        }
+
+        @Override
+        public void removeUnmarkedBlobsAndUpdateStatus(boolean delete) {
+            try {
+                manifestGC.stop(delete);
+            } finally {
+                chunkGC.stop(delete);
+            }
+            if (delete) {
+                chunkCache.clear();
+            }
+            BinaryManagerStatus manifestStatus = manifestGC.getStatus();
+            BinaryManagerStatus chunkStatus = chunkGC.getStatus();
+            // count blobs, but report the size actually used by the chunks
+            status.numBinaries = manifestStatus.numBinaries;
+            status.numBinariesGC = manifestStatus.numBinariesGC;
+            status.sizeBinaries = chunkStatus.sizeBinaries;
+            status.sizeBinariesGC = chunkStatus.sizeBinariesGC;
+        }
+    }
+
+}
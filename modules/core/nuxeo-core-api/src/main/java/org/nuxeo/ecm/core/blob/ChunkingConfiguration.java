@@ -0,0 +1,89 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.blob;
+
+import static org.nuxeo.ecm.core.blob.BlobProviderDescriptor.ALLOW_BYTE_RANGE;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.nuxeo.common.utils.SizeUtils;
+
+/**
+ * Configuration for the content-defined chunking of blobs.
+ *
+ * @since 11.5
+ */
+public class ChunkingConfiguration extends PropertyBasedConfiguration {
+
+    public static final String CHUNK_MIN_SIZE_PROPERTY = "chunking.minsize";
+
+    public static final String CHUNK_AVG_SIZE_PROPERTY = "chunking.avgsize";
+
+    public static final String CHUNK_MAX_SIZE_PROPERTY = "chunking.maxsize";
+
+    public static final String CHUNK_CACHE_SIZE_PROPERTY = "chunking.cachesize";
+
+    public static final String DEFAULT_CHUNK_MIN_SIZE = "256 kb";
+
+    public static final String DEFAULT_CHUNK_AVG_SIZE = "1 mb";
+
+    public static final String DEFAULT_CHUNK_MAX_SIZE = "4 mb";
+
+    public static final String DEFAULT_CHUNK_CACHE_SIZE = "64 mb";
+
+    public final int minSize;
+
+    public final int avgSize;
+
+    public final int maxSize;
+
+    public final long cacheSize;
+
+    public final boolean allowByteRange;
+
+    public ChunkingConfiguration(String systemPropertyPrefix, Map<String, String> properties) {
+        super(systemPropertyPrefix, properties);
+        minSize = (int) SizeUtils.parseSizeInBytes(getProperty(CHUNK_MIN_SIZE_PROPERTY, DEFAULT_CHUNK_MIN_SIZE));
+        avgSize = (int) SizeUtils.parseSizeInBytes(getProperty(CHUNK_AVG_SIZE_PROPERTY, DEFAULT_CHUNK_AVG_SIZE));
+        maxSize = (int) SizeUtils.parseSizeInBytes(getProperty(CHUNK_MAX_SIZE_PROPERTY, DEFAULT_CHUNK_MAX_SIZE));
+        cacheSize = SizeUtils.parseSizeInBytes(getProperty(CHUNK_CACHE_SIZE_PROPERTY, DEFAULT_CHUNK_CACHE_SIZE));
+        allowByteRange = getBooleanProperty(ALLOW_BYTE_RANGE);
+        check();
+    }
+
+    public ChunkingConfiguration(int minSize, int avgSize, int maxSize, long cacheSize, boolean allowByteRange) {
+        super(null, Collections.emptyMap());
+        this.minSize = minSize;
+        this.avgSize = avgSize;
+        this.maxSize = maxSize;
+        this.cacheSize = cacheSize;
+        this.allowByteRange = allowByteRange;
+        check();
+    }
+
+    protected void check() {
+        if (minSize <= 0 || minSize > avgSize || avgSize > maxSize) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid chunk sizes, must have 0 < min <= avg <= max: min=%s avg=%s max=%s", minSize, avgSize,
+                    maxSize));
+        }
+    }
+
+}
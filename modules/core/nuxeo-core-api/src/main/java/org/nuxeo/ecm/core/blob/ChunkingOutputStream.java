@@ -0,0 +1,149 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.blob;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream cutting what is written to it into content-defined chunks.
+ * <p>
+ * Chunk boundaries are found using a Gear rolling hash: a boundary is declared after a byte when the high bits of the
+ * hash of the preceding bytes are all zero. As the hash only depends on the last 64 bytes, an insertion or deletion in
+ * the content only changes the chunks around it, and the following chunks are found again identical.
+ * <p>
+ * The hash is not computed for the first {@code minSize} bytes of a chunk, and a chunk is always cut at
+ * {@code maxSize}. The number of bits tested is chosen so that chunks are on average about {@code avgSize} bytes long.
+ *
+ * @since 11.5
+ */
+public class ChunkingOutputStream extends OutputStream {
+
+    /**
+     * Receives the chunks. The buffer passed is reused after the call returns.
+     */
+    @FunctionalInterface
+    public interface ChunkConsumer {
+
+        void accept(byte[] bytes, int length) throws IOException;
+    }
+
+    // the table must never change, otherwise chunk boundaries of new blobs won't match the ones already stored
+    protected static final long[] GEAR = new long[256];
+
+    static {
+        // SplitMix64 sequence from a fixed seed
+        long x = 0x6e7578656f636463L;
+        for (int i = 0; i < GEAR.length; i++) {
+            x += 0x9e3779b97f4a7c15L;
+            long z = x;
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    protected final int minSize;
+
+    protected final int maxSize;
+
+    protected final long mask;
+
+    protected final ChunkConsumer consumer;
+
+    protected byte[] buffer;
+
+    protected int count;
+
+    protected long hash;
+
+    protected long length;
+
+    public ChunkingOutputStream(ChunkingConfiguration config, ChunkConsumer consumer) {
+        minSize = config.minSize;
+        maxSize = config.maxSize;
+        // expected chunk size is minSize + 2^bits
+        int bits = 63 - Long.numberOfLeadingZeros(Math.max(1, config.avgSize - config.minSize));
+        mask = bits == 0 ? 0 : -1L << (64 - bits);
+        this.consumer = consumer;
+        buffer = new byte[maxSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        length += len;
+        while (len > 0) {
+            if (count < minSize) {
+                // no boundary possible yet, skip hashing
+                int n = Math.min(len, minSize - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == maxSize) {
+                    cut();
+                }
+                continue;
+            }
+            byte v = b[off++];
+            len--;
+            buffer[count++] = v;
+            hash = (hash << 1) + GEAR[v & 0xff];
+            if ((hash & mask) == 0 || count == maxSize) {
+                cut();
+            }
+        }
+    }
+
+    protected void cut() throws IOException {
+        consumer.accept(buffer, count);
+        count = 0;
+        hash = 0;
+    }
+
+    /**
+     * Passes the last chunk to the consumer.
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            if (count > 0) {
+                cut();
+            }
+        } finally {
+            buffer = null;
+        }
+    }
+
+    /**
+     * Gets the number of bytes written.
+     */
+    public long getLength() {
+        return length;
+    }
+
+}
@@ -30,6 +30,8 @@ public class InMemoryBlobProvider extends BlobStoreBlobProvider {
 
     protected DigestConfiguration digestConfiguration;
 
+    protected CachingConfiguration cachingConfiguration;
+
     @Override
     protected BlobStore getBlobStore(String blobProviderId, Map<String, String> properties) throws IOException {
         digestConfiguration = new DigestConfiguration(null, properties);
@@ -47,7 +49,7 @@ public class InMemoryBlobProvider extends BlobStoreBlobProvider {
             store = new TransactionalBlobStore(blobProviderId, store, transientStore);
         }
         if (config.getBooleanProperty("test-caching")) { // for tests
-            CachingConfiguration cachingConfiguration = new CachingConfiguration(null, properties);
+            cachingConfiguration = new CachingConfiguration(null, properties);
             store = new CachingBlobStore(blobProviderId, "Cache", store, cachingConfiguration);
         }
         return store;
@@ -55,7 +57,9 @@ public class InMemoryBlobProvider extends BlobStoreBlobProvider {
 
     @Override
     public void close() {
-        // nothing
+        if (cachingConfiguration != null) {
+            cachingConfiguration.close();
+        }
     }
 
     @Override
@@ -31,6 +31,7 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.temporal.TemporalAmount;
+import java.util.Collections;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
@@ -218,6 +219,68 @@ public class TestCachingBlobStoreCaching {
         assertEquals(2, getDirCount());
     }
 
+    @Test
+    public void testCachingBlobStoreAccessOrder() throws IOException {
+        CachingBlobStore store = getStore(1000, 2, 1); // 2 files max
+        store.writeBlob(new BlobContext(BLOB_30, "1", XPATH));
+        advanceClock(2);
+        store.writeBlob(new BlobContext(BLOB_30, "2", XPATH));
+        advanceClock(2);
+        // reading makes the first file the most recently used
+        store.getStream("1").get().close();
+        advanceClock(2);
+        store.writeBlob(new BlobContext(BLOB_30, "3", XPATH));
+        assertTrue(exists("1"));
+        assertFalse(exists("2"));
+        assertTrue(exists("3"));
+        assertEquals(2, store.cacheIndex.getCount());
+        assertEquals(60, store.cacheIndex.getSize());
+    }
+
+    @Test
+    public void testCachingBlobStoreIndexRestart() throws IOException {
+        CachingBlobStore store = getStore(100, 9999, 1);
+        store.writeBlob(new BlobContext(BLOB_30, "1", XPATH));
+        advanceClock(2);
+        store.writeBlob(new BlobContext(BLOB_30, "2", XPATH));
+        store.cacheConfig.close();
+        assertTrue(exists(CacheIndex.INDEX_FILE));
+
+        // restart, the index is loaded back in the same order
+        Instant now = clock.instant();
+        store = getStore(100, 9999, 1);
+        clock.set(now);
+        assertFalse(exists(CacheIndex.INDEX_FILE));
+        assertEquals(2, store.cacheIndex.getCount());
+        assertEquals(60, store.cacheIndex.getSize());
+        advanceClock(2);
+        store.writeBlob(new BlobContext(BLOB_30, "3", XPATH));
+        advanceClock(2);
+        store.writeBlob(new BlobContext(BLOB_30, "4", XPATH));
+        assertFalse(exists("1"));
+        assertTrue(exists("2"));
+        assertTrue(exists("3"));
+        assertTrue(exists("4"));
+        CacheIndex.close(dir);
+    }
+
+    @Test
+    public void testCacheIndexRemoveIfOlderKeepsOrder() {
+        CacheIndex index = CacheIndex.get(dir);
+        try {
+            index.put("1", 30, 1000);
+            index.put("2", 30, 2000);
+            // not removed, and not made the most recently used
+            assertFalse(index.removeIfOlder("1", 500));
+            assertEquals(Collections.singletonList("1"), index.getFilesToEvict(1000, 1, 3000));
+            assertTrue(index.removeIfOlder("1", 1500));
+            assertEquals(1, index.getCount());
+            assertEquals(30, index.getSize());
+        } finally {
+            CacheIndex.close(dir);
+        }
+    }
+
     @Test
     public void testCachingBlobStoreKey() throws IOException {
         CachingBlobStore store = getStore(100, 9999, 1);
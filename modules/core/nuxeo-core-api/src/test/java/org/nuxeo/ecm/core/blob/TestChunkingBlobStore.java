@@ -0,0 +1,271 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nuxeo.ecm.core.api.Blobs;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.blob.ChunkingBlobStore.Chunk;
+import org.nuxeo.ecm.core.blob.ChunkingBlobStore.Manifest;
+import org.nuxeo.ecm.core.blob.binary.BinaryGarbageCollector;
+
+/**
+ * Tests the chunking blob store on top of in-memory stores.
+ */
+public class TestChunkingBlobStore {
+
+    protected static final int MIN_SIZE = 1024;
+
+    protected static final int AVG_SIZE = 4096;
+
+    protected static final int MAX_SIZE = 16384;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected InMemoryBlobStore manifestStore;
+
+    protected InMemoryBlobStore chunkStore;
+
+    protected ChunkingBlobStore newStore(String name, long cacheSize) {
+        manifestStore = new InMemoryBlobStore("manifests", new KeyStrategyDigest("MD5"));
+        chunkStore = new InMemoryBlobStore("chunks", new KeyStrategyDigest(ChunkingBlobStore.CHUNK_DIGEST_ALGORITHM));
+        ChunkingConfiguration config = new ChunkingConfiguration(MIN_SIZE, AVG_SIZE, MAX_SIZE, cacheSize, true);
+        return new ChunkingBlobStore(null, name, new KeyStrategyDigest("MD5"), manifestStore, chunkStore, config);
+    }
+
+    protected static byte[] randomBytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    protected static String write(BlobStore store, byte[] bytes) throws IOException {
+        return store.writeBlob(new BlobContext(Blobs.createBlob(bytes)));
+    }
+
+    protected static byte[] read(BlobStore store, String key) throws IOException {
+        try (InputStream stream = store.getStream(key).get()) {
+            return IOUtils.toByteArray(stream);
+        }
+    }
+
+    @Test
+    public void testChunkBoundaries() throws IOException {
+        byte[] bytes = randomBytes(1024 * 1024, 1);
+        ChunkingConfiguration config = new ChunkingConfiguration(MIN_SIZE, AVG_SIZE, MAX_SIZE, 0, false);
+        List<Integer> lengths = new ArrayList<>();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ChunkingOutputStream out = new ChunkingOutputStream(config, (b, len) -> {
+            lengths.add(len);
+            baos.write(b, 0, len);
+        })) {
+            // write in pieces not aligned with anything
+            for (int off = 0; off < bytes.length; off += 1000) {
+                out.write(bytes, off, Math.min(1000, bytes.length - off));
+            }
+        }
+        assertArrayEquals(bytes, baos.toByteArray());
+        for (int i = 0; i < lengths.size() - 1; i++) {
+            int len = lengths.get(i);
+            assertTrue(String.valueOf(len), len >= MIN_SIZE && len <= MAX_SIZE);
+        }
+        // average is about minSize + 2^bits
+        double avg = (double) bytes.length / lengths.size();
+        assertTrue(String.valueOf(avg), avg > MIN_SIZE + 1000 && avg < MAX_SIZE);
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        ChunkingBlobStore store = newStore("testWriteRead", 1024 * 1024);
+        byte[] bytes = randomBytes(200_000, 2);
+        String key = write(store, bytes);
+        assertArrayEquals(bytes, read(store, key));
+        assertFalse(store.getStream("nosuchkey").isPresent());
+
+        // empty blob
+        String emptyKey = write(store, new byte[0]);
+        assertEquals(0, read(store, emptyKey).length);
+
+        // second read is served by the cache
+        assertArrayEquals(bytes, read(store, key));
+        assertEquals(0.5, store.getCacheHitRatio(), 0.01);
+    }
+
+    @Test
+    public void testDeduplication() throws IOException {
+        ChunkingBlobStore store = newStore("testDeduplication", 0);
+        byte[] bytes = randomBytes(500_000, 3);
+        String key1 = write(store, bytes);
+        int chunks1 = chunkStore.map.size();
+
+        // same content with a few bytes inserted near the start
+        byte[] bytes2 = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, bytes2, 0, 5000);
+        System.arraycopy(bytes, 5000, bytes2, 5010, bytes.length - 5000);
+        String key2 = write(store, bytes2);
+        assertArrayEquals(bytes, read(store, key1));
+        assertArrayEquals(bytes2, read(store, key2));
+
+        // only the chunks around the insertion are new
+        int newChunks = chunkStore.map.size() - chunks1;
+        assertTrue(String.valueOf(newChunks), newChunks <= 3);
+        assertTrue(String.valueOf(store.getDedupRatio()), store.getDedupRatio() > 1.8);
+    }
+
+    @Test
+    public void testByteRange() throws IOException {
+        ChunkingBlobStore store = newStore("testByteRange", 0);
+        byte[] bytes = randomBytes(500_000, 4);
+        String key = write(store, bytes);
+        Manifest manifest = store.readManifest(key);
+        assertTrue(manifest.chunks.size() > 10);
+
+        long misses = store.cacheMisses.getCount();
+        Chunk chunk = manifest.chunks.get(5);
+        // range within a chunk fetches only that chunk
+        long start = chunk.offset + 10;
+        long end = chunk.offset + 20;
+        String rangeKey = AbstractBlobStore.setByteRangeInKey(key, ByteRange.inclusive(start, end));
+        assertArrayEquals(Arrays.copyOfRange(bytes, (int) start, (int) end + 1), read(store, rangeKey));
+        assertEquals(misses + 1, store.cacheMisses.getCount());
+
+        // range spanning two chunks
+        misses = store.cacheMisses.getCount();
+        start = chunk.offset + chunk.length - 5;
+        end = start + 9;
+        rangeKey = AbstractBlobStore.setByteRangeInKey(key, ByteRange.inclusive(start, end));
+        assertArrayEquals(Arrays.copyOfRange(bytes, (int) start, (int) end + 1), read(store, rangeKey));
+        assertEquals(misses + 2, store.cacheMisses.getCount());
+
+        // skipping doesn't fetch the chunks skipped over
+        misses = store.cacheMisses.getCount();
+        try (InputStream stream = store.getStream(key).get()) {
+            assertEquals(chunk.offset, stream.skip(chunk.offset));
+            assertEquals(bytes[(int) chunk.offset] & 0xff, stream.read());
+        }
+        assertEquals(misses + 1, store.cacheMisses.getCount());
+    }
+
+    @Test
+    public void testGC() throws IOException {
+        ChunkingBlobStore store = newStore("testGC", 0);
+        byte[] bytes1 = randomBytes(300_000, 5);
+        byte[] bytes2 = Arrays.copyOf(bytes1, bytes1.length + 100_000);
+        System.arraycopy(randomBytes(100_000, 6), 0, bytes2, bytes1.length, 100_000);
+        String key1 = write(store, bytes1);
+        String key2 = write(store, bytes2);
+        Set<String> chunks2 = new HashSet<>();
+        store.readManifest(key2).chunks.forEach(chunk -> chunks2.add(chunk.digest));
+
+        // keep only the second blob
+        BinaryGarbageCollector gc = store.getBinaryGarbageCollector();
+        gc.start();
+        gc.mark(key2);
+        gc.stop(true);
+
+        assertEquals(1, gc.getStatus().getNumBinariesGC());
+        assertEquals(1, gc.getStatus().getNumBinaries());
+        assertFalse(store.getStream(key1).isPresent());
+        assertArrayEquals(bytes2, read(store, key2));
+        assertEquals(chunks2, chunkStore.map.keySet());
+    }
+
+    @Test
+    public void testGCAfterChunkReuse() throws IOException {
+        // manifests and chunks in files, whose modification time is used by the GC
+        BlobStore fileManifestStore = new LocalBlobStore("manifests", KeyStrategyDocId.instance(),
+                new PathStrategyFlat(folder.newFolder().toPath()));
+        Path chunksDir = folder.newFolder().toPath();
+        BlobStore fileChunkStore = new LocalBlobStore("chunks",
+                new KeyStrategyDigest(ChunkingBlobStore.CHUNK_DIGEST_ALGORITHM), new PathStrategyFlat(chunksDir));
+        ChunkingConfiguration config = new ChunkingConfiguration(MIN_SIZE, AVG_SIZE, MAX_SIZE, 0, true);
+        ChunkingBlobStore store = new ChunkingBlobStore(null, "testGCAfterChunkReuse", KeyStrategyDocId.instance(),
+                fileManifestStore, fileChunkStore, config);
+        byte[] bytes = randomBytes(100_000, 7);
+        String key1 = write(store, bytes, "doc1");
+        // the chunks were written long ago
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 3_600_000);
+        try (Stream<Path> files = Files.list(chunksDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.setLastModifiedTime(file, old);
+            }
+        }
+
+        // a new blob reuses the chunks, then a GC starts before its document is committed
+        String key2 = write(store, bytes, "doc2");
+        store.deleteBlob(key1);
+        BinaryGarbageCollector gc = store.getBinaryGarbageCollector();
+        gc.start();
+        gc.stop(true);
+
+        // the document is committed, its chunks must still be there
+        assertArrayEquals(bytes, read(store, key2));
+    }
+
+    @Test
+    public void testCopyWithoutDigestKeyStrategy() throws IOException {
+        manifestStore = new InMemoryBlobStore("manifests", KeyStrategyDocId.instance());
+        chunkStore = new InMemoryBlobStore("chunks", new KeyStrategyDigest(ChunkingBlobStore.CHUNK_DIGEST_ALGORITHM));
+        ChunkingConfiguration config = new ChunkingConfiguration(MIN_SIZE, AVG_SIZE, MAX_SIZE, 0, true);
+        ChunkingBlobStore store = new ChunkingBlobStore(null, "testCopyWithoutDigestKeyStrategy",
+                KeyStrategyDocId.instance(), manifestStore, chunkStore, config);
+        InMemoryBlobStore otherStore = new InMemoryBlobStore("other", new KeyStrategyDigest("MD5"));
+        String key = write(otherStore, randomBytes(10_000, 8));
+
+        // with a key
+        assertEquals("doc1", store.copyOrMoveBlob("doc1", otherStore, key, false));
+        // without a key to compute
+        try {
+            store.copyOrMoveBlob(null, otherStore, key, false);
+            fail("should fail without a digest key strategy");
+        } catch (NuxeoException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("digest key strategy"));
+        }
+    }
+
+    protected static String write(BlobStore store, byte[] bytes, String key) throws IOException {
+        BlobContext blobContext = new BlobContext(Blobs.createBlob(bytes), key, KeyStrategyDocId.MAIN_BLOB_XPATH);
+        return store.writeBlob(blobContext);
+    }
+
+}
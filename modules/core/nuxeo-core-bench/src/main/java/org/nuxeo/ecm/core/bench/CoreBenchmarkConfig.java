@@ -0,0 +1,43 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.bench;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.runtime.test.runner.Features;
+
+/**
+ * Features configuration of the benchmarks, read by the {@link CoreBenchmarkRunner}.
+ * <p>
+ * The repository backend is chosen by the {@code nuxeo.test.core} system property, as for the tests.
+ *
+ * @since 11.5
+ */
+@Features(CoreFeature.class)
+@RepositoryConfig(cleanup = Granularity.CLASS)
+public class CoreBenchmarkConfig {
+
+    @Test
+    public void noop() {
+        // needed for a valid runner configuration, never run
+    }
+
+}
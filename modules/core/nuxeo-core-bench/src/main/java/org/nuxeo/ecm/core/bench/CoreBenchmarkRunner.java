@@ -0,0 +1,57 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.bench;
+
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.InitializationError;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+
+/**
+ * Drives the lifecycle of the features of a configuration class outside of JUnit, so that a JMH benchmark can start a
+ * Nuxeo runtime and a repository in its setup and stop them in its tear down.
+ * <p>
+ * Only the class level lifecycle is applied: there is no test instance, and transactions must be managed by the
+ * benchmark itself.
+ *
+ * @since 11.5
+ */
+public class CoreBenchmarkRunner extends FeaturesRunner {
+
+    public CoreBenchmarkRunner(Class<?> classToRun) throws InitializationError {
+        super(classToRun);
+    }
+
+    /**
+     * Starts the runtime and the features, as done before running the tests of a class.
+     */
+    public void startup() throws Exception {
+        injector = onInjector(new RunNotifier());
+        initialize();
+        start();
+        beforeRun();
+    }
+
+    /**
+     * Stops the features and the runtime, as done after running the tests of a class.
+     */
+    public void shutdown() throws Throwable {
+        evaluateRunnable(this::afterRun, this::stop);
+    }
+
+}
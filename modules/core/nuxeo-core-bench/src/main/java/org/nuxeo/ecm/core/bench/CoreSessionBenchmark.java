@@ -0,0 +1,116 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.bench;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.api.PartialList;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the main {@link CoreSession} operations, each one running in its own transaction.
+ * <p>
+ * Throughput is reported in ops/s, latency percentiles (p0.99) are reported in µs by
+ * {@link CoreSessionLatencyBenchmark}. Allocation rates are reported when running with the GC profiler
+ * ({@code -prof gc}, the default of the {@code bench} profile).
+ * <p>
+ * Run with: {@code mvn -Pbench verify -Dbench.args="-prof gc -p backend=mem -p docCount=10000 -p depth=4"}.
+ *
+ * @since 11.5
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class CoreSessionBenchmark {
+
+    // unique names for created documents
+    protected static final AtomicLong COUNTER = new AtomicLong();
+
+    @Benchmark
+    public DocumentModel createDocument(RepositoryState repository) {
+        CoreSession session = repository.getSession();
+        return TransactionHelper.runInTransaction(() -> {
+            String name = "doc" + COUNTER.incrementAndGet();
+            DocumentModel doc = session.createDocumentModel(repository.getWorkspacePath(), name, "File");
+            doc.setPropertyValue("dc:title", "New document");
+            doc = session.createDocument(doc);
+            session.save();
+            return doc;
+        });
+    }
+
+    @Benchmark
+    public DocumentModel getDocument(RepositoryState repository) {
+        CoreSession session = repository.getSession();
+        IdRef ref = new IdRef(repository.randomDocId());
+        return TransactionHelper.runInTransaction(() -> session.getDocument(ref));
+    }
+
+    @Benchmark
+    public DocumentModelList getChildren(RepositoryState repository) {
+        CoreSession session = repository.getSession();
+        IdRef ref = new IdRef(repository.randomFolderId());
+        return TransactionHelper.runInTransaction(() -> session.getChildren(ref));
+    }
+
+    @Benchmark
+    public DocumentModel saveDocument(RepositoryState repository) {
+        CoreSession session = repository.getSession();
+        IdRef ref = new IdRef(repository.randomDocId());
+        return TransactionHelper.runInTransaction(() -> {
+            DocumentModel doc = session.getDocument(ref);
+            doc.setPropertyValue("dc:description", String.valueOf(System.nanoTime()));
+            doc = session.saveDocument(doc);
+            session.save();
+            return doc;
+        });
+    }
+
+    @Benchmark
+    public DocumentModelList query(RepositoryState repository) {
+        CoreSession session = repository.getSession();
+        String nxql = String.format("SELECT * FROM File WHERE ecm:parentId = '%s'", repository.randomFolderId());
+        return TransactionHelper.runInTransaction(() -> session.query(nxql));
+    }
+
+    @Benchmark
+    public PartialList<Map<String, Serializable>> queryProjection(RepositoryState repository) {
+        CoreSession session = repository.getSession();
+        String nxql = String.format("SELECT ecm:uuid, dc:title FROM File WHERE ecm:parentId = '%s'",
+                repository.randomFolderId());
+        return TransactionHelper.runInTransaction(() -> session.queryProjection(nxql, 0, 0));
+    }
+
+}
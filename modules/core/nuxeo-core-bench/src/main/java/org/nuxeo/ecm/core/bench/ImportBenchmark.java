@@ -0,0 +1,126 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.test.StorageConfiguration;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of a bulk import, creating batches of documents in a single transaction, with and without the bulk copy
+ * protocol for the inserts of the VCS repository.
+ * <p>
+ * Throughput is reported in documents/s.
+ * <p>
+ * The bulk copy protocol is only available on PostgreSQL, other databases fall back to batched inserts. Run with:
+ * {@code mvn -Pbench verify -Dnuxeo.test.vcs.db=PostgreSQL -Dbench.args="ImportBenchmark"}.
+ *
+ * @since 11.5
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ImportBenchmark {
+
+    protected static final int BATCH_SIZE = 500;
+
+    protected static final String COPY_INSERT_PROPERTY = "nuxeo.test.vcs.copyInsert";
+
+    // unique names for created documents
+    protected static final AtomicLong COUNTER = new AtomicLong();
+
+    /**
+     * Benchmark state holding a started VCS repository, configured to use the bulk copy protocol or not.
+     */
+    @State(Scope.Benchmark)
+    public static class ImportState {
+
+        /** Whether the inserts use the bulk copy protocol. */
+        @Param({ "false", "true" })
+        public boolean copyInsert;
+
+        protected CoreBenchmarkRunner runner;
+
+        protected CoreSession session;
+
+        protected String workspacePath;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            System.setProperty(StorageConfiguration.CORE_PROPERTY, StorageConfiguration.CORE_VCS);
+            System.setProperty(COPY_INSERT_PROPERTY, String.valueOf(copyInsert));
+            runner = new CoreBenchmarkRunner(CoreBenchmarkConfig.class);
+            runner.startup();
+            session = runner.getFeature(CoreFeature.class).getCoreSessionSystem();
+            TransactionHelper.runInTransaction(() -> {
+                DocumentModel workspace = session.createDocumentModel("/", "workspace", "Folder");
+                workspacePath = session.createDocument(workspace).getPathAsString();
+                session.save();
+            });
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Throwable {
+            if (runner != null) {
+                runner.shutdown();
+            }
+            System.clearProperty(COPY_INSERT_PROPERTY);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void importBatch(ImportState state) {
+        CoreSession session = state.session;
+        TransactionHelper.runInTransaction(() -> {
+            DocumentModel folder = session.createDocumentModel(state.workspacePath,
+                    "folder" + COUNTER.incrementAndGet(), "Folder");
+            String folderPath = session.createDocument(folder).getPathAsString();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                DocumentModel doc = session.createDocumentModel(folderPath, "doc" + i, "File");
+                doc.setPropertyValue("dc:title", "Imported document " + i);
+                doc.setPropertyValue("dc:description", "Imported by benchmark");
+                session.createDocument(doc);
+            }
+            session.save();
+        });
+    }
+
+}
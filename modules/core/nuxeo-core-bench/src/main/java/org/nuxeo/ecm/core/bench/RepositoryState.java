@@ -0,0 +1,158 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.test.StorageConfiguration;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmark state holding a started repository populated with a tree of documents.
+ * <p>
+ * The tree has {@link #depth} levels of folders, the last level holding the {@link #docCount} documents. The number of
+ * children per folder is computed so that the leaf folders hold roughly the same number of documents.
+ *
+ * @since 11.5
+ */
+@State(Scope.Benchmark)
+public class RepositoryState {
+
+    private static final Logger log = LogManager.getLogger(RepositoryState.class);
+
+    protected static final int BATCH_SIZE = 500;
+
+    /** The repository backend, as in {@link StorageConfiguration#CORE_PROPERTY}: {@code mem} or {@code vcs} (H2). */
+    @Param({ StorageConfiguration.CORE_MEM, StorageConfiguration.CORE_VCS })
+    public String backend;
+
+    /** The number of documents created in the tree. */
+    @Param({ "1000" })
+    public int docCount;
+
+    /** The depth of the folder tree holding the documents. */
+    @Param({ "3" })
+    public int depth;
+
+    protected CoreBenchmarkRunner runner;
+
+    protected CoreSession session;
+
+    protected final List<String> folderIds = new ArrayList<>();
+
+    protected final List<String> docIds = new ArrayList<>();
+
+    // folder in which documents are created by the benchmarks
+    protected String workspacePath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        System.setProperty(StorageConfiguration.CORE_PROPERTY, backend);
+        runner = new CoreBenchmarkRunner(CoreBenchmarkConfig.class);
+        runner.startup();
+        session = runner.getFeature(CoreFeature.class).getCoreSessionSystem();
+        TransactionHelper.runInTransaction(this::populate);
+        log.info("Populated {} repository with {} documents in {} folders", backend, docIds.size(),
+                folderIds.size());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Throwable {
+        if (runner != null) {
+            runner.shutdown();
+        }
+    }
+
+    protected void populate() {
+        DocumentModel workspace = session.createDocumentModel("/", "workspace", "Folder");
+        workspacePath = session.createDocument(workspace).getPathAsString();
+        int fanout = Math.max(2, (int) Math.ceil(Math.pow(docCount, 1.0 / depth)));
+        List<String> parentPaths = new ArrayList<>();
+        parentPaths.add("/");
+        List<DocumentModel> leaves = new ArrayList<>();
+        for (int level = 1; level < depth; level++) {
+            List<String> paths = new ArrayList<>();
+            for (String parentPath : parentPaths) {
+                for (int i = 0; i < fanout; i++) {
+                    DocumentModel folder = session.createDocumentModel(parentPath, "folder" + i, "Folder");
+                    folder = session.createDocument(folder);
+                    paths.add(folder.getPathAsString());
+                    if (level == depth - 1) {
+                        leaves.add(folder);
+                    }
+                    saveBatch(paths.size());
+                }
+            }
+            parentPaths = paths;
+        }
+        if (leaves.isEmpty()) {
+            // depth 1: all documents are children of the root
+            leaves.add(session.getRootDocument());
+        }
+        leaves.forEach(folder -> folderIds.add(folder.getId()));
+        for (int i = 0; i < docCount; i++) {
+            DocumentModel folder = leaves.get(i % leaves.size());
+            DocumentModel doc = session.createDocumentModel(folder.getPathAsString(), "doc" + i, "File");
+            doc.setPropertyValue("dc:title", "Document " + i);
+            doc = session.createDocument(doc);
+            docIds.add(doc.getId());
+            saveBatch(i + 1);
+        }
+        session.save();
+    }
+
+    // commits regularly to avoid huge transactions
+    protected void saveBatch(int count) {
+        if (count % BATCH_SIZE == 0) {
+            session.save();
+            TransactionHelper.commitOrRollbackTransaction();
+            TransactionHelper.startTransaction();
+        }
+    }
+
+    public CoreSession getSession() {
+        return session;
+    }
+
+    public String getWorkspacePath() {
+        return workspacePath;
+    }
+
+    public String randomFolderId() {
+        return folderIds.get(ThreadLocalRandom.current().nextInt(folderIds.size()));
+    }
+
+    public String randomDocId() {
+        return docIds.get(ThreadLocalRandom.current().nextInt(docIds.size()));
+    }
+
+}
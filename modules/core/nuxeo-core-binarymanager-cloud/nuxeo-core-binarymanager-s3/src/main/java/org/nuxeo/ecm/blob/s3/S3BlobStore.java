@@ -122,6 +122,21 @@ public class S3BlobStore extends AbstractBlobStore {
 
     protected final BinaryGarbageCollector gc;
 
+    /**
+     * Prefix of the temporary keys used by streaming uploads before the final key is known.
+     *
+     * @since 11.5
+     */
+    protected static final String UPLOAD_TMP_PREFIX = "tmp-upload-";
+
+    /**
+     * Age after which a temporary key of a streaming upload is left over by a crash, and is deleted by the garbage
+     * collector.
+     *
+     * @since 11.5
+     */
+    protected static final Duration UPLOAD_TMP_MAX_AGE = Duration.ofDays(1);
+
     /** @deprecated since 11.5 */
     @Deprecated
     public S3BlobStore(String name, S3BlobStoreConfiguration config, KeyStrategy keyStrategy) {
@@ -217,6 +232,9 @@ public class S3BlobStore extends AbstractBlobStore {
                     }
                     file = blobFile.toPath();
                     fileTraceSource = "Nuxeo";
+                } else if (config.uploadStreaming && !config.useClientSideEncryption) {
+                    // upload the blob stream directly
+                    return writeBlobStreaming(blobWriteContext);
                 } else {
                     // we must transfer the blob stream to a tmp file
                     tmp = Files.createTempFile("bin_", ".tmp");
@@ -251,6 +269,85 @@ public class S3BlobStore extends AbstractBlobStore {
         }
     }
 
+    /**
+     * Writes a blob by streaming it to S3 using a parallel multipart upload, without a local file.
+     * <p>
+     * If the key depends on the written bytes (digest), the upload is done to a temporary key, then copied
+     * server-side to the final key.
+     *
+     * @since 11.5
+     */
+    protected String writeBlobStreaming(BlobWriteContext blobWriteContext) throws IOException {
+        BlobContext blobContext = blobWriteContext.blobContext;
+        // without write observer, the key doesn't depend on the written bytes
+        boolean keyAfterWrite = blobWriteContext.writeObserver != null;
+        String key = keyAfterWrite ? null : checkKey(blobWriteContext.getKey());
+        if (key != null && getKeyStrategy().useDeDuplication() && exists(bucketPrefix + key)) {
+            return key; // no key version used with deduplication
+        }
+        String uploadBucketKey = bucketPrefix + (keyAfterWrite ? UPLOAD_TMP_PREFIX + randomString() : key);
+        long t0 = System.currentTimeMillis();
+        log.debug("Streaming to s3://{}/{}", bucketName, uploadBucketKey);
+
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        SSEAwsKeyManagementParams kmsParams = null;
+        if (config.useServerSideEncryption) {
+            if (isNotBlank(config.serverSideKMSKeyID)) {
+                // SSE-KMS
+                kmsParams = new SSEAwsKeyManagementParams(config.serverSideKMSKeyID);
+            } else {
+                // SSE-S3
+                objectMetadata.setSSEAlgorithm(ObjectMetadata.AES_256_SERVER_SIDE_ENCRYPTION);
+            }
+        }
+        setMetadata(objectMetadata, blobContext);
+        // when the bucket has Object Lock active, uploads need to provide an MD5
+        boolean computeMD5 = config.bucketRetentionMode != null;
+        S3StreamingUpload upload = new S3StreamingUpload(amazonS3, bucketName, uploadBucketKey, objectMetadata,
+                kmsParams, config.uploadStreamingPartSize, config.uploadStreamingConcurrency, computeMD5,
+                config.getUploadExecutor());
+        try {
+            transfer(blobWriteContext, upload);
+            upload.close();
+        } catch (IOException | RuntimeException e) {
+            upload.abort();
+            throw e;
+        }
+        logTrace(null, "->", null, "write " + upload.getLength() + " bytes");
+        logTrace("hnote right: " + uploadBucketKey);
+
+        String versionId;
+        if (keyAfterWrite) {
+            key = checkKey(blobWriteContext.getKey());
+            String bucketKey = bucketPrefix + key;
+            if (getKeyStrategy().useDeDuplication() && exists(bucketKey)) {
+                logTrace("->", "deleteObject");
+                logTrace("hnote right: " + uploadBucketKey);
+                amazonS3.deleteObject(bucketName, uploadBucketKey);
+                versionId = null;
+            } else {
+                versionId = copyOrMoveBlob(config, uploadBucketKey, null, config, bucketKey, true);
+            }
+        } else {
+            // if we don't want to use versions, ignore them even though the bucket may be versioned
+            versionId = useVersion ? upload.getVersionId() : null;
+        }
+        log.debug("Streamed s3://{}/{} in {}ms", () -> bucketName, () -> uploadBucketKey,
+                () -> System.currentTimeMillis() - t0);
+        return versionId == null ? key : key + VER_SEP + versionId;
+    }
+
+    protected String checkKey(String key) {
+        if (key == null) {
+            // should never happen unless an invalid WriteObserver is used in new code
+            throw new NuxeoException("Missing key");
+        } else if (key.indexOf(VER_SEP) >= 0) {
+            // should never happen unless AWS S3 changes their key format
+            throw new NuxeoException("Invalid key '" + key + "', it contains the version separator '" + VER_SEP + "'");
+        }
+        return key;
+    }
+
     /** Writes a file with the given key and returns its version id. */
     protected String writeFile(String key, Path file, BlobContext blobContext, String fileTraceSource)
             throws IOException {
@@ -862,7 +959,14 @@ public class S3BlobStore extends AbstractBlobStore {
                 }
                 for (S3ObjectSummary summary : list.getObjectSummaries()) {
                     String key = summary.getKey().substring(prefixLength);
-                    if (useDeDuplication) {
+                    if (key.startsWith(UPLOAD_TMP_PREFIX)) {
+                        if (System.currentTimeMillis() - summary.getLastModified().getTime() < UPLOAD_TMP_MAX_AGE
+                                .toMillis()) {
+                            // streaming upload possibly in progress
+                            continue;
+                        }
+                        // never marked, so deleted
+                    } else if (useDeDuplication) {
                         if (!((KeyStrategyDigest) keyStrategy).isValidDigest(key)) {
                             // ignore files that cannot be digests, for safety
                             continue;
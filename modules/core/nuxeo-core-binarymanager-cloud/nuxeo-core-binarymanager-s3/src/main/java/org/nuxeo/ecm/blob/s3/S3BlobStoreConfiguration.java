@@ -35,6 +35,11 @@ import java.time.Duration;
 import java.util.Date;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -132,6 +137,43 @@ public class S3BlobStoreConfiguration extends CloudBlobStoreConfiguration {
      */
     public static final String MULTIPART_CLEANUP_DISABLED_PROPERTY = "multipart.cleanup.disabled";
 
+    /**
+     * Enables the streaming upload of blobs that have no local file, instead of going through a temporary file.
+     *
+     * @since 11.5
+     */
+    public static final String UPLOAD_STREAMING_PROPERTY = "upload.streaming";
+
+    /**
+     * The size of the parts of a streaming upload, at least 5 MB.
+     *
+     * @since 11.5
+     */
+    public static final String UPLOAD_STREAMING_PART_SIZE_PROPERTY = "upload.streaming.partsize";
+
+    /**
+     * The maximum number of parts of a streaming upload being uploaded in parallel.
+     *
+     * @since 11.5
+     */
+    public static final String UPLOAD_STREAMING_CONCURRENCY_PROPERTY = "upload.streaming.concurrency";
+
+    /**
+     * The maximum number of threads uploading parts, shared by all the streaming uploads of the blob store.
+     *
+     * @since 11.5
+     */
+    public static final String UPLOAD_STREAMING_THREADS_PROPERTY = "upload.streaming.threads";
+
+    /** @since 11.5 */
+    public static final int DEFAULT_UPLOAD_STREAMING_PART_SIZE = 16 * 1024 * 1024; // 16 MB
+
+    /** @since 11.5 */
+    public static final int DEFAULT_UPLOAD_STREAMING_CONCURRENCY = 4;
+
+    /** @since 11.5 */
+    public static final int DEFAULT_UPLOAD_STREAMING_THREADS = 16;
+
     public static final String DELIMITER = "/";
 
     /**
@@ -179,6 +221,21 @@ public class S3BlobStoreConfiguration extends CloudBlobStoreConfiguration {
      */
     public final ObjectLockRetentionMode retentionMode;
 
+    /** @since 11.5 */
+    public final boolean uploadStreaming;
+
+    /** @since 11.5 */
+    public final int uploadStreamingPartSize;
+
+    /** @since 11.5 */
+    public final int uploadStreamingConcurrency;
+
+    /** @since 11.5 */
+    public final int uploadStreamingThreads;
+
+    /** @since 11.5 */
+    protected ExecutorService uploadExecutor;
+
     public S3BlobStoreConfiguration(Map<String, String> properties) throws IOException {
         super(SYSTEM_PROPERTY_PREFIX, properties);
         cloudFront = new CloudFrontConfiguration(SYSTEM_PROPERTY_PREFIX, properties);
@@ -227,6 +284,15 @@ public class S3BlobStoreConfiguration extends CloudBlobStoreConfiguration {
 
         transferManager = createTransferManager();
 
+        uploadStreaming = getBooleanProperty(UPLOAD_STREAMING_PROPERTY);
+        int partSize = getIntProperty(UPLOAD_STREAMING_PART_SIZE_PROPERTY);
+        uploadStreamingPartSize = partSize < 0 ? DEFAULT_UPLOAD_STREAMING_PART_SIZE
+                : Math.max(partSize, S3StreamingUpload.MIN_PART_SIZE);
+        int concurrency = getIntProperty(UPLOAD_STREAMING_CONCURRENCY_PROPERTY);
+        uploadStreamingConcurrency = concurrency <= 0 ? DEFAULT_UPLOAD_STREAMING_CONCURRENCY : concurrency;
+        int threads = getIntProperty(UPLOAD_STREAMING_THREADS_PROPERTY);
+        uploadStreamingThreads = threads <= 0 ? DEFAULT_UPLOAD_STREAMING_THREADS : threads;
+
         abortOldUploads();
     }
 
@@ -239,6 +305,35 @@ public class S3BlobStoreConfiguration extends CloudBlobStoreConfiguration {
 
     public void close() {
         transferManager.shutdownNow();
+        cachingConfiguration.close();
+        synchronized (this) {
+            if (uploadExecutor != null) {
+                uploadExecutor.shutdownNow();
+                uploadExecutor = null;
+            }
+        }
+    }
+
+    /**
+     * Gets the executor doing the part uploads of streaming uploads. Each upload bounds its own number of parts in
+     * flight, and the executor bounds the threads of all the uploads: parts beyond them wait in its queue.
+     *
+     * @since 11.5
+     */
+    public synchronized ExecutorService getUploadExecutor() {
+        if (uploadExecutor == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(uploadStreamingThreads, uploadStreamingThreads, 60,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        Thread thread = new Thread(r,
+                                "s3-upload-" + bucketName + "-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            uploadExecutor = executor;
+        }
+        return uploadExecutor;
     }
 
     @Override
@@ -0,0 +1,345 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.blob.s3;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.amazonaws.SdkBaseException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.SSEAwsKeyManagementParams;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+/**
+ * Output stream uploading what is written to it to an S3 object, without going through a local file.
+ * <p>
+ * The data is cut into parts of a fixed size which are uploaded in parallel as a multipart upload. The number of parts
+ * being uploaded at the same time is bounded, writing blocks when this limit is reached, so that the memory used is at
+ * most {@code (concurrency + 1) * partSize}. If the data fits in a single part, a simple put is done instead.
+ * <p>
+ * The upload is completed by {@link #close}. In case of error, {@link #abort} must be called.
+ *
+ * @since 11.5
+ */
+public class S3StreamingUpload extends OutputStream {
+
+    private static final Logger log = LogManager.getLogger(S3StreamingUpload.class);
+
+    /** Minimum size of a part in a multipart upload, except for the last one. */
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    protected final AmazonS3 amazonS3;
+
+    protected final String bucketName;
+
+    protected final String bucketKey;
+
+    protected final ObjectMetadata objectMetadata;
+
+    protected final SSEAwsKeyManagementParams kmsParams;
+
+    protected final int partSize;
+
+    protected final int concurrency;
+
+    protected final boolean computeMD5;
+
+    protected final CompletionService<PartETag> completionService;
+
+    protected final BlockingQueue<byte[]> freeBuffers;
+
+    protected final List<PartETag> partETags = new ArrayList<>();
+
+    protected byte[] buffer;
+
+    protected int count;
+
+    protected int partNumber;
+
+    protected int inFlight;
+
+    protected int buffersAllocated;
+
+    protected final int maxBuffers;
+
+    protected String uploadId;
+
+    protected String versionId;
+
+    protected long length;
+
+    protected boolean closed;
+
+    /**
+     * @param amazonS3 the S3 client
+     * @param bucketName the bucket
+     * @param bucketKey the key of the object to write
+     * @param objectMetadata the object metadata
+     * @param kmsParams the SSE-KMS parameters, or {@code null}
+     * @param partSize the size of a part, at least {@link #MIN_PART_SIZE}
+     * @param concurrency the maximum number of parts uploaded in parallel
+     * @param computeMD5 whether to send the MD5 of each part (needed for buckets with Object Lock)
+     * @param executor the executor doing the part uploads
+     */
+    public S3StreamingUpload(AmazonS3 amazonS3, String bucketName, String bucketKey, ObjectMetadata objectMetadata,
+            SSEAwsKeyManagementParams kmsParams, int partSize, int concurrency, boolean computeMD5,
+            Executor executor) {
+        this.amazonS3 = amazonS3;
+        this.bucketName = bucketName;
+        this.bucketKey = bucketKey;
+        this.objectMetadata = objectMetadata;
+        this.kmsParams = kmsParams;
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+        this.computeMD5 = computeMD5;
+        completionService = new ExecutorCompletionService<>(executor);
+        this.concurrency = Math.max(concurrency, 1);
+        maxBuffers = this.concurrency + 1;
+        freeBuffers = new ArrayBlockingQueue<>(maxBuffers);
+        buffer = new byte[this.partSize];
+        buffersAllocated = 1;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            uploadPart(false);
+        }
+        buffer[count++] = (byte) b;
+        length++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                uploadPart(false);
+            }
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            length += n;
+        }
+    }
+
+    /**
+     * Submits the current buffer as a part, waiting for a part upload to finish if too many are in flight, then gets a
+     * new buffer.
+     */
+    protected void uploadPart(boolean last) throws IOException {
+        // collect finished uploads, and fail fast if one of them failed
+        for (Future<PartETag> future; (future = completionService.poll()) != null;) {
+            collect(future);
+        }
+        while (inFlight >= concurrency) {
+            take();
+        }
+        if (uploadId == null) {
+            InitiateMultipartUploadRequest request = new InitiateMultipartUploadRequest(bucketName, bucketKey,
+                    objectMetadata).withSSEAwsKeyManagementParams(kmsParams);
+            uploadId = amazonS3.initiateMultipartUpload(request).getUploadId();
+            log.debug("Initiated multipart upload: {} for s3://{}/{}", uploadId, bucketName, bucketKey);
+        }
+        byte[] partBuffer = buffer;
+        int partLength = count;
+        int number = ++partNumber;
+        UploadPartRequest request = new UploadPartRequest().withBucketName(bucketName)
+                                                           .withKey(bucketKey)
+                                                           .withUploadId(uploadId)
+                                                           .withPartNumber(number)
+                                                           .withPartSize(partLength)
+                                                           .withLastPart(last)
+                                                           .withInputStream(
+                                                                   new ByteArrayInputStream(partBuffer, 0, partLength));
+        if (computeMD5) {
+            request.setMd5Digest(md5Base64(partBuffer, partLength));
+        }
+        completionService.submit(() -> {
+            try {
+                return amazonS3.uploadPart(request).getPartETag();
+            } finally {
+                freeBuffers.add(partBuffer);
+            }
+        });
+        inFlight++;
+        if (!last) {
+            buffer = nextBuffer();
+            count = 0;
+        }
+    }
+
+    protected byte[] nextBuffer() throws IOException {
+        byte[] next = freeBuffers.poll();
+        if (next != null) {
+            return next;
+        }
+        if (buffersAllocated < maxBuffers) {
+            buffersAllocated++;
+            return new byte[partSize];
+        }
+        // wait for a part to finish
+        take();
+        // the buffer is returned to the pool before the upload task completes
+        return freeBuffers.remove();
+    }
+
+    protected void take() throws IOException {
+        try {
+            collect(completionService.take());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    protected void collect(Future<PartETag> future) throws IOException {
+        inFlight--;
+        try {
+            partETags.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SdkBaseException) {
+                throw new IOException("Failed to upload part of s3://" + bucketName + "/" + bucketKey, cause);
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    protected static String md5Base64(byte[] bytes, int len) {
+        MessageDigest digest = DigestUtils.getMd5Digest();
+        digest.update(bytes, 0, len);
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * Uploads the remaining data and completes the upload.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (uploadId == null) {
+                // everything fits in a single part, do a simple put
+                ObjectMetadata metadata = objectMetadata.clone();
+                metadata.setContentLength(count);
+                PutObjectRequest request = new PutObjectRequest(bucketName, bucketKey,
+                        new ByteArrayInputStream(buffer, 0, count), metadata).withSSEAwsKeyManagementParams(
+                                kmsParams);
+                if (computeMD5) {
+                    metadata.setContentMD5(md5Base64(buffer, count));
+                }
+                PutObjectResult result = amazonS3.putObject(request);
+                versionId = result.getVersionId();
+                return;
+            }
+            if (count > 0) {
+                uploadPart(true);
+            }
+            while (inFlight > 0) {
+                take();
+            }
+            // parts may finish out of order
+            partETags.sort(Comparator.comparingInt(PartETag::getPartNumber));
+            CompleteMultipartUploadRequest request = new CompleteMultipartUploadRequest(bucketName, bucketKey,
+                    uploadId, partETags);
+            CompleteMultipartUploadResult result = amazonS3.completeMultipartUpload(request);
+            versionId = result.getVersionId();
+            log.debug("Completed multipart upload: {} for s3://{}/{} with {} parts", uploadId, bucketName, bucketKey,
+                    partNumber);
+        } catch (SdkBaseException e) {
+            throw new IOException("Failed to upload s3://" + bucketName + "/" + bucketKey, e);
+        } finally {
+            buffer = null;
+            freeBuffers.clear();
+        }
+    }
+
+    /**
+     * Aborts the upload, waiting for the parts being uploaded.
+     */
+    public void abort() {
+        closed = true;
+        while (inFlight > 0) {
+            try {
+                completionService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            inFlight--;
+        }
+        if (uploadId != null) {
+            try {
+                amazonS3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, bucketKey, uploadId));
+            } catch (SdkBaseException e) {
+                log.warn("Failed to abort multipart upload: {} for s3://{}/{}", uploadId, bucketName, bucketKey, e);
+            }
+        }
+        buffer = null;
+        freeBuffers.clear();
+    }
+
+    /**
+     * Gets the version id of the uploaded object, if the bucket is versioned.
+     */
+    public String getVersionId() {
+        return versionId;
+    }
+
+    /**
+     * Gets the number of bytes written.
+     */
+    public long getLength() {
+        return length;
+    }
+
+}
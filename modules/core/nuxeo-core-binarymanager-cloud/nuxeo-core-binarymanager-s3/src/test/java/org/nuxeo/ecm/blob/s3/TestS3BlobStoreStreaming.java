@@ -0,0 +1,50 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.blob.s3;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AssumptionViolatedException;
+import org.junit.Test;
+import org.nuxeo.runtime.test.runner.Deploy;
+
+/**
+ * Runs the blob store tests with streaming uploads. A local S3 stand-in can be used by setting the
+ * {@code nuxeo.s3storage.endpoint} system property.
+ *
+ * @since 11.5
+ */
+@Deploy("org.nuxeo.ecm.core.storage.binarymanager.s3.tests:OSGI-INF/test-blob-provider-s3-streaming.xml")
+public class TestS3BlobStoreStreaming extends TestS3BlobStoreAbstract {
+
+    @Test
+    public void testFlags() {
+        assertFalse(bp.isTransactional());
+        assertFalse(bp.isRecordMode());
+        assertTrue(bs.getKeyStrategy().useDeDuplication());
+        assertTrue(((S3BlobStore) bs.unwrap()).config.uploadStreaming);
+    }
+
+    @Override
+    public void testBlobGetFile() {
+        throw new AssumptionViolatedException("S3BlobStore with no caching has no File");
+    }
+
+}
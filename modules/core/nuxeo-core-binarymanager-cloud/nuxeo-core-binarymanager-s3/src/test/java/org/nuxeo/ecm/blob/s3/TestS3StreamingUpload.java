@@ -0,0 +1,194 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.blob.s3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+
+/**
+ * Tests the streaming upload against an in-memory S3 stand-in.
+ */
+public class TestS3StreamingUpload {
+
+    protected static final int PART_SIZE = S3StreamingUpload.MIN_PART_SIZE;
+
+    protected ExecutorService executor;
+
+    protected AmazonS3 amazonS3;
+
+    // part number -> content
+    protected Map<Integer, byte[]> parts;
+
+    protected AtomicInteger maxInFlight;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+        amazonS3 = mock(AmazonS3.class);
+        parts = new TreeMap<>();
+        maxInFlight = new AtomicInteger();
+        AtomicInteger inFlight = new AtomicInteger();
+        InitiateMultipartUploadResult initiateResult = new InitiateMultipartUploadResult();
+        initiateResult.setUploadId("upload1");
+        when(amazonS3.initiateMultipartUpload(any(InitiateMultipartUploadRequest.class))).thenReturn(initiateResult);
+        when(amazonS3.uploadPart(any(UploadPartRequest.class))).then(invocation -> {
+            UploadPartRequest request = (UploadPartRequest) invocation.getArguments()[0];
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(10);
+                byte[] bytes;
+                try (InputStream in = request.getInputStream()) {
+                    bytes = IOUtils.toByteArray(in);
+                }
+                assertEquals(request.getPartSize(), bytes.length);
+                synchronized (parts) {
+                    parts.put(request.getPartNumber(), bytes);
+                }
+                UploadPartResult result = new UploadPartResult();
+                result.setPartNumber(request.getPartNumber());
+                result.setETag("etag" + request.getPartNumber());
+                return result;
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        when(amazonS3.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(
+                new CompleteMultipartUploadResult());
+        when(amazonS3.putObject(any(PutObjectRequest.class))).thenReturn(new PutObjectResult());
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    protected static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    protected S3StreamingUpload newUpload(int concurrency) {
+        return new S3StreamingUpload(amazonS3, "bucket", "key", new ObjectMetadata(), null, PART_SIZE, concurrency,
+                false, executor);
+    }
+
+    @Test
+    public void testSinglePart() throws IOException {
+        byte[] bytes = randomBytes(1000);
+        S3StreamingUpload upload = newUpload(2);
+        upload.write(bytes);
+        upload.close();
+
+        ArgumentCaptor<PutObjectRequest> captor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(amazonS3).putObject(captor.capture());
+        assertEquals(1000, captor.getValue().getMetadata().getContentLength());
+        assertArrayEquals(bytes, IOUtils.toByteArray(captor.getValue().getInputStream()));
+        verify(amazonS3, never()).initiateMultipartUpload(any(InitiateMultipartUploadRequest.class));
+        assertEquals(1000, upload.getLength());
+    }
+
+    @Test
+    public void testMultipart() throws IOException {
+        int concurrency = 2;
+        byte[] bytes = randomBytes(5 * PART_SIZE + 123);
+        S3StreamingUpload upload = newUpload(concurrency);
+        // write in small chunks not aligned with the parts
+        for (int off = 0; off < bytes.length; off += 10000) {
+            upload.write(bytes, off, Math.min(10000, bytes.length - off));
+        }
+        upload.close();
+
+        assertEquals(6, parts.size());
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (byte[] part : parts.values()) {
+            baos.write(part);
+        }
+        assertArrayEquals(bytes, baos.toByteArray());
+        assertTrue(String.valueOf(maxInFlight.get()), maxInFlight.get() <= concurrency);
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> captor = ArgumentCaptor.forClass(
+                CompleteMultipartUploadRequest.class);
+        verify(amazonS3).completeMultipartUpload(captor.capture());
+        List<Integer> partNumbers = captor.getValue()
+                                          .getPartETags()
+                                          .stream()
+                                          .map(PartETag::getPartNumber)
+                                          .collect(Collectors.toList());
+        assertEquals(List.of(1, 2, 3, 4, 5, 6), partNumbers);
+        verify(amazonS3, never()).putObject(any(PutObjectRequest.class));
+    }
+
+    @Test
+    public void testAbortOnFailure() {
+        doThrow(new SdkClientException("boom")).when(amazonS3).uploadPart(any(UploadPartRequest.class));
+        byte[] bytes = randomBytes(4 * PART_SIZE);
+        S3StreamingUpload upload = newUpload(1);
+        try {
+            upload.write(bytes);
+            upload.close();
+            fail("should throw");
+        } catch (IOException e) {
+            upload.abort();
+        }
+        verify(amazonS3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(amazonS3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+}
@@ -171,6 +171,9 @@ public abstract class AbstractWork implements Work {
 
     protected byte[] traceContext;
 
+    // @since 11.5
+    protected Priority priority;
+
     /**
      * Constructs a {@link Work} instance with a unique id.
      */
@@ -231,6 +234,21 @@ public abstract class AbstractWork implements Work {
         this.originatingUsername = originatingUsername;
     }
 
+    /**
+     * Sets the priority of this work, taken into account by queues having priority lanes.
+     *
+     * @since 11.5
+     */
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+
+    @Override
+    public Priority getPriority() {
+        // null for works serialized before 11.5
+        return priority == null ? Priority.NORMAL : priority;
+    }
+
     @Override
     public void setWorkInstanceSuspending() {
         suspending = true;
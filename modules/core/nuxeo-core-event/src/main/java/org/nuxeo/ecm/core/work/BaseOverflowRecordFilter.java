@@ -103,6 +103,15 @@ public abstract class BaseOverflowRecordFilter implements RecordFilter {
         if (log.isDebugEnabled()) {
             log.debug(String.format("Record: %s overflow value of size: %d", record.getKey(), record.getData().length));
         }
+        return overflow(record);
+    }
+
+    /**
+     * Saves the record's value in the alternate storage whatever its size, and returns the record to append instead.
+     *
+     * @since 11.5
+     */
+    public Record overflow(Record record) {
         EnumSet<Record.Flag> flags = EnumSet.copyOf(record.getFlags());
         flags.add(Record.Flag.EXTERNAL_VALUE);
         storeValue(getUniqRecordKey(record), record.getData());
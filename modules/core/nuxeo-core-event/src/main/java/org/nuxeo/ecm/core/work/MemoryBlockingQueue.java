@@ -130,8 +130,23 @@ public class MemoryBlockingQueue extends NuxeoBlockingQueue {
      * @param capacity the capacity, or -1 for unbounded
      */
     public MemoryBlockingQueue(String id, MemoryWorkQueuing queuing, int capacity) {
+        this(id, queuing, capacity, false);
+    }
+
+    /**
+     * Creates a {@link BlockingQueue} with a maximum capacity, or with one unbounded lane per work priority.
+     *
+     * @param capacity the capacity, or -1 for unbounded, not used with priority lanes
+     * @param priorityLanes whether works are consumed according to their priority
+     * @since 11.5
+     */
+    public MemoryBlockingQueue(String id, MemoryWorkQueuing queuing, int capacity, boolean priorityLanes) {
         super(id, queuing);
-        queue = new ReentrantLinkedBlockingQueue<>(capacity);
+        if (priorityLanes) {
+            queue = new PriorityLanesBlockingQueue();
+        } else {
+            queue = new ReentrantLinkedBlockingQueue<>(capacity);
+        }
     }
 
     @Override
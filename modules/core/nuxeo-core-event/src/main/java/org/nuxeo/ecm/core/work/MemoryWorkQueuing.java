@@ -51,7 +51,7 @@ public class MemoryWorkQueuing implements WorkQueuing {
         if (capacity <= 0) {
             capacity = -1; // unbounded
         }
-        MemoryBlockingQueue queue = new MemoryBlockingQueue(config.id, this, capacity);
+        MemoryBlockingQueue queue = new MemoryBlockingQueue(config.id, this, capacity, config.isPriorityLanes());
         allQueued.put(queue.queueId, queue);
         return queue;
     }
@@ -0,0 +1,299 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.work;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.ecm.core.work.api.Work.Priority;
+
+/**
+ * Unbounded {@link BlockingQueue} of {@link WorkHolder}s with one FIFO lane per {@link Work.Priority}.
+ * <p>
+ * Lanes are consumed with a weighted round robin: each lane can deliver as many elements as its
+ * {@link Priority#getWeight() weight} before the lanes with a lower priority get their turn, then the credits are
+ * refilled. A lane without elements gives its turn, so the queue never waits while it has elements, and an element
+ * waits for at most the sum of the weights of the other lanes once it is at the head of its lane.
+ *
+ * @since 11.5
+ */
+public class PriorityLanesBlockingQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    protected static final Priority[] PRIORITIES = Priority.values();
+
+    protected final ReentrantLock lock = new ReentrantLock();
+
+    protected final Condition notEmpty = lock.newCondition();
+
+    protected final List<ArrayDeque<Runnable>> lanes = new ArrayList<>(PRIORITIES.length);
+
+    protected final int[] credits = new int[PRIORITIES.length];
+
+    protected int count;
+
+    public PriorityLanesBlockingQueue() {
+        for (Priority priority : PRIORITIES) {
+            lanes.add(new ArrayDeque<>());
+            credits[priority.ordinal()] = priority.getWeight();
+        }
+    }
+
+    protected static Priority getPriority(Runnable r) {
+        Priority priority = WorkHolder.getWork(r).getPriority();
+        return priority == null ? Priority.NORMAL : priority;
+    }
+
+    // called with lock held
+    protected Runnable dequeue() {
+        if (count == 0) {
+            return null;
+        }
+        for (;;) {
+            for (int i = 0; i < PRIORITIES.length; i++) {
+                ArrayDeque<Runnable> lane = lanes.get(i);
+                if (credits[i] > 0 && !lane.isEmpty()) {
+                    credits[i]--;
+                    count--;
+                    return lane.poll();
+                }
+            }
+            // all the lanes having elements have used their credits
+            for (Priority priority : PRIORITIES) {
+                credits[priority.ordinal()] = priority.getWeight();
+            }
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable r) {
+        Objects.requireNonNull(r);
+        Priority priority = getPriority(r);
+        lock.lock();
+        try {
+            lanes.get(priority.ordinal()).add(r);
+            count++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable r) {
+        offer(r);
+    }
+
+    @Override
+    public boolean offer(Runnable r, long timeout, TimeUnit unit) {
+        return offer(r);
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            for (ArrayDeque<Runnable> lane : lanes) {
+                if (!lane.isEmpty()) {
+                    return lane.peek();
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of elements waiting in the lane of a priority.
+     */
+    public int size(Priority priority) {
+        lock.lock();
+        try {
+            return lanes.get(priority.ordinal()).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        lock.lock();
+        try {
+            for (ArrayDeque<Runnable> lane : lanes) {
+                if (lane.remove(o)) {
+                    count--;
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            lanes.forEach(ArrayDeque::clear);
+            count = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        Objects.requireNonNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int n = 0;
+            Runnable r;
+            while (n < maxElements && (r = dequeue()) != null) {
+                c.add(r);
+                n++;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the elements, in priority order. Removal through the iterator is
+     * supported.
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        List<Runnable> snapshot = new ArrayList<>();
+        lock.lock();
+        try {
+            lanes.forEach(snapshot::addAll);
+        } finally {
+            lock.unlock();
+        }
+        Iterator<Runnable> it = snapshot.iterator();
+        return new Iterator<>() {
+
+            protected Runnable last;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                if (!it.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                last = it.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                PriorityLanesBlockingQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+}
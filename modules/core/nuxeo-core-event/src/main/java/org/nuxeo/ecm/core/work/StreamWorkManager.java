@@ -27,12 +27,16 @@ import static org.nuxeo.ecm.core.work.api.WorkManager.Scheduling.CANCEL_SCHEDULE
 import static org.nuxeo.lib.stream.computation.AbstractComputation.INPUT_1;
 
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import javax.naming.NamingException;
 import javax.transaction.RollbackException;
@@ -47,6 +51,7 @@ import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.event.EventServiceComponent;
 import org.nuxeo.ecm.core.work.api.Work;
 import org.nuxeo.ecm.core.work.api.WorkQueueDescriptor;
+import org.nuxeo.ecm.core.work.api.WorkQueueDescriptor.BackpressurePolicy;
 import org.nuxeo.ecm.core.work.api.WorkQueueMetrics;
 import org.nuxeo.ecm.core.work.api.WorkSchedulePath;
 import org.nuxeo.lib.stream.codec.Codec;
@@ -60,6 +65,7 @@ import org.nuxeo.lib.stream.computation.StreamManager;
 import org.nuxeo.lib.stream.computation.StreamProcessor;
 import org.nuxeo.lib.stream.computation.Topology;
 import org.nuxeo.lib.stream.computation.internals.RecordFilterChainImpl;
+import org.nuxeo.lib.stream.computation.log.ComputationRunner;
 import org.nuxeo.lib.stream.log.LogLag;
 import org.nuxeo.lib.stream.log.LogManager;
 import org.nuxeo.lib.stream.log.LogOffset;
@@ -109,6 +115,9 @@ public class StreamWorkManager extends WorkManagerImpl {
     // @since 11.1
     public static final String NAMESPACE_PREFIX = "work/";
 
+    // @since 11.5
+    protected static final String LANE_SEPARATOR = "_";
+
     /**
      * @since 10.2
      */
@@ -149,6 +158,25 @@ public class StreamWorkManager extends WorkManagerImpl {
      */
     public static final String COMPUTATION_FILTER_PREFIX_KEY = "nuxeo.stream.work.computation.filter.storeKeyPrefix";
 
+    /**
+     * The time window during which works with the same id are collapsed before being appended, 0 to disable.
+     *
+     * @since 11.5
+     */
+    public static final String COALESCING_WINDOW_KEY = "nuxeo.stream.work.coalescing.window.ms";
+
+    /**
+     * The number of works buffered for a queue that triggers an append before the end of the window.
+     *
+     * @since 11.5
+     */
+    public static final String COALESCING_MAX_SIZE_KEY = "nuxeo.stream.work.coalescing.maxSize";
+
+    /**
+     * @since 11.5
+     */
+    public static final int COALESCING_MAX_SIZE_DEFAULT_VALUE = 1000;
+
     protected Topology topology;
 
     protected Topology topologyDisabled;
@@ -165,6 +193,16 @@ public class StreamWorkManager extends WorkManagerImpl {
 
     protected long stateTTL;
 
+    // @since 11.5
+    protected WorkCoalescingBuffer coalescingBuffer;
+
+    // @since 11.5
+    protected WorkBackpressure backpressure;
+
+    // the configured record filter when it can store records in an alternate storage
+    // @since 11.5
+    protected BaseOverflowRecordFilter overflowFilter;
+
     protected int getOverProvisioningFactor() {
         // Enable over provisioning only if the log can be distributed
         if (getLogManager().supportSubscribe()) {
@@ -194,6 +232,9 @@ public class StreamWorkManager extends WorkManagerImpl {
             return;
         }
         if (CANCEL_SCHEDULED.equals(scheduling)) {
+            if (coalescingBuffer != null) {
+                coalescingBuffer.remove(queueId, work.getId());
+            }
             if (storeState) {
                 if (WorkStateHelper.getState(work.getId()) != null) {
                     WorkStateHelper.setCanceled(work.getId());
@@ -208,15 +249,203 @@ public class StreamWorkManager extends WorkManagerImpl {
             return;
         }
         WorkSchedulePath.newInstance(work);
-        String key = work.getPartitionKey();
+        // don't block the computation threads, they are the ones reducing the lag
+        boolean canBlock = ComputationRunner.getCurrentComputation() == null;
+        if (backpressure != null && !backpressure.admit(queueId, work, canBlock)) {
+            return;
+        }
+        if (coalescingBuffer != null && coalescingBuffer.accept(work) && coalescingBuffer.add(queueId, work)) {
+            return;
+        }
+        String stream = getStreamName(queueId, work);
         LogOffset offset;
         try {
-            offset = streamManager.append(NAMESPACE_PREFIX + queueId, Record.of(key, WorkComputation.serialize(work)));
+            offset = streamManager.append(stream, newRecord(queueId, work));
         } catch (IllegalArgumentException e) {
             log.error(String.format("Not scheduled work, unknown category: %s, mapped to %s", work.getCategory(),
-                    NAMESPACE_PREFIX + queueId));
+                    stream));
             return;
         }
+        workAppended(work, offset);
+    }
+
+    /**
+     * Appends in one batch works of a queue released by the coalescing buffer.
+     *
+     * @since 11.5
+     */
+    protected void appendWorks(String queueId, List<Work> works) {
+        Map<String, List<Work>> worksByStream = works.stream()
+                                                     .collect(Collectors.groupingBy(
+                                                             work -> getStreamName(queueId, work), LinkedHashMap::new,
+                                                             Collectors.toList()));
+        worksByStream.forEach((stream, streamWorks) -> {
+            List<Record> records = streamWorks.stream()
+                                              .map(work -> newRecord(queueId, work))
+                                              .collect(Collectors.toList());
+            List<LogOffset> offsets;
+            try {
+                offsets = streamManager.append(stream, records);
+            } catch (IllegalArgumentException e) {
+                log.error(String.format("Not scheduled works: %d, unknown queue: %s", streamWorks.size(), stream));
+                return;
+            }
+            for (int i = 0; i < streamWorks.size(); i++) {
+                workAppended(streamWorks.get(i), offsets.get(i));
+            }
+        });
+    }
+
+    /**
+     * Creates the record of a work, its value is spilled to the overflow storage when required by the backpressure
+     * policy of the queue.
+     *
+     * @since 11.5
+     */
+    protected Record newRecord(String queueId, Work work) {
+        Record record = Record.of(work.getPartitionKey(), WorkComputation.serialize(work));
+        if (backpressure != null && overflowFilter != null && backpressure.isSpilling(queueId)) {
+            backpressure.spilled(queueId);
+            return overflowFilter.overflow(record);
+        }
+        return record;
+    }
+
+    /**
+     * Gets the backpressure status of the work queues having a backpressure policy.
+     *
+     * @since 11.5
+     */
+    public Map<String, Map<String, Object>> getBackpressureStatus() {
+        return backpressure == null ? Collections.emptyMap() : backpressure.getStatus();
+    }
+
+    /**
+     * Gets the priorities having a lane in a queue, only {@link Work.Priority#NORMAL} when the queue has no priority
+     * lanes.
+     *
+     * @since 11.5
+     */
+    protected List<Work.Priority> getPriorities(WorkQueueDescriptor descriptor) {
+        if (descriptor != null && descriptor.isPriorityLanes()) {
+            return Arrays.asList(Work.Priority.values());
+        }
+        return Collections.singletonList(Work.Priority.NORMAL);
+    }
+
+    /**
+     * Gets the stream of a priority lane of a queue, the normal lane is the queue stream.
+     *
+     * @since 11.5
+     */
+    public static String getStreamName(String queueId, Work.Priority priority) {
+        return NAMESPACE_PREFIX + getLaneId(queueId, priority);
+    }
+
+    /**
+     * Gets the id of a priority lane of a queue, the normal lane is the queue itself.
+     * <p>
+     * The id is also used as a log name without namespace, so it must not contain the namespace separator.
+     *
+     * @since 11.5
+     */
+    protected static String getLaneId(String queueId, Work.Priority priority) {
+        if (priority == Work.Priority.NORMAL) {
+            return queueId;
+        }
+        return queueId + LANE_SEPARATOR + priority.name().toLowerCase();
+    }
+
+    protected String getStreamName(String queueId, Work work) {
+        WorkQueueDescriptor descriptor = getWorkQueueDescriptor(queueId);
+        if (descriptor == null || !descriptor.isPriorityLanes()) {
+            return getStreamName(queueId, Work.Priority.NORMAL);
+        }
+        return getStreamName(queueId, work.getPriority());
+    }
+
+    /**
+     * Gets the number of threads of a priority lane.
+     *
+     * @since 11.5
+     * @see #getLaneThreads(int)
+     */
+    protected int getLaneThreads(WorkQueueDescriptor descriptor, Work.Priority priority) {
+        if (!descriptor.isPriorityLanes()) {
+            return descriptor.getMaxThreads();
+        }
+        return getLaneThreads(descriptor.getMaxThreads()).get(priority);
+    }
+
+    /**
+     * Splits the threads of a queue between its priority lanes according to the priority weights.
+     * <p>
+     * This is a static split: each lane only consumes its own stream, so the threads of an idle lane don't process the
+     * backlog of the other lanes. The threads of the lanes sum to the threads of the queue, except when there are less
+     * threads than lanes, as each lane needs one thread to be consumed.
+     *
+     * @since 11.5
+     */
+    protected static Map<Work.Priority, Integer> getLaneThreads(int maxThreads) {
+        Work.Priority[] priorities = Work.Priority.values();
+        int totalWeight = Arrays.stream(priorities).mapToInt(Work.Priority::getWeight).sum();
+        int threads = Math.max(maxThreads, priorities.length);
+        int[] shares = new int[priorities.length];
+        double[] remainders = new double[priorities.length];
+        int allocated = 0;
+        for (int i = 0; i < priorities.length; i++) {
+            double share = (double) threads * priorities[i].getWeight() / totalWeight;
+            shares[i] = (int) share;
+            remainders[i] = share - shares[i];
+            allocated += shares[i];
+        }
+        // hand out the remaining threads to the largest remainders
+        for (; allocated < threads; allocated++) {
+            int best = 0;
+            for (int i = 1; i < priorities.length; i++) {
+                if (remainders[i] > remainders[best]) {
+                    best = i;
+                }
+            }
+            shares[best]++;
+            remainders[best] = -1;
+        }
+        // each lane needs a thread, take it from the lane having the most
+        for (int i = 0; i < priorities.length; i++) {
+            if (shares[i] == 0) {
+                int max = 0;
+                for (int j = 1; j < priorities.length; j++) {
+                    if (shares[j] > shares[max]) {
+                        max = j;
+                    }
+                }
+                shares[max]--;
+                shares[i]++;
+            }
+        }
+        Map<Work.Priority, Integer> laneThreads = new EnumMap<>(Work.Priority.class);
+        for (int i = 0; i < priorities.length; i++) {
+            laneThreads.put(priorities[i], shares[i]);
+        }
+        return laneThreads;
+    }
+
+    /**
+     * Gets the name of the computation and stream of a priority lane on which its settings are registered.
+     * <p>
+     * The lanes of a queue with priority lanes are registered on the name of their computation and stream. A queue
+     * without priority lanes keeps its settings on the queue id.
+     *
+     * @since 11.5
+     */
+    protected Name getSettingsName(String queueId, WorkQueueDescriptor descriptor, Work.Priority priority) {
+        if (descriptor == null || !descriptor.isPriorityLanes()) {
+            return Name.ofUrn(queueId);
+        }
+        return Name.ofUrn(getStreamName(queueId, priority));
+    }
+
+    protected void workAppended(Work work, LogOffset offset) {
         if (work.isCoalescing()) {
             WorkStateHelper.setLastOffset(work.getId(), offset.offset(), stateTTL);
         }
@@ -244,6 +473,12 @@ public class StreamWorkManager extends WorkManagerImpl {
         ConfigurationService configuration = Framework.getService(ConfigurationService.class);
         storeState = configuration.isBooleanTrue(STORESTATE_KEY);
         stateTTL = configuration.getLong(STATETTL_KEY, STATETTL_DEFAULT_VALUE);
+        long coalescingWindow = configuration.getLong(COALESCING_WINDOW_KEY, 0);
+        if (coalescingWindow > 0) {
+            int maxSize = configuration.getInteger(COALESCING_MAX_SIZE_KEY, COALESCING_MAX_SIZE_DEFAULT_VALUE);
+            coalescingBuffer = new WorkCoalescingBuffer(coalescingWindow, maxSize, this::appendWorks, registry);
+            coalescingBuffer.start();
+        }
     }
 
     protected RecordFilterChain getRecordFilter() {
@@ -261,6 +496,9 @@ public class StreamWorkManager extends WorkManagerImpl {
             RecordFilter ret = klass.getDeclaredConstructor().newInstance();
             ret.init(getRecordFilterOptions());
             filter.addFilter(ret);
+            if (ret instanceof BaseOverflowRecordFilter) {
+                overflowFilter = (BaseOverflowRecordFilter) ret;
+            }
         } catch (ReflectiveOperationException e) {
             throw new IllegalArgumentException("Invalid class for RecordFilter: " + filterClass, e);
         }
@@ -302,6 +540,7 @@ public class StreamWorkManager extends WorkManagerImpl {
             streamManager = getStreamManager();
             streamManager.register("StreamWorkManagerDisable", topologyDisabled, settings);
             streamProcessor = streamManager.registerAndCreateProcessor("StreamWorkManager", topology, settings);
+            initBackpressure();
             started = true;
 
             // keep listener registration here because parent class WorkManagerImpl will register its own listener
@@ -326,6 +565,12 @@ public class StreamWorkManager extends WorkManagerImpl {
                 @Override
                 public void afterRuntimeStop(ComponentManager mgr, boolean isStandby) {
                     Framework.getRuntime().getComponentManager().removeListener(this);
+                    if (coalescingBuffer != null) {
+                        coalescingBuffer.close();
+                    }
+                    if (backpressure != null) {
+                        backpressure.close();
+                    }
                     getWorkQueueIds().forEach(id -> deactivateQueueMetrics(id));
                 }
             });
@@ -334,6 +579,21 @@ public class StreamWorkManager extends WorkManagerImpl {
         }
     }
 
+    protected void initBackpressure() {
+        List<WorkQueueDescriptor> descriptors = getRegistryContributions(QUEUES_EP);
+        if (descriptors.stream().allMatch(d -> d.getBackpressurePolicy() == BackpressurePolicy.NONE)) {
+            return;
+        }
+        backpressure = new WorkBackpressure(queueId -> getMetrics(queueId).getScheduled().longValue(), registry);
+        descriptors.forEach(descriptor -> {
+            if (descriptor.getBackpressurePolicy() == BackpressurePolicy.SPILL && overflowFilter == null) {
+                log.warn(String.format("Work queue: %s cannot spill works, '%s' is not an overflow record filter",
+                        descriptor.getId(), COMPUTATION_FILTER_CLASS_KEY));
+            }
+            backpressure.register(descriptor);
+        });
+    }
+
     protected LogManager getLogManager() {
         String config = getLogConfig();
         log.info("Init StreamWorkManager with Log configuration: " + config);
@@ -360,24 +620,44 @@ public class StreamWorkManager extends WorkManagerImpl {
         List<WorkQueueDescriptor> descriptors = getRegistryContributions(QUEUES_EP);
         // create the single topology with one root per work pool
         Topology.Builder builder = Topology.builder();
+        // with priority lanes, each lane has its own stream and computation
         descriptors.stream()
                    .filter(WorkQueueDescriptor::isProcessingEnabled)
-                   .forEach(d -> builder.addComputation(() -> new WorkComputation(NAMESPACE_PREFIX + d.getId()),
-                           Collections.singletonList(INPUT_1 + ":" + NAMESPACE_PREFIX + d.getId())));
+                   .forEach(d -> getPriorities(d).forEach(priority -> {
+                       String stream = getStreamName(d.getId(), priority);
+                       builder.addComputation(() -> new WorkComputation(stream),
+                               Collections.singletonList(INPUT_1 + ":" + stream));
+                   }));
         topology = builder.build();
         // create a topology for the disabled work pools in order to init their input streams
         Topology.Builder builderDisabled = Topology.builder();
         descriptors.stream()
                    .filter(Predicate.not(WorkQueueDescriptor::isProcessingEnabled))
-                   .forEach(d -> builderDisabled.addComputation(() -> new WorkComputation(d.getId()),
-                           Collections.singletonList(INPUT_1 + ":" + NAMESPACE_PREFIX + d.getId())));
+                   .forEach(d -> getPriorities(d).forEach(priority -> {
+                       String stream = getStreamName(d.getId(), priority);
+                       builderDisabled.addComputation(
+                               () -> new WorkComputation(getLaneId(d.getId(), priority)),
+                               Collections.singletonList(INPUT_1 + ":" + stream));
+                   }));
         topologyDisabled = builderDisabled.build();
         // The retry policy is handled at AbstractWork level, but we want to skip failure
         ComputationPolicy policy = new ComputationPolicyBuilder().continueOnFailure(true).build();
         RecordFilterChain filter = getRecordFilter();
         settings = new Settings(DEFAULT_CONCURRENCY, getPartitions(DEFAULT_CONCURRENCY), getCodec(), policy, filter);
-        descriptors.forEach(item -> settings.setConcurrency(item.getId(), item.getMaxThreads()));
-        descriptors.forEach(item -> settings.setPartitions(item.getId(), getPartitions(item.getMaxThreads())));
+        descriptors.forEach(item -> {
+            if (item.isPriorityLanes() && item.getMaxThreads() < Work.Priority.values().length) {
+                log.warn(String.format("Work queue: %s has less threads than priority lanes, using one per lane",
+                        item.getId()));
+            }
+            getPriorities(item).forEach(priority -> {
+                Name name = getSettingsName(item.getId(), item, priority);
+                int threads = getLaneThreads(item, priority);
+                settings.setConcurrency(name, threads);
+                settings.setPartitions(name, getPartitions(threads));
+                // virtual threads are looked up on the computation name
+                settings.setVirtualThreads(getStreamName(item.getId(), priority), item.isVirtualThreads());
+            });
+        });
     }
 
     protected int getPartitions(int maxThreads) {
@@ -467,6 +747,9 @@ public class StreamWorkManager extends WorkManagerImpl {
         log.info("Shutdown WorkManager in " + timeUnit.toMillis(timeout) + " ms");
         shutdownInProgress = true;
         try {
+            if (coalescingBuffer != null) {
+                coalescingBuffer.flush();
+            }
             long shutdownDelay = Framework.getService(ConfigurationService.class).getLong(SHUTDOWN_DELAY_MS_KEY, 0);
             boolean ret = streamProcessor.stop(Duration.ofMillis(Math.max(timeUnit.toMillis(timeout), shutdownDelay)));
             if (!ret) {
@@ -510,14 +793,26 @@ public class StreamWorkManager extends WorkManagerImpl {
 
     @Override
     public WorkQueueMetrics getMetrics(String queueId) {
-        LogLag lag = logManager.getLag(Name.ofUrn(NAMESPACE_PREFIX + queueId), Name.ofUrn(NAMESPACE_PREFIX + queueId));
+        long scheduled = 0;
         long running = 0;
-        if (lag.lag() > 0) {
-            // we don't have the exact running metric
-            // give an approximation that can be higher that actual one because of the over provisioning
-            running = min(lag.lag(), settings.getPartitions(queueId));
+        long completed = 0;
+        WorkQueueDescriptor descriptor = getWorkQueueDescriptor(queueId);
+        for (Work.Priority priority : getPriorities(descriptor)) {
+            Name stream = Name.ofUrn(getStreamName(queueId, priority));
+            LogLag lag = logManager.getLag(stream, stream);
+            if (lag.lag() > 0) {
+                // we don't have the exact running metric
+                // give an approximation that can be higher that actual one because of the over provisioning
+                running += min(lag.lag(), settings.getPartitions(getSettingsName(queueId, descriptor, priority)));
+            }
+            scheduled += lag.lag();
+            completed += lag.lower();
+        }
+        if (coalescingBuffer != null) {
+            // works not yet appended
+            scheduled += coalescingBuffer.size(queueId);
         }
-        return new WorkQueueMetrics(queueId, lag.lag(), running, lag.lower(), 0);
+        return new WorkQueueMetrics(queueId, scheduled, running, completed, 0);
     }
 
     @Override
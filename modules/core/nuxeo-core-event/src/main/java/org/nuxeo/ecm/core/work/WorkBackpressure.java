@@ -0,0 +1,230 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.work;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToLongFunction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.ecm.core.work.api.WorkQueueDescriptor;
+import org.nuxeo.ecm.core.work.api.WorkQueueDescriptor.BackpressurePolicy;
+
+import io.dropwizard.metrics5.Counter;
+import io.dropwizard.metrics5.Gauge;
+import io.dropwizard.metrics5.MetricName;
+import io.dropwizard.metrics5.MetricRegistry;
+
+/**
+ * Applies the backpressure policy of the work queues when their lag is above the configured maximum.
+ * <p>
+ * The lag is measured with the given function and kept for {@link #LAG_REFRESH_MS} so that scheduling works doesn't
+ * query the log for each work, a single thread refreshes it while the others use the previous value. The decisions
+ * are counted in the {@code nuxeo.works.queue.backpressure.*} metrics.
+ *
+ * @since 11.5
+ */
+public class WorkBackpressure {
+
+    private static final Logger log = LogManager.getLogger(WorkBackpressure.class);
+
+    public static final long LAG_REFRESH_MS = 1000;
+
+    protected static final long BLOCK_SLEEP_MS = 100;
+
+    protected final ToLongFunction<String> lagFunction;
+
+    protected final MetricRegistry registry;
+
+    protected final Map<String, QueueState> queues = new ConcurrentHashMap<>();
+
+    protected static class QueueState {
+
+        protected final BackpressurePolicy policy;
+
+        protected final long maxLag;
+
+        protected final long timeoutMs;
+
+        protected final Counter blocked;
+
+        protected final Counter timeouts;
+
+        protected final Counter shed;
+
+        protected final Counter spilled;
+
+        protected volatile long lag;
+
+        protected volatile long lagTime;
+
+        protected final AtomicBoolean refreshing = new AtomicBoolean();
+
+        protected QueueState(WorkQueueDescriptor descriptor, MetricRegistry registry) {
+            policy = descriptor.getBackpressurePolicy();
+            maxLag = descriptor.getBackpressureMaxLag();
+            timeoutMs = descriptor.getBackpressureTimeout().toMillis();
+            blocked = registry.counter(getMetricName("blocked", descriptor.getId()));
+            timeouts = registry.counter(getMetricName("timeout", descriptor.getId()));
+            shed = registry.counter(getMetricName("shed", descriptor.getId()));
+            spilled = registry.counter(getMetricName("spilled", descriptor.getId()));
+        }
+    }
+
+    /**
+     * @param lagFunction gives the lag of a queue
+     */
+    public WorkBackpressure(ToLongFunction<String> lagFunction, MetricRegistry registry) {
+        this.lagFunction = lagFunction;
+        this.registry = registry;
+    }
+
+    protected static MetricName getMetricName(String name, String queueId) {
+        return MetricName.build("nuxeo.works.queue.backpressure." + name).tagged("queue", queueId);
+    }
+
+    /**
+     * Registers a queue, does nothing if the queue has no backpressure policy.
+     */
+    public void register(WorkQueueDescriptor descriptor) {
+        if (descriptor.getBackpressurePolicy() == BackpressurePolicy.NONE) {
+            return;
+        }
+        String queueId = descriptor.getId();
+        QueueState state = new QueueState(descriptor, registry);
+        queues.put(queueId, state);
+        MetricName activeName = getMetricName("active", queueId);
+        registry.remove(activeName);
+        registry.register(activeName, (Gauge<Integer>) () -> state.lag > state.maxLag ? 1 : 0);
+        log.info("Backpressure on work queue: {}, policy: {}, maxLag: {}", queueId, state.policy, state.maxLag);
+    }
+
+    /**
+     * Unregisters all the queues.
+     */
+    public void close() {
+        queues.keySet().forEach(queueId -> registry.remove(getMetricName("active", queueId)));
+        queues.clear();
+    }
+
+    protected long getLag(String queueId, QueueState state, long maxAgeMs) {
+        if (System.currentTimeMillis() - state.lagTime > maxAgeMs && state.refreshing.compareAndSet(false, true)) {
+            try {
+                state.lag = lagFunction.applyAsLong(queueId);
+                state.lagTime = System.currentTimeMillis();
+            } finally {
+                state.refreshing.set(false);
+            }
+        }
+        return state.lag;
+    }
+
+    /**
+     * Decides if a work can be appended to its queue. With a {@code block} policy this waits until the lag goes below
+     * the maximum, then admits the work anyway once the timeout is reached. With a {@code shed} policy the background
+     * works are refused.
+     *
+     * @param canBlock {@code false} when called from a thread that must not wait, like a consumer of the queue
+     * @return {@code false} if the work must be dropped
+     */
+    public boolean admit(String queueId, Work work, boolean canBlock) {
+        QueueState state = queues.get(queueId);
+        if (state == null || getLag(queueId, state, LAG_REFRESH_MS) <= state.maxLag) {
+            return true;
+        }
+        switch (state.policy) {
+        case BLOCK:
+            if (canBlock) {
+                block(queueId, state);
+            }
+            return true;
+        case SHED:
+            if (work.getPriority() == Work.Priority.BACKGROUND) {
+                log.debug("Shedding work: {} on queue: {}, lag: {}", work::getId, () -> queueId, () -> state.lag);
+                state.shed.inc();
+                return false;
+            }
+            return true;
+        default:
+            return true;
+        }
+    }
+
+    protected void block(String queueId, QueueState state) {
+        state.blocked.inc();
+        long deadline = System.currentTimeMillis() + state.timeoutMs;
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                Thread.sleep(BLOCK_SLEEP_MS);
+                if (getLag(queueId, state, BLOCK_SLEEP_MS) <= state.maxLag) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        log.warn("Backpressure timeout on work queue: {}, lag: {}, scheduling anyway", queueId, state.lag);
+        state.timeouts.inc();
+    }
+
+    /**
+     * Returns {@code true} if works of the queue must be spilled to the overflow storage instead of being appended.
+     */
+    public boolean isSpilling(String queueId) {
+        QueueState state = queues.get(queueId);
+        return state != null && state.policy == BackpressurePolicy.SPILL
+                && getLag(queueId, state, LAG_REFRESH_MS) > state.maxLag;
+    }
+
+    /**
+     * Counts a spilled work.
+     */
+    public void spilled(String queueId) {
+        QueueState state = queues.get(queueId);
+        if (state != null) {
+            state.spilled.inc();
+        }
+    }
+
+    /**
+     * Gets the backpressure status of the queues, suitable for a JSON representation.
+     */
+    public Map<String, Map<String, Object>> getStatus() {
+        Map<String, Map<String, Object>> ret = new LinkedHashMap<>();
+        queues.forEach((queueId, state) -> {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("policy", state.policy.name().toLowerCase());
+            status.put("maxLag", state.maxLag);
+            status.put("lag", state.lag);
+            status.put("active", state.lag > state.maxLag);
+            status.put("blocked", state.blocked.getCount());
+            status.put("timeout", state.timeouts.getCount());
+            status.put("shed", state.shed.getCount());
+            status.put("spilled", state.spilled.getCount());
+            ret.put(queueId, status);
+        });
+        return ret;
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.work;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nuxeo.ecm.core.work.api.Work;
+
+import io.dropwizard.metrics5.MetricName;
+import io.dropwizard.metrics5.MetricRegistry;
+
+/**
+ * Buffers the works scheduled during a time window, keeping only one work per {@link Work#getId()} and per queue.
+ * <p>
+ * Works scheduled again with the same id before the end of the window replace the buffered one but keep its position,
+ * so that a work scheduled many times for the same document is appended only once. At the end of the window, or when a
+ * queue buffer is full, the buffered works are passed in scheduling order to the appender.
+ * <p>
+ * The number of collapsed works is available in the {@code nuxeo.works.queue.coalesced} counter of each queue.
+ *
+ * @since 11.5
+ */
+public class WorkCoalescingBuffer {
+
+    private static final Logger log = LogManager.getLogger(WorkCoalescingBuffer.class);
+
+    public static final String COALESCED_METRIC_NAME = "nuxeo.works.queue.coalesced";
+
+    protected final long windowMillis;
+
+    protected final int maxSize;
+
+    protected final BiConsumer<String, List<Work>> appender;
+
+    protected final MetricRegistry registry;
+
+    // @GuardedBy("this")
+    protected final Map<String, LinkedHashMap<String, Work>> buffers = new HashMap<>();
+
+    // works buffered or being appended, per queue
+    protected final Map<String, AtomicInteger> pending = new ConcurrentHashMap<>();
+
+    protected ScheduledExecutorService flusher;
+
+    protected volatile boolean closed;
+
+    /**
+     * @param windowMillis the maximum time a work stays in the buffer
+     * @param maxSize the number of works in a queue buffer that triggers a flush
+     * @param appender the callback appending the works of a queue
+     */
+    public WorkCoalescingBuffer(long windowMillis, int maxSize, BiConsumer<String, List<Work>> appender,
+            MetricRegistry registry) {
+        this.windowMillis = windowMillis;
+        this.maxSize = maxSize;
+        this.appender = appender;
+        this.registry = registry;
+    }
+
+    /**
+     * Starts flushing the buffers periodically.
+     */
+    public synchronized void start() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Nuxeo-Work-Coalescing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns {@code true} if the work can be buffered, group join works are never buffered because each one counts
+     * in the group.
+     */
+    public boolean accept(Work work) {
+        return (work.isCoalescing() || work.isIdempotent()) && !work.isGroupJoin();
+    }
+
+    /**
+     * Adds a work to the buffer of a queue, replacing a buffered work with the same id.
+     *
+     * @return {@code false} if the buffer is closed and the work must be appended directly
+     */
+    public boolean add(String queueId, Work work) {
+        boolean full;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            Map<String, Work> buffer = buffers.computeIfAbsent(queueId, k -> new LinkedHashMap<>());
+            if (buffer.put(work.getId(), work) == null) {
+                pending.computeIfAbsent(queueId, k -> new AtomicInteger()).incrementAndGet();
+            } else {
+                log.trace("Coalescing work: {} on queue: {}", work::getId, () -> queueId);
+                registry.counter(getCoalescedMetricName(queueId)).inc();
+            }
+            full = buffer.size() >= maxSize;
+        }
+        if (full) {
+            flush(queueId);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a buffered work.
+     *
+     * @return {@code true} if the work was buffered
+     */
+    public boolean remove(String queueId, String workId) {
+        synchronized (this) {
+            Map<String, Work> buffer = buffers.get(queueId);
+            if (buffer == null || buffer.remove(workId) == null) {
+                return false;
+            }
+        }
+        pending.get(queueId).decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Gets the number of works of a queue that are not yet appended.
+     */
+    public int size(String queueId) {
+        AtomicInteger count = pending.get(queueId);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Appends the buffered works of a queue. If the append fails, the works are put back in the buffer to be appended
+     * by the next flush, and the failure is rethrown.
+     */
+    public void flush(String queueId) {
+        List<Work> works;
+        synchronized (this) {
+            Map<String, Work> buffer = buffers.remove(queueId);
+            if (buffer == null || buffer.isEmpty()) {
+                return;
+            }
+            works = new ArrayList<>(buffer.values());
+        }
+        try {
+            appender.accept(queueId, works);
+        } catch (RuntimeException e) {
+            requeue(queueId, works);
+            throw e;
+        }
+        pending.get(queueId).addAndGet(-works.size());
+    }
+
+    /**
+     * Puts back works whose append failed ahead of the works buffered since, a newer work with the same id replacing
+     * the failed one at its position.
+     */
+    protected void requeue(String queueId, List<Work> works) {
+        synchronized (this) {
+            LinkedHashMap<String, Work> buffer = new LinkedHashMap<>();
+            works.forEach(work -> buffer.put(work.getId(), work));
+            Map<String, Work> newer = buffers.get(queueId);
+            int coalesced = 0;
+            if (newer != null) {
+                for (Work work : newer.values()) {
+                    if (buffer.put(work.getId(), work) != null) {
+                        coalesced++;
+                    }
+                }
+            }
+            buffers.put(queueId, buffer);
+            if (coalesced > 0) {
+                pending.get(queueId).addAndGet(-coalesced);
+                registry.counter(getCoalescedMetricName(queueId)).inc(coalesced);
+            }
+        }
+    }
+
+    /**
+     * Appends the buffered works of all queues. The failure of a queue doesn't prevent the others from being flushed,
+     * it is rethrown afterwards.
+     */
+    public void flush() {
+        List<String> queueIds;
+        synchronized (this) {
+            queueIds = new ArrayList<>(buffers.keySet());
+        }
+        RuntimeException failure = null;
+        for (String queueId : queueIds) {
+            try {
+                flush(queueId);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    protected void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Failed to append coalesced works, retrying on next flush", e);
+        }
+    }
+
+    /**
+     * Stops the periodic flush and appends the remaining works, works added afterwards are refused.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (flusher != null) {
+                flusher.shutdownNow();
+                flusher = null;
+            }
+        }
+        flush();
+    }
+
+    public static MetricName getCoalescedMetricName(String queueId) {
+        return MetricName.build(COALESCED_METRIC_NAME).tagged("queue", queueId);
+    }
+
+}
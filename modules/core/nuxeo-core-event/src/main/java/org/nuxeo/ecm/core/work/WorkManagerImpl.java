@@ -63,6 +63,7 @@ import org.nuxeo.ecm.core.work.api.WorkSchedulePath;
 import org.nuxeo.lib.stream.codec.AvroMessageCodec;
 import org.nuxeo.lib.stream.codec.Codec;
 import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.computation.VirtualThreads;
 import org.nuxeo.lib.stream.log.Name;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.metrics.MetricsService;
@@ -198,7 +199,7 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
             throw new IllegalStateException("work queue " + config.id + " already have an executor");
         }
         NuxeoBlockingQueue queue = queuing.init(config);
-        ThreadFactory threadFactory = new NamedThreadFactory(THREAD_PREFIX + config.id + "-");
+        ThreadFactory threadFactory = newThreadFactory(config);
         int maxPoolSize = config.getMaxThreads();
         WorkThreadPoolExecutor executor = new WorkThreadPoolExecutor(maxPoolSize, maxPoolSize, 0, TimeUnit.SECONDS,
                 queue, threadFactory);
@@ -209,6 +210,23 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
         log.info("Initialized work queue {}, {}", config.id, config);
     }
 
+    /**
+     * Creates the factory of the threads executing the works of a queue.
+     *
+     * @since 11.5
+     */
+    protected ThreadFactory newThreadFactory(WorkQueueDescriptor config) {
+        String prefix = THREAD_PREFIX + config.id + "-";
+        if (config.isVirtualThreads()) {
+            if (VirtualThreads.isSupported()) {
+                return VirtualThreads.newThreadFactory(prefix, NamedThreadFactory::handleUncaughtException);
+            }
+            log.warn("Virtual threads are not supported by this JVM, using platform threads for work queue: {}",
+                    config.id);
+        }
+        return new NamedThreadFactory(prefix);
+    }
+
     void activateQueue(WorkQueueDescriptor config) {
         if (ALL_QUEUES.equals(config.id)) {
             throw new IllegalArgumentException("cannot activate all queues");
@@ -568,11 +586,11 @@ public class WorkManagerImpl extends DefaultComponent implements WorkManager {
             Thread thread = new Thread(group, r, name);
             // do not set daemon
             thread.setPriority(Thread.NORM_PRIORITY);
-            thread.setUncaughtExceptionHandler(this::handleUncaughtException);
+            thread.setUncaughtExceptionHandler(NamedThreadFactory::handleUncaughtException);
             return thread;
         }
 
-        protected void handleUncaughtException(Thread t, Throwable e) {
+        protected static void handleUncaughtException(Thread t, Throwable e) {
             Log logLocal = LogFactory.getLog(WorkManagerImpl.class);
             if (e instanceof RejectedExecutionException) {
                 // we are responsible of this exception, we use it during shutdown phase to not run the task taken just
@@ -77,6 +77,39 @@ public interface Work extends Serializable {
         RUNNING,
     }
 
+    /**
+     * The priority of a {@link Work} instance, used by queues with priority lanes.
+     * <p>
+     * Each priority is processed in its own lane, the weight is the share of the queue processing that the lane gets
+     * when all the lanes have works waiting.
+     *
+     * @since 11.5
+     */
+    enum Priority {
+        /**
+         * Work waited for by a user.
+         */
+        INTERACTIVE(8),
+        /**
+         * Default priority.
+         */
+        NORMAL(3),
+        /**
+         * Bulk work, like the ones triggered by an import.
+         */
+        BACKGROUND(1);
+
+        protected final int weight;
+
+        Priority(int weight) {
+            this.weight = weight;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+    }
+
     /**
      * A progress report about a work instance.
      * <p>
@@ -405,6 +438,15 @@ public interface Work extends Serializable {
         return false;
     }
 
+    /**
+     * Gets the priority of this work. The priority is only taken into account by queues having priority lanes.
+     *
+     * @since 11.5
+     */
+    default Priority getPriority() {
+        return Priority.NORMAL;
+    }
+
     /**
      * When true the Work is part of a group, Works of the group have the same {@link #getPartitionKey()}. When all
      * Works of the group are done the {@link #onGroupJoinCompletion()} hook is called.
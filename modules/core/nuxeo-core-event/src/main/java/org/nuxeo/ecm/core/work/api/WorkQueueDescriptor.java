@@ -18,6 +18,7 @@
  */
 package org.nuxeo.ecm.core.work.api;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -45,6 +46,27 @@ public class WorkQueueDescriptor {
 
     public static final int DEFAULT_CAPACITY = -1;
 
+    /**
+     * @since 11.5
+     */
+    public static final Duration DEFAULT_BACKPRESSURE_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * What to do with new works when the lag of the queue is above the backpressure maximum lag.
+     *
+     * @since 11.5
+     */
+    public enum BackpressurePolicy {
+        /** Works are always scheduled. */
+        NONE,
+        /** Scheduling blocks until the lag goes below the maximum, or until the timeout. */
+        BLOCK,
+        /** Works with a {@link Work.Priority#BACKGROUND background} priority are dropped. */
+        SHED,
+        /** Works are stored in the overflow record filter storage, only a reference is appended to the stream. */
+        SPILL
+    }
+
     @XNode("@id")
     @XRegistryId
     public String id;
@@ -73,6 +95,50 @@ public class WorkQueueDescriptor {
     @XNode("capacity")
     public Integer capacity;
 
+    /**
+     * When {@code true}, the works are executed on virtual threads if the JVM supports them. The {@code maxThreads}
+     * value is then the maximum number of works running concurrently, which can be much higher than for platform
+     * threads when works are mostly blocked on I/O.
+     *
+     * @since 11.5
+     */
+    @XNode("virtualThreads")
+    public Boolean virtualThreads;
+
+    /**
+     * When {@code true}, works are processed in one lane per {@link Work.Priority}, so that interactive works don't
+     * wait behind a backlog of background works. The lanes are consumed according to the priority weights: by weighted
+     * round robin in memory, and with the stream implementation by a static split of the threads between the lanes. The
+     * {@code capacity} is not applied to the lanes.
+     *
+     * @since 11.5
+     */
+    @XNode("priorityLanes")
+    public Boolean priorityLanes;
+
+    /**
+     * The backpressure policy applied when the lag is above {@link #backpressureMaxLag}, one of {@code none},
+     * {@code block}, {@code shed}, {@code spill}.
+     *
+     * @since 11.5
+     */
+    @XNode("backpressure@policy")
+    public String backpressurePolicy;
+
+    /**
+     * @since 11.5
+     */
+    @XNode("backpressure@maxLag")
+    public Long backpressureMaxLag;
+
+    /**
+     * The maximum time to block when the policy is {@code block}.
+     *
+     * @since 11.5
+     */
+    @XNode("backpressure@timeout")
+    public Duration backpressureTimeout;
+
     public String getId() {
         return id;
     }
@@ -99,6 +165,48 @@ public class WorkQueueDescriptor {
         return capacity == null ? DEFAULT_CAPACITY : capacity.intValue();
     }
 
+    /**
+     * Whether works of this queue are executed on virtual threads.
+     *
+     * @since 11.5
+     */
+    public boolean isVirtualThreads() {
+        return Boolean.TRUE.equals(virtualThreads);
+    }
+
+    /**
+     * Whether works of this queue are processed in lanes according to their priority.
+     *
+     * @since 11.5
+     */
+    public boolean isPriorityLanes() {
+        return Boolean.TRUE.equals(priorityLanes);
+    }
+
+    /**
+     * @since 11.5
+     */
+    public BackpressurePolicy getBackpressurePolicy() {
+        if (backpressurePolicy == null || getBackpressureMaxLag() <= 0) {
+            return BackpressurePolicy.NONE;
+        }
+        return BackpressurePolicy.valueOf(backpressurePolicy.toUpperCase());
+    }
+
+    /**
+     * @since 11.5
+     */
+    public long getBackpressureMaxLag() {
+        return backpressureMaxLag == null ? 0 : backpressureMaxLag.longValue();
+    }
+
+    /**
+     * @since 11.5
+     */
+    public Duration getBackpressureTimeout() {
+        return backpressureTimeout == null ? DEFAULT_BACKPRESSURE_TIMEOUT : backpressureTimeout;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(getClass().getSimpleName());
@@ -114,6 +222,18 @@ public class WorkQueueDescriptor {
         sb.append(getMaxThreads());
         sb.append(" capacity=");
         sb.append(getCapacity());
+        if (isVirtualThreads()) {
+            sb.append(" virtualThreads=true");
+        }
+        if (isPriorityLanes()) {
+            sb.append(" priorityLanes=true");
+        }
+        if (getBackpressurePolicy() != BackpressurePolicy.NONE) {
+            sb.append(" backpressure=");
+            sb.append(getBackpressurePolicy());
+            sb.append(" maxLag=");
+            sb.append(getBackpressureMaxLag());
+        }
         sb.append(")");
         return sb.toString();
     }
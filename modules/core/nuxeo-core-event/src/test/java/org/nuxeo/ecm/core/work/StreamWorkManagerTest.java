@@ -21,7 +21,13 @@ package org.nuxeo.ecm.core.work;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
@@ -29,7 +35,12 @@ import org.apache.logging.log4j.Logger;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.ecm.core.work.api.WorkQueueDescriptor;
 import org.nuxeo.ecm.core.work.api.WorkQueueMetrics;
+import org.nuxeo.lib.stream.computation.Settings;
+import org.nuxeo.lib.stream.computation.VirtualThreads;
+import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.test.runner.Deploy;
 
 /**
@@ -43,6 +54,31 @@ public class StreamWorkManagerTest extends AbstractWorkManagerTest {
 
     private static final Logger log = LogManager.getLogger(StreamWorkManagerTest.class);
 
+    protected static final String PRIORITY_LANE_CATEGORY = "PriorityLaneSleepWork";
+
+    /**
+     * Sleep work recording its completion order.
+     *
+     * @since 11.5
+     */
+    protected static class CompletionOrderWork extends SleepWork {
+
+        private static final long serialVersionUID = 1L;
+
+        protected static final List<String> COMPLETED = Collections.synchronizedList(new ArrayList<>());
+
+        public CompletionOrderWork(long durationMillis, String id, Work.Priority priority) {
+            super(durationMillis, PRIORITY_LANE_CATEGORY, id);
+            setPriority(priority);
+        }
+
+        @Override
+        public void work() {
+            super.work();
+            COMPLETED.add(getId());
+        }
+    }
+
     @Override
     public boolean persistent() {
         return true;
@@ -207,6 +243,195 @@ public class StreamWorkManagerTest extends AbstractWorkManagerTest {
         log.debug("StreamWorkManagerTest.onlyFirstAndLastCoalescingWorksShouldBeExecuted() ending");
     }
 
+    @Test
+    @Deploy("org.nuxeo.ecm.core.event:test-stream-workmanager-priority-lanes.xml")
+    public void testPriorityLanes() throws InterruptedException {
+        CompletionOrderWork.COMPLETED.clear();
+        // the background lane has a single thread, its works are run one after the other
+        int backgroundWorks = 5;
+        for (int i = 0; i < backgroundWorks; i++) {
+            service.schedule(new CompletionOrderWork(getDurationMillis(), "background-" + i, Work.Priority.BACKGROUND));
+        }
+        service.schedule(new CompletionOrderWork(10, "interactive", Work.Priority.INTERACTIVE));
+        assertTrue(service.awaitCompletion(PRIORITY_LANE_CATEGORY, getDurationMillis() * 20L, TimeUnit.MILLISECONDS));
+
+        List<String> completed = new ArrayList<>(CompletionOrderWork.COMPLETED);
+        assertEquals(completed.toString(), backgroundWorks + 1, completed.size());
+        // the interactive work doesn't wait behind the background backlog
+        assertTrue(completed.toString(), completed.indexOf("interactive") < backgroundWorks - 2);
+    }
+
+    protected static void assertLaneThreads(int maxThreads, int interactive, int normal, int background) {
+        Map<Work.Priority, Integer> laneThreads = StreamWorkManager.getLaneThreads(maxThreads);
+        assertEquals(interactive, laneThreads.get(Work.Priority.INTERACTIVE).intValue());
+        assertEquals(normal, laneThreads.get(Work.Priority.NORMAL).intValue());
+        assertEquals(background, laneThreads.get(Work.Priority.BACKGROUND).intValue());
+    }
+
+    @Test
+    public void testPriorityLaneThreads() {
+        // one thread per lane at least
+        assertLaneThreads(1, 1, 1, 1);
+        assertLaneThreads(3, 1, 1, 1);
+        assertLaneThreads(4, 2, 1, 1);
+        assertLaneThreads(8, 5, 2, 1);
+        assertLaneThreads(12, 8, 3, 1);
+        assertLaneThreads(16, 11, 4, 1);
+        for (int maxThreads = Work.Priority.values().length; maxThreads <= 64; maxThreads++) {
+            int threads = StreamWorkManager.getLaneThreads(maxThreads).values().stream().mapToInt(i -> i).sum();
+            assertEquals(String.valueOf(maxThreads), maxThreads, threads);
+        }
+    }
+
+    @Test
+    @Deploy("org.nuxeo.ecm.core.event:test-stream-workmanager-priority-lanes.xml")
+    public void testPriorityLaneSettings() {
+        Settings settings = ((StreamWorkManager) service).settings;
+        // the lanes are set on their computation name and share the threads of the queue
+        assertEquals(1, settings.getConcurrency("work/PriorityLaneSleepWork_interactive"));
+        assertEquals(1, settings.getConcurrency("work/PriorityLaneSleepWork"));
+        assertEquals(1, settings.getConcurrency("work/PriorityLaneSleepWork_background"));
+        // queues without lanes keep their settings on the queue id
+        WorkQueueDescriptor descriptor = service.getWorkQueueDescriptor(QUEUE);
+        assertEquals(descriptor.getMaxThreads(), settings.getConcurrency(QUEUE));
+    }
+
+    /**
+     * Sleep work recording whether it was run on a virtual thread.
+     *
+     * @since 11.5
+     */
+    protected static class ThreadRecordingWork extends SleepWork {
+
+        private static final long serialVersionUID = 1L;
+
+        protected static final List<Boolean> VIRTUAL = Collections.synchronizedList(new ArrayList<>());
+
+        public ThreadRecordingWork(String category) {
+            super(10, category, "thread-recording");
+        }
+
+        @Override
+        public void work() {
+            super.work();
+            try {
+                VIRTUAL.add((Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+            } catch (ReflectiveOperationException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    @Test
+    @Deploy("org.nuxeo.ecm.core.event:test-stream-workmanager-virtual-threads.xml")
+    public void testVirtualThreads() throws InterruptedException {
+        assumeTrue("Virtual threads are not supported by this JVM", VirtualThreads.isSupported());
+        ThreadRecordingWork.VIRTUAL.clear();
+        service.schedule(new ThreadRecordingWork("VirtualThreadSleepWork"));
+        assertTrue(service.awaitCompletion("VirtualThreadSleepWork", 20, TimeUnit.SECONDS));
+        assertEquals(List.of(Boolean.TRUE), ThreadRecordingWork.VIRTUAL);
+    }
+
+    /**
+     * Work scheduling another work, recording how long the scheduling took.
+     *
+     * @since 11.5
+     */
+    protected static class SchedulingWork extends SleepWork {
+
+        private static final long serialVersionUID = 1L;
+
+        protected static final List<Long> SCHEDULE_DURATIONS = Collections.synchronizedList(new ArrayList<>());
+
+        protected final String targetCategory;
+
+        public SchedulingWork(String category, String targetCategory) {
+            super(10, category, UUID.randomUUID().toString());
+            this.targetCategory = targetCategory;
+        }
+
+        @Override
+        public void work() {
+            super.work();
+            long start = System.currentTimeMillis();
+            Framework.getService(WorkManager.class)
+                     .schedule(new SleepWork(10, targetCategory, UUID.randomUUID().toString()));
+            SCHEDULE_DURATIONS.add(System.currentTimeMillis() - start);
+        }
+    }
+
+    protected void scheduleSleepWorks(String category, int count, Work.Priority priority) {
+        for (int i = 0; i < count; i++) {
+            SleepWork work = new SleepWork(getDurationMillis(), category, UUID.randomUUID().toString());
+            work.setPriority(priority);
+            service.schedule(work);
+        }
+    }
+
+    protected Map<String, Object> getBackpressureStatus(String queueId) {
+        return ((StreamWorkManager) service).getBackpressureStatus().get(queueId);
+    }
+
+    protected long getCompleted(String queueId) {
+        return service.getMetrics(queueId).getCompleted().longValue();
+    }
+
+    @Test
+    @Deploy("org.nuxeo.ecm.core.event:test-stream-workmanager-backpressure.xml")
+    public void testBackpressureBlock() throws InterruptedException {
+        SchedulingWork.SCHEDULE_DURATIONS.clear();
+        scheduleSleepWorks("BlockSleepWork", 4, Work.Priority.NORMAL);
+        // wait for the cached lag to be refreshed
+        Thread.sleep(WorkBackpressure.LAG_REFRESH_MS + 200);
+
+        // a work scheduled from a computation thread is not blocked
+        service.schedule(new SchedulingWork("ShedSleepWork", "BlockSleepWork"));
+        assertTrue(service.awaitCompletion("ShedSleepWork", 10, TimeUnit.SECONDS));
+        assertEquals(1, SchedulingWork.SCHEDULE_DURATIONS.size());
+        assertTrue(SchedulingWork.SCHEDULE_DURATIONS.toString(),
+                SchedulingWork.SCHEDULE_DURATIONS.get(0) < WorkBackpressure.BLOCK_SLEEP_MS);
+        assertEquals(0L, getBackpressureStatus("BlockSleepWork").get("blocked"));
+
+        // a producer is blocked until the queue catches up
+        long start = System.currentTimeMillis();
+        scheduleSleepWorks("BlockSleepWork", 1, Work.Priority.NORMAL);
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue(String.valueOf(elapsed), elapsed >= getDurationMillis());
+        assertEquals(1L, getBackpressureStatus("BlockSleepWork").get("blocked"));
+        assertTrue(service.awaitCompletion("BlockSleepWork", 30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @Deploy("org.nuxeo.ecm.core.event:test-stream-workmanager-backpressure.xml")
+    public void testBackpressureShed() throws InterruptedException {
+        long completed = getCompleted("ShedSleepWork");
+        scheduleSleepWorks("ShedSleepWork", 3, Work.Priority.NORMAL);
+        // wait for the cached lag to be refreshed
+        Thread.sleep(WorkBackpressure.LAG_REFRESH_MS + 200);
+
+        // background works are dropped, the other ones are appended
+        scheduleSleepWorks("ShedSleepWork", 1, Work.Priority.BACKGROUND);
+        scheduleSleepWorks("ShedSleepWork", 1, Work.Priority.INTERACTIVE);
+        assertEquals(1L, getBackpressureStatus("ShedSleepWork").get("shed"));
+        assertTrue(service.awaitCompletion("ShedSleepWork", 30, TimeUnit.SECONDS));
+        assertEquals(completed + 4, getCompleted("ShedSleepWork"));
+    }
+
+    @Test
+    @Deploy("org.nuxeo.ecm.core.event:test-stream-workmanager-backpressure.xml")
+    public void testBackpressureSpill() throws InterruptedException {
+        long completed = getCompleted("SpillSleepWork");
+        scheduleSleepWorks("SpillSleepWork", 3, Work.Priority.NORMAL);
+        // wait for the cached lag to be refreshed
+        Thread.sleep(WorkBackpressure.LAG_REFRESH_MS + 200);
+
+        // the work is stored in the overflow storage but still run
+        scheduleSleepWorks("SpillSleepWork", 1, Work.Priority.BACKGROUND);
+        assertEquals(1L, getBackpressureStatus("SpillSleepWork").get("spilled"));
+        assertTrue(service.awaitCompletion("SpillSleepWork", 30, TimeUnit.SECONDS));
+        assertEquals(completed + 4, getCompleted("SpillSleepWork"));
+    }
+
     private SleepWork createCoalescing(long duration) {
         SleepWork work = new SleepWork(duration, "coalescing");
         work.setIdempotent(false);
@@ -0,0 +1,112 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.work;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.work.api.Work.Priority;
+
+public class TestPriorityLanesBlockingQueue {
+
+    protected static WorkHolder newWork(String id, Priority priority) {
+        SleepWork work = new SleepWork(0, id);
+        work.setPriority(priority);
+        return new WorkHolder(work);
+    }
+
+    protected static String take(PriorityLanesBlockingQueue queue) throws InterruptedException {
+        return WorkHolder.getWork(queue.take()).getId();
+    }
+
+    @Test
+    public void testFifoInLane() throws InterruptedException {
+        PriorityLanesBlockingQueue queue = new PriorityLanesBlockingQueue();
+        for (int i = 0; i < 5; i++) {
+            queue.offer(newWork("w" + i, Priority.NORMAL));
+        }
+        assertEquals(5, queue.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("w" + i, take(queue));
+        }
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testWeightedConsumption() throws InterruptedException {
+        PriorityLanesBlockingQueue queue = new PriorityLanesBlockingQueue();
+        // a backlog of background works, then interactive and normal ones
+        for (int i = 0; i < 100; i++) {
+            queue.offer(newWork("b" + i, Priority.BACKGROUND));
+        }
+        for (int i = 0; i < 20; i++) {
+            queue.offer(newWork("i" + i, Priority.INTERACTIVE));
+            queue.offer(newWork("n" + i, Priority.NORMAL));
+        }
+        assertEquals(20, queue.size(Priority.INTERACTIVE));
+        List<String> ids = new ArrayList<>();
+        int round = Priority.INTERACTIVE.getWeight() + Priority.NORMAL.getWeight() + Priority.BACKGROUND.getWeight();
+        for (int i = 0; i < round; i++) {
+            ids.add(take(queue));
+        }
+        // each lane gets its weight in a round
+        assertEquals(Priority.INTERACTIVE.getWeight(), ids.stream().filter(id -> id.startsWith("i")).count());
+        assertEquals(Priority.NORMAL.getWeight(), ids.stream().filter(id -> id.startsWith("n")).count());
+        assertEquals(Priority.BACKGROUND.getWeight(), ids.stream().filter(id -> id.startsWith("b")).count());
+        assertEquals("i0", ids.get(0));
+
+        // once the other lanes are empty the background lane gets all the turns
+        int remaining = queue.size();
+        int background = 0;
+        for (int i = 0; i < remaining; i++) {
+            if (take(queue).startsWith("b")) {
+                background++;
+            }
+        }
+        assertEquals(100 - Priority.BACKGROUND.getWeight(), background);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testRemove() throws InterruptedException {
+        PriorityLanesBlockingQueue queue = new PriorityLanesBlockingQueue();
+        queue.offer(newWork("b0", Priority.BACKGROUND));
+        queue.offer(newWork("i0", Priority.INTERACTIVE));
+        queue.offer(newWork("n0", Priority.NORMAL));
+        for (Iterator<Runnable> it = queue.iterator(); it.hasNext();) {
+            if ("n0".equals(WorkHolder.getWork(it.next()).getId())) {
+                it.remove();
+            }
+        }
+        assertEquals(2, queue.size());
+        List<Runnable> drained = new ArrayList<>();
+        assertEquals(2, queue.drainTo(drained));
+        assertEquals("i0", WorkHolder.getWork(drained.get(0)).getId());
+        assertEquals("b0", WorkHolder.getWork(drained.get(1)).getId());
+        assertTrue(queue.isEmpty());
+    }
+
+}
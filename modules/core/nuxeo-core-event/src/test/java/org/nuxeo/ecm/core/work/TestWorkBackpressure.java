@@ -0,0 +1,163 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.work;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.work.api.Work.Priority;
+import org.nuxeo.ecm.core.work.api.WorkQueueDescriptor;
+
+import io.dropwizard.metrics5.MetricRegistry;
+
+public class TestWorkBackpressure {
+
+    protected final MetricRegistry registry = new MetricRegistry();
+
+    protected final AtomicLong lag = new AtomicLong();
+
+    protected WorkBackpressure newBackpressure(String policy, long maxLag, Duration timeout) {
+        WorkQueueDescriptor descriptor = new WorkQueueDescriptor();
+        descriptor.id = "q1";
+        descriptor.backpressurePolicy = policy;
+        descriptor.backpressureMaxLag = maxLag;
+        descriptor.backpressureTimeout = timeout;
+        WorkBackpressure backpressure = new WorkBackpressure(queueId -> lag.get(), registry);
+        backpressure.register(descriptor);
+        return backpressure;
+    }
+
+    protected static SleepWork newWork(Priority priority) {
+        SleepWork work = new SleepWork(0);
+        work.setPriority(priority);
+        return work;
+    }
+
+    @Test
+    public void testNoPolicy() {
+        WorkQueueDescriptor descriptor = new WorkQueueDescriptor();
+        descriptor.id = "q1";
+        descriptor.backpressurePolicy = "block";
+        // no max lag means no backpressure
+        assertEquals(WorkQueueDescriptor.BackpressurePolicy.NONE, descriptor.getBackpressurePolicy());
+        WorkBackpressure backpressure = new WorkBackpressure(queueId -> lag.get(), registry);
+        backpressure.register(descriptor);
+        assertTrue(backpressure.getStatus().isEmpty());
+        lag.set(1_000_000);
+        assertTrue(backpressure.admit("q1", newWork(Priority.BACKGROUND), true));
+    }
+
+    @Test
+    public void testBlock() throws InterruptedException {
+        WorkBackpressure backpressure = newBackpressure("block", 10, Duration.ofMillis(300));
+        lag.set(5);
+        assertTrue(backpressure.admit("q1", newWork(Priority.NORMAL), true));
+
+        // the lag is cached, wait for a refresh
+        lag.set(100);
+        Thread.sleep(WorkBackpressure.LAG_REFRESH_MS + 100);
+        // not blocking when asked not to
+        long start = System.currentTimeMillis();
+        assertTrue(backpressure.admit("q1", newWork(Priority.NORMAL), false));
+        assertTrue(System.currentTimeMillis() - start < 100);
+        // blocks up to the timeout then admits anyway
+        assertTrue(backpressure.admit("q1", newWork(Priority.NORMAL), true));
+        assertTrue(System.currentTimeMillis() - start >= 300);
+
+        Map<String, Object> status = backpressure.getStatus().get("q1");
+        assertEquals("block", status.get("policy"));
+        assertEquals(true, status.get("active"));
+        assertEquals(1L, status.get("blocked"));
+        assertEquals(1L, status.get("timeout"));
+    }
+
+    @Test
+    public void testShed() {
+        lag.set(100);
+        WorkBackpressure backpressure = newBackpressure("shed", 10, null);
+        assertFalse(backpressure.admit("q1", newWork(Priority.BACKGROUND), true));
+        assertTrue(backpressure.admit("q1", newWork(Priority.NORMAL), true));
+        assertTrue(backpressure.admit("q1", newWork(Priority.INTERACTIVE), true));
+        assertEquals(1L, backpressure.getStatus().get("q1").get("shed"));
+        assertFalse(backpressure.isSpilling("q1"));
+    }
+
+    @Test
+    public void testSpill() {
+        lag.set(100);
+        WorkBackpressure backpressure = newBackpressure("spill", 10, null);
+        assertTrue(backpressure.admit("q1", newWork(Priority.BACKGROUND), true));
+        assertTrue(backpressure.isSpilling("q1"));
+        assertFalse(backpressure.isSpilling("unknown"));
+    }
+
+    @Test
+    public void testConcurrentRefresh() throws InterruptedException {
+        AtomicInteger lagQueries = new AtomicInteger();
+        WorkQueueDescriptor descriptor = new WorkQueueDescriptor();
+        descriptor.id = "q1";
+        descriptor.backpressurePolicy = "shed";
+        descriptor.backpressureMaxLag = 10L;
+        WorkBackpressure backpressure = new WorkBackpressure(queueId -> {
+            lagQueries.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return lag.get();
+        }, registry);
+        backpressure.register(descriptor);
+
+        // the lag has never been read, all the threads ask for a refresh at the same time
+        int nbThreads = 10;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < nbThreads; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backpressure.admit("q1", newWork(Priority.BACKGROUND), true);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // only one thread queried the lag, the others used the previous value
+        assertEquals(1, lagQueries.get());
+    }
+
+}
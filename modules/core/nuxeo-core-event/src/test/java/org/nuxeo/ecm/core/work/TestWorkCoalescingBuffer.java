@@ -0,0 +1,158 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.work;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.work.api.Work;
+
+import io.dropwizard.metrics5.MetricRegistry;
+
+public class TestWorkCoalescingBuffer {
+
+    protected final MetricRegistry registry = new MetricRegistry();
+
+    protected final Map<String, List<Work>> appended = new ConcurrentHashMap<>();
+
+    protected WorkCoalescingBuffer newBuffer(int maxSize) {
+        return new WorkCoalescingBuffer(60_000, maxSize,
+                (queueId, works) -> appended.computeIfAbsent(queueId, k -> new ArrayList<>()).addAll(works),
+                registry);
+    }
+
+    @Test
+    public void testCoalescing() {
+        WorkCoalescingBuffer buffer = newBuffer(100);
+        Work first = new SleepWork(0, "doc1");
+        Work last = new SleepWork(0, "doc1");
+        assertTrue(buffer.add("q1", first));
+        assertTrue(buffer.add("q1", new SleepWork(0, "doc2")));
+        assertTrue(buffer.add("q1", last));
+        assertTrue(buffer.add("q2", new SleepWork(0, "doc1")));
+        assertEquals(2, buffer.size("q1"));
+        assertEquals(1, buffer.size("q2"));
+        assertEquals(1, registry.counter(WorkCoalescingBuffer.getCoalescedMetricName("q1")).getCount());
+        assertEquals(0, registry.counter(WorkCoalescingBuffer.getCoalescedMetricName("q2")).getCount());
+        assertTrue(appended.isEmpty());
+
+        buffer.flush();
+        assertEquals(0, buffer.size("q1"));
+        assertEquals(2, appended.get("q1").size());
+        // the last scheduled work is kept, at the position of the first one
+        assertSame(last, appended.get("q1").get(0));
+        assertEquals("doc2", appended.get("q1").get(1).getId());
+        assertEquals(1, appended.get("q2").size());
+    }
+
+    @Test
+    public void testRemove() {
+        WorkCoalescingBuffer buffer = newBuffer(100);
+        buffer.add("q1", new SleepWork(0, "doc1"));
+        assertTrue(buffer.remove("q1", "doc1"));
+        assertFalse(buffer.remove("q1", "doc1"));
+        assertEquals(0, buffer.size("q1"));
+        buffer.flush();
+        assertTrue(appended.isEmpty());
+    }
+
+    @Test
+    public void testFlushWhenFull() {
+        WorkCoalescingBuffer buffer = newBuffer(3);
+        buffer.add("q1", new SleepWork(0, "doc1"));
+        buffer.add("q1", new SleepWork(0, "doc2"));
+        buffer.add("q1", new SleepWork(0, "doc2"));
+        assertTrue(appended.isEmpty());
+        buffer.add("q1", new SleepWork(0, "doc3"));
+        assertEquals(3, appended.get("q1").size());
+        assertEquals(0, buffer.size("q1"));
+    }
+
+    @Test
+    public void testFailedAppendIsRetried() {
+        List<Work> failed = new ArrayList<>();
+        WorkCoalescingBuffer buffer = new WorkCoalescingBuffer(60_000, 100, (queueId, works) -> {
+            if (failed.isEmpty()) {
+                failed.addAll(works);
+                throw new IllegalStateException("append failure");
+            }
+            appended.computeIfAbsent(queueId, k -> new ArrayList<>()).addAll(works);
+        }, registry);
+        buffer.add("q1", new SleepWork(0, "doc1"));
+        buffer.add("q1", new SleepWork(0, "doc2"));
+        try {
+            buffer.flush("q1");
+            fail("the append failure should be surfaced");
+        } catch (IllegalStateException e) {
+            assertEquals("append failure", e.getMessage());
+        }
+        assertEquals(2, failed.size());
+        assertTrue(appended.isEmpty());
+        // the works are still pending, merged with the newer ones
+        assertEquals(2, buffer.size("q1"));
+        Work newer = new SleepWork(0, "doc2");
+        buffer.add("q1", new SleepWork(0, "doc3"));
+        buffer.add("q1", newer);
+        assertEquals(3, buffer.size("q1"));
+
+        buffer.flush();
+        assertEquals(0, buffer.size("q1"));
+        List<Work> works = appended.get("q1");
+        assertEquals(3, works.size());
+        assertEquals("doc1", works.get(0).getId());
+        assertSame(newer, works.get(1));
+        assertEquals("doc3", works.get(2).getId());
+    }
+
+    @Test
+    public void testClose() {
+        WorkCoalescingBuffer buffer = newBuffer(100);
+        buffer.start();
+        buffer.add("q1", new SleepWork(0, "doc1"));
+        buffer.close();
+        assertEquals(1, appended.get("q1").size());
+        // refused once closed
+        assertFalse(buffer.add("q1", new SleepWork(0, "doc2")));
+    }
+
+    @Test
+    public void testAccept() {
+        WorkCoalescingBuffer buffer = newBuffer(100);
+        assertTrue(buffer.accept(new SleepWork(0, "doc1")));
+        Work groupJoinWork = new SleepWork(0, "doc2") {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public boolean isGroupJoin() {
+                return true;
+            }
+        };
+        assertFalse(buffer.accept(groupJoinWork));
+    }
+
+}
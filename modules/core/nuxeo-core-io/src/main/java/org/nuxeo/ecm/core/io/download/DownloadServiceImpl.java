@@ -90,11 +90,17 @@ import org.nuxeo.ecm.core.io.NginxConstants;
 import org.nuxeo.ecm.core.transientstore.api.TransientStore;
 import org.nuxeo.ecm.core.transientstore.api.TransientStoreService;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.model.ComponentContext;
 import org.nuxeo.runtime.model.DefaultComponent;
 import org.nuxeo.runtime.services.config.ConfigurationService;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
+import io.dropwizard.metrics5.Counter;
+import io.dropwizard.metrics5.MetricName;
+import io.dropwizard.metrics5.MetricRegistry;
+import io.dropwizard.metrics5.SharedMetricRegistries;
+
 /**
  * This service allows the download of blobs to a HTTP response.
  *
@@ -119,6 +125,22 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
     /** @since 11.1 */
     public static final String DOWNLOAD_URL_FOLLOW_REDIRECT = "org.nuxeo.download.url.follow.redirect";
 
+    /**
+     * Whether blobs stored as local files are handed over to the servlet container using Tomcat sendfile, when the
+     * connector supports it.
+     *
+     * @since 11.5
+     */
+    public static final String DOWNLOAD_SENDFILE_ENABLED = "org.nuxeo.download.sendfile.enabled";
+
+    protected static final String TOMCAT_SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+
+    protected static final String TOMCAT_SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+
+    protected static final String TOMCAT_SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+
+    protected static final String TOMCAT_SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     private static final String RUN_FUNCTION = "run";
 
     private static final Pattern FILENAME_SANITIZATION_REGEX = Pattern.compile(";\\w+=.*");
@@ -135,6 +157,20 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
 
     protected RedirectResolver redirectResolver;
 
+    /**
+     * Bytes handed over to Tomcat sendfile, counted when requested as the container may still abort or refuse it.
+     */
+    protected final Counter sendfileRequestedBytesCounter;
+
+    protected final Counter copiedBytesCounter;
+
+    public DownloadServiceImpl() {
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        MetricName name = MetricName.build("nuxeo", "download", "bytes");
+        sendfileRequestedBytesCounter = registry.counter(name.tagged("transfer", "sendfile_requested"));
+        copiedBytesCounter = registry.counter(name.tagged("transfer", "copy"));
+    }
+
     @Override
     public void start(ComponentContext context) {
         super.start(context);
@@ -569,7 +605,7 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
         Consumer<ByteRange> blobTransferer = context.getBlobTransferer();
         if (blobTransferer == null) {
             Blob fblob = blob;
-            blobTransferer = byteRange -> transferBlobWithByteRange(fblob, byteRange, response);
+            blobTransferer = byteRange -> transferBlobWithByteRange(fblob, byteRange, request, response);
         }
         Calendar lastModified = context.getLastModified();
         if (lastModified == null && doc != null) {
@@ -786,6 +822,29 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
         }
     }
 
+    /**
+     * Transfers a blob to the response, letting the servlet container send the file itself when possible.
+     *
+     * @since 11.5
+     */
+    protected void transferBlobWithByteRange(Blob blob, ByteRange byteRange, HttpServletRequest request,
+            HttpServletResponse response) {
+        if (Framework.getService(ConfigurationService.class).isBooleanTrue(DOWNLOAD_SENDFILE_ENABLED)
+                && Boolean.TRUE.equals(request.getAttribute(TOMCAT_SENDFILE_SUPPORT_ATTR))) {
+            File file = getSendfileFile(blob);
+            if (file != null) {
+                long start = byteRange == null ? 0 : byteRange.getStart();
+                long end = byteRange == null ? file.length() : byteRange.getEnd() + 1; // exclusive
+                request.setAttribute(TOMCAT_SENDFILE_FILENAME_ATTR, file.getAbsolutePath());
+                request.setAttribute(TOMCAT_SENDFILE_START_ATTR, Long.valueOf(start));
+                request.setAttribute(TOMCAT_SENDFILE_END_ATTR, Long.valueOf(end));
+                sendfileRequestedBytesCounter.inc(end - start);
+                return;
+            }
+        }
+        transferBlobWithByteRange(blob, byteRange, response);
+    }
+
     protected void transferBlobWithByteRange(Blob blob, ByteRange byteRange, HttpServletResponse response) {
         transferBlobWithByteRange(blob, byteRange, () -> {
             try {
@@ -807,21 +866,45 @@ public class DownloadServiceImpl extends DefaultComponent implements DownloadSer
             @SuppressWarnings("resource")
             OutputStream out = outputStreamSupplier.get(); // not ours to close
             BufferingServletOutputStream.stopBuffering(out);
+            long copied;
             if (byteRange == null) {
-                IOUtils.copy(in, out);
+                copied = IOUtils.copyLarge(in, out);
             } else {
                 @SuppressWarnings("resource") // closing the original stream is enough
                 InputStream substream = byteRange.forStream(in);
-                // don't use IOUtils.copyLarge because it uses a skip method that reads
+                // don't use IOUtils.copyLarge with an offset because it uses a skip method that reads
                 // all intervening bytes, which is inefficient for skippable streams
-                IOUtils.copy(substream, out);
+                copied = IOUtils.copyLarge(substream, out);
             }
             out.flush();
+            copiedBytesCounter.inc(copied);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
+    /**
+     * Gets the local file holding the exact content of the blob, if it can be sent by the servlet container without
+     * going through the blob stream.
+     * <p>
+     * Blob stores that transform the content (like encrypted ones) or that are remote don't expose a file, and the
+     * blob is then copied from its stream.
+     *
+     * @since 11.5
+     */
+    protected File getSendfileFile(Blob blob) {
+        File file = blob.getFile();
+        if (file == null || !file.isFile()) {
+            return null;
+        }
+        long length = blob.getLength();
+        if (length >= 0 && length != file.length()) {
+            // the file is not the raw content
+            return null;
+        }
+        return file;
+    }
+
     protected String fixXPath(String xpath) {
         // Hack for Flash Url wich doesn't support ':' char
         return xpath == null ? null : xpath.replace(';', ':');
@@ -28,6 +28,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.nuxeo.ecm.core.api.Lock;
@@ -169,9 +170,18 @@ public class DBSCachingConnection implements DBSConnection {
 
     @Override
     public List<State> readStates(List<String> ids) {
+        // single multi-lookup in the cache
         ImmutableMap<String, State> statesMap = cache.getAllPresent(ids);
-        List<String> idsToRetrieve = new ArrayList<>(ids);
-        idsToRetrieve.removeAll(statesMap.keySet());
+        List<String> idsToRetrieve = new ArrayList<>();
+        for (String id : ids) {
+            if (!statesMap.containsKey(id)) {
+                idsToRetrieve.add(id);
+            }
+        }
+        if (idsToRetrieve.isEmpty()) {
+            // everything cached, no round trip to the repository
+            return new ArrayList<>(statesMap.values());
+        }
         // Read missing states from repository
         List<State> states = connection.readStates(idsToRetrieve);
         // Cache them
@@ -199,6 +209,12 @@ public class DBSCachingConnection implements DBSConnection {
         invalidate(id);
     }
 
+    @Override
+    public void updateStates(List<StateUpdate> updates) {
+        connection.updateStates(updates);
+        invalidate(updates.stream().map(update -> update.id).collect(Collectors.toSet()));
+    }
+
     @Override
     public void deleteStates(Set<String> ids) {
         connection.deleteStates(ids);
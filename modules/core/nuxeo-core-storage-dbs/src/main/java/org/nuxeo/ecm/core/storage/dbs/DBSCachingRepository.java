@@ -55,6 +55,12 @@ public class DBSCachingRepository implements DBSRepository {
 
     protected static final String METRIC_CHILD_CACHE_NAME = "nuxeo.repositories.repository.childCache";
 
+    /** @since 11.5 */
+    protected static final long DEFAULT_CACHE_MAX_BYTES = 256L * 1024 * 1024;
+
+    /** @since 11.5 */
+    protected static final int DEFAULT_CACHE_CONCURRENCY_LEVEL = 16;
+
     private final DBSRepository repository;
 
     protected final Cache<String, State> cache;
@@ -106,7 +112,7 @@ public class DBSCachingRepository implements DBSRepository {
     }
 
     protected Cache<String, State> newCache(boolean metrics) {
-        Cache<String, State> c = newCache(descriptor);
+        Cache<String, State> c = descriptor.isCacheOffHeap() ? newOffHeapCache(descriptor) : newCache(descriptor);
         if (metrics) {
             registry.registerAll(GuavaCacheMetric.of(c,
                     MetricName.build(METRIC_CACHE_NAME).tagged("repository", repository.getName())));
@@ -140,6 +146,20 @@ public class DBSCachingRepository implements DBSRepository {
         return builder.build();
     }
 
+    /**
+     * Creates a cache of states stored off-heap, bounded by bytes.
+     *
+     * @since 11.5
+     */
+    protected Cache<String, State> newOffHeapCache(DBSRepositoryDescriptor descriptor) {
+        long maxBytes = descriptor.cacheMaxBytes == null ? DEFAULT_CACHE_MAX_BYTES
+                : descriptor.cacheMaxBytes.longValue();
+        long ttlMillis = TimeUnit.MINUTES.toMillis(descriptor.cacheTTL.longValue());
+        int concurrencyLevel = descriptor.cacheConcurrencyLevel == null ? DEFAULT_CACHE_CONCURRENCY_LEVEL
+                : descriptor.cacheConcurrencyLevel.intValue();
+        return new OffHeapStateCache(maxBytes, ttlMillis, concurrencyLevel);
+    }
+
     /**
      * Invalidations need to be propagated between connection caches only if there is such a cache, which is the case
      * only if transactions are used.
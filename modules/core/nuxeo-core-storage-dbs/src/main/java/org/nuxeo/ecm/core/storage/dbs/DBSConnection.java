@@ -116,6 +116,19 @@ public interface DBSConnection extends AutoCloseable, LockManager {
      */
     void updateState(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater);
 
+    /**
+     * Updates several documents.
+     * <p>
+     * Implementations may group the updates in batches to reduce the number of round trips to the database. Several
+     * updates for the same document are applied in order.
+     *
+     * @param updates the updates to apply
+     * @since 11.5
+     */
+    default void updateStates(List<StateUpdate> updates) {
+        updates.forEach(update -> updateState(update.id, update.diff, update.changeTokenUpdater));
+    }
+
     /**
      * Deletes a set of document.
      *
@@ -278,6 +291,31 @@ public interface DBSConnection extends AutoCloseable, LockManager {
      */
     void rollback();
 
+    /**
+     * An update of a document, see {@link #updateStates}.
+     *
+     * @since 11.5
+     */
+    class StateUpdate {
+
+        public final String id;
+
+        public final StateDiff diff;
+
+        public final ChangeTokenUpdater changeTokenUpdater;
+
+        /**
+         * @param id the document id
+         * @param diff the diff to apply
+         * @param changeTokenUpdater how to get and update the change token (may be {@code null})
+         */
+        public StateUpdate(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater) {
+            this.id = id;
+            this.diff = diff;
+            this.changeTokenUpdater = changeTokenUpdater;
+        }
+    }
+
     /**
      * Abstracts queries with operators.
      *
@@ -25,6 +25,7 @@ import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.FACETED_TAG_LABEL;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ACL;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ACL_NAME;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ACP;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ANCESTOR_IDS;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_MIXIN_TYPES;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_NAME;
@@ -52,9 +53,15 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.ecm.core.query.QueryParseException;
 import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.query.sql.model.DateLiteral;
+import org.nuxeo.ecm.core.query.sql.model.DoubleLiteral;
 import org.nuxeo.ecm.core.query.sql.model.Expression;
+import org.nuxeo.ecm.core.query.sql.model.IntegerLiteral;
+import org.nuxeo.ecm.core.query.sql.model.Literal;
+import org.nuxeo.ecm.core.query.sql.model.LiteralList;
 import org.nuxeo.ecm.core.query.sql.model.MultiExpression;
 import org.nuxeo.ecm.core.query.sql.model.Operand;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
 import org.nuxeo.ecm.core.query.sql.model.OrderByClause;
 import org.nuxeo.ecm.core.query.sql.model.OrderByExpr;
 import org.nuxeo.ecm.core.query.sql.model.Predicate;
@@ -62,6 +69,7 @@ import org.nuxeo.ecm.core.query.sql.model.Reference;
 import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
 import org.nuxeo.ecm.core.query.sql.model.SelectClause;
 import org.nuxeo.ecm.core.query.sql.model.SelectList;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
 import org.nuxeo.ecm.core.schema.DocumentType;
 import org.nuxeo.ecm.core.schema.SchemaManager;
 import org.nuxeo.ecm.core.schema.types.ComplexType;
@@ -880,6 +888,245 @@ public class DBSExpressionEvaluator extends ExpressionEvaluator {
         }
     }
 
+    /**
+     * Lookup of document ids in secondary indexes maintained by a repository, keyed by internal key.
+     *
+     * @since 11.5
+     */
+    public interface IndexLookup {
+
+        /**
+         * Checks if the given internal key is indexed.
+         */
+        boolean isIndexed(String key);
+
+        /**
+         * Gets the ids of the documents having the given value for the key (or in the key array).
+         */
+        Set<String> getIds(String key, Object value);
+
+        /**
+         * Gets the ids of the documents having a value for the key in the given range. A {@code null} bound means
+         * unbounded.
+         */
+        Set<String> getIdsInRange(String key, Object min, boolean minInclusive, Object max, boolean maxInclusive);
+
+        /**
+         * Gets the ids of the documents having a string value for the key starting with the given prefix.
+         */
+        Set<String> getIdsStartingWith(String key, String prefix);
+    }
+
+    /**
+     * Computes from secondary indexes a set of candidate document ids containing at least all the documents matching
+     * the expression and the security check.
+     * <p>
+     * The candidates must still be checked using {@link #matches}. Must be called after {@link #parse}.
+     *
+     * @param lookup the index lookup
+     * @return the candidate ids, or {@code null} if the indexes cannot restrict the set of documents to check
+     * @since 11.5
+     */
+    public Set<String> getCandidateIds(IndexLookup lookup) {
+        Set<String> ids = getCandidateIds(expression, lookup);
+        if (principals != null && lookup.isIndexed(KEY_READ_ACL)) {
+            Set<String> allowed = new HashSet<>();
+            for (String principal : principals) {
+                allowed.addAll(lookup.getIds(KEY_READ_ACL, principal));
+            }
+            ids = intersectCandidates(ids, allowed);
+        }
+        return ids;
+    }
+
+    protected Set<String> getCandidateIds(Expression expr, IndexLookup lookup) {
+        if (expr == null) {
+            return null;
+        }
+        Operator op = expr.operator;
+        if (op == Operator.AND || op == Operator.OR) {
+            List<Operand> operands;
+            if (expr instanceof MultiExpression) {
+                operands = new ArrayList<>(((MultiExpression) expr).predicates);
+            } else {
+                operands = Arrays.asList(expr.lvalue, expr.rvalue);
+            }
+            Set<String> ids = null;
+            for (Operand operand : operands) {
+                Set<String> operandIds = operand instanceof Expression
+                        ? getCandidateIds((Expression) operand, lookup)
+                        : null;
+                if (op == Operator.AND) {
+                    ids = intersectCandidates(ids, operandIds);
+                } else if (operandIds == null) {
+                    // one unrestricted alternative means no restriction at all
+                    return null;
+                } else if (ids == null) {
+                    ids = new HashSet<>(operandIds);
+                } else {
+                    ids.addAll(operandIds);
+                }
+            }
+            return ids;
+        }
+        if (!(expr.lvalue instanceof Reference)) {
+            return null;
+        }
+        Reference ref = (Reference) expr.lvalue;
+        if (ref.cast != null) {
+            return null;
+        }
+        String name = ref.name;
+        Operand rvalue = expr.rvalue;
+        if (op == Operator.STARTSWITH) {
+            if (!(rvalue instanceof StringLiteral)) {
+                return null;
+            }
+            String path = ((StringLiteral) rvalue).value;
+            if (path.length() > 1 && path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+            if (NXQL.ECM_PATH.equals(name)) {
+                if (!lookup.isIndexed(KEY_ANCESTOR_IDS)) {
+                    return null;
+                }
+                String ancestorId = pathResolver.getIdForPath(path);
+                return ancestorId == null ? Collections.emptySet() : lookup.getIds(KEY_ANCESTOR_IDS, ancestorId);
+            }
+            String key = getIndexedKey(name, lookup);
+            // the prefix also matches the exact value
+            return key == null ? null : lookup.getIdsStartingWith(key, path);
+        }
+        if (NXQL.ECM_PATH.equals(name)) {
+            if (op != Operator.EQ || !(rvalue instanceof StringLiteral)) {
+                return null;
+            }
+            String path = ((StringLiteral) rvalue).value;
+            if (path.length() > 1 && path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+            String id = pathResolver.getIdForPath(path);
+            return id == null ? Collections.emptySet() : Collections.singleton(id);
+        }
+        if (NXQL.ECM_UUID.equals(name)) {
+            // direct lookup by id, no index needed
+            if (op == Operator.EQ && rvalue instanceof StringLiteral) {
+                return Collections.singleton(((StringLiteral) rvalue).value);
+            } else if (op == Operator.IN && rvalue instanceof LiteralList) {
+                Set<String> ids = new HashSet<>();
+                for (Literal literal : (LiteralList) rvalue) {
+                    if (!(literal instanceof StringLiteral)) {
+                        return null;
+                    }
+                    ids.add(((StringLiteral) literal).value);
+                }
+                return ids;
+            }
+            return null;
+        }
+        if (NXQL.ECM_ANCESTORID.equals(name) && op != Operator.EQ) {
+            return null;
+        }
+        String key = getIndexedKey(name, lookup);
+        if (key == null) {
+            return null;
+        }
+        if (op == Operator.EQ) {
+            Object value = getIndexValue(rvalue);
+            return value == null ? null : lookup.getIds(key, value);
+        } else if (op == Operator.IN) {
+            if (!(rvalue instanceof LiteralList)) {
+                return null;
+            }
+            Set<String> ids = new HashSet<>();
+            for (Literal literal : (LiteralList) rvalue) {
+                Object value = getIndexValue(literal);
+                if (value == null) {
+                    return null;
+                }
+                ids.addAll(lookup.getIds(key, value));
+            }
+            return ids;
+        } else if (op == Operator.LT || op == Operator.LTEQ) {
+            Object value = getIndexValue(rvalue);
+            return value == null ? null : lookup.getIdsInRange(key, null, false, value, op == Operator.LTEQ);
+        } else if (op == Operator.GT || op == Operator.GTEQ) {
+            Object value = getIndexValue(rvalue);
+            return value == null ? null : lookup.getIdsInRange(key, value, op == Operator.GTEQ, null, false);
+        } else if (op == Operator.BETWEEN) {
+            if (!(rvalue instanceof LiteralList) || ((LiteralList) rvalue).size() != 2) {
+                return null;
+            }
+            Object min = getIndexValue(((LiteralList) rvalue).get(0));
+            Object max = getIndexValue(((LiteralList) rvalue).get(1));
+            return min == null || max == null ? null : lookup.getIdsInRange(key, min, true, max, true);
+        }
+        return null;
+    }
+
+    /**
+     * Gets the internal key for a NXQL property name, if it's indexed and if its values can be compared to literals
+     * directly.
+     */
+    protected String getIndexedKey(String name, IndexLookup lookup) {
+        if (name.contains("/") || name.contains("*") || NXQL.ECM_MIXINTYPE.equals(name)) {
+            // mixin types are evaluated from the primary type as well
+            return null;
+        }
+        String key;
+        Type type;
+        if (name.startsWith(NXQL.ECM_PREFIX)) {
+            try {
+                key = DBSSession.convToInternal(name);
+            } catch (QueryParseException | UnsupportedOperationException e) {
+                return null;
+            }
+            type = DBSSession.getType(key);
+        } else {
+            Field field = schemaManager.getField(name);
+            if (field == null) {
+                return null;
+            }
+            key = field.getName().getPrefixedName();
+            type = field.getType();
+        }
+        if (type instanceof BooleanType) {
+            // booleans are queried using integer literals
+            return null;
+        }
+        return lookup.isIndexed(key) ? key : null;
+    }
+
+    /**
+     * Gets the value to look up in an index for a literal, or {@code null} if it cannot be used for a lookup.
+     */
+    protected Object getIndexValue(Operand operand) {
+        if (operand instanceof StringLiteral) {
+            return ((StringLiteral) operand).value;
+        } else if (operand instanceof IntegerLiteral) {
+            return Long.valueOf(((IntegerLiteral) operand).value);
+        } else if (operand instanceof DoubleLiteral) {
+            return Double.valueOf(((DoubleLiteral) operand).value);
+        } else if (operand instanceof DateLiteral) {
+            return ((DateLiteral) operand).toCalendar();
+        }
+        return null;
+    }
+
+    /**
+     * Intersects candidate ids, {@code null} meaning all the documents.
+     */
+    protected static Set<String> intersectCandidates(Set<String> ids1, Set<String> ids2) {
+        if (ids1 == null) {
+            return ids2 == null ? null : new HashSet<>(ids2);
+        } else if (ids2 == null) {
+            return ids1;
+        }
+        Set<String> ids = new HashSet<>(ids1);
+        ids.retainAll(ids2);
+        return ids;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder("SELECT ");
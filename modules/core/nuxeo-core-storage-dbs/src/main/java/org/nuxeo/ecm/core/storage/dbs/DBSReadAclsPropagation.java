@@ -0,0 +1,224 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nuxeo.ecm.core.api.security.SecurityConstants;
+import org.nuxeo.ecm.core.bulk.BulkService;
+import org.nuxeo.ecm.core.bulk.action.UpdateReadAclsAction;
+import org.nuxeo.ecm.core.bulk.message.BulkCommand;
+import org.nuxeo.ecm.core.bulk.message.BulkStatus;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.kv.KeyValueService;
+import org.nuxeo.runtime.kv.KeyValueStore;
+import org.nuxeo.runtime.kv.KeyValueStoreProvider;
+import org.nuxeo.runtime.metrics.MetricsService;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import io.dropwizard.metrics5.Gauge;
+import io.dropwizard.metrics5.MetricName;
+import io.dropwizard.metrics5.MetricRegistry;
+import io.dropwizard.metrics5.SharedMetricRegistries;
+
+/**
+ * Asynchronous propagation of Read ACLs to the descendants of a document, done by the {@code updateReadAcls} bulk
+ * action.
+ * <p>
+ * While a propagation is in progress, a marker for its root document is kept in a key/value store shared by the
+ * cluster nodes. Queries use {@link #getPendingRoots} to recheck the Read ACLs of the documents under these roots, so
+ * that a document is never returned to a user who lost access to it.
+ *
+ * @since 11.5
+ */
+public class DBSReadAclsPropagation {
+
+    private static final Logger log = LogManager.getLogger(DBSReadAclsPropagation.class);
+
+    public static final String KV_NAME = "readacl";
+
+    /** Time to live of a pending marker, in case its command never completes. */
+    protected static final long PENDING_TTL_SECONDS = 24 * 3600;
+
+    /** Minimum delay between two refreshes of the pending roots from the key/value store. */
+    protected static final long REFRESH_DELAY_MILLIS = 1000;
+
+    /** Marker value until the bulk command is submitted after commit. */
+    protected static final String NOT_SUBMITTED = "-";
+
+    protected static final Map<String, DBSReadAclsPropagation> INSTANCES = new ConcurrentHashMap<>();
+
+    protected final String repositoryName;
+
+    protected final String keyPrefix;
+
+    protected volatile Set<String> pendingRoots = Collections.emptySet();
+
+    protected volatile Map<String, String> pendingCommands = Collections.emptyMap();
+
+    protected volatile long lastRefresh;
+
+    /**
+     * Gets the Read ACLs propagation for a repository.
+     */
+    public static DBSReadAclsPropagation get(String repositoryName) {
+        return INSTANCES.computeIfAbsent(repositoryName, DBSReadAclsPropagation::new);
+    }
+
+    /**
+     * Checks if the bulk action is available to propagate Read ACLs.
+     */
+    public static boolean isAvailable() {
+        return Framework.getService(BulkService.class) != null && Framework.getService(KeyValueService.class) != null;
+    }
+
+    protected DBSReadAclsPropagation(String repositoryName) {
+        this.repositoryName = repositoryName;
+        keyPrefix = "pending:" + repositoryName + ":";
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        MetricName name = MetricName.build("nuxeo", "repositories", "repository", "readacl", "pending")
+                                    .tagged("repository", repositoryName);
+        registry.remove(name);
+        registry.register(name, (Gauge<Long>) this::getPendingDocuments);
+    }
+
+    protected KeyValueStore getKeyValueStore() {
+        return Framework.getService(KeyValueService.class).getKeyValueStore(KV_NAME);
+    }
+
+    /**
+     * Schedules the propagation of Read ACLs to the descendants of a document.
+     * <p>
+     * The bulk command is submitted after the transaction commits, as its scroll must see the committed ACP.
+     */
+    public void submit(String rootId) {
+        String key = keyPrefix + rootId;
+        // mark as pending right away so that queries of this transaction already recheck
+        getKeyValueStore().put(key, NOT_SUBMITTED, PENDING_TTL_SECONDS);
+        invalidate();
+        if (TransactionHelper.isTransactionActive()) {
+            TransactionHelper.registerSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    // nothing
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        doSubmit(key, rootId);
+                    } else {
+                        getKeyValueStore().put(key, (String) null);
+                        invalidate();
+                    }
+                }
+            });
+        } else {
+            doSubmit(key, rootId);
+        }
+    }
+
+    protected void doSubmit(String key, String rootId) {
+        String nxql = String.format("SELECT * FROM Document WHERE ecm:ancestorId = '%s'", rootId);
+        BulkCommand command = new BulkCommand.Builder(UpdateReadAclsAction.ACTION_NAME, nxql).user(
+                SecurityConstants.SYSTEM_USERNAME).repository(repositoryName).build();
+        String commandId = Framework.getService(BulkService.class).submit(command);
+        log.debug("Submitted Read ACLs propagation for: {} with command: {}", rootId, commandId);
+        getKeyValueStore().put(key, commandId, PENDING_TTL_SECONDS);
+        invalidate();
+    }
+
+    protected void invalidate() {
+        lastRefresh = 0;
+    }
+
+    /**
+     * Gets the ids of the documents whose descendants may not have up to date Read ACLs.
+     */
+    public Set<String> getPendingRoots() {
+        long now = System.currentTimeMillis();
+        if (now - lastRefresh > REFRESH_DELAY_MILLIS) {
+            refresh();
+            lastRefresh = now;
+        }
+        return pendingRoots;
+    }
+
+    protected synchronized void refresh() {
+        KeyValueStore kv = getKeyValueStore();
+        if (!(kv instanceof KeyValueStoreProvider)) {
+            return;
+        }
+        BulkService bulkService = Framework.getService(BulkService.class);
+        Map<String, String> commands = new HashMap<>();
+        try (Stream<String> keys = ((KeyValueStoreProvider) kv).keyStream(keyPrefix)) {
+            keys.forEach(key -> {
+                String commandId = kv.getString(key);
+                if (commandId == null) {
+                    return;
+                }
+                if (!NOT_SUBMITTED.equals(commandId) && isDone(bulkService, commandId)) {
+                    // propagation finished, remove marker
+                    kv.compareAndSet(key, commandId, null);
+                    return;
+                }
+                commands.put(key.substring(keyPrefix.length()), commandId);
+            });
+        }
+        pendingCommands = commands;
+        pendingRoots = commands.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(commands.keySet());
+    }
+
+    protected boolean isDone(BulkService bulkService, String commandId) {
+        BulkStatus.State state = bulkService.getStatus(commandId).getState();
+        return state == BulkStatus.State.COMPLETED || state == BulkStatus.State.ABORTED
+                || state == BulkStatus.State.UNKNOWN;
+    }
+
+    /**
+     * Gets the number of documents still waiting for their Read ACLs to be updated, as known from the bulk commands.
+     */
+    protected long getPendingDocuments() {
+        BulkService bulkService = Framework.getService(BulkService.class);
+        if (bulkService == null) {
+            return 0;
+        }
+        getPendingRoots();
+        long pending = 0;
+        for (String commandId : pendingCommands.values()) {
+            if (NOT_SUBMITTED.equals(commandId)) {
+                continue;
+            }
+            BulkStatus status = bulkService.getStatus(commandId);
+            pending += Math.max(0, status.getTotal() - status.getProcessed());
+        }
+        return pending;
+    }
+
+}
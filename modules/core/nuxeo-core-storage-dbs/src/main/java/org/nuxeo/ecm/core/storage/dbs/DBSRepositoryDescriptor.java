@@ -130,6 +130,27 @@ public class DBSRepositoryDescriptor {
     @XNode("cache@concurrencyLevel")
     public Integer cacheConcurrencyLevel;
 
+    /** @since 11.5 */
+    @XNode("cache@offHeap")
+    private Boolean cacheOffHeap;
+
+    /**
+     * Whether the document states cache stores compact snapshots off-heap, see {@link OffHeapStateCache}.
+     *
+     * @since 11.5
+     */
+    public boolean isCacheOffHeap() {
+        return defaultFalse(cacheOffHeap);
+    }
+
+    /**
+     * The maximum size in bytes of the off-heap document states cache.
+     *
+     * @since 11.5
+     */
+    @XNode("cache@maxBytes")
+    public Long cacheMaxBytes;
+
     /** @since 8.10 */
     @XNode("clustering/invalidatorClass")
     public Class<? extends DBSClusterInvalidator> clusterInvalidatorClass;
@@ -184,6 +205,12 @@ public class DBSRepositoryDescriptor {
         if (other.cacheConcurrencyLevel != null) {
             cacheConcurrencyLevel = other.cacheConcurrencyLevel;
         }
+        if (other.cacheOffHeap != null) {
+            cacheOffHeap = other.cacheOffHeap;
+        }
+        if (other.cacheMaxBytes != null) {
+            cacheMaxBytes = other.cacheMaxBytes;
+        }
         if (other.clusterInvalidatorClass != null) {
             clusterInvalidatorClass = other.clusterInvalidatorClass;
         }
@@ -160,6 +160,7 @@ import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
+import io.dropwizard.metrics5.Histogram;
 import io.dropwizard.metrics5.MetricName;
 import io.dropwizard.metrics5.MetricRegistry;
 import io.dropwizard.metrics5.SharedMetricRegistries;
@@ -191,12 +192,29 @@ public class DBSSession extends BaseSession {
 
     private final Timer queryTimer;
 
+    /**
+     * Number of state reads needed to materialize a page of documents, in addition to the query itself.
+     *
+     * @since 11.5
+     */
+    private final Histogram pageReadHistogram;
+
     private static final String LOG_MIN_DURATION_KEY = "org.nuxeo.dbs.query.log_min_duration_ms";
 
     private long LOG_MIN_DURATION_NS = -1 * 1000000;
 
     protected boolean isLatestVersionDisabled = false;
 
+    /**
+     * Where the next batch of the last query rechecking Read ACLs resumes: the query key and batch offset, and the
+     * repository offset to read from.
+     *
+     * @since 11.5
+     */
+    protected String recheckResumeKey;
+
+    protected int recheckResumeRepoOffset;
+
     public DBSSession(DBSRepository repository) {
         super(repository);
         transaction = new DBSTransactionState(repository, this);
@@ -209,6 +227,8 @@ public class DBSSession extends BaseSession {
                                              .tagged("repository", repository.getName()));
         queryTimer = registry.timer(MetricName.build("nuxeo", "repositories", "repository", "query")
                                               .tagged("repository", repository.getName()));
+        pageReadHistogram = registry.histogram(MetricName.build("nuxeo", "repositories", "repository", "page", "read")
+                                                         .tagged("repository", repository.getName()));
         LOG_MIN_DURATION_NS = Long.parseLong(Framework.getProperty(LOG_MIN_DURATION_KEY, "-1")) * 1000000;
         isLatestVersionDisabled = Framework.isBooleanPropertyTrue(DISABLED_ISLATESTVERSION_PROPERTY);
     }
@@ -343,11 +363,14 @@ public class DBSSession extends BaseSession {
     }
 
     protected List<Document> getChildren(String parentId) {
+        long readRoundTrips = transaction.getReadRoundTrips();
         List<DBSDocumentState> docStates = transaction.getChildrenStates(parentId);
         if (isOrderable(parentId)) {
             // sort children in order
             docStates.sort(POS_COMPARATOR);
         }
+        prefetchProxyTargets(docStates);
+        pageReadHistogram.update(transaction.getReadRoundTrips() - readRoundTrips);
         List<Document> children = new ArrayList<>(docStates.size());
         for (DBSDocumentState docState : docStates) {
             try {
@@ -417,7 +440,10 @@ public class DBSSession extends BaseSession {
     }
 
     protected List<Document> getDocuments(List<String> ids) {
+        long readRoundTrips = transaction.getReadRoundTrips();
         List<DBSDocumentState> docStates = transaction.getStatesForUpdate(ids);
+        prefetchProxyTargets(docStates);
+        pageReadHistogram.update(transaction.getReadRoundTrips() - readRoundTrips);
         List<Document> docs = new ArrayList<>(ids.size());
         for (DBSDocumentState docState : docStates) {
             try {
@@ -430,6 +456,24 @@ public class DBSSession extends BaseSession {
         return docs;
     }
 
+    /**
+     * Fetches in a single batch the targets of the proxies among the given states, so that materializing the documents
+     * doesn't read them one by one.
+     *
+     * @since 11.5
+     */
+    protected void prefetchProxyTargets(List<DBSDocumentState> docStates) {
+        List<String> targetIds = new ArrayList<>();
+        for (DBSDocumentState docState : docStates) {
+            if (TRUE.equals(docState.get(KEY_IS_PROXY))) {
+                targetIds.add((String) docState.get(KEY_PROXY_TARGET_ID));
+            }
+        }
+        if (!targetIds.isEmpty()) {
+            transaction.prefetchStates(targetIds);
+        }
+    }
+
     protected DBSDocument getDocument(DBSDocumentState docState) {
         return getDocument(docState, true);
     }
@@ -1598,6 +1642,11 @@ public class DBSSession extends BaseSession {
             limit = 0;
         }
 
+        String[] principals = queryFilter.getPrincipals();
+        Set<String> pendingRoots = principals == null ? Collections.emptySet() : getPendingReadAclsRoots();
+        // documents under a pending Read ACLs propagation are filtered in memory, so batching must be done after
+        boolean recheckReadAcls = !pendingRoots.isEmpty();
+
         int repoLimit;
         int repoOffset;
         OrderByClause repoOrderByClause;
@@ -1617,8 +1666,20 @@ public class DBSSession extends BaseSession {
         }
 
         // query the repository
-        PartialList<Map<String, Serializable>> projections = transaction.queryAndFetch(evaluator, repoOrderByClause,
-                distinctDocuments, repoLimit, repoOffset, countUpTo);
+        PartialList<Map<String, Serializable>> projections;
+        if (recheckReadAcls && !postFilter) {
+            // ordering in the repository, batching in memory on a bounded window
+            String queryKey = query + '\0' + String.join(",", principals) + '\0' + distinctDocuments + '\0' + limit
+                    + '\0';
+            projections = queryAndFetchRecheckingReadAcls(queryKey, evaluator, orderByClause, distinctDocuments, limit,
+                    offset, countUpTo, principals, pendingRoots);
+        } else {
+            projections = transaction.queryAndFetch(evaluator, repoOrderByClause, distinctDocuments, repoLimit,
+                    repoOffset, countUpTo);
+            if (recheckReadAcls) {
+                projections = filterPendingReadAcls(projections, principals, pendingRoots);
+            }
+        }
 
         for (Map<String, Serializable> proj : projections) {
             if (proj.containsKey(keyTag)) {
@@ -1643,6 +1704,171 @@ public class DBSSession extends BaseSession {
         return projections;
     }
 
+    /**
+     * Queries the repository while some Read ACLs propagations are pending. The ordered results are read in windows of
+     * the batch size, until the batch is filled once the documents that are no longer readable are removed.
+     * <p>
+     * The reads resume from the repository offset where the previous batch of the same query ended in this session.
+     * Otherwise the batch offset is used as the repository offset, so that the over-fetch stays bounded by the
+     * documents removed from the batch, instead of rechecking all the previous batches.
+     * <p>
+     * While a propagation is pending, the total size is approximate: it only accounts for the documents removed from
+     * the read windows.
+     *
+     * @since 11.5
+     */
+    protected PartialList<Map<String, Serializable>> queryAndFetchRecheckingReadAcls(String queryKey,
+            DBSExpressionEvaluator evaluator, OrderByClause orderByClause, boolean distinctDocuments, int limit,
+            int offset, int countUpTo, String[] principals, Set<String> pendingRoots) {
+        int repoOffset;
+        if (limit == 0) {
+            // without limit everything is read at once
+            repoOffset = 0;
+        } else if ((queryKey + offset).equals(recheckResumeKey)) {
+            repoOffset = recheckResumeRepoOffset;
+        } else {
+            repoOffset = offset;
+        }
+        int needed = limit == 0 ? Integer.MAX_VALUE : limit;
+        List<Map<String, Serializable>> readable = new ArrayList<>();
+        long totalSize = 0;
+        long removed = 0;
+        boolean first = true;
+        for (;;) {
+            PartialList<Map<String, Serializable>> projections = transaction.queryAndFetch(evaluator, orderByClause,
+                    distinctDocuments, limit, repoOffset, first ? countUpTo : 0);
+            if (first) {
+                totalSize = projections.totalSize();
+                first = false;
+            }
+            List<Map<String, Serializable>> filtered = filterPendingReadAcls(projections, principals, pendingRoots);
+            removed += projections.size() - filtered.size();
+            // keep the readable documents up to the batch size, and where the next batch resumes
+            int read = 0;
+            int kept = 0;
+            for (Map<String, Serializable> projection : projections) {
+                if (readable.size() == needed) {
+                    break;
+                }
+                read++;
+                if (kept < filtered.size() && filtered.get(kept) == projection) {
+                    readable.add(projection);
+                    kept++;
+                }
+            }
+            repoOffset += read;
+            if (limit == 0 || projections.size() < limit || readable.size() == needed) {
+                break;
+            }
+        }
+        if (limit != 0) {
+            recheckResumeKey = queryKey + (offset + limit);
+            recheckResumeRepoOffset = repoOffset;
+        }
+        return new PartialList<>(readable, totalSize < 0 ? totalSize : totalSize - removed);
+    }
+
+    /**
+     * Rechecks the Read ACLs of the documents located under a document whose Read ACLs propagation is still in
+     * progress, as their stored Read ACLs may still grant access to principals that lost it. A version is rechecked
+     * when its live document is under such a document.
+     *
+     * @since 11.5
+     */
+    protected PartialList<Map<String, Serializable>> filterPendingReadAcls(
+            PartialList<Map<String, Serializable>> projections, String[] principals, Set<String> pendingRoots) {
+        if (projections.isEmpty()) {
+            return projections;
+        }
+        // read the documents, the live documents of the versions, then the ancestors of the ones to recheck, in one
+        // round trip each
+        List<String> ids = projections.stream()
+                                      .map(projection -> (String) projection.get(NXQL.ECM_UUID))
+                                      .collect(Collectors.toList());
+        transaction.prefetchStates(ids);
+        Set<String> liveIds = new HashSet<>();
+        for (String id : ids) {
+            State state = transaction.getStateForRead(id);
+            if (state != null && TRUE.equals(state.get(KEY_IS_VERSION)) && state.get(KEY_VERSION_SERIES_ID) != null) {
+                liveIds.add((String) state.get(KEY_VERSION_SERIES_ID));
+            }
+        }
+        transaction.prefetchStates(liveIds);
+        Set<String> ancestorIds = new HashSet<>();
+        for (String id : ids) {
+            State state = getPlacefulState(transaction.getStateForRead(id));
+            if (state != null && isUnderPendingRoot(state, pendingRoots)) {
+                for (Object ancestorId : (Object[]) state.get(KEY_ANCESTOR_IDS)) {
+                    ancestorIds.add((String) ancestorId);
+                }
+            }
+        }
+        transaction.prefetchStates(ancestorIds);
+        Set<String> principalsSet = new HashSet<>(Arrays.asList(principals));
+        List<Map<String, Serializable>> list = new ArrayList<>(projections.size());
+        for (Map<String, Serializable> projection : projections) {
+            State state = transaction.getStateForRead((String) projection.get(NXQL.ECM_UUID));
+            if (state != null && isUnderPendingRoot(getPlacefulState(state), pendingRoots)) {
+                String[] racl = transaction.getReadACL(state);
+                if (Arrays.stream(racl).noneMatch(principalsSet::contains)) {
+                    continue;
+                }
+            }
+            list.add(projection);
+        }
+        int removed = projections.size() - list.size();
+        if (removed == 0) {
+            return projections;
+        }
+        long totalSize = projections.totalSize();
+        return new PartialList<>(list, totalSize < 0 ? totalSize : totalSize - removed);
+    }
+
+    /**
+     * Gets the state from which a document gets its location, the live document for a version.
+     *
+     * @return the state, or {@code null} for a version without live document
+     * @since 11.5
+     */
+    protected State getPlacefulState(State state) {
+        if (state == null || !TRUE.equals(state.get(KEY_IS_VERSION))) {
+            return state;
+        }
+        String versionSeriesId = (String) state.get(KEY_VERSION_SERIES_ID);
+        return versionSeriesId == null ? null : transaction.getStateForRead(versionSeriesId);
+    }
+
+    /**
+     * Gets the documents whose Read ACLs propagation is still in progress.
+     *
+     * @since 11.5
+     */
+    protected Set<String> getPendingReadAclsRoots() {
+        if (!DBSReadAclsPropagation.isAvailable()) {
+            return Collections.emptySet();
+        }
+        return DBSReadAclsPropagation.get(repository.getName()).getPendingRoots();
+    }
+
+    protected boolean isUnderPendingRoot(State state, Set<String> pendingRoots) {
+        if (state == null) {
+            return false;
+        }
+        if (pendingRoots.contains(state.get(KEY_ID))) {
+            // the root itself, or the live document of a version
+            return true;
+        }
+        Object[] ancestorIds = (Object[]) state.get(KEY_ANCESTOR_IDS);
+        if (ancestorIds != null) {
+            for (Object ancestorId : ancestorIds) {
+                if (pendingRoots.contains(ancestorId)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /** Does an ORDER BY clause include ecm:path */
     protected boolean isOrderByPath(OrderByClause orderByClause) {
         if (orderByClause == null) {
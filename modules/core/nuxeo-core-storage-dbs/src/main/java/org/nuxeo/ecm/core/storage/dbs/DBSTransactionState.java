@@ -96,10 +96,18 @@ import org.nuxeo.ecm.core.storage.State.ListDiff;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
 import org.nuxeo.ecm.core.storage.StateHelper;
 import org.nuxeo.ecm.core.storage.dbs.DBSConnection.DBSQueryOperator;
+import org.nuxeo.ecm.core.storage.dbs.DBSConnection.StateUpdate;
 import org.nuxeo.ecm.core.work.api.Work;
 import org.nuxeo.ecm.core.work.api.WorkManager;
 import org.nuxeo.ecm.core.work.api.WorkManager.Scheduling;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import io.dropwizard.metrics5.Counter;
+import io.dropwizard.metrics5.Histogram;
+import io.dropwizard.metrics5.MetricName;
+import io.dropwizard.metrics5.MetricRegistry;
+import io.dropwizard.metrics5.SharedMetricRegistries;
 
 /**
  * Transactional state for a session.
@@ -134,6 +142,12 @@ public class DBSTransactionState implements LockManager, AutoCloseable {
 
     public static final String READ_ACL_ASYNC_THRESHOLD_DEFAULT = "500";
 
+    /** @since 11.5 */
+    public static final String READ_ACL_ASYNC_BULK_ENABLED_PROPERTY = "nuxeo.core.readacl.async.bulk.enabled";
+
+    /** @since 11.5 */
+    public static final String READ_ACL_ASYNC_BULK_ENABLED_DEFAULT = "true";
+
     protected final DBSRepository repository;
 
     protected final DBSConnection connection;
@@ -170,6 +184,27 @@ public class DBSTransactionState implements LockManager, AutoCloseable {
 
     protected final boolean disableReadVersionPermission;
 
+    /**
+     * Number of states in each batch read from the repository.
+     *
+     * @since 11.5
+     */
+    protected final Histogram readBatchSizeHistogram;
+
+    /**
+     * Number of read round trips to the repository.
+     *
+     * @since 11.5
+     */
+    protected final Counter readCounter;
+
+    /**
+     * Number of read round trips to the repository done by this transaction state.
+     *
+     * @since 11.5
+     */
+    protected long readRoundTrips;
+
     public DBSTransactionState(DBSRepository repository, DBSSession session) {
         this.repository = repository;
         this.connection = repository.getConnection();
@@ -178,6 +213,12 @@ public class DBSTransactionState implements LockManager, AutoCloseable {
         browsePermissions = new HashSet<>(Arrays.asList(securityService.getPermissionsToCheck(BROWSE)));
         versionAclMode = VersionAclMode.getConfiguration();
         disableReadVersionPermission = BaseSession.isReadVersionPermissionDisabled();
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        readBatchSizeHistogram = registry.histogram(
+                MetricName.build("nuxeo", "repositories", "repository", "read", "batch", "size")
+                          .tagged("repository", repository.getName()));
+        readCounter = registry.counter(MetricName.build("nuxeo", "repositories", "repository", "read")
+                                                 .tagged("repository", repository.getName()));
     }
 
     /**
@@ -222,7 +263,7 @@ public class DBSTransactionState implements LockManager, AutoCloseable {
             return docState;
         }
         // fetch from repository
-        State state = connection.readState(id);
+        State state = readState(id);
         return newTransientState(state);
     }
 
@@ -239,31 +280,77 @@ public class DBSTransactionState implements LockManager, AutoCloseable {
             return docState.getState();
         }
         // fetch from repository
+        return readState(id);
+    }
+
+    /**
+     * Reads a state from the repository, keeping track of the round trip.
+     *
+     * @since 11.5
+     */
+    protected State readState(String id) {
+        recordRead(1);
         return connection.readState(id);
     }
 
     /**
-     * Returns states and marks them transient, because they're about to be returned to user code (where they may be
-     * modified).
+     * Reads states from the repository in a single round trip.
+     *
+     * @since 11.5
      */
-    public List<DBSDocumentState> getStatesForUpdate(Collection<String> ids) {
+    protected List<State> readStates(List<String> ids) {
+        recordRead(ids.size());
+        return connection.readStates(ids);
+    }
+
+    protected void recordRead(int batchSize) {
+        readRoundTrips++;
+        readCounter.inc();
+        readBatchSizeHistogram.update(batchSize);
+    }
+
+    /**
+     * Gets the number of read round trips to the repository done by this transaction state so far.
+     *
+     * @since 11.5
+     */
+    public long getReadRoundTrips() {
+        return readRoundTrips;
+    }
+
+    /**
+     * Fetches into the transient states all the given states that are not already there, using a single round trip to
+     * the repository.
+     * <p>
+     * This is used to coalesce the reads needed to materialize a page of documents (query results, children, proxy
+     * targets), instead of reading the states one by one.
+     *
+     * @since 11.5
+     */
+    public void prefetchStates(Collection<String> ids) {
         // check which ones we have to fetch from repository
-        List<String> idsToFetch = new LinkedList<>();
+        Set<String> idsToFetch = new LinkedHashSet<>();
         for (String id : ids) {
-            // check transient state
-            DBSDocumentState docState = transientStates.get(id);
-            if (docState != null) {
-                continue;
+            if (id != null && !transientStates.containsKey(id)) {
+                idsToFetch.add(id);
             }
-            // will have to fetch it
-            idsToFetch.add(id);
         }
         if (!idsToFetch.isEmpty()) {
-            List<State> states = connection.readStates(idsToFetch);
-            for (State state : states) {
-                newTransientState(state);
+            for (State state : readStates(new ArrayList<>(idsToFetch))) {
+                String id = (String) state.get(KEY_ID);
+                if (!transientStates.containsKey(id)) {
+                    newTransientState(state);
+                }
             }
         }
+    }
+
+    /**
+     * Returns states and marks them transient, because they're about to be returned to user code (where they may be
+     * modified).
+     */
+    public List<DBSDocumentState> getStatesForUpdate(Collection<String> ids) {
+        prefetchStates(ids);
         // everything now fetched in transient
         List<DBSDocumentState> docStates = new ArrayList<>(ids.size());
         for (String id : ids) {
@@ -529,6 +616,13 @@ public class DBSTransactionState implements LockManager, AutoCloseable {
         }
     }
 
+    /** @since 11.5 */
+    protected boolean isReadAclsAsyncBulkEnabled() {
+        return Boolean.parseBoolean(
+                Framework.getProperty(READ_ACL_ASYNC_BULK_ENABLED_PROPERTY, READ_ACL_ASYNC_BULK_ENABLED_DEFAULT))
+                && DBSReadAclsPropagation.isAvailable();
+    }
+
     /**
      * Updates the Read ACLs recursively on a document.
      */
@@ -564,10 +658,15 @@ public class DBSTransactionState implements LockManager, AutoCloseable {
                 updateDocumentReadAcls(childId);
             }
 
-            // asynchronous work to do the whole tree
-            nxql = String.format("SELECT ecm:uuid FROM Document WHERE ecm:ancestorId = '%s'", id);
-            Work work = new FindReadAclsWork(repository.getName(), nxql, null);
-            Framework.getService(WorkManager.class).schedule(work);
+            if (isReadAclsAsyncBulkEnabled()) {
+                // bulk action to do the whole tree, queries recheck the tree until it's done
+                DBSReadAclsPropagation.get(repository.getName()).submit(id);
+            } else {
+                // asynchronous work to do the whole tree
+                nxql = String.format("SELECT ecm:uuid FROM Document WHERE ecm:ancestorId = '%s'", id);
+                Work work = new FindReadAclsWork(repository.getName(), nxql, null);
+                Framework.getService(WorkManager.class).schedule(work);
+            }
         }
     }
 
@@ -883,6 +982,7 @@ public class DBSTransactionState implements LockManager, AutoCloseable {
         if (!statesToCreate.isEmpty()) {
             connection.createStates(statesToCreate);
         }
+        List<StateUpdate> updates = new ArrayList<>();
         for (DBSDocumentState docState : transientStates.values()) {
             String id = docState.getId();
             if (transientCreated.contains(id)) {
@@ -912,12 +1012,16 @@ public class DBSTransactionState implements LockManager, AutoCloseable {
                     } else {
                         changeTokenUpdater = null;
                     }
-                    connection.updateState(id, diff, changeTokenUpdater);
+                    updates.add(new StateUpdate(id, diff, changeTokenUpdater));
                 } finally {
                     docState.setNotDirty();
                 }
             }
         }
+        if (!updates.isEmpty()) {
+            // written in batches by the connection
+            connection.updateStates(updates);
+        }
         transientCreated.clear();
         userChangeIds.clear();
         scheduleWork(works);
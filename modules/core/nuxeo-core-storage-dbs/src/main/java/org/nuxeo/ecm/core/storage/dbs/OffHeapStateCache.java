@@ -0,0 +1,340 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.nuxeo.ecm.core.storage.State;
+
+import com.google.common.cache.AbstractCache;
+import com.google.common.cache.CacheStats;
+
+/**
+ * A {@link State} cache storing compact binary snapshots of the states in direct (off-heap) memory.
+ * <p>
+ * States are encoded with {@link StateBinaryCodec} when put in the cache, and decoded only when read, so that the heap
+ * holds one small entry per cached state instead of the whole state graph. A new {@link State} instance is returned
+ * for each read.
+ * <p>
+ * The cache is bounded by the total number of bytes of the snapshots, with LRU eviction. It is split into segments
+ * having each its own lock and a share of the maximum size. Each segment stores its snapshots in fixed-size blocks of
+ * slabs of direct memory. The slabs are allocated when first needed and then kept for the life of the cache, the blocks
+ * of evicted or invalidated snapshots are released to the segment and reused, so the direct memory used is bounded by
+ * the maximum size and doesn't depend on the garbage collection of buffers. The JVM maximum direct memory
+ * ({@code -XX:MaxDirectMemorySize}) must be configured accordingly.
+ *
+ * @since 11.5
+ */
+public class OffHeapStateCache extends AbstractCache<String, State> {
+
+    public static final int DEFAULT_BLOCK_SIZE = 128;
+
+    // the maximum size of a slab of direct memory
+    protected static final int MAX_SLAB_BYTES = 64 * 1024 * 1024;
+
+    protected static final int NO_BLOCK = -1;
+
+    protected final Segment[] segments;
+
+    protected final long ttlMillis;
+
+    protected final int blockSize;
+
+    protected final StatsCounter statsCounter = new SimpleStatsCounter();
+
+    /**
+     * @param maxBytes the maximum total size in bytes of the cached snapshots
+     * @param ttlMillis the time to live of an entry after write, in milliseconds, or {@code 0} for no expiration
+     * @param concurrencyLevel the number of segments
+     */
+    public OffHeapStateCache(long maxBytes, long ttlMillis, int concurrencyLevel) {
+        this(maxBytes, ttlMillis, concurrencyLevel, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param maxBytes the maximum total size in bytes of the cached snapshots
+     * @param ttlMillis the time to live of an entry after write, in milliseconds, or {@code 0} for no expiration
+     * @param concurrencyLevel the number of segments
+     * @param blockSize the size in bytes of the blocks holding the snapshots
+     */
+    public OffHeapStateCache(long maxBytes, long ttlMillis, int concurrencyLevel, int blockSize) {
+        if (blockSize < Integer.BYTES || blockSize > MAX_SLAB_BYTES) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        this.ttlMillis = ttlMillis;
+        this.blockSize = blockSize;
+        int n = Math.max(1, concurrencyLevel);
+        segments = new Segment[n];
+        for (int i = 0; i < n; i++) {
+            long blocks = Math.max(1, maxBytes / n / blockSize);
+            segments[i] = new Segment((int) Math.min(Integer.MAX_VALUE, blocks));
+        }
+    }
+
+    protected static class Snapshot {
+
+        // the blocks holding the snapshot, in order
+        protected final int[] blocks;
+
+        protected final int length;
+
+        protected final long written;
+
+        protected Snapshot(int[] blocks, int length, long written) {
+            this.blocks = blocks;
+            this.length = length;
+            this.written = written;
+        }
+    }
+
+    protected class Segment {
+
+        protected final int maxBlocks;
+
+        protected final int blocksPerSlab;
+
+        protected final ByteBuffer[] slabs;
+
+        // access-ordered for LRU
+        protected final Map<String, Snapshot> map = new LinkedHashMap<>(16, 0.75f, true);
+
+        // the released blocks are chained through their first bytes
+        protected int freeBlock = NO_BLOCK;
+
+        // the blocks above this one have never been used
+        protected int nextBlock;
+
+        protected int usedBlocks;
+
+        protected Segment(int maxBlocks) {
+            this.maxBlocks = maxBlocks;
+            blocksPerSlab = Math.min(maxBlocks, MAX_SLAB_BYTES / blockSize);
+            slabs = new ByteBuffer[(int) (((long) maxBlocks + blocksPerSlab - 1) / blocksPerSlab)];
+        }
+
+        protected ByteBuffer slab(int block) {
+            int index = block / blocksPerSlab;
+            ByteBuffer slab = slabs[index];
+            if (slab == null) {
+                int blocks = Math.min(blocksPerSlab, maxBlocks - index * blocksPerSlab);
+                slab = ByteBuffer.allocateDirect(blocks * blockSize);
+                slabs[index] = slab;
+            }
+            return slab;
+        }
+
+        protected int offset(int block) {
+            return (block % blocksPerSlab) * blockSize;
+        }
+
+        protected int allocateBlock() {
+            int block;
+            if (freeBlock != NO_BLOCK) {
+                block = freeBlock;
+                freeBlock = slab(block).getInt(offset(block));
+            } else {
+                block = nextBlock++;
+            }
+            usedBlocks++;
+            return block;
+        }
+
+        protected void release(Snapshot snapshot) {
+            for (int block : snapshot.blocks) {
+                slab(block).putInt(offset(block), freeBlock);
+                freeBlock = block;
+            }
+            usedBlocks -= snapshot.blocks.length;
+        }
+
+        protected synchronized byte[] get(String key) {
+            Snapshot snapshot = map.get(key);
+            if (snapshot == null) {
+                return null;
+            }
+            if (isExpired(snapshot)) {
+                remove(key);
+                return null;
+            }
+            // copied under the lock, as the blocks may be reused once released
+            byte[] bytes = new byte[snapshot.length];
+            for (int i = 0, pos = 0; pos < bytes.length; i++, pos += blockSize) {
+                int block = snapshot.blocks[i];
+                ByteBuffer buffer = slab(block).duplicate();
+                buffer.position(offset(block));
+                buffer.get(bytes, pos, Math.min(blockSize, bytes.length - pos));
+            }
+            return bytes;
+        }
+
+        protected synchronized void put(String key, byte[] bytes) {
+            remove(key);
+            int count = (bytes.length + blockSize - 1) / blockSize;
+            if (count > maxBlocks) {
+                // too big to be cached
+                return;
+            }
+            // evict least recently used entries
+            for (Iterator<Snapshot> it = map.values().iterator(); maxBlocks - usedBlocks < count && it.hasNext();) {
+                Snapshot eldest = it.next();
+                it.remove();
+                release(eldest);
+                statsCounter.recordEviction();
+            }
+            int[] blocks = new int[count];
+            for (int i = 0, pos = 0; i < count; i++, pos += blockSize) {
+                int block = allocateBlock();
+                blocks[i] = block;
+                ByteBuffer buffer = slab(block).duplicate();
+                buffer.position(offset(block));
+                buffer.put(bytes, pos, Math.min(blockSize, bytes.length - pos));
+            }
+            map.put(key, new Snapshot(blocks, bytes.length, System.currentTimeMillis()));
+        }
+
+        protected synchronized void remove(Object key) {
+            Snapshot old = map.remove(key);
+            if (old != null) {
+                release(old);
+            }
+        }
+
+        protected synchronized void clear() {
+            map.clear();
+            // all the blocks are available again, the slabs are kept
+            freeBlock = NO_BLOCK;
+            nextBlock = 0;
+            usedBlocks = 0;
+        }
+
+        protected synchronized int size() {
+            return map.size();
+        }
+
+        protected synchronized long bytes() {
+            return (long) usedBlocks * blockSize;
+        }
+
+        protected synchronized long allocatedBytes() {
+            long bytes = 0;
+            for (ByteBuffer slab : slabs) {
+                if (slab != null) {
+                    bytes += slab.capacity();
+                }
+            }
+            return bytes;
+        }
+    }
+
+    protected Segment segment(Object key) {
+        return segments[Math.floorMod(key.hashCode(), segments.length)];
+    }
+
+    protected boolean isExpired(Snapshot snapshot) {
+        return ttlMillis > 0 && System.currentTimeMillis() - snapshot.written > ttlMillis;
+    }
+
+    @Override
+    public State getIfPresent(Object key) {
+        byte[] bytes = segment(key).get((String) key);
+        if (bytes == null) {
+            statsCounter.recordMisses(1);
+            return null;
+        }
+        statsCounter.recordHits(1);
+        return StateBinaryCodec.decode(bytes);
+    }
+
+    @Override
+    public State get(String key, Callable<? extends State> loader) throws ExecutionException {
+        State state = getIfPresent(key);
+        if (state == null) {
+            try {
+                state = loader.call();
+            } catch (Exception e) { // NOSONAR
+                throw new ExecutionException(e);
+            }
+            if (state == null) {
+                // missing document, not cached
+                return null;
+            }
+            put(key, state);
+        }
+        return state;
+    }
+
+    @Override
+    public void put(String key, State state) {
+        segment(key).put(key, StateBinaryCodec.encode(state));
+    }
+
+    @Override
+    public void invalidate(Object key) {
+        segment(key).remove(key);
+    }
+
+    @Override
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Gets the total size in bytes of the blocks holding the cached snapshots.
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the total size in bytes of the direct memory allocated by the cache.
+     */
+    public long getAllocatedBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.allocatedBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+}
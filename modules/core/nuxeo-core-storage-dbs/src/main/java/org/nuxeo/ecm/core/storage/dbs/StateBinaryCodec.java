@@ -0,0 +1,250 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.storage.State;
+
+/**
+ * Compact binary encoding of a {@link State}.
+ * <p>
+ * The encoding uses a one-byte tag per value, and knows the value types found in states read from the database
+ * (strings, numbers, booleans, calendars, sub-states, lists and arrays). Other values fall back to Java serialization.
+ *
+ * @since 11.5
+ */
+public class StateBinaryCodec {
+
+    protected static final byte NULL = 0;
+
+    protected static final byte STRING = 1;
+
+    protected static final byte LONG = 2;
+
+    protected static final byte DOUBLE = 3;
+
+    protected static final byte TRUE = 4;
+
+    protected static final byte FALSE = 5;
+
+    protected static final byte CALENDAR = 6;
+
+    protected static final byte STATE = 7;
+
+    protected static final byte LIST = 8;
+
+    protected static final byte ARRAY = 9;
+
+    protected static final byte INTEGER = 10;
+
+    protected static final byte SERIALIZED = 11;
+
+    // array component types, the index in this array is the encoded component type
+    protected static final Class<?>[] COMPONENT_TYPES = { Object.class, String.class, Long.class, Double.class,
+            Boolean.class, Calendar.class, Integer.class, Serializable.class };
+
+    private StateBinaryCodec() {
+        // utility class
+    }
+
+    public static byte[] encode(State state) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(baos)) {
+            writeState(out, state);
+        } catch (IOException e) {
+            throw new NuxeoException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    public static State decode(byte[] bytes) {
+        return decode(new ByteArrayInputStream(bytes));
+    }
+
+    protected static State decode(InputStream in) {
+        try (DataInputStream din = new DataInputStream(in)) {
+            return readState(din);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new NuxeoException(e);
+        }
+    }
+
+    protected static void writeState(DataOutput out, State state) throws IOException {
+        out.writeInt(state.size());
+        for (Entry<String, Serializable> en : state.entrySet()) {
+            writeString(out, en.getKey());
+            writeValue(out, en.getValue());
+        }
+    }
+
+    protected static State readState(DataInput in) throws IOException, ClassNotFoundException {
+        int size = in.readInt();
+        State state = new State(size);
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            state.put(key, readValue(in));
+        }
+        return state;
+    }
+
+    protected static void writeString(DataOutput out, String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    protected static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    protected static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(((Boolean) value).booleanValue() ? TRUE : FALSE);
+        } else if (value.getClass() == GregorianCalendar.class) {
+            Calendar cal = (Calendar) value;
+            out.writeByte(CALENDAR);
+            out.writeLong(cal.getTimeInMillis());
+            writeString(out, cal.getTimeZone().getID());
+        } else if (value.getClass() == State.class) {
+            out.writeByte(STATE);
+            writeState(out, (State) value);
+        } else if (value instanceof ArrayList) {
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object v : list) {
+                writeValue(out, v);
+            }
+        } else if (value instanceof Object[] && getComponentType(value.getClass().getComponentType()) >= 0) {
+            Object[] array = (Object[]) value;
+            out.writeByte(ARRAY);
+            out.writeByte(getComponentType(value.getClass().getComponentType()));
+            out.writeInt(array.length);
+            for (Object v : array) {
+                writeValue(out, v);
+            }
+        } else {
+            out.writeByte(SERIALIZED);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+                oos.writeObject(value);
+            }
+            byte[] bytes = baos.toByteArray();
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    protected static Serializable readValue(DataInput in) throws IOException, ClassNotFoundException {
+        byte tag = in.readByte();
+        switch (tag) {
+        case NULL:
+            return null;
+        case STRING:
+            return readString(in);
+        case LONG:
+            return Long.valueOf(in.readLong());
+        case INTEGER:
+            return Integer.valueOf(in.readInt());
+        case DOUBLE:
+            return Double.valueOf(in.readDouble());
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case CALENDAR:
+            long millis = in.readLong();
+            Calendar cal = new GregorianCalendar(TimeZone.getTimeZone(readString(in)));
+            cal.setTimeInMillis(millis);
+            return cal;
+        case STATE:
+            return readState(in);
+        case LIST:
+            int size = in.readInt();
+            ArrayList<Serializable> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(readValue(in));
+            }
+            return list;
+        case ARRAY:
+            Class<?> componentType = COMPONENT_TYPES[in.readByte()];
+            int length = in.readInt();
+            Object[] array = (Object[]) Array.newInstance(componentType, length);
+            for (int i = 0; i < length; i++) {
+                array[i] = readValue(in);
+            }
+            return array;
+        case SERIALIZED:
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return (Serializable) ois.readObject();
+            }
+        default:
+            throw new IOException("Unknown tag: " + tag);
+        }
+    }
+
+    protected static int getComponentType(Class<?> klass) {
+        for (int i = 0; i < COMPONENT_TYPES.length; i++) {
+            if (COMPONENT_TYPES[i] == klass) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -120,6 +120,21 @@ public class TestDBSCachingRepository {
         assertTrue(cachedStates.contains(dbStates.get(0)));
     }
 
+    @Test
+    public void testReadStatesAllCached() {
+        String id1 = "ID1";
+        String id2 = "ID2";
+
+        // First read - call sub repository
+        connection.readStates(Arrays.asList(id1, id2));
+        verify(subConnection, times(1)).readStates(anyListOf(String.class));
+
+        // Second read - everything in cache, no call to sub repository
+        List<State> cachedStates = connection.readStates(Arrays.asList(id2, id1));
+        verify(subConnection, times(1)).readStates(anyListOf(String.class));
+        assertEquals(2, cachedStates.size());
+    }
+
     @Test
     public void testUpdateState() {
         String id = "ID";
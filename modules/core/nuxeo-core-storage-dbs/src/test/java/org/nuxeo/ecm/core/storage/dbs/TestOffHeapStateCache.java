@@ -0,0 +1,221 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.dbs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.State;
+
+public class TestOffHeapStateCache {
+
+    protected static State newState(String id) {
+        State state = new State();
+        state.put("ecm:id", id);
+        state.put("ecm:isProxy", Boolean.FALSE);
+        state.put("ecm:minorVersion", Long.valueOf(3));
+        state.put("dc:title", "title of " + id);
+        state.put("dc:subjects", new String[] { "foo", "bar" });
+        state.put("dc:created", new GregorianCalendar(2021, 2, 15, 12, 30));
+        state.put("ecm:racl", new String[] { "Administrator", "members" });
+        State sub = new State();
+        sub.put("name", "file.txt");
+        sub.put("length", Long.valueOf(123));
+        ArrayList<Serializable> list = new ArrayList<>();
+        list.add(sub);
+        state.put("files:files", list);
+        return state;
+    }
+
+    @Test
+    public void testCodecRoundTrip() {
+        State state = newState("id1");
+        state.put("my:double", Double.valueOf(1.5));
+        state.put("my:int", Integer.valueOf(7));
+        state.put("my:strings", new String[] { "a", null });
+        state.put("my:decimal", new BigDecimal("12.34")); // serialized fallback
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("Europe/Paris"));
+        state.put("my:date", cal);
+
+        State decoded = StateBinaryCodec.decode(StateBinaryCodec.encode(state));
+        assertEquals(state.size(), decoded.size());
+        assertEquals("id1", decoded.get("ecm:id"));
+        assertEquals(Boolean.FALSE, decoded.get("ecm:isProxy"));
+        assertEquals(Long.valueOf(3), decoded.get("ecm:minorVersion"));
+        assertEquals(Double.valueOf(1.5), decoded.get("my:double"));
+        assertEquals(Integer.valueOf(7), decoded.get("my:int"));
+        assertArrayEquals(new String[] { "a", null }, (String[]) decoded.get("my:strings"));
+        assertEquals(new BigDecimal("12.34"), decoded.get("my:decimal"));
+        assertArrayEquals(new String[] { "foo", "bar" }, (String[]) decoded.get("dc:subjects"));
+        Calendar decodedCal = (Calendar) decoded.get("my:date");
+        assertEquals(cal.getTimeInMillis(), decodedCal.getTimeInMillis());
+        assertEquals("Europe/Paris", decodedCal.getTimeZone().getID());
+        @SuppressWarnings("unchecked")
+        ArrayList<Serializable> files = (ArrayList<Serializable>) decoded.get("files:files");
+        assertEquals(1, files.size());
+        State sub = (State) files.get(0);
+        assertEquals("file.txt", sub.get("name"));
+        assertEquals(Long.valueOf(123), sub.get("length"));
+    }
+
+    @Test
+    public void testGetPutInvalidate() throws Exception {
+        OffHeapStateCache cache = new OffHeapStateCache(1024 * 1024, 0, 4);
+        assertNull(cache.getIfPresent("id1"));
+        cache.put("id1", newState("id1"));
+        State state = cache.getIfPresent("id1");
+        assertNotNull(state);
+        assertEquals("title of id1", state.get("dc:title"));
+        // a new instance is returned for each read
+        assertNotSame(state, cache.getIfPresent("id1"));
+        assertEquals(1, cache.size());
+        assertTrue(cache.getBytes() > 0);
+
+        // loader is only called on miss
+        State loaded = cache.get("id2", () -> newState("id2"));
+        assertEquals("id2", loaded.get("ecm:id"));
+        assertEquals("id2", cache.get("id2", () -> {
+            throw new AssertionError("should not be called");
+        }).get("ecm:id"));
+
+        cache.invalidate("id1");
+        assertNull(cache.getIfPresent("id1"));
+        assertEquals(1, cache.size());
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+        assertEquals(3, cache.stats().hitCount());
+    }
+
+    @Test
+    public void testLoaderReturningNull() throws Exception {
+        OffHeapStateCache cache = new OffHeapStateCache(1024 * 1024, 0, 4);
+        // missing document, nothing is cached
+        assertNull(cache.get("id1", () -> null));
+        assertNull(cache.getIfPresent("id1"));
+        assertEquals(0, cache.size());
+        assertEquals("id1", cache.get("id1", () -> newState("id1")).get("ecm:id"));
+    }
+
+    protected static long getStateBytes(String id, int blockSize) {
+        int length = StateBinaryCodec.encode(newState(id)).length;
+        return (long) (length + blockSize - 1) / blockSize * blockSize;
+    }
+
+    @Test
+    public void testEvictionBySize() {
+        int blockSize = OffHeapStateCache.DEFAULT_BLOCK_SIZE;
+        long stateBytes = getStateBytes("id00", blockSize);
+        // room for 10 states in a single segment
+        OffHeapStateCache cache = new OffHeapStateCache(10L * stateBytes, 0, 1);
+        for (int i = 0; i < 20; i++) {
+            cache.put(String.format("id%02d", i), newState(String.format("id%02d", i)));
+            // keep id00 as the most recently used
+            assertNotNull(cache.getIfPresent("id00"));
+        }
+        assertEquals(10, cache.size());
+        assertEquals(10L * stateBytes, cache.getBytes());
+        assertNotNull(cache.getIfPresent("id00"));
+        assertNull(cache.getIfPresent("id01"));
+        assertNotNull(cache.getIfPresent("id19"));
+        assertEquals(10, cache.stats().evictionCount());
+    }
+
+    @Test
+    public void testEvictionUnderMemoryBound() {
+        // small blocks so that a snapshot spans many of them
+        int blockSize = 16;
+        long maxBytes = 64 * 1024;
+        OffHeapStateCache cache = new OffHeapStateCache(maxBytes, 0, 4, blockSize);
+        long stateBytes = getStateBytes("id00000", blockSize);
+        for (int i = 0; i < 20_000; i++) {
+            String id = String.format("id%05d", i);
+            cache.put(id, newState(id));
+            if (i % 3 == 0) {
+                cache.invalidate(String.format("id%05d", i / 2));
+            }
+            assertTrue(cache.getBytes() <= maxBytes);
+        }
+        // the direct memory is allocated once, within the bound
+        long allocated = cache.getAllocatedBytes();
+        assertTrue(String.valueOf(allocated), allocated <= maxBytes);
+        assertTrue(cache.size() >= maxBytes / 4 / stateBytes * 4 - 4);
+        assertTrue(cache.stats().evictionCount() > 0);
+        // reused blocks hold the right snapshots
+        for (int i = 19_000; i < 20_000; i++) {
+            String id = String.format("id%05d", i);
+            State state = cache.getIfPresent(id);
+            if (state != null) {
+                assertEquals(id, state.get("ecm:id"));
+                assertEquals("title of " + id, state.get("dc:title"));
+            }
+        }
+        assertNotNull(cache.getIfPresent("id19999"));
+        assertEquals(allocated, cache.getAllocatedBytes());
+    }
+
+    @Test
+    public void testInvalidationReleasesBlocks() {
+        int blockSize = OffHeapStateCache.DEFAULT_BLOCK_SIZE;
+        long stateBytes = getStateBytes("id00", blockSize);
+        OffHeapStateCache cache = new OffHeapStateCache(10L * stateBytes, 0, 1);
+        for (int i = 0; i < 10; i++) {
+            cache.put(String.format("id%02d", i), newState(String.format("id%02d", i)));
+        }
+        assertEquals(10L * stateBytes, cache.getBytes());
+        long allocated = cache.getAllocatedBytes();
+
+        // the blocks of an invalidated state are reused without eviction
+        cache.invalidate("id03");
+        assertEquals(9L * stateBytes, cache.getBytes());
+        cache.put("id10", newState("id10"));
+        assertEquals(10, cache.size());
+        assertEquals(0, cache.stats().evictionCount());
+        assertEquals("id10", cache.getIfPresent("id10").get("ecm:id"));
+        assertEquals("id02", cache.getIfPresent("id02").get("ecm:id"));
+
+        // replacing a state releases the blocks of the previous one
+        State state = newState("id04");
+        state.put("dc:title", "new title");
+        cache.put("id04", state);
+        assertEquals(10, cache.size());
+        assertEquals("new title", cache.getIfPresent("id04").get("dc:title"));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.getBytes());
+        for (int i = 0; i < 10; i++) {
+            cache.put(String.format("id%02d", i), newState(String.format("id%02d", i)));
+        }
+        assertEquals(10, cache.size());
+        assertEquals(allocated, cache.getAllocatedBytes());
+    }
+
+}
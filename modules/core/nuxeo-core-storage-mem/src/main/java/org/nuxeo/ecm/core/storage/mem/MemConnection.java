@@ -21,6 +21,7 @@ package org.nuxeo.ecm.core.storage.mem;
 import static org.nuxeo.ecm.core.query.sql.NXQL.ECM_UUID;
 import static org.nuxeo.ecm.core.storage.State.NOP;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ANCESTOR_IDS;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_CHANGE_TOKEN;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_LOCK_CREATED;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_LOCK_OWNER;
@@ -33,6 +34,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -60,15 +63,18 @@ import org.nuxeo.ecm.core.storage.StateHelper;
 import org.nuxeo.ecm.core.storage.dbs.DBSConnection;
 import org.nuxeo.ecm.core.storage.dbs.DBSConnectionBase;
 import org.nuxeo.ecm.core.storage.dbs.DBSExpressionEvaluator;
+import org.nuxeo.ecm.core.storage.dbs.DBSExpressionEvaluator.IndexLookup;
 import org.nuxeo.ecm.core.storage.dbs.DBSSession.OrderByComparator;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
 
 /**
  * In-memory implementation of a {@link DBSConnection}.
+ * <p>
+ * Lookups and queries use the repository secondary indexes, when available, to avoid full scans.
  *
  * @since 11.1 (introduced in 5.9.4 as MemRepository)
  */
-public class MemConnection extends DBSConnectionBase {
+public class MemConnection extends DBSConnectionBase implements IndexLookup {
 
     private static final Log log = LogFactory.getLog(MemRepository.class);
 
@@ -77,9 +83,13 @@ public class MemConnection extends DBSConnectionBase {
     // the global state, from the repository (thread-safe map)
     protected Map<String, State> states;
 
+    // the secondary indexes, from the repository
+    protected Map<String, MemIndex> indexes;
+
     public MemConnection(MemRepository repository) {
         super(repository);
         states = repository.states;
+        indexes = repository.indexes;
     }
 
     @Override
@@ -158,9 +168,38 @@ public class MemConnection extends DBSConnectionBase {
         if (states.containsKey(id)) {
             throw new NuxeoException("Already exists: " + id);
         }
+        insertState(id, state);
+    }
+
+    /**
+     * Creates documents in a single pass, after checking that none of them already exists.
+     *
+     * @since 11.5
+     */
+    @Override
+    public void createStates(List<State> states) {
+        if (log.isTraceEnabled()) {
+            log.trace("Mem: CREATE " + states.size() + " states");
+        }
+        Set<String> ids = new HashSet<>();
+        for (State state : states) {
+            String id = (String) state.get(KEY_ID);
+            if (this.states.containsKey(id) || !ids.add(id)) {
+                throw new NuxeoException("Already exists: " + id);
+            }
+        }
+        for (State state : states) {
+            insertState((String) state.get(KEY_ID), state);
+        }
+    }
+
+    protected void insertState(String id, State state) {
         state = StateHelper.deepCopy(state, true); // thread-safe
         StateHelper.resetDeltas(state);
         states.put(id, state);
+        for (MemIndex index : indexes.values()) {
+            index.add(id, index.getValues(state));
+        }
     }
 
     @Override
@@ -173,6 +212,15 @@ public class MemConnection extends DBSConnectionBase {
             throw new ConcurrentUpdateException("Missing: " + id);
         }
         synchronized (state) {
+            // old values of the indexes impacted by the update
+            Map<MemIndex, Collection<Object>> oldIndexValues = new HashMap<>();
+            for (MemIndex index : indexes.values()) {
+                String key = index.getKey();
+                // don't call changeTokenUpdater.getUpdates() here, it increments the token
+                if (diff.containsKey(key) || changeTokenUpdater != null && KEY_CHANGE_TOKEN.equals(key)) {
+                    oldIndexValues.put(index, index.getValues(state));
+                }
+            }
             // synchronization needed for atomic change token
             if (changeTokenUpdater != null) {
                 for (Entry<String, Serializable> en : changeTokenUpdater.getConditions().entrySet()) {
@@ -185,6 +233,10 @@ public class MemConnection extends DBSConnectionBase {
                 }
             }
             applyDiff(state, diff);
+            for (Entry<MemIndex, Collection<Object>> en : oldIndexValues.entrySet()) {
+                MemIndex index = en.getKey();
+                index.update(id, en.getValue(), index.getValues(state));
+            }
         }
     }
 
@@ -194,16 +246,72 @@ public class MemConnection extends DBSConnectionBase {
             log.trace("Mem: REMOVE " + ids);
         }
         for (String id : ids) {
-            if (states.remove(id) == null) {
+            State state = states.remove(id);
+            if (state == null) {
                 log.debug("Missing on remove: " + id);
+                continue;
+            }
+            for (MemIndex index : indexes.values()) {
+                index.remove(id, index.getValues(state));
             }
         }
     }
 
+    /**
+     * Gets the states that may have the given value for the key, using an index if available.
+     *
+     * @since 11.5
+     */
+    protected Collection<State> getStates(String key, Object value) {
+        MemIndex index = indexes.get(key);
+        return getStates(index == null ? null : index.getIds(value));
+    }
+
+    /**
+     * Gets the states for the given ids, or all the states if the ids are {@code null}.
+     *
+     * @since 11.5
+     */
+    protected Collection<State> getStates(Set<String> ids) {
+        if (ids == null) {
+            return states.values();
+        }
+        List<State> list = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            State state = states.get(id);
+            if (state != null) {
+                list.add(state);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public boolean isIndexed(String key) {
+        return indexes.containsKey(key);
+    }
+
+    @Override
+    public Set<String> getIds(String key, Object value) {
+        MemIndex index = indexes.get(key);
+        return index == null ? null : index.getIds(value);
+    }
+
+    @Override
+    public Set<String> getIdsInRange(String key, Object min, boolean minInclusive, Object max, boolean maxInclusive) {
+        MemIndex index = indexes.get(key);
+        return index == null ? null : index.getIdsInRange(min, minInclusive, max, maxInclusive);
+    }
+
+    @Override
+    public Set<String> getIdsStartingWith(String key, String prefix) {
+        MemIndex index = indexes.get(key);
+        return index == null ? null : index.getIdsStartingWith(prefix);
+    }
+
     @Override
     public State readChildState(String parentId, String name, Set<String> ignored) {
-        // TODO optimize by maintaining a parent/child index
-        for (State state : states.values()) {
+        for (State state : getStates(KEY_PARENT_ID, parentId)) {
             if (ignored.contains(state.get(KEY_ID))) {
                 continue;
             }
@@ -229,7 +337,7 @@ public class MemConnection extends DBSConnectionBase {
             log.trace("Mem: QUERY " + key + " = " + value);
         }
         List<State> list = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : getStates(key, value)) {
             String id = (String) state.get(KEY_ID);
             if (ignored.contains(id)) {
                 continue;
@@ -250,8 +358,14 @@ public class MemConnection extends DBSConnectionBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: QUERY " + key1 + " = " + value1 + " AND " + key2 + " = " + value2);
         }
+        Collection<State> candidates;
+        if (indexes.containsKey(key1) || !indexes.containsKey(key2)) {
+            candidates = getStates(key1, value1);
+        } else {
+            candidates = getStates(key2, value2);
+        }
         List<State> list = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : candidates) {
             String id = (String) state.get(KEY_ID);
             if (ignored.contains(id)) {
                 continue;
@@ -277,7 +391,7 @@ public class MemConnection extends DBSConnectionBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: QUERY " + KEY_ANCESTOR_IDS + " = " + rootId);
         }
-        Stream<State> stream = states.values() //
+        Stream<State> stream = getStates(KEY_ANCESTOR_IDS, rootId) //
                                      .stream()
                                      .filter(state -> hasAncestor(state, rootId));
         if (limit != 0) {
@@ -296,7 +410,7 @@ public class MemConnection extends DBSConnectionBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: QUERY " + key + " = " + value);
         }
-        for (State state : states.values()) {
+        for (State state : getStates(key, value)) {
             String id = (String) state.get(KEY_ID);
             if (ignored.contains(id)) {
                 continue;
@@ -322,7 +436,7 @@ public class MemConnection extends DBSConnectionBase {
         }
         evaluator.parse();
         List<Map<String, Serializable>> projections = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : getStates(evaluator.getCandidateIds(this))) {
             List<Map<String, Serializable>> matches = evaluator.matches(state);
             if (!matches.isEmpty()) {
                 if (distinctDocuments) {
@@ -373,7 +487,7 @@ public class MemConnection extends DBSConnectionBase {
         }
         evaluator.parse();
         List<String> ids = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : getStates(evaluator.getCandidateIds(this))) {
             List<Map<String, Serializable>> matches = evaluator.matches(state);
             if (!matches.isEmpty()) {
                 String id = matches.get(0).get(ECM_UUID).toString();
@@ -0,0 +1,229 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import java.io.Serializable;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.nuxeo.ecm.core.storage.State;
+
+/**
+ * Secondary index of the in-memory repository, mapping the values of a given key to the ids of the documents having
+ * this value.
+ * <p>
+ * Array and list values are indexed element by element. Complex values are not indexed.
+ * <p>
+ * The index is sorted, so that it can answer equality, range and prefix lookups. Values of different kinds (numbers,
+ * strings, dates, ...) are ordered by kind first.
+ *
+ * @since 11.5
+ */
+public class MemIndex {
+
+    protected static final Comparator<Object> VALUE_COMPARATOR = MemIndex::compareValues;
+
+    protected final String key;
+
+    // value -> ids, sets are concurrent to allow reads without locking
+    protected final NavigableMap<Object, Set<String>> index = new ConcurrentSkipListMap<>(VALUE_COMPARATOR);
+
+    public MemIndex(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Gets the indexable values of a state for this index' key.
+     */
+    public Collection<Object> getValues(State state) {
+        return getValues(state.get(key));
+    }
+
+    protected static Collection<Object> getValues(Serializable value) {
+        if (value == null) {
+            return Collections.emptySet();
+        }
+        Set<Object> values = new HashSet<>();
+        if (value instanceof Object[]) {
+            for (Object v : (Object[]) value) {
+                addValue(values, v);
+            }
+        } else if (value instanceof List) {
+            for (Object v : (List<?>) value) {
+                addValue(values, v);
+            }
+        } else {
+            addValue(values, value);
+        }
+        return values;
+    }
+
+    protected static void addValue(Set<Object> values, Object value) {
+        if (value == null || value instanceof State || value instanceof List || value instanceof Object[]) {
+            return;
+        }
+        values.add(value);
+    }
+
+    public synchronized void add(String id, Collection<Object> values) {
+        for (Object value : values) {
+            index.computeIfAbsent(value, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    public synchronized void remove(String id, Collection<Object> values) {
+        for (Object value : values) {
+            Set<String> ids = index.get(value);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    index.remove(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the index for a document whose values changed.
+     */
+    public synchronized void update(String id, Collection<Object> oldValues, Collection<Object> newValues) {
+        if (oldValues.equals(newValues)) {
+            return;
+        }
+        remove(id, oldValues);
+        add(id, newValues);
+    }
+
+    public synchronized void clear() {
+        index.clear();
+    }
+
+    /**
+     * Gets the ids of the documents having the given value.
+     */
+    public Set<String> getIds(Object value) {
+        Set<String> ids = index.get(value);
+        return ids == null ? Collections.emptySet() : new HashSet<>(ids);
+    }
+
+    /**
+     * Gets the ids of the documents having a value in the given range, restricted to values of the same kind as the
+     * bounds. A {@code null} bound means unbounded.
+     */
+    public Set<String> getIdsInRange(Object min, boolean minInclusive, Object max, boolean maxInclusive) {
+        NavigableMap<Object, Set<String>> map;
+        if (min != null && max != null) {
+            if (compareValues(min, max) > 0) {
+                return Collections.emptySet();
+            }
+            map = index.subMap(min, minInclusive, max, maxInclusive);
+        } else if (min != null) {
+            map = index.tailMap(min, minInclusive);
+        } else if (max != null) {
+            map = index.headMap(max, maxInclusive);
+        } else {
+            map = index;
+        }
+        int kind = min != null ? kind(min) : max != null ? kind(max) : -1;
+        Set<String> ids = new HashSet<>();
+        for (Entry<Object, Set<String>> en : map.entrySet()) {
+            if (kind != -1 && kind(en.getKey()) != kind) {
+                continue;
+            }
+            ids.addAll(en.getValue());
+        }
+        return ids;
+    }
+
+    /**
+     * Gets the ids of the documents having a string value starting with the given prefix.
+     */
+    public Set<String> getIdsStartingWith(String prefix) {
+        return getIdsInRange(prefix, true, prefix + Character.MAX_VALUE, true);
+    }
+
+    /**
+     * Gets the number of distinct indexed values.
+     */
+    public int size() {
+        return index.size();
+    }
+
+    protected static int kind(Object value) {
+        if (value instanceof Boolean) {
+            return 0;
+        } else if (value instanceof Number) {
+            return 1;
+        } else if (value instanceof String) {
+            return 2;
+        } else if (value instanceof Calendar) {
+            return 3;
+        } else {
+            return 4;
+        }
+    }
+
+    /**
+     * Compares values, ordering by kind first, then by natural order. Numbers of different classes are compared by
+     * numeric value, and calendars by time in milliseconds, consistently with query evaluation.
+     */
+    protected static int compareValues(Object v1, Object v2) {
+        int kind1 = kind(v1);
+        int kind2 = kind(v2);
+        if (kind1 != kind2) {
+            return Integer.compare(kind1, kind2);
+        }
+        switch (kind1) {
+        case 0:
+            return ((Boolean) v1).compareTo((Boolean) v2);
+        case 1:
+            Number n1 = (Number) v1;
+            Number n2 = (Number) v2;
+            if (isIntegral(n1) && isIntegral(n2)) {
+                return Long.compare(n1.longValue(), n2.longValue());
+            }
+            return Double.compare(n1.doubleValue(), n2.doubleValue());
+        case 2:
+            return ((String) v1).compareTo((String) v2);
+        case 3:
+            return Long.compare(((Calendar) v1).getTimeInMillis(), ((Calendar) v2).getTimeInMillis());
+        default:
+            int cmp = v1.getClass().getName().compareTo(v2.getClass().getName());
+            return cmp != 0 ? cmp : v1.toString().compareTo(v2.toString());
+        }
+    }
+
+    protected static boolean isIntegral(Number n) {
+        return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+    }
+
+}
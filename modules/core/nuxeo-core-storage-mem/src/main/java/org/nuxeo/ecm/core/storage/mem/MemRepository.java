@@ -18,14 +18,20 @@
  */
 package org.nuxeo.ecm.core.storage.mem;
 
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ANCESTOR_IDS;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_BLOB_KEYS;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_LOCK_CREATED;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_LOCK_OWNER;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_NAME;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PARENT_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PRIMARY_TYPE;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_READ_ACL;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -49,6 +55,8 @@ import org.nuxeo.runtime.api.Framework;
  * <p>
  * A document object is a JSON-like document stored as a Map recursively containing the data, see {@link DBSDocument}
  * for the description of the document.
+ * <p>
+ * Secondary indexes are maintained on the main system keys and on configured schema fields, see {@link MemIndex}.
  *
  * @since 5.9.4
  */
@@ -64,8 +72,30 @@ public class MemRepository extends DBSRepositoryBase {
      */
     protected Map<String, State> states;
 
+    /**
+     * Keys always indexed.
+     *
+     * @since 11.5
+     */
+    public static final List<String> DEFAULT_INDEXES = Arrays.asList(KEY_PARENT_ID, KEY_ANCESTOR_IDS,
+            KEY_PRIMARY_TYPE, KEY_NAME, KEY_READ_ACL);
+
+    /**
+     * The secondary indexes, a map of key -&gt; index.
+     *
+     * @since 11.5
+     */
+    protected Map<String, MemIndex> indexes;
+
     public MemRepository(MemRepositoryDescriptor descriptor) {
         super(descriptor.name, descriptor);
+        indexes = new LinkedHashMap<>();
+        for (String key : DEFAULT_INDEXES) {
+            indexes.put(key, new MemIndex(key));
+        }
+        for (String key : descriptor.indexes) {
+            indexes.computeIfAbsent(key, MemIndex::new);
+        }
         initRepository();
     }
 
@@ -78,10 +108,12 @@ public class MemRepository extends DBSRepositoryBase {
     public void shutdown() {
         super.shutdown();
         states = null;
+        indexes.values().forEach(MemIndex::clear);
     }
 
     protected void initRepository() {
         states = new ConcurrentHashMap<>();
+        indexes.values().forEach(MemIndex::clear);
         try (MemConnection connection = getConnection()) {
             connection.initRepository();
         }
@@ -18,6 +18,10 @@
  */
 package org.nuxeo.ecm.core.storage.mem;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.nuxeo.common.xmap.annotation.XNodeList;
 import org.nuxeo.common.xmap.annotation.XObject;
 import org.nuxeo.common.xmap.registry.XRegistry;
 import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryDescriptor;
@@ -31,4 +35,24 @@ import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryDescriptor;
 @XRegistry
 public class MemRepositoryDescriptor extends DBSRepositoryDescriptor {
 
+    /**
+     * Additional keys (prefixed schema fields) to maintain secondary indexes on.
+     *
+     * @since 11.5
+     */
+    @XNodeList(value = "indexes/index", type = ArrayList.class, componentType = String.class)
+    public List<String> indexes = new ArrayList<>();
+
+    @Override
+    public void merge(DBSRepositoryDescriptor other) {
+        super.merge(other);
+        if (other instanceof MemRepositoryDescriptor) {
+            for (String index : ((MemRepositoryDescriptor) other).indexes) {
+                if (!indexes.contains(index)) {
+                    indexes.add(index);
+                }
+            }
+        }
+    }
+
 }
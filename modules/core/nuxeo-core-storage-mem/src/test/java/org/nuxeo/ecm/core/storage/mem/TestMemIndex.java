@@ -0,0 +1,99 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.State;
+
+public class TestMemIndex {
+
+    private static Set<String> set(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    private static void index(MemIndex index, String id, Object value) {
+        State state = new State();
+        state.put("key", (Serializable) value);
+        index.add(id, index.getValues(state));
+    }
+
+    @Test
+    public void testEquality() {
+        MemIndex index = new MemIndex("key");
+        index(index, "id1", "foo");
+        index(index, "id2", "bar");
+        index(index, "id3", "foo");
+        index(index, "id4", new String[] { "foo", "gee" });
+        assertEquals(set("id1", "id3", "id4"), index.getIds("foo"));
+        assertEquals(set("id4"), index.getIds("gee"));
+        assertEquals(Collections.emptySet(), index.getIds("nothing"));
+
+        index.remove("id3", Collections.singleton("foo"));
+        assertEquals(set("id1", "id4"), index.getIds("foo"));
+        index.update("id1", Collections.singleton("foo"), Collections.singleton("bar"));
+        assertEquals(set("id4"), index.getIds("foo"));
+        assertEquals(set("id1", "id2"), index.getIds("bar"));
+    }
+
+    @Test
+    public void testNumbers() {
+        MemIndex index = new MemIndex("key");
+        index(index, "id1", Long.valueOf(1));
+        index(index, "id2", Long.valueOf(5));
+        index(index, "id3", Double.valueOf(7.5));
+        index(index, "id4", "5");
+        assertEquals(set("id2"), index.getIds(Double.valueOf(5)));
+        assertEquals(set("id2", "id3"), index.getIdsInRange(Long.valueOf(5), true, null, false));
+        assertEquals(set("id3"), index.getIdsInRange(Long.valueOf(5), false, null, false));
+        assertEquals(set("id1"), index.getIdsInRange(null, false, Long.valueOf(5), false));
+        assertEquals(set("id1", "id2"), index.getIdsInRange(Long.valueOf(1), true, Long.valueOf(5), true));
+        assertTrue(index.getIdsInRange(Long.valueOf(5), true, Long.valueOf(1), true).isEmpty());
+    }
+
+    @Test
+    public void testDates() {
+        MemIndex index = new MemIndex("key");
+        index(index, "id1", new GregorianCalendar(2020, 0, 1));
+        index(index, "id2", new GregorianCalendar(2021, 0, 1));
+        assertEquals(set("id2"), index.getIdsInRange(new GregorianCalendar(2020, 6, 1), true, null, false));
+        assertEquals(set("id1"), index.getIds(new GregorianCalendar(2020, 0, 1)));
+    }
+
+    @Test
+    public void testStartsWith() {
+        MemIndex index = new MemIndex("key");
+        index(index, "id1", "/foo");
+        index(index, "id2", "/foo/bar");
+        index(index, "id3", "/foobar");
+        index(index, "id4", "/gee");
+        assertEquals(set("id1", "id2", "id3"), index.getIdsStartingWith("/foo"));
+        assertEquals(set("id2"), index.getIdsStartingWith("/foo/"));
+    }
+
+}
@@ -102,19 +102,24 @@ import com.mongodb.MongoQueryException;
 import com.mongodb.MongoSocketReadTimeoutException;
 import com.mongodb.MongoWriteException;
 import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.ClientSession;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.CountOptions;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
 import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 
@@ -443,12 +448,19 @@ public class MongoDBConnection extends DBSConnectionBase {
 
     @Override
     public void createStates(List<State> states) {
+        int batchSize = mongoDBRepository.descriptor.getBulkWriteBatchSize();
+        for (int i = 0; i < states.size(); i += batchSize) {
+            createStatesBatch(states.subList(i, Math.min(i + batchSize, states.size())));
+        }
+    }
+
+    protected void createStatesBatch(List<State> states) {
         List<Document> docs = states.stream().map(converter::stateToBson).collect(Collectors.toList());
         log.trace("MongoDB: CREATE [{}]: {}",
                 () -> docs.stream().map(doc -> doc.get(idKey).toString()).collect(Collectors.joining(", ")),
                 () -> docs);
         try {
-            insertMany(docs);
+            insertMany(docs, new InsertManyOptions().ordered(mongoDBRepository.descriptor.isBulkWriteOrdered()));
         } catch (MongoBulkWriteException mbwe) {
             List<String> duplicates = mbwe.getWriteErrors()
                                           .stream()
@@ -488,25 +500,7 @@ public class MongoDBConnection extends DBSConnectionBase {
     public void updateState(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater) {
         List<Document> updates = converter.diffToBson(diff);
         for (Document update : updates) {
-            Document filter = new Document();
-            converter.putToBson(filter, KEY_ID, id);
-            if (changeTokenUpdater == null) {
-                log.trace("MongoDB: UPDATE {}: {}", id, update);
-            } else {
-                // assume bson is identical to dbs internals
-                // condition works even if value is null
-                Map<String, Serializable> conditions = changeTokenUpdater.getConditions();
-                Map<String, Serializable> tokenUpdates = changeTokenUpdater.getUpdates();
-                if (update.containsKey(MONGODB_SET)) {
-                    ((Document) update.get(MONGODB_SET)).putAll(tokenUpdates);
-                } else {
-                    Document set = new Document();
-                    set.putAll(tokenUpdates);
-                    update.put(MONGODB_SET, set);
-                }
-                log.trace("MongoDB: UPDATE {}: IF {} THEN {}", id, conditions, update);
-                filter.putAll(conditions);
-            }
+            Document filter = getUpdateFilter(id, update, changeTokenUpdater);
             try {
                 UpdateResult w = updateMany(filter, update);
                 if (w.getModifiedCount() != 1) {
@@ -523,6 +517,83 @@ public class MongoDBConnection extends DBSConnectionBase {
         }
     }
 
+    @Override
+    public void updateStates(List<StateUpdate> updates) {
+        int batchSize = mongoDBRepository.descriptor.getBulkWriteBatchSize();
+        List<WriteModel<Document>> models = new ArrayList<>(batchSize);
+        Set<String> ids = new HashSet<>();
+        boolean ordered = mongoDBRepository.descriptor.isBulkWriteOrdered();
+        for (StateUpdate stateUpdate : updates) {
+            for (Document update : converter.diffToBson(stateUpdate.diff)) {
+                Document filter = getUpdateFilter(stateUpdate.id, update, stateUpdate.changeTokenUpdater);
+                models.add(new UpdateOneModel<>(filter, update));
+                // several updates for the same document must be applied in order
+                ordered |= !ids.add(stateUpdate.id);
+                if (models.size() >= batchSize) {
+                    bulkUpdate(models, ids, ordered);
+                    models = new ArrayList<>(batchSize);
+                    ids = new HashSet<>();
+                    ordered = mongoDBRepository.descriptor.isBulkWriteOrdered();
+                }
+            }
+        }
+        if (!models.isEmpty()) {
+            bulkUpdate(models, ids, ordered);
+        }
+    }
+
+    /**
+     * Gets the filter for an update of a document, and adds the change token updates to the update if needed.
+     *
+     * @since 11.5
+     */
+    protected Document getUpdateFilter(String id, Document update, ChangeTokenUpdater changeTokenUpdater) {
+        Document filter = new Document();
+        converter.putToBson(filter, KEY_ID, id);
+        if (changeTokenUpdater == null) {
+            log.trace("MongoDB: UPDATE {}: {}", id, update);
+        } else {
+            // assume bson is identical to dbs internals
+            // condition works even if value is null
+            Map<String, Serializable> conditions = changeTokenUpdater.getConditions();
+            Map<String, Serializable> tokenUpdates = changeTokenUpdater.getUpdates();
+            if (update.containsKey(MONGODB_SET)) {
+                ((Document) update.get(MONGODB_SET)).putAll(tokenUpdates);
+            } else {
+                Document set = new Document();
+                set.putAll(tokenUpdates);
+                update.put(MONGODB_SET, set);
+            }
+            log.trace("MongoDB: UPDATE {}: IF {} THEN {}", id, conditions, update);
+            filter.putAll(conditions);
+        }
+        return filter;
+    }
+
+    /**
+     * Sends a batch of updates in a single bulk write.
+     *
+     * @since 11.5
+     */
+    protected void bulkUpdate(List<WriteModel<Document>> models, Set<String> ids, boolean ordered) {
+        log.trace("MongoDB: BULK UPDATE {} updates, ordered={}", models::size, () -> ordered);
+        try {
+            BulkWriteResult result = bulkWrite(models, new BulkWriteOptions().ordered(ordered));
+            if (result.getModifiedCount() != models.size()) {
+                log.trace("MongoDB:    -> CONCURRENT UPDATE: {}", ids);
+                var concurrentUpdateException = new ConcurrentUpdateException("Concurrent update");
+                ids.forEach(concurrentUpdateException::addInfo);
+                throw concurrentUpdateException;
+            }
+        } catch (MongoBulkWriteException mbwe) {
+            if (mbwe.getWriteErrors().stream().allMatch(wr -> DUPLICATE_KEY.equals(fromErrorCode(wr.getCode())))) {
+                log.trace("MongoDB:    -> DUPLICATE KEY: {}", ids);
+                throw new ConcurrentUpdateException(mbwe.getMessage(), mbwe);
+            }
+            throw mbwe;
+        }
+    }
+
     @Override
     public void deleteStates(Set<String> ids) {
         Bson filter = converter.filterIn(KEY_ID, ids);
@@ -1031,6 +1102,24 @@ public class MongoDBConnection extends DBSConnectionBase {
         }
     }
 
+    /** @since 11.5 */
+    protected void insertMany(List<Document> documents, InsertManyOptions options) {
+        if (transactionStarted) {
+            coll.insertMany(clientSession, documents, options);
+        } else {
+            coll.insertMany(documents, options);
+        }
+    }
+
+    /** @since 11.5 */
+    protected BulkWriteResult bulkWrite(List<WriteModel<Document>> requests, BulkWriteOptions options) {
+        if (transactionStarted) {
+            return coll.bulkWrite(clientSession, requests, options);
+        } else {
+            return coll.bulkWrite(requests, options);
+        }
+    }
+
     protected UpdateResult updateMany(Bson filter, Bson update) {
         if (transactionStarted) {
             return coll.updateMany(clientSession, filter, update);
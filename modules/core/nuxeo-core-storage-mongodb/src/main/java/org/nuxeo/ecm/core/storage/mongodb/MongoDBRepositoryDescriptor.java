@@ -30,6 +30,9 @@ import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryDescriptor;
 @XRegistry
 public class MongoDBRepositoryDescriptor extends DBSRepositoryDescriptor {
 
+    /** @since 11.5 */
+    public static final int DEFAULT_BULK_WRITE_BATCH_SIZE = 1000;
+
     /**
      * @deprecated since 9.3 you should now use MongoDBConnectionService to define connections
      * @see org.nuxeo.runtime.mongodb.MongoDBConnectionService
@@ -63,6 +66,33 @@ public class MongoDBRepositoryDescriptor extends DBSRepositoryDescriptor {
         return childNameUniqueConstraintEnabled;
     }
 
+    /**
+     * The maximum number of documents sent in a single bulk write when saving.
+     *
+     * @since 11.5
+     */
+    @XNode("bulkWrite@batchSize")
+    public Integer bulkWriteBatchSize;
+
+    /**
+     * Whether bulk writes are ordered (stop at the first error) or unordered (let the server parallelize them).
+     *
+     * @since 11.5
+     */
+    @XNode("bulkWrite@ordered")
+    public Boolean bulkWriteOrdered;
+
+    /** @since 11.5 */
+    public int getBulkWriteBatchSize() {
+        return bulkWriteBatchSize == null || bulkWriteBatchSize.intValue() <= 0 ? DEFAULT_BULK_WRITE_BATCH_SIZE
+                : bulkWriteBatchSize.intValue();
+    }
+
+    /** @since 11.5 */
+    public boolean isBulkWriteOrdered() {
+        return !Boolean.FALSE.equals(bulkWriteOrdered);
+    }
+
     @Override
     public void merge(DBSRepositoryDescriptor o) {
         super.merge(o);
@@ -85,6 +115,12 @@ public class MongoDBRepositoryDescriptor extends DBSRepositoryDescriptor {
         if (other.childNameUniqueConstraintEnabled != null) {
             childNameUniqueConstraintEnabled = other.childNameUniqueConstraintEnabled;
         }
+        if (other.bulkWriteBatchSize != null) {
+            bulkWriteBatchSize = other.bulkWriteBatchSize;
+        }
+        if (other.bulkWriteOrdered != null) {
+            bulkWriteOrdered = other.bulkWriteOrdered;
+        }
     }
 
 }
@@ -48,6 +48,9 @@ public abstract class DatabaseHelper {
 
     public static final String DEF_ID_TYPE = "varchar"; // "varchar", "uuid", "sequence"
 
+    /** @since 11.5 */
+    public static final String DEF_COPY_INSERT = "false";
+
     public static DatabaseHelper DATABASE;
 
     public static final String DB_CLASS_NAME_BASE = "org.nuxeo.ecm.core.storage.sql.Database";
@@ -81,6 +84,9 @@ public abstract class DatabaseHelper {
 
     public static final String ID_TYPE_PROPERTY = "nuxeo.test.vcs.idtype";
 
+    /** @since 11.5 */
+    public static final String COPY_INSERT_PROPERTY = "nuxeo.test.vcs.copyInsert";
+
     protected Error owner;
 
     public static String setSystemProperty(String name, String def) {
@@ -53,6 +53,7 @@ public class DatabasePostgreSQL extends DatabaseHelper {
         String url = String.format("jdbc:postgresql://%s:%s/%s", server, port, db);
         setProperty(URL_PROPERTY, url);
         setProperty(ID_TYPE_PROPERTY, DEF_ID_TYPE);
+        setProperty(COPY_INSERT_PROPERTY, DEF_COPY_INSERT);
     }
 
     @Override
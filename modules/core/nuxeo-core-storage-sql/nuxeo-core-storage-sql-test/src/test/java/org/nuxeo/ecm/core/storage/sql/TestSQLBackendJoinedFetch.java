@@ -0,0 +1,127 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the reads of documents when their simple fragments are read with a single query joining their tables.
+ *
+ * @since 11.5
+ */
+public class TestSQLBackendJoinedFetch extends SQLBackendTestCase {
+
+    // more than one IN batch of the dialect
+    protected static final int COUNT = 450;
+
+    @Override
+    protected RepositoryDescriptor newDescriptor(String name) {
+        RepositoryDescriptor descriptor = super.newDescriptor(name);
+        descriptor.setJoinedFetchEnabled(true);
+        return descriptor;
+    }
+
+    protected static String title(int i) {
+        return "title " + i;
+    }
+
+    /**
+     * Creates documents whose prefetched testschema fragment only exists for the even ones.
+     */
+    protected List<Serializable> createDocuments(Session session, Node parent) {
+        List<Serializable> ids = new ArrayList<>(COUNT);
+        for (int i = 0; i < COUNT; i++) {
+            Node node = session.addChildNode(parent, "doc" + i, null, "TestDoc", false);
+            if (i % 2 == 0) {
+                node.setSimpleProperty("tst:title", title(i));
+            }
+            ids.add(node.getId());
+        }
+        session.save();
+        return ids;
+    }
+
+    @Test
+    public void testReadMissingFragments() throws Exception {
+        Session session = repository.getConnection();
+        Node root = session.getRootNode();
+        List<Serializable> ids = createDocuments(session, root);
+
+        // another session, reads from the database
+        session.close();
+        session = repository.getConnection();
+        List<Node> nodes = session.getNodesByIds(ids);
+        assertEquals(COUNT, nodes.size());
+        for (int i = 0; i < COUNT; i++) {
+            Node node = nodes.get(i);
+            assertNotNull(node);
+            assertEquals(ids.get(i), node.getId());
+            assertEquals(i % 2 == 0 ? title(i) : null, node.getSimpleProperty("tst:title").getString());
+            if (i % 2 != 0) {
+                // the fragment is missing, it must be created on save and not updated
+                node.setSimpleProperty("tst:title", title(i));
+            }
+        }
+        session.save();
+
+        session.close();
+        session = repository.getConnection();
+        nodes = session.getNodesByIds(ids);
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(title(i), nodes.get(i).getSimpleProperty("tst:title").getString());
+        }
+    }
+
+    @Test
+    public void testReadRemovedDocuments() throws Exception {
+        Session session = repository.getConnection();
+        Node root = session.getRootNode();
+        Node folder = session.addChildNode(root, "folder", null, "TestDoc", false);
+        List<Serializable> ids = createDocuments(session, folder);
+        // remove some documents, soft-deleted if enabled
+        for (int i = 0; i < COUNT; i += 3) {
+            session.removeNode(session.getNodeById(ids.get(i)));
+        }
+        session.save();
+
+        session.close();
+        session = repository.getConnection();
+        List<Node> nodes = session.getNodesByIds(ids);
+        assertEquals(COUNT, nodes.size());
+        for (int i = 0; i < COUNT; i++) {
+            Node node = nodes.get(i);
+            if (i % 3 == 0) {
+                assertNull(node);
+            } else {
+                assertNotNull(node);
+                assertEquals(i % 2 == 0 ? title(i) : null, node.getSimpleProperty("tst:title").getString());
+            }
+        }
+        assertEquals(COUNT - (COUNT + 2) / 3, session.getChildren(folder, null, false).size());
+    }
+
+}
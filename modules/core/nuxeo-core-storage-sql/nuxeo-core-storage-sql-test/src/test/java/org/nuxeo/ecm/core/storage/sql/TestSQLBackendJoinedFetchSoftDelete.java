@@ -0,0 +1,47 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.BeforeClass;
+
+/**
+ * All the tests of TestSQLBackendJoinedFetch in soft-delete mode.
+ *
+ * @since 11.5
+ */
+public class TestSQLBackendJoinedFetchSoftDelete extends TestSQLBackendJoinedFetch {
+
+    /**
+     * Only run for databases that support soft-delete.
+     */
+    @BeforeClass
+    public static void assumeSoftDeleteSupported() {
+        assumeTrue(DatabaseHelper.DATABASE.supportsSoftDelete());
+    }
+
+    @Override
+    protected RepositoryDescriptor newDescriptor(String name) {
+        RepositoryDescriptor descriptor = super.newDescriptor(name);
+        descriptor.setSoftDeleteEnabled(true);
+        return descriptor;
+    }
+
+}
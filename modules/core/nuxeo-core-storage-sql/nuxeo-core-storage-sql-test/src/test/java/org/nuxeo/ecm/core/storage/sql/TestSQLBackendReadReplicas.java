@@ -0,0 +1,184 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.query.QueryFilter;
+import org.nuxeo.ecm.core.storage.sql.jdbc.JDBCConnection;
+import org.nuxeo.runtime.metrics.MetricsService;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import io.dropwizard.metrics5.MetricName;
+import io.dropwizard.metrics5.MetricRegistry;
+import io.dropwizard.metrics5.SharedMetricRegistries;
+
+/**
+ * Tests the routing of queries to a read replica, which is a second datasource on the test database.
+ * <p>
+ * The replica connections are not enlisted in the transaction, so a query seeing the uncommitted writes of the
+ * transaction ran on the primary.
+ *
+ * @since 11.5
+ */
+public class TestSQLBackendReadReplicas extends SQLBackendTestCase {
+
+    protected static final String REPLICA = "repository_test_replica";
+
+    protected static final String QUERY = "SELECT * FROM TestDoc";
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected long primaryQueries;
+
+    protected long replicaQueries;
+
+    @Override
+    protected RepositoryDescriptor newDescriptor(String name) {
+        RepositoryDescriptor descriptor = super.newDescriptor(name);
+        descriptor.readReplicas = Collections.singletonList(REPLICA);
+        return descriptor;
+    }
+
+    protected long getQueryCount(String dataSourceName) {
+        MetricName name = MetricName.build("nuxeo.repositories.repository.datasource", "query")
+                                    .tagged("repository", repository.getName(), "datasource", dataSourceName);
+        return registry.timer(name).getCount();
+    }
+
+    protected int query(Session session) {
+        primaryQueries = getQueryCount(JDBCConnection.getDataSourceName(repository.getName()));
+        replicaQueries = getQueryCount(REPLICA);
+        return session.query(QUERY, QueryFilter.EMPTY, false).size();
+    }
+
+    protected void assertQueriedOnPrimary() {
+        assertEquals(primaryQueries + 1, getQueryCount(JDBCConnection.getDataSourceName(repository.getName())));
+        assertEquals(replicaQueries, getQueryCount(REPLICA));
+    }
+
+    protected void assertQueriedOnReplica() {
+        assertEquals(primaryQueries, getQueryCount(JDBCConnection.getDataSourceName(repository.getName())));
+        assertEquals(replicaQueries + 1, getQueryCount(REPLICA));
+    }
+
+    protected void begin(SessionImpl session) {
+        TransactionHelper.startTransaction();
+        session.start();
+    }
+
+    protected void commit(SessionImpl session) {
+        session.end();
+        session.commit();
+        TransactionHelper.commitOrRollbackTransaction();
+    }
+
+    @Test
+    public void testQueriesAfterCopyUsePrimary() throws Exception {
+        SessionImpl session = repository.getConnection();
+        session.addChildNode(session.getRootNode(), "foo", null, "TestDoc", false);
+        session.save();
+
+        begin(session);
+        assertEquals(1, query(session));
+        assertQueriedOnReplica();
+        session.copy(session.getNodeByPath("/foo", null), session.getRootNode(), "bar");
+        // the uncommitted copy is only visible on the primary
+        assertEquals(2, query(session));
+        assertQueriedOnPrimary();
+        commit(session);
+
+        // new transaction without writes
+        begin(session);
+        assertEquals(2, query(session));
+        assertQueriedOnReplica();
+        commit(session);
+        session.close();
+    }
+
+    @Test
+    public void testQueriesAfterRemoveUsePrimary() throws Exception {
+        SessionImpl session = repository.getConnection();
+        session.addChildNode(session.getRootNode(), "foo", null, "TestDoc", false);
+        session.addChildNode(session.getRootNode(), "bar", null, "TestDoc", false);
+        session.save();
+
+        begin(session);
+        assertEquals(2, query(session));
+        assertQueriedOnReplica();
+        // removed directly or soft-deleted, depending on the configuration
+        session.removeNode(session.getNodeByPath("/foo", null));
+        // the uncommitted removal is only visible on the primary
+        assertEquals(1, query(session));
+        assertQueriedOnPrimary();
+        commit(session);
+
+        begin(session);
+        assertEquals(1, query(session));
+        assertQueriedOnReplica();
+        commit(session);
+        session.close();
+    }
+
+    @Test
+    public void testQueriesAfterSaveUsePrimary() throws Exception {
+        SessionImpl session = repository.getConnection();
+
+        begin(session);
+        assertEquals(0, query(session));
+        assertQueriedOnReplica();
+        session.addChildNode(session.getRootNode(), "foo", null, "TestDoc", false);
+        session.save();
+        // the uncommitted creation is only visible on the primary
+        assertEquals(1, query(session));
+        assertQueriedOnPrimary();
+        commit(session);
+
+        begin(session);
+        assertEquals(1, query(session));
+        assertQueriedOnReplica();
+        commit(session);
+        session.close();
+    }
+
+    @Test
+    public void testQueriesAfterRollbackUseReplica() throws Exception {
+        SessionImpl session = repository.getConnection();
+
+        begin(session);
+        session.addChildNode(session.getRootNode(), "foo", null, "TestDoc", false);
+        session.save();
+        assertEquals(1, query(session));
+        assertQueriedOnPrimary();
+        TransactionHelper.setTransactionRollbackOnly();
+        session.end();
+        session.rollback();
+        TransactionHelper.commitOrRollbackTransaction();
+
+        begin(session);
+        assertEquals(0, query(session));
+        assertQueriedOnReplica();
+        commit(session);
+        session.close();
+    }
+
+}
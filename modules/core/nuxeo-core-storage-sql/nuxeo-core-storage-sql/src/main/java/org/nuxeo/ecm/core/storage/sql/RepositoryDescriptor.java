@@ -54,6 +54,21 @@ public class RepositoryDescriptor {
 
     public static final int DEFAULT_PATH_OPTIM_VERSION = 2;
 
+    /** @since 11.5 */
+    public static final int DEFAULT_QUERY_PLAN_CACHE_MAX_SIZE = 1000;
+
+    /** @since 11.5 */
+    public static final int DEFAULT_JOINED_FETCH_MAX_COLUMNS = 500;
+
+    /** @since 11.5 */
+    public static final int DEFAULT_COPY_INSERT_MIN_ROWS = 100;
+
+    /** @since 11.5 */
+    public static final int DEFAULT_READ_REPLICAS_MAX_LAG = 10;
+
+    /** @since 11.5 */
+    public static final int DEFAULT_READ_REPLICAS_LAG_CHECK_INTERVAL = 5;
+
     /** At startup, DDL changes are not detected. */
     public static final String DDL_MODE_IGNORE = "ignore";
 
@@ -396,6 +411,119 @@ public class RepositoryDescriptor {
         this.changeTokenEnabled = Boolean.valueOf(enabled);
     }
 
+    /** @since 11.5 */
+    @XNode("queryPlanCache@enabled")
+    private Boolean queryPlanCacheEnabled;
+
+    /** @since 11.5 */
+    public boolean getQueryPlanCacheEnabled() {
+        return defaultFalse(queryPlanCacheEnabled);
+    }
+
+    /** @since 11.5 */
+    @XNode("queryPlanCache@maxSize")
+    private Integer queryPlanCacheMaxSize;
+
+    /** @since 11.5 */
+    public int getQueryPlanCacheMaxSize() {
+        return queryPlanCacheMaxSize == null ? DEFAULT_QUERY_PLAN_CACHE_MAX_SIZE : queryPlanCacheMaxSize.intValue();
+    }
+
+    /**
+     * Whether the simple fragments of a batch of documents are read with a single query joining their tables, instead
+     * of one query per table.
+     *
+     * @since 11.5
+     */
+    @XNode("joinedFetch@enabled")
+    private Boolean joinedFetchEnabled;
+
+    /** @since 11.5 */
+    public boolean getJoinedFetchEnabled() {
+        return defaultFalse(joinedFetchEnabled);
+    }
+
+    /** @since 11.5 */
+    protected void setJoinedFetchEnabled(boolean enabled) {
+        joinedFetchEnabled = Boolean.valueOf(enabled);
+    }
+
+    /**
+     * The maximum number of columns read by a single joined query, more tables are read by additional queries.
+     *
+     * @since 11.5
+     */
+    @XNode("joinedFetch@maxColumns")
+    private Integer joinedFetchMaxColumns;
+
+    /** @since 11.5 */
+    public int getJoinedFetchMaxColumns() {
+        return joinedFetchMaxColumns == null ? DEFAULT_JOINED_FETCH_MAX_COLUMNS : joinedFetchMaxColumns.intValue();
+    }
+
+    /**
+     * Whether large batches of new rows are written with the bulk copy protocol of the database instead of batched
+     * {@code INSERT} statements, when the database supports it (PostgreSQL).
+     *
+     * @since 11.5
+     */
+    @XNode("copyInsert@enabled")
+    private Boolean copyInsertEnabled;
+
+    /** @since 11.5 */
+    public boolean getCopyInsertEnabled() {
+        return defaultFalse(copyInsertEnabled);
+    }
+
+    /**
+     * The minimum number of rows to write in a table for the bulk copy protocol to be used.
+     *
+     * @since 11.5
+     */
+    @XNode("copyInsert@minRows")
+    private Integer copyInsertMinRows;
+
+    /** @since 11.5 */
+    public int getCopyInsertMinRows() {
+        return copyInsertMinRows == null ? DEFAULT_COPY_INSERT_MIN_ROWS : copyInsertMinRows.intValue();
+    }
+
+    /**
+     * The datasources of the read-only replicas of the database. Queries that are not part of a transaction that wrote
+     * to the repository are routed to them.
+     *
+     * @since 11.5
+     */
+    @XNodeList(value = "readReplicas/datasource", type = ArrayList.class, componentType = String.class)
+    public List<String> readReplicas = new ArrayList<>(0);
+
+    /**
+     * The maximum replication lag, in seconds, for a replica to be used.
+     *
+     * @since 11.5
+     */
+    @XNode("readReplicas@maxLag")
+    private Integer readReplicasMaxLag;
+
+    /** @since 11.5 */
+    public int getReadReplicasMaxLag() {
+        return readReplicasMaxLag == null ? DEFAULT_READ_REPLICAS_MAX_LAG : readReplicasMaxLag.intValue();
+    }
+
+    /**
+     * The interval, in seconds, between two checks of the replication lag of a replica.
+     *
+     * @since 11.5
+     */
+    @XNode("readReplicas@lagCheckInterval")
+    private Integer readReplicasLagCheckInterval;
+
+    /** @since 11.5 */
+    public int getReadReplicasLagCheckInterval() {
+        return readReplicasLagCheckInterval == null ? DEFAULT_READ_REPLICAS_LAG_CHECK_INTERVAL
+                : readReplicasLagCheckInterval.intValue();
+    }
+
     public RepositoryDescriptor() {
     }
 
@@ -430,6 +558,15 @@ public class RepositoryDescriptor {
         readAclMaxSize = other.readAclMaxSize;
         usersSeparatorKey = other.usersSeparatorKey;
         changeTokenEnabled = other.changeTokenEnabled;
+        queryPlanCacheEnabled = other.queryPlanCacheEnabled;
+        queryPlanCacheMaxSize = other.queryPlanCacheMaxSize;
+        joinedFetchEnabled = other.joinedFetchEnabled;
+        joinedFetchMaxColumns = other.joinedFetchMaxColumns;
+        copyInsertEnabled = other.copyInsertEnabled;
+        copyInsertMinRows = other.copyInsertMinRows;
+        readReplicas = new ArrayList<>(other.readReplicas);
+        readReplicasMaxLag = other.readReplicasMaxLag;
+        readReplicasLagCheckInterval = other.readReplicasLagCheckInterval;
     }
 
     public void merge(RepositoryDescriptor other) {
@@ -526,6 +663,35 @@ public class RepositoryDescriptor {
         if (other.changeTokenEnabled != null) {
             changeTokenEnabled = other.changeTokenEnabled;
         }
+        if (other.queryPlanCacheEnabled != null) {
+            queryPlanCacheEnabled = other.queryPlanCacheEnabled;
+        }
+        if (other.queryPlanCacheMaxSize != null) {
+            queryPlanCacheMaxSize = other.queryPlanCacheMaxSize;
+        }
+        if (other.joinedFetchEnabled != null) {
+            joinedFetchEnabled = other.joinedFetchEnabled;
+        }
+        if (other.joinedFetchMaxColumns != null) {
+            joinedFetchMaxColumns = other.joinedFetchMaxColumns;
+        }
+        if (other.copyInsertEnabled != null) {
+            copyInsertEnabled = other.copyInsertEnabled;
+        }
+        if (other.copyInsertMinRows != null) {
+            copyInsertMinRows = other.copyInsertMinRows;
+        }
+        for (String readReplica : other.readReplicas) {
+            if (!readReplicas.contains(readReplica)) {
+                readReplicas.add(readReplica);
+            }
+        }
+        if (other.readReplicasMaxLag != null) {
+            readReplicasMaxLag = other.readReplicasMaxLag;
+        }
+        if (other.readReplicasLagCheckInterval != null) {
+            readReplicasLagCheckInterval = other.readReplicasLagCheckInterval;
+        }
     }
 
 }
@@ -59,6 +59,8 @@ import org.nuxeo.ecm.core.storage.sql.coremodel.SQLSession;
 import org.nuxeo.ecm.core.storage.sql.jdbc.JDBCConnection;
 import org.nuxeo.ecm.core.storage.sql.jdbc.JDBCLogger;
 import org.nuxeo.ecm.core.storage.sql.jdbc.JDBCMapper;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryPlanCache;
+import org.nuxeo.ecm.core.storage.sql.jdbc.ReadReplicaRouter;
 import org.nuxeo.ecm.core.storage.sql.jdbc.SQLInfo;
 import org.nuxeo.ecm.core.storage.sql.jdbc.TableUpgrader;
 import org.nuxeo.ecm.core.storage.sql.jdbc.db.Column;
@@ -130,6 +132,12 @@ public class RepositoryImpl implements Repository, org.nuxeo.ecm.core.model.Repo
 
     protected SQLInfo sqlInfo;
 
+    /** @since 11.5 */
+    protected final QueryPlanCache queryPlanCache;
+
+    /** @since 11.5 */
+    protected ReadReplicaRouter readReplicaRouter;
+
     public RepositoryImpl(RepositoryDescriptor repositoryDescriptor) {
         this.repositoryDescriptor = repositoryDescriptor;
         sessions = new CopyOnWriteArrayList<>();
@@ -138,6 +146,12 @@ public class RepositoryImpl implements Repository, org.nuxeo.ecm.core.model.Repo
         sessionCount = registry.counter(MetricName.build("nuxeo", "repositories", "repository", "sessions")
                                                   .tagged("repository", repositoryDescriptor.name));
         createMetricsGauges();
+        if (repositoryDescriptor.getQueryPlanCacheEnabled()) {
+            queryPlanCache = new QueryPlanCache(repositoryDescriptor.name,
+                    repositoryDescriptor.getQueryPlanCacheMaxSize());
+        } else {
+            queryPlanCache = null;
+        }
 
         initRepository();
     }
@@ -229,6 +243,24 @@ public class RepositoryImpl implements Repository, org.nuxeo.ecm.core.model.Repo
         return invalidationsPropagator;
     }
 
+    /**
+     * Gets the cache of the SQL queries built from NXQL queries, or {@code null} if disabled.
+     *
+     * @since 11.5
+     */
+    public QueryPlanCache getQueryPlanCache() {
+        return queryPlanCache;
+    }
+
+    /**
+     * Gets the router of the queries to the read-only replicas of the database, or {@code null} if there are none.
+     *
+     * @since 11.5
+     */
+    public ReadReplicaRouter getReadReplicaRouter() {
+        return readReplicaRouter;
+    }
+
     public boolean isChangeTokenEnabled() {
         return repositoryDescriptor.isChangeTokenEnabled();
     }
@@ -305,6 +337,11 @@ public class RepositoryImpl implements Repository, org.nuxeo.ecm.core.model.Repo
         // Model and SQLInfo
         model = new Model(modelSetup);
         sqlInfo = new SQLInfo(model, dialect, requiresClusterSQL);
+        if (!repositoryDescriptor.readReplicas.isEmpty()) {
+            readReplicaRouter = new ReadReplicaRouter(repositoryDescriptor.name, dialect,
+                    repositoryDescriptor.readReplicas, repositoryDescriptor.getReadReplicasMaxLag(),
+                    repositoryDescriptor.getReadReplicasLagCheckInterval());
+        }
 
         // DDL mode
         String ddlMode = repositoryDescriptor.getDDLMode();
@@ -422,6 +459,10 @@ public class RepositoryImpl implements Repository, org.nuxeo.ecm.core.model.Repo
     @Override
     public synchronized void close() {
         closeAllSessions();
+        WeightedRowCache.remove(getName());
+        if (readReplicaRouter != null) {
+            readReplicaRouter.close();
+        }
         model = null;
         if (clusterInvalidator != null) {
             clusterInvalidator.close();
@@ -0,0 +1,503 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.nuxeo.ecm.core.storage.sql.ACLRow.ACLRowPositionComparator;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import io.dropwizard.metrics5.Counter;
+import io.dropwizard.metrics5.MetricName;
+import io.dropwizard.metrics5.MetricRegistry;
+import io.dropwizard.metrics5.SharedMetricRegistries;
+import io.dropwizard.metrics5.Timer;
+
+/**
+ * A {@link RowMapper} that uses a {@link WeightedRowCache} shared by all the sessions of the repository, bounded by
+ * size in bytes, instead of a per-session memory-sensitive cache.
+ * <p>
+ * The rows written by the session are kept in a local cache until they are committed, the shared cache only holds
+ * {@link Row}s that are known to be identical to what's committed in the underlying {@link RowMapper}: rows are evicted
+ * from it when they are written, and invalidated when the write is committed.
+ * <p>
+ * The shared cache is configured using the {@code cachingMapper} properties {@value WeightedRowCache#MAX_BYTES_PROP},
+ * {@value WeightedRowCache#ADMISSION_FREQUENCY_PROP} and {@value WeightedRowCache#CONCURRENCY_LEVEL_PROP}.
+ *
+ * @since 11.5
+ */
+public class WeightedCachingRowMapper implements RowMapper {
+
+    private static final String ABSENT = "__ABSENT__\0\0\0";
+
+    /**
+     * The rows written by this session and not yet committed, or known to be absent because deleted by this session.
+     */
+    protected final Map<RowId, Row> localCache = new HashMap<>();
+
+    /**
+     * The rows shared with the other sessions of the repository.
+     */
+    protected WeightedRowCache sharedCache;
+
+    protected Model model;
+
+    /**
+     * The {@link RowMapper} to which operations that cannot be processed from the cache are delegated.
+     */
+    protected RowMapper rowMapper;
+
+    /**
+     * The local invalidations due to writes through this mapper that should be propagated to other sessions at
+     * post-commit time.
+     */
+    protected final VCSInvalidations localInvalidations;
+
+    /**
+     * The queue of cache invalidations received from other session, to process at pre-transaction time.
+     */
+    protected final VCSInvalidationsQueue cacheQueue;
+
+    /**
+     * The propagator of invalidations to other mappers.
+     */
+    protected VCSInvalidationsPropagator cachePropagator;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected Timer cacheGetTimer;
+
+    // sor means system of record (database access)
+    protected Counter sorRows;
+
+    protected Timer sorGetTimer;
+
+    public WeightedCachingRowMapper() {
+        localInvalidations = new VCSInvalidations();
+        cacheQueue = new VCSInvalidationsQueue("mapper-" + this);
+    }
+
+    public void initialize(String repositoryName, Model model, RowMapper rowMapper,
+            VCSInvalidationsPropagator cachePropagator, Map<String, String> properties) {
+        this.model = model;
+        this.rowMapper = rowMapper;
+        this.cachePropagator = cachePropagator;
+        cachePropagator.addQueue(cacheQueue);
+        sharedCache = WeightedRowCache.get(repositoryName, properties);
+        setMetrics(repositoryName);
+    }
+
+    protected void setMetrics(String repositoryName) {
+        cacheGetTimer = registry.timer(
+                MetricName.build("nuxeo", "repositories", "repository", "cache", "weighted", "timer")
+                          .tagged("repository", repositoryName));
+        sorRows = registry.counter(
+                MetricName.build("nuxeo", "repositories", "repository", "cache", "weighted", "sor", "rows")
+                          .tagged("repository", repositoryName));
+        sorGetTimer = registry.timer(
+                MetricName.build("nuxeo", "repositories", "repository", "cache", "weighted", "sor", "timer")
+                          .tagged("repository", repositoryName));
+    }
+
+    public void close() {
+        localCache.clear();
+        localInvalidations.clear();
+        cachePropagator.removeQueue(cacheQueue);
+    }
+
+    @Override
+    public Serializable generateNewId() {
+        return rowMapper.generateNewId();
+    }
+
+    /*
+     * ----- Cache -----
+     */
+
+    protected static boolean isAbsent(Row row) {
+        return row.tableName == ABSENT; // == is ok
+    }
+
+    protected Row prepareCachedRow(Row row) {
+        row = row.clone();
+        // for ACL collections, make sure the order is correct
+        // (without the cache, the query to get a list of collection does an
+        // ORDER BY pos, so users of the cache must get the same behavior)
+        if (row.isCollection() && row.values.length > 0 && row.values[0] instanceof ACLRow) {
+            row.values = sortACLRows((ACLRow[]) row.values);
+        }
+        return row;
+    }
+
+    protected ACLRow[] sortACLRows(ACLRow[] acls) {
+        ACLRow[] res = acls.clone();
+        Arrays.sort(res, ACLRowPositionComparator.INSTANCE);
+        return res;
+    }
+
+    /**
+     * Caches locally a row written by this session, and removes it from the shared cache as the other sessions must
+     * keep reading the committed row.
+     */
+    protected void localPut(Row row) {
+        localCache.put(new RowId(row), prepareCachedRow(row));
+        sharedCache.evict(row);
+    }
+
+    protected void localPutAbsent(RowId rowId) {
+        localCache.put(new RowId(rowId), new Row(ABSENT, (Serializable) null));
+        sharedCache.evict(rowId);
+    }
+
+    /**
+     * Caches in the shared cache a row read from the database.
+     * <p>
+     * Nothing is shared while this session has uncommitted writes, as its reads may return them.
+     */
+    protected void sharedPut(Row row, long[] generations) {
+        if (localInvalidations.isEmpty()) {
+            sharedCache.put(new RowId(row), prepareCachedRow(row), generations);
+        }
+    }
+
+    protected void sharedPutAbsent(RowId rowId, long[] generations) {
+        if (localInvalidations.isEmpty()) {
+            sharedCache.put(new RowId(rowId), new Row(ABSENT, (Serializable) null), generations);
+        }
+    }
+
+    protected void sharedPutAbsentIfRowId(RowId rowId, long[] generations) {
+        if (rowId instanceof Row) {
+            sharedPut((Row) rowId, generations);
+        } else {
+            sharedPutAbsent(rowId, generations);
+        }
+    }
+
+    @SuppressWarnings("resource") // Time.Context closed by stop()
+    protected Row cacheGet(RowId rowId) {
+        final Timer.Context context = cacheGetTimer.time();
+        try {
+            Row row = localCache.get(rowId);
+            if (row == null) {
+                row = sharedCache.get(rowId);
+            }
+            if (row != null && !isAbsent(row)) {
+                row = row.clone();
+            }
+            return row;
+        } finally {
+            context.stop();
+        }
+    }
+
+    protected void cacheRemove(RowId rowId) {
+        localCache.remove(rowId);
+        sharedCache.evict(rowId);
+    }
+
+    /*
+     * ----- Invalidations / Cache Management -----
+     */
+
+    @Override
+    public VCSInvalidations receiveInvalidations() {
+        // invalidations from the underlying mapper (cluster)
+        // already propagated to our invalidations queue
+        VCSInvalidations remoteInvalidations = rowMapper.receiveInvalidations();
+        if (remoteInvalidations != null) {
+            // the sessions of the other cluster nodes don't know about our shared cache
+            invalidateShared(remoteInvalidations);
+        }
+
+        VCSInvalidations invalidations = cacheQueue.getInvalidations();
+
+        // invalidate our local cache, the shared cache was invalidated by the sender
+        if (invalidations.all) {
+            localCache.clear();
+        }
+        if (invalidations.modified != null) {
+            invalidations.modified.forEach(localCache::remove);
+        }
+        if (invalidations.deleted != null) {
+            invalidations.deleted.forEach(localCache::remove);
+        }
+
+        return invalidations.isEmpty() ? null : invalidations;
+    }
+
+    protected void invalidateShared(VCSInvalidations invalidations) {
+        if (invalidations.all) {
+            sharedCache.invalidateAll();
+        }
+        if (invalidations.modified != null) {
+            invalidations.modified.forEach(sharedCache::invalidate);
+        }
+        if (invalidations.deleted != null) {
+            invalidations.deleted.forEach(sharedCache::invalidate);
+        }
+    }
+
+    // propagate invalidations
+    @Override
+    public void sendInvalidations(VCSInvalidations invalidations) {
+        // add local invalidations
+        if (!localInvalidations.isEmpty()) {
+            if (invalidations == null) {
+                invalidations = new VCSInvalidations();
+            }
+            invalidations.add(localInvalidations);
+            localInvalidations.clear();
+        }
+        // our writes are now committed and visible through the shared cache
+        localCache.clear();
+
+        if (invalidations != null && !invalidations.isEmpty()) {
+            // rows read by other sessions before the commit are now stale
+            invalidateShared(invalidations);
+
+            // send to underlying mapper
+            rowMapper.sendInvalidations(invalidations);
+
+            // queue to other local mappers' caches
+            cachePropagator.propagateInvalidations(invalidations, cacheQueue);
+        }
+    }
+
+    /*
+     * The shared cache only holds committed rows, so it is kept.
+     */
+    @Override
+    public void clearCache() {
+        localCache.clear();
+        sorRows.dec(sorRows.getCount());
+        localInvalidations.clear();
+        rowMapper.clearCache();
+    }
+
+    @Override
+    public long getCacheSize() {
+        return localCache.size();
+    }
+
+    @Override
+    public void rollback() {
+        try {
+            rowMapper.rollback();
+        } finally {
+            clearCache();
+        }
+    }
+
+    /*
+     * ----- Batch -----
+     */
+
+    /*
+     * Use those from the cache if available, read from the mapper for the rest.
+     */
+    @Override
+    public List<? extends RowId> read(Collection<RowId> rowIds, boolean cacheOnly) {
+        List<RowId> res = new ArrayList<>(rowIds.size());
+        // find which are in cache, and which not
+        List<RowId> todo = new ArrayList<>();
+        for (RowId rowId : rowIds) {
+            Row row = cacheGet(rowId);
+            if (row == null) {
+                if (cacheOnly) {
+                    res.add(new RowId(rowId));
+                } else {
+                    todo.add(rowId);
+                }
+            } else if (isAbsent(row)) {
+                res.add(new RowId(rowId));
+            } else {
+                res.add(row);
+            }
+        }
+        if (!todo.isEmpty()) {
+            @SuppressWarnings("resource")
+            final Timer.Context context = sorGetTimer.time();
+            try {
+                long[] generations = sharedCache.getGenerations();
+                // ask missing ones to underlying row mapper
+                List<? extends RowId> fetched = rowMapper.read(todo, cacheOnly);
+                // add them to the cache
+                for (RowId rowId : fetched) {
+                    sharedPutAbsentIfRowId(rowId, generations);
+                }
+                // merge results
+                res.addAll(fetched);
+                sorRows.inc(fetched.size());
+            } finally {
+                context.stop();
+            }
+        }
+        return res;
+    }
+
+    /*
+     * Save in the local cache then pass all the writes to the mapper.
+     */
+    @Override
+    public void write(RowBatch batch) {
+        for (Row row : batch.creates) {
+            localPut(row);
+            // we need to send modified invalidations for created
+            // fragments because other session's ABSENT fragments have
+            // to be invalidated
+            localInvalidations.addModified(new RowId(row));
+        }
+        for (RowUpdate rowu : batch.updates) {
+            localPut(rowu.row);
+            localInvalidations.addModified(new RowId(rowu.row));
+        }
+        for (RowId rowId : batch.deletes) {
+            if (rowId instanceof Row) {
+                throw new AssertionError();
+            }
+            localPutAbsent(rowId);
+            localInvalidations.addDeleted(rowId);
+        }
+        for (RowId rowId : batch.deletesDependent) {
+            if (rowId instanceof Row) {
+                throw new AssertionError();
+            }
+            localPutAbsent(rowId);
+            localInvalidations.addDeleted(rowId);
+        }
+
+        // propagate to underlying mapper
+        rowMapper.write(batch);
+    }
+
+    /*
+     * ----- Read -----
+     */
+
+    @Override
+    public Row readSimpleRow(RowId rowId) {
+        Row row = cacheGet(rowId);
+        if (row == null) {
+            long[] generations = sharedCache.getGenerations();
+            row = rowMapper.readSimpleRow(rowId);
+            if (row == null) {
+                sharedPutAbsent(rowId, generations);
+            } else {
+                sharedPut(row, generations);
+            }
+            return row;
+        } else if (isAbsent(row)) {
+            return null;
+        } else {
+            return row;
+        }
+    }
+
+    @Override
+    public Map<String, String> getBinaryFulltext(RowId rowId) {
+        return rowMapper.getBinaryFulltext(rowId);
+    }
+
+    @Override
+    public Serializable[] readCollectionRowArray(RowId rowId) {
+        Row row = cacheGet(rowId);
+        if (row == null) {
+            long[] generations = sharedCache.getGenerations();
+            Serializable[] array = rowMapper.readCollectionRowArray(rowId);
+            assert array != null;
+            row = new Row(rowId.tableName, rowId.id, array);
+            sharedPut(row, generations);
+            return row.values;
+        } else if (isAbsent(row)) {
+            return null;
+        } else {
+            return row.values;
+        }
+    }
+
+    @Override
+    public List<Row> readSelectionRows(SelectionType selType, Serializable selId, Serializable filter,
+            Serializable criterion, boolean limitToOne) {
+        long[] generations = sharedCache.getGenerations();
+        List<Row> rows = rowMapper.readSelectionRows(selType, selId, filter, criterion, limitToOne);
+        for (Row row : rows) {
+            sharedPut(row, generations);
+        }
+        return rows;
+    }
+
+    @Override
+    public Set<Serializable> readSelectionsIds(SelectionType selType, List<Serializable> values) {
+        return rowMapper.readSelectionsIds(selType, values);
+    }
+
+    /*
+     * ----- Copy -----
+     */
+
+    @Override
+    public CopyResult copy(IdWithTypes source, Serializable destParentId, String destName, Row overwriteRow,
+            boolean excludeSpecialChildren, boolean excludeACL) {
+        CopyResult result = rowMapper.copy(source, destParentId, destName, overwriteRow, excludeSpecialChildren,
+                excludeACL);
+        VCSInvalidations invalidations = result.invalidations;
+        if (invalidations.modified != null) {
+            for (RowId rowId : invalidations.modified) {
+                cacheRemove(rowId);
+                localInvalidations.addModified(new RowId(rowId));
+            }
+        }
+        if (invalidations.deleted != null) {
+            for (RowId rowId : invalidations.deleted) {
+                cacheRemove(rowId);
+                localInvalidations.addDeleted(rowId);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<NodeInfo> getDescendantsInfo(Serializable rootId) {
+        return rowMapper.getDescendantsInfo(rootId);
+    }
+
+    @Override
+    public void remove(Serializable rootId, List<NodeInfo> nodeInfos) {
+        rowMapper.remove(rootId, nodeInfos);
+        for (NodeInfo info : nodeInfos) {
+            for (String fragmentName : model.getTypeFragments(new IdWithTypes(info))) {
+                RowId rowId = new RowId(fragmentName, info.id);
+                cacheRemove(rowId);
+                localInvalidations.addDeleted(rowId);
+            }
+        }
+        // we only put as absent the root fragment, to avoid polluting the cache
+        // with lots of absent info. the rest is removed entirely
+        localPutAbsent(new RowId(Model.HIER_TABLE_NAME, rootId));
+    }
+
+}
@@ -0,0 +1,344 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.io.Serializable;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.dropwizard.metrics5.Counter;
+import io.dropwizard.metrics5.Gauge;
+import io.dropwizard.metrics5.MetricName;
+import io.dropwizard.metrics5.MetricRegistry;
+import io.dropwizard.metrics5.SharedMetricRegistries;
+
+/**
+ * A cache of {@link Row}s shared by all the sessions of a repository, bounded by the estimated size in bytes of the
+ * rows it holds.
+ * <p>
+ * Only rows known to be committed in the database are put in this cache. A row read from the database is admitted only
+ * if it has been requested often enough recently, as estimated by a frequency sketch, so that scans of rows read only
+ * once don't evict the frequently used ones.
+ * <p>
+ * Each invalidation of a committed row increments the generation of the stripe of the row, a row read from the database
+ * is only kept if no invalidation happened in its stripe since the read started, so that a read concurrent with a
+ * commit cannot leave a stale row in the cache. Rows written but not yet committed are only evicted, their committed
+ * version is still valid for the other sessions.
+ *
+ * @since 11.5
+ */
+public class WeightedRowCache {
+
+    public static final String MAX_BYTES_PROP = "maxBytes";
+
+    public static final String ADMISSION_FREQUENCY_PROP = "admissionFrequency";
+
+    public static final String CONCURRENCY_LEVEL_PROP = "concurrencyLevel";
+
+    public static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+
+    public static final int DEFAULT_ADMISSION_FREQUENCY = 2;
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    protected static final String METRIC_NAME = "nuxeo.repositories.repository.cache.weighted";
+
+    // average row size used to size the frequency sketch
+    protected static final int AVERAGE_ROW_BYTES = 512;
+
+    // number of generations, a power of two
+    protected static final int GENERATION_STRIPES = 64;
+
+    protected static final Map<String, WeightedRowCache> CACHES = new ConcurrentHashMap<>();
+
+    protected final String repositoryName;
+
+    protected final Cache<RowId, Row> cache;
+
+    protected final FrequencySketch sketch;
+
+    protected final int admissionFrequency;
+
+    protected final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final Map<String, Counter> hitCounters = new ConcurrentHashMap<>();
+
+    protected final Map<String, Counter> missCounters = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the shared cache of a repository, creating it if needed.
+     */
+    public static WeightedRowCache get(String repositoryName, Map<String, String> properties) {
+        return CACHES.computeIfAbsent(repositoryName, k -> new WeightedRowCache(k, properties));
+    }
+
+    /**
+     * Removes the shared cache of a repository.
+     */
+    public static void remove(String repositoryName) {
+        WeightedRowCache rowCache = CACHES.remove(repositoryName);
+        if (rowCache != null) {
+            rowCache.close();
+        }
+    }
+
+    public WeightedRowCache(String repositoryName, Map<String, String> properties) {
+        this.repositoryName = repositoryName;
+        long maxBytes = getLong(properties, MAX_BYTES_PROP, DEFAULT_MAX_BYTES);
+        admissionFrequency = (int) getLong(properties, ADMISSION_FREQUENCY_PROP, DEFAULT_ADMISSION_FREQUENCY);
+        int concurrencyLevel = (int) getLong(properties, CONCURRENCY_LEVEL_PROP, DEFAULT_CONCURRENCY_LEVEL);
+        cache = CacheBuilder.newBuilder()
+                            .concurrencyLevel(concurrencyLevel)
+                            .maximumWeight(maxBytes)
+                            .weigher((RowId rowId, Row row) -> weigh(row))
+                            .recordStats()
+                            .build();
+        sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE / 2, Math.max(maxBytes / AVERAGE_ROW_BYTES, 16)));
+        setMetrics();
+    }
+
+    protected static long getLong(Map<String, String> properties, String key, long def) {
+        String value = properties == null ? null : properties.get(key);
+        return value == null || value.isBlank() ? def : Long.parseLong(value.trim());
+    }
+
+    protected void setMetrics() {
+        MetricName name = MetricName.build(METRIC_NAME).tagged("repository", repositoryName);
+        registerGauge(name.resolve("size"), cache::size);
+        registerGauge(name.resolve("eviction.count"), () -> cache.stats().evictionCount());
+        registerGauge(name.resolve("hit.ratio"), () -> cache.stats().hitRate());
+    }
+
+    protected void registerGauge(MetricName name, Gauge<?> gauge) {
+        registry.remove(name);
+        registry.register(name, gauge);
+    }
+
+    protected void close() {
+        cache.invalidateAll();
+        registry.removeMatching((name, metric) -> name.getKey().startsWith(METRIC_NAME + ".")
+                && repositoryName.equals(name.getTags().get("repository")));
+    }
+
+    /**
+     * Gets a row from the cache, recording the access for the admission of the row.
+     *
+     * @return the cached row, not to be modified, or {@code null} if absent from the cache
+     */
+    public Row get(RowId rowId) {
+        sketch.increment(rowId);
+        Row row = cache.getIfPresent(rowId);
+        (row == null ? missCounters : hitCounters).computeIfAbsent(rowId.tableName,
+                table -> newCounter(row == null ? "miss" : "hit", table)).inc();
+        return row;
+    }
+
+    protected Counter newCounter(String name, String table) {
+        return registry.counter(MetricName.build(METRIC_NAME, name)
+                                          .tagged("repository", repositoryName, "table", table));
+    }
+
+    protected static int stripe(RowId rowId) {
+        int hash = rowId.hashCode();
+        return (hash ^ (hash >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    /**
+     * Gets a snapshot of the current generations, to be passed to {@link #put} for the rows read from the database
+     * after this call.
+     */
+    public long[] getGenerations() {
+        long[] snapshot = new long[GENERATION_STRIPES];
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            snapshot[i] = generations.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Puts a row read from the database in the cache, if it is used often enough and if no invalidation happened in its
+     * stripe since the given generations.
+     *
+     * @param generations the generations returned by {@link #getGenerations} before the row was read
+     * @return {@code true} if the row was cached
+     */
+    public boolean put(RowId rowId, Row row, long[] generations) {
+        if (sketch.frequency(rowId) < admissionFrequency) {
+            return false;
+        }
+        int stripe = stripe(rowId);
+        if (this.generations.get(stripe) != generations[stripe]) {
+            return false;
+        }
+        cache.put(rowId, row);
+        if (this.generations.get(stripe) != generations[stripe]) {
+            // a concurrent invalidation may have been done before our put
+            cache.invalidate(rowId);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes a row from the cache, after it was modified or deleted in the database and the change was committed.
+     */
+    public void invalidate(RowId rowId) {
+        generations.incrementAndGet(stripe(rowId));
+        cache.invalidate(rowId);
+    }
+
+    /**
+     * Removes a row from the cache, after it was modified or deleted in the database but not yet committed.
+     * <p>
+     * The concurrent reads still get the committed row, so they don't need to be invalidated.
+     */
+    public void evict(RowId rowId) {
+        cache.invalidate(rowId);
+    }
+
+    /**
+     * Removes all the rows from the cache.
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    /**
+     * Estimates the memory used by a row, in bytes.
+     */
+    public static int weigh(Row row) {
+        long weight = 64; // row and row id headers and fields, cache entry
+        weight += weigh(row.id);
+        if (row.keys != null) {
+            weight += 16 + 4L * row.keys.length; // keys are shared with the model
+        }
+        if (row.values != null) {
+            weight += 16 + 4L * row.values.length;
+            for (Serializable value : row.values) {
+                weight += weigh(value);
+            }
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    protected static long weigh(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return 40 + ((String) value).length();
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return 16;
+        } else if (value instanceof Calendar) {
+            return 400;
+        } else if (value instanceof ACLRow) {
+            ACLRow acl = (ACLRow) value;
+            return 64 + weigh(acl.name) + weigh(acl.permission) + weigh(acl.user) + weigh(acl.group)
+                    + weigh(acl.creator) + weigh(acl.begin) + weigh(acl.end);
+        } else if (value instanceof Object[]) {
+            long weight = 16;
+            for (Object v : (Object[]) value) {
+                weight += 4 + weigh(v);
+            }
+            return weight;
+        } else if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        } else {
+            return 32;
+        }
+    }
+
+    /**
+     * Count-min sketch of the access frequencies, with 4 counters per key capped at 15. All the counters are halved
+     * after a number of accesses proportional to the sketch size, so that old accesses are forgotten.
+     * <p>
+     * The counters are updated without locking, a lost increment under contention only makes the estimate a bit lower.
+     */
+    protected static class FrequencySketch {
+
+        protected static final int MAX_COUNT = 15;
+
+        protected static final int[] SEEDS = { 0x97cb3127, 0xb1a3e1f7, 0x8ca8c2f1, 0xc5a4d7b3 };
+
+        protected final AtomicIntegerArray counters;
+
+        protected final int mask;
+
+        protected final int resetSize;
+
+        protected final AtomicInteger additions = new AtomicInteger();
+
+        protected FrequencySketch(int maxEntries) {
+            int size = Integer.highestOneBit(Math.max(maxEntries, 16) - 1) << 1;
+            counters = new AtomicIntegerArray(size);
+            mask = size - 1;
+            resetSize = 10 * maxEntries;
+        }
+
+        protected int index(int hash, int i) {
+            int h = (hash ^ (hash >>> 16)) * SEEDS[i];
+            return (h ^ (h >>> 15)) & mask;
+        }
+
+        protected void increment(Object key) {
+            int hash = key.hashCode();
+            int min = frequency(key);
+            if (min < MAX_COUNT) {
+                // conservative update: only increment the smallest counters
+                for (int i = 0; i < SEEDS.length; i++) {
+                    counters.compareAndSet(index(hash, i), min, min + 1);
+                }
+            }
+            // a single thread reaches the reset size, the others keep counting
+            if (additions.incrementAndGet() == resetSize) {
+                for (int i = 0; i < counters.length(); i++) {
+                    counters.getAndUpdate(i, count -> count >>> 1);
+                }
+                additions.addAndGet(-resetSize / 2);
+            }
+        }
+
+        protected int frequency(Object key) {
+            int hash = key.hashCode();
+            int min = MAX_COUNT;
+            for (int i = 0; i < SEEDS.length; i++) {
+                min = Math.min(min, counters.get(index(hash, i)));
+            }
+            return min;
+        }
+    }
+
+}
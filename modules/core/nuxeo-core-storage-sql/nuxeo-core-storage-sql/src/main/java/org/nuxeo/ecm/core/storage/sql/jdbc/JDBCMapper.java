@@ -25,6 +25,7 @@ import static org.nuxeo.ecm.core.api.ScrollResultImpl.emptyResult;
 
 import java.io.Serializable;
 import java.sql.Array;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLDataException;
@@ -65,11 +66,14 @@ import org.nuxeo.ecm.core.storage.sql.RowId;
 import org.nuxeo.ecm.core.storage.sql.Session.PathResolver;
 import org.nuxeo.ecm.core.storage.sql.VCSClusterInvalidator;
 import org.nuxeo.ecm.core.storage.sql.VCSInvalidations;
+import org.nuxeo.ecm.core.storage.sql.jdbc.ReadReplicaRouter.ReplicaConnection;
 import org.nuxeo.ecm.core.storage.sql.jdbc.SQLInfo.SQLInfoSelect;
 import org.nuxeo.ecm.core.storage.sql.jdbc.db.Column;
 import org.nuxeo.ecm.core.storage.sql.jdbc.dialect.Dialect;
 import org.nuxeo.runtime.api.Framework;
 
+import io.dropwizard.metrics5.Timer;
+
 /**
  * A {@link JDBCMapper} maps objects to and from a JDBC database. It is specific to a given database connection, as it
  * computes statements.
@@ -326,6 +330,7 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
 
     @Override
     public void setRootId(Serializable repositoryId, Serializable id) {
+        markTransactionWrites();
         String sql = sqlInfo.getInsertRootIdSql();
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             List<Column> columns = sqlInfo.getInsertRootIdColumns();
@@ -376,6 +381,47 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         return null;
     }
 
+    /**
+     * Builds a query, or reuses the one built for the same query and filter by any session of the repository.
+     *
+     * @since 11.5
+     */
+    protected QueryMaker.Query buildQuery(QueryMaker queryMaker, String query, QueryFilter queryFilter,
+            Object... params) {
+        QueryPlanCache queryPlanCache = repository.getQueryPlanCache();
+        if (queryPlanCache == null || params.length > 0) {
+            // maker-specific parameters are not part of the cache key
+            return queryMaker.buildQuery(sqlInfo, model, pathResolver, query, queryFilter, params);
+        }
+        return queryPlanCache.getQuery(query, queryFilter,
+                () -> queryMaker.buildQuery(sqlInfo, model, pathResolver, query, queryFilter));
+    }
+
+    /**
+     * Gets a connection to a read-only replica on which to run a query, or {@code null} if the query must run on the
+     * primary. The queries of a transaction that wrote to the database always run on the primary, so that they see the
+     * writes.
+     *
+     * @since 11.5
+     */
+    protected ReplicaConnection getReplicaConnection() {
+        ReadReplicaRouter router = repository.getReadReplicaRouter();
+        if (router == null || transactionWrites) {
+            return null;
+        }
+        return router.getConnection();
+    }
+
+    /**
+     * Starts timing a query run on the primary or on the replica of the given connection, if replicas are configured.
+     *
+     * @since 11.5
+     */
+    protected Timer.Context timeQuery(ReplicaConnection replicaConnection) {
+        ReadReplicaRouter router = repository.getReadReplicaRouter();
+        return router == null ? null : router.getTimer(replicaConnection).time();
+    }
+
     protected void prepareUserReadAcls(QueryFilter queryFilter) {
         String sql = dialect.getPrepareUserReadAclsSql();
         Serializable principals = queryFilter.getPrincipals();
@@ -468,7 +514,7 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         if (queryMaker == null) {
             throw new NuxeoException("No QueryMaker accepts query: " + queryType + ": " + query);
         }
-        QueryMaker.Query q = queryMaker.buildQuery(sqlInfo, model, pathResolver, query, queryFilter, params);
+        QueryMaker.Query q = buildQuery(queryMaker, query, queryFilter, params);
 
         if (q == null) {
             logger.log("Query cannot return anything due to conflicting clauses");
@@ -500,7 +546,10 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
             sql = dialect.addPagingClause(sql, Math.max(countUpTo + 1, limit + offset), 0);
         }
 
-        try (PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_SCROLL_INSENSITIVE,
+        ReplicaConnection replicaConnection = getReplicaConnection();
+        Connection readConnection = replicaConnection == null ? connection : replicaConnection.connection;
+        Timer.Context timerContext = timeQuery(replicaConnection);
+        try (PreparedStatement ps = readConnection.prepareStatement(sql, ResultSet.TYPE_SCROLL_INSENSITIVE,
                 ResultSet.CONCUR_READ_ONLY)) {
             int i = 1;
             for (Serializable object : q.selectParams) {
@@ -560,6 +609,13 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
             }
         } catch (SQLException e) {
             throw new NuxeoException("Invalid query: " + query, e, SC_BAD_REQUEST);
+        } finally {
+            if (timerContext != null) {
+                timerContext.stop();
+            }
+            if (replicaConnection != null) {
+                replicaConnection.close();
+            }
         }
     }
 
@@ -594,7 +650,8 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
             } else {
                 jdbcType = dialect.getJDBCTypeAndString(ColumnType.CLOB).jdbcType;
             }
-            Array array = dialect.createArrayOf(jdbcType, (Object[]) object, connection);
+            // the statement may be prepared on a replica connection
+            Array array = dialect.createArrayOf(jdbcType, (Object[]) object, ps.getConnection());
             ps.setArray(i, array);
         } else {
             ps.setObject(i, object);
@@ -632,7 +689,7 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
     protected ScrollResult<String> scrollSearch(String query, QueryFilter queryFilter, int batchSize,
             int keepAliveSeconds) {
         QueryMaker queryMaker = findQueryMaker("NXQL");
-        QueryMaker.Query q = queryMaker.buildQuery(sqlInfo, model, pathResolver, query, queryFilter);
+        QueryMaker.Query q = buildQuery(queryMaker, query, queryFilter);
         if (q == null) {
             logger.log("Query cannot return anything due to conflicting clauses");
             throw new NuxeoException("Query cannot return anything due to conflicting clauses");
@@ -890,6 +947,7 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         if (log.isDebugEnabled()) {
             log.debug("updateReadAcls: updating");
         }
+        markTransactionWrites();
         try (Statement st = connection.createStatement()) {
             String sql = dialect.getUpdateReadAclsSql();
             if (logger.isLogEnabled()) {
@@ -912,6 +970,7 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
             return;
         }
         log.debug("rebuildReadAcls: rebuilding ...");
+        markTransactionWrites();
         try (Statement st = connection.createStatement()) {
             String sql = dialect.getRebuildReadAclsSql();
             logger.log(sql);
@@ -58,6 +58,7 @@ import org.nuxeo.ecm.core.storage.sql.RowId;
 import org.nuxeo.ecm.core.storage.sql.RowMapper;
 import org.nuxeo.ecm.core.storage.sql.SelectionType;
 import org.nuxeo.ecm.core.storage.sql.SimpleFragment;
+import org.nuxeo.ecm.core.storage.sql.jdbc.SQLInfo.SQLInfoJoinedSelect;
 import org.nuxeo.ecm.core.storage.sql.jdbc.SQLInfo.SQLInfoSelect;
 import org.nuxeo.ecm.core.storage.sql.jdbc.SQLInfo.SQLInfoSelection;
 import org.nuxeo.ecm.core.storage.sql.jdbc.db.Column;
@@ -92,6 +93,13 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
 
     private final CollectionIO scalarCollectionIO;
 
+    /**
+     * Whether this mapper executed statements modifying the database since the last commit or rollback.
+     *
+     * @since 11.5
+     */
+    protected boolean transactionWrites;
+
     public JDBCRowMapper(Model model, SQLInfo sqlInfo, VCSClusterInvalidator clusterInvalidator,
             VCSInvalidationsPropagator invalidationsPropagator) {
         super(model, sqlInfo);
@@ -119,6 +127,8 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
 
     @Override
     public void sendInvalidations(VCSInvalidations invalidations) {
+        // called post-commit
+        transactionWrites = false;
         if (clusterInvalidator != null) {
             clusterInvalidator.sendInvalidations(invalidations);
         }
@@ -136,7 +146,17 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
 
     @Override
     public void rollback() {
-        // nothing
+        transactionWrites = false;
+    }
+
+    /**
+     * Records that a statement modifying the database is executed in the current transaction, so that the following
+     * queries of the transaction see it.
+     *
+     * @since 11.5
+     */
+    protected void markTransactionWrites() {
+        transactionWrites = true;
     }
 
     protected CollectionIO getCollectionIO(String tableName) {
@@ -171,6 +191,10 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         for (RowId rowId : rowIds) {
             tableIds.computeIfAbsent(rowId.tableName, k -> new HashSet<>()).add(rowId.id);
         }
+        if (sqlInfo.joinedFetchEnabled) {
+            // read simple fragments with joins, removing them from tableIds
+            readJoinedSimpleRows(tableIds, res);
+        }
         // read on each table
         for (Entry<String, Set<Serializable>> en : tableIds.entrySet()) {
             String tableName = en.getKey();
@@ -217,6 +241,130 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         return res;
     }
 
+    /**
+     * Reads the rows for {@link SimpleFragment}s of several tables using queries joining the tables, instead of one
+     * query per table. The tables read are removed from the map.
+     *
+     * @param tableIds the ids to read for each table
+     * @param res the list to which the rows, or row ids for missing rows, are added
+     * @since 11.5
+     */
+    protected void readJoinedSimpleRows(Map<String, Set<Serializable>> tableIds, List<RowId> res) {
+        List<String> tableNames = new ArrayList<>();
+        Set<Serializable> allIds = new HashSet<>();
+        for (Entry<String, Set<Serializable>> en : tableIds.entrySet()) {
+            String tableName = en.getKey();
+            if (model.isCollectionFragment(tableName)) {
+                continue;
+            }
+            if (sqlInfo.softDeleteEnabled && tableName.equals(Model.HIER_TABLE_NAME)) {
+                // the soft delete clause would also filter the other tables
+                continue;
+            }
+            tableNames.add(tableName);
+            allIds.addAll(en.getValue());
+        }
+        if (tableNames.size() < 2) {
+            return;
+        }
+        // group tables to limit the number of columns of each query
+        List<List<String>> groups = new ArrayList<>();
+        List<String> group = new ArrayList<>();
+        int columns = 0;
+        for (String tableName : tableNames) {
+            int tableColumns = sqlInfo.database.getTable(tableName).getColumns().size();
+            if (!group.isEmpty() && columns + tableColumns > sqlInfo.joinedFetchMaxColumns) {
+                groups.add(group);
+                group = new ArrayList<>();
+                columns = 0;
+            }
+            group.add(tableName);
+            columns += tableColumns;
+        }
+        groups.add(group);
+
+        List<Serializable> idList = new ArrayList<>(allIds);
+        int chunkSize = sqlInfo.getMaximumArgsForIn();
+        for (List<String> names : groups) {
+            if (names.size() < 2) {
+                // read as usual
+                continue;
+            }
+            Map<String, Set<Serializable>> remainingIds = new HashMap<>();
+            for (String tableName : names) {
+                remainingIds.put(tableName, new HashSet<>(tableIds.remove(tableName)));
+            }
+            for (int start = 0; start < idList.size(); start += chunkSize) {
+                int end = Math.min(start + chunkSize, idList.size());
+                List<Serializable> chunkIds = idList.subList(start, end);
+                for (Row row : readJoinedSimpleRows(names, chunkIds)) {
+                    // only keep rows that were asked for
+                    if (remainingIds.get(row.tableName).remove(row.id)) {
+                        res.add(row);
+                    }
+                }
+            }
+            // for the missing ids record an empty RowId
+            remainingIds.forEach((tableName, ids) -> ids.forEach(id -> res.add(new RowId(tableName, id))));
+        }
+    }
+
+    /**
+     * Gets a list of rows for {@link SimpleFragment}s of several tables from the database, given the table names and
+     * the ids, using a single query.
+     *
+     * @param tableNames the table names
+     * @param ids the ids
+     * @return the list of rows, without the missing ones
+     * @since 11.5
+     */
+    protected List<Row> readJoinedSimpleRows(List<String> tableNames, Collection<Serializable> ids) {
+        SQLInfoJoinedSelect select = sqlInfo.getSelectJoinedFragmentsByIds(tableNames, ids.size());
+        String sql = select.sql;
+        if (logger.isLogEnabled()) {
+            logger.logSQL(sql, ids);
+        }
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int i = 1;
+            for (Serializable id : ids) {
+                dialect.setId(ps, i++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                countExecute();
+                List<Row> res = new ArrayList<>();
+                while (rs.next()) {
+                    i = 1;
+                    for (Entry<String, List<Column>> en : select.whatColumns.entrySet()) {
+                        String tableName = en.getKey();
+                        Row row = new Row(tableName, (Serializable) null);
+                        for (Column column : en.getValue()) {
+                            row.put(column.getKey(), column.getFromResultSet(rs, i++));
+                        }
+                        if (row.id == null) {
+                            // no row for this table (left join)
+                            continue;
+                        }
+                        List<Column> opaqueColumns = select.opaqueColumns.get(tableName);
+                        if (opaqueColumns != null) {
+                            for (Column column : opaqueColumns) {
+                                row.putNew(column.getKey(), Row.OPAQUE);
+                            }
+                        }
+                        res.add(row);
+                    }
+                }
+                if (logger.isLogEnabled()) {
+                    for (Row row : res) {
+                        logger.log("  -> " + row);
+                    }
+                }
+                return res;
+            }
+        } catch (SQLException e) {
+            throw new NuxeoException("Could not select: " + sql, e);
+        }
+    }
+
     /**
      * Gets a list of rows for {@link SimpleFragment}s from the database, given the table name and the ids.
      *
@@ -421,6 +569,9 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
 
     @Override
     public void write(RowBatch batch) {
+        if (!batch.isEmpty()) {
+            markTransactionWrites();
+        }
         // do deletes first to avoid violating constraint of unique child name in parent
         // when replacing a complex list element
         if (!batch.deletes.isEmpty()) {
@@ -506,6 +657,13 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         if (sql == null) {
             throw new NuxeoException("Unknown table: " + tableName);
         }
+        if (sqlInfo.copyInsertEnabled && rows.size() >= sqlInfo.copyInsertMinRows) {
+            String copySql = sqlInfo.getCopyInsertSql(tableName);
+            if (copySql != null) {
+                copyInsertSimpleRows(copySql, sqlInfo.getInsertColumns(tableName), rows);
+                return;
+            }
+        }
         boolean batched = supportsBatchUpdates && rows.size() > 1;
         String loggedSql = batched ? sql + " -- BATCHED" : sql;
         List<Column> columns = sqlInfo.getInsertColumns(tableName);
@@ -545,6 +703,33 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         }
     }
 
+    /**
+     * Inserts multiple rows, all for the same table, using the bulk copy protocol of the database.
+     *
+     * @since 11.5
+     */
+    protected void copyInsertSimpleRows(String sql, List<Column> columns, List<Row> rows) {
+        List<Serializable[]> values = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            Serializable[] rowValues = new Serializable[columns.size()];
+            int i = 0;
+            for (Column column : columns) {
+                rowValues[i++] = row.get(column.getKey());
+            }
+            values.add(rowValues);
+        }
+        if (logger.isLogEnabled()) {
+            logger.log(sql + " -- " + rows.size() + " rows");
+        }
+        try {
+            dialect.copyIn(connection, sql, columns, values);
+            countExecute();
+        } catch (SQLException e) {
+            checkConcurrentUpdate(e);
+            throw new NuxeoException("Could not insert: " + sql, e);
+        }
+    }
+
     /**
      * Updates multiple collection rows, all for the same table.
      */
@@ -764,6 +949,7 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
         if (max < 0) {
             max = 0;
         }
+        markTransactionWrites();
         String sql = sqlInfo.getSoftDeleteCleanupSql();
         if (logger.isLogEnabled()) {
             logger.logSQL(sql, Arrays.<Serializable> asList(beforeTime, Long.valueOf(max)));
@@ -953,6 +1139,7 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
     public CopyResult copy(IdWithTypes source, Serializable destParentId, String destName, Row overwriteRow,
             boolean excludeSpecialChildren, boolean excludeACL) {
         // assert !model.separateMainTable; // other case not implemented
+        markTransactionWrites();
         VCSInvalidations invalidations = new VCSInvalidations();
         try {
             Map<Serializable, Serializable> idMap = new LinkedHashMap<>();
@@ -1253,6 +1440,7 @@ public class JDBCRowMapper extends JDBCConnection implements RowMapper {
 
     @Override
     public void remove(Serializable rootId, List<NodeInfo> nodeInfos) {
+        markTransactionWrites();
         if (sqlInfo.softDeleteEnabled) {
             deleteRowsSoft(nodeInfos);
         } else {
@@ -281,6 +281,9 @@ public class NXQLQueryMaker implements QueryMaker {
 
     protected int fragJoinCount = 0;
 
+    /** Whether the built query can be reused, see {@link Query#cacheable}. */
+    protected boolean cacheable = true;
+
     @Override
     public String getName() {
         return NXQL.NXQL;
@@ -758,6 +761,7 @@ public class NXQLQueryMaker implements QueryMaker {
         ColumnMapMaker mapMaker = new ColumnMapMaker(whatColumns, whatKeys);
         q.selectInfo = new SQLInfoSelect(select.getStatement(), whatColumns, mapMaker, null, null);
         q.selectParams = selectParams;
+        q.cacheable = cacheable;
         return q;
     }
 
@@ -1353,6 +1357,8 @@ public class NXQLQueryMaker implements QueryMaker {
                     NXQL.ECM_FULLTEXT_JOBID.equals(name)) {
                 // ok
             } else if (NXQL.ECM_ISTRASHED.equals(name)) {
+                // the column depends on the trash service state, which may change
+                cacheable = false;
                 TrashService trashService = Framework.getService(TrashService.class);
                 if (trashService.hasFeature(TRASHED_STATE_IS_DEDICATED_PROPERTY)
                         || trashService.hasFeature(TRASHED_STATE_IN_MIGRATION)) {
@@ -1362,6 +1368,8 @@ public class NXQLQueryMaker implements QueryMaker {
                 }
             } else if (NXQL.ECM_TAG.equals(name) || name.startsWith(ECM_TAG_STAR)) {
                 hasTag = true;
+                // the generated SQL depends on the tag storage migration state, which may change
+                cacheable = false;
             } else if (NXQL.ECM_FULLTEXT_SCORE.equals(name)) {
                 if (inOrderBy) {
                     orderByScore = true;
@@ -1659,6 +1667,7 @@ public class NXQLQueryMaker implements QueryMaker {
             } else if (NXQL.ECM_TAG.equals(name) || name.startsWith(ECM_TAG_STAR)) {
                 // checking the migration service is a hack but we can't really do better here without refactoring
                 MigrationStatus status = Framework.getService(MigrationService.class).getStatus("tag-storage");
+                cacheable = false;
                 boolean facetedTag = "facets".equals(status.getState());
                 if (facetedTag) {
                     String newName = FACETED_TAG + "/*";
@@ -2044,6 +2053,7 @@ public class NXQLQueryMaker implements QueryMaker {
         protected void visitExpressionStartsWithPath(String path) {
             // find the id from the path
             Serializable id = pathResolver.getIdForPath(path);
+            cacheable = false;
             if (id == null) {
                 // no such path, always return a false
                 // TODO remove the expression more intelligently from the parse
@@ -2086,6 +2096,7 @@ public class NXQLQueryMaker implements QueryMaker {
                 path = path.substring(0, path.length() - PATH_SEP.length());
             }
             Serializable id = pathResolver.getIdForPath(path);
+            cacheable = false;
             if (id == null) {
                 // no such path, always return a false
                 // TODO remove the expression more intelligently from the parse
@@ -2159,6 +2170,7 @@ public class NXQLQueryMaker implements QueryMaker {
 
         protected void visitExpressionIsTrashed(Expression node) {
             TrashService trashService = Framework.getService(TrashService.class);
+            cacheable = false;
             if (trashService.hasFeature(TRASHED_STATE_IS_DEDUCED_FROM_LIFECYCLE)) {
                 visitExpressionIsTrashedOnLifeCycle(node);
             } else if (trashService.hasFeature(TRASHED_STATE_IN_MIGRATION)) {
@@ -2609,6 +2621,8 @@ public class NXQLQueryMaker implements QueryMaker {
                 }
                 DateLiteral dateLiteral = new DateLiteral(dateTime);
                 visitDateLiteral(dateLiteral);
+                // the date depends on the current time
+                cacheable = false;
             }
         }
 
@@ -74,6 +74,14 @@ public interface QueryMaker {
 
         public List<Serializable> selectParams = new LinkedList<>();
 
+        /**
+         * Whether the query only depends on the NXQL query and the query filter, and can be reused for the same ones.
+         * This is not the case if it depends on the current time or on the repository content, like the id of a path.
+         *
+         * @since 11.5
+         */
+        public boolean cacheable;
+
     }
 
     public static class QueryCannotMatchException extends RuntimeException {
@@ -0,0 +1,203 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.nuxeo.ecm.core.api.NuxeoPrincipal;
+import org.nuxeo.ecm.core.api.impl.FacetFilter;
+import org.nuxeo.ecm.core.query.QueryFilter;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryMaker.Query;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import io.dropwizard.metrics5.Counter;
+import io.dropwizard.metrics5.MetricName;
+import io.dropwizard.metrics5.MetricRegistry;
+import io.dropwizard.metrics5.RatioGauge;
+import io.dropwizard.metrics5.SharedMetricRegistries;
+import io.dropwizard.metrics5.Timer;
+
+/**
+ * Bounded cache of the SQL queries built from NXQL queries, shared by all the sessions of a repository.
+ * <p>
+ * A query is cached for a NXQL query and the parts of the query filter used to build it: the principals and
+ * permissions of the security check, the facet filter and the query transformers. As the query transformers receive
+ * the current principal, the principal name is also part of the key when there are transformers. Limit and offset are
+ * applied when executing the query, so all the pages of a query share the same plan.
+ * <p>
+ * Only the queries flagged as {@link Query#cacheable} are kept, the ones depending on the current time or on the
+ * repository content are built each time.
+ *
+ * @since 11.5
+ */
+public class QueryPlanCache {
+
+    protected final Map<Key, Query> cache;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final Counter hitCount;
+
+    protected final Counter missCount;
+
+    protected final Timer planTimer;
+
+    /**
+     * Key of a cached query.
+     */
+    protected static class Key {
+
+        protected final String query;
+
+        protected final List<String> principals;
+
+        protected final List<String> permissions;
+
+        protected final Set<String> requiredFacets;
+
+        protected final Set<String> excludedFacets;
+
+        protected final List<Class<?>> transformers;
+
+        // transformers may depend on the principal, which is not in principals for administrators
+        protected final String principalName;
+
+        protected final int hashCode;
+
+        protected Key(String query, QueryFilter queryFilter) {
+            this.query = query;
+            principals = asList(queryFilter.getPrincipals());
+            permissions = asList(queryFilter.getPermissions());
+            FacetFilter facetFilter = queryFilter.getFacetFilter();
+            requiredFacets = facetFilter == null ? Collections.emptySet() : facetFilter.required;
+            excludedFacets = facetFilter == null ? Collections.emptySet() : facetFilter.excluded;
+            transformers = queryFilter.getQueryTransformers()
+                                      .stream()
+                                      .map(Object::getClass)
+                                      .collect(Collectors.toList());
+            NuxeoPrincipal principal = queryFilter.getPrincipal();
+            principalName = transformers.isEmpty() || principal == null ? null : principal.getName();
+            hashCode = Objects.hash(query, principals, permissions, requiredFacets, excludedFacets, transformers,
+                    principalName);
+        }
+
+        protected static List<String> asList(String[] array) {
+            return array == null ? null : Arrays.asList(array);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && query.equals(other.query)
+                    && Objects.equals(principals, other.principals) && Objects.equals(permissions, other.permissions)
+                    && requiredFacets.equals(other.requiredFacets) && excludedFacets.equals(other.excludedFacets)
+                    && transformers.equals(other.transformers) && Objects.equals(principalName, other.principalName);
+        }
+    }
+
+    public QueryPlanCache(String repositoryName, int maxSize) {
+        cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Query> eldest) {
+                return size() > maxSize;
+            }
+        });
+        hitCount = registry.counter(MetricName.build("nuxeo", "repositories", "repository", "query", "plan", "hit")
+                                              .tagged("repository", repositoryName));
+        missCount = registry.counter(MetricName.build("nuxeo", "repositories", "repository", "query", "plan", "miss")
+                                               .tagged("repository", repositoryName));
+        planTimer = registry.timer(MetricName.build("nuxeo", "repositories", "repository", "query", "plan", "timer")
+                                             .tagged("repository", repositoryName));
+        MetricName gaugeName = MetricName.build("nuxeo", "repositories", "repository", "query", "plan", "hit",
+                "ratio").tagged("repository", repositoryName);
+        registry.remove(gaugeName);
+        registry.register(gaugeName, new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(hitCount.getCount(), hitCount.getCount() + missCount.getCount());
+            }
+        });
+    }
+
+    /**
+     * Gets the query built for a NXQL query and a query filter, building it if needed.
+     *
+     * @param builder the builder of the query, called on cache miss
+     * @return the query, or {@code null} if the query cannot match anything
+     */
+    public Query getQuery(String query, QueryFilter queryFilter, Supplier<Query> builder) {
+        Key key = new Key(query, queryFilter);
+        Query q = cache.get(key);
+        if (q != null) {
+            hitCount.inc();
+            return copy(q);
+        }
+        missCount.inc();
+        try (Timer.Context context = planTimer.time()) {
+            q = builder.get();
+        }
+        if (q != null && q.cacheable) {
+            cache.put(key, q);
+            return copy(q);
+        }
+        return q;
+    }
+
+    /**
+     * Copies a cached query so that its parameters can be changed by the caller.
+     */
+    protected static Query copy(Query q) {
+        Query copy = new Query();
+        copy.selectInfo = q.selectInfo;
+        copy.selectParams = new ArrayList<>(q.selectParams);
+        copy.cacheable = q.cacheable;
+        return copy;
+    }
+
+    public int getSize() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.nuxeo.ecm.core.storage.sql.jdbc.dialect.Dialect;
+import org.nuxeo.runtime.datasource.ConnectionHelper;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import io.dropwizard.metrics5.Counter;
+import io.dropwizard.metrics5.Gauge;
+import io.dropwizard.metrics5.MetricName;
+import io.dropwizard.metrics5.MetricRegistry;
+import io.dropwizard.metrics5.SharedMetricRegistries;
+import io.dropwizard.metrics5.Timer;
+
+/**
+ * Routes the read-only queries of a repository to the read-only replicas of its database.
+ * <p>
+ * A replica is used only if its replication lag is below the configured maximum. The lag of a replica is checked at
+ * most once per check interval, by the thread needing a replica at that time. Among the replicas that are recent
+ * enough, the one running the fewest queries is used, then the one with the lowest lag. When no replica can be used,
+ * the query runs on the primary.
+ * <p>
+ * The replica connections are not enlisted in the transaction, as a replica cannot take part in a two-phase commit.
+ *
+ * @since 11.5
+ */
+public class ReadReplicaRouter {
+
+    private static final Logger log = LogManager.getLogger(ReadReplicaRouter.class);
+
+    protected static final String METRIC_NAME = "nuxeo.repositories.repository.datasource";
+
+    protected static final long UNAVAILABLE = Long.MAX_VALUE;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final String repositoryName;
+
+    protected final Dialect dialect;
+
+    protected final long maxLagMillis;
+
+    protected final long lagCheckIntervalMillis;
+
+    protected final List<Replica> replicas = new ArrayList<>();
+
+    protected final Timer primaryTimer;
+
+    protected final Counter fallbackCounter;
+
+    public ReadReplicaRouter(String repositoryName, Dialect dialect, List<String> dataSourceNames, int maxLag,
+            int lagCheckInterval) {
+        this.repositoryName = repositoryName;
+        this.dialect = dialect;
+        maxLagMillis = maxLag * 1000L;
+        lagCheckIntervalMillis = lagCheckInterval * 1000L;
+        for (String dataSourceName : dataSourceNames) {
+            replicas.add(new Replica(dataSourceName));
+        }
+        primaryTimer = newTimer(JDBCConnection.getDataSourceName(repositoryName));
+        fallbackCounter = registry.counter(
+                MetricName.build(METRIC_NAME, "replica", "fallback").tagged("repository", repositoryName));
+    }
+
+    protected Timer newTimer(String dataSourceName) {
+        return registry.timer(MetricName.build(METRIC_NAME, "query")
+                                        .tagged("repository", repositoryName, "datasource", dataSourceName));
+    }
+
+    /**
+     * Gets a connection to a replica recent enough to run a query.
+     *
+     * @return the connection, to be closed by the caller, or {@code null} if the primary must be used
+     */
+    public ReplicaConnection getConnection() {
+        long now = System.currentTimeMillis();
+        for (Replica replica : replicas) {
+            replica.checkLag(now);
+        }
+        for (;;) {
+            Replica best = null;
+            for (Replica replica : replicas) {
+                long lag = replica.lagMillis;
+                if (lag > maxLagMillis) {
+                    continue;
+                }
+                if (best == null || replica.active.get() < best.active.get()
+                        || replica.active.get() == best.active.get() && lag < best.lagMillis) {
+                    best = replica;
+                }
+            }
+            if (best == null) {
+                fallbackCounter.inc();
+                return null;
+            }
+            ReplicaConnection connection = best.getConnection();
+            if (connection != null) {
+                return connection;
+            }
+            // the replica has been marked unavailable, try another one
+        }
+    }
+
+    /**
+     * Gets the timer recording the queries run on the primary, or on the replica of the given connection.
+     */
+    public Timer getTimer(ReplicaConnection connection) {
+        return connection == null ? primaryTimer : connection.replica.timer;
+    }
+
+    public void close() {
+        registry.removeMatching((name, metric) -> name.getKey().startsWith(METRIC_NAME + ".")
+                && repositoryName.equals(name.getTags().get("repository")));
+    }
+
+    /**
+     * A read-only replica, with its last known replication lag.
+     */
+    protected class Replica {
+
+        protected final String dataSourceName;
+
+        protected final Timer timer;
+
+        // queries currently running
+        protected final AtomicInteger active = new AtomicInteger();
+
+        protected final AtomicBoolean checking = new AtomicBoolean();
+
+        // unknown until the first check
+        protected volatile long lagMillis = UNAVAILABLE;
+
+        protected volatile long lastCheck;
+
+        protected Replica(String dataSourceName) {
+            this.dataSourceName = dataSourceName;
+            timer = newTimer(dataSourceName);
+            MetricName lagName = MetricName.build(METRIC_NAME, "replica", "lag")
+                                           .tagged("repository", repositoryName, "datasource", dataSourceName);
+            registry.remove(lagName);
+            registry.register(lagName, (Gauge<Long>) () -> lagMillis == UNAVAILABLE ? -1 : lagMillis);
+        }
+
+        protected void checkLag(long now) {
+            if (now - lastCheck < lagCheckIntervalMillis || !checking.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                lagMillis = readLag();
+            } finally {
+                lastCheck = now;
+                checking.set(false);
+            }
+        }
+
+        protected long readLag() {
+            String sql = dialect.getReplicationLagSql();
+            try (Connection connection = ConnectionHelper.getConnection(dataSourceName, true)) {
+                if (sql == null) {
+                    // the lag cannot be known, the replica is assumed to be recent enough
+                    return 0;
+                }
+                try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+                    rs.next();
+                    long lag = (long) (rs.getDouble(1) * 1000);
+                    log.trace("Replication lag of: {} is {}ms", dataSourceName, lag);
+                    return lag;
+                }
+            } catch (SQLException e) {
+                log.warn("Cannot check replication lag of: {}, not using it until the next check", dataSourceName, e);
+                return UNAVAILABLE;
+            }
+        }
+
+        protected ReplicaConnection getConnection() {
+            try {
+                ReplicaConnection connection = new ReplicaConnection(this,
+                        ConnectionHelper.getConnection(dataSourceName, true));
+                active.incrementAndGet();
+                return connection;
+            } catch (SQLException e) {
+                log.warn("Cannot connect to replica: {}, not using it until the next check", dataSourceName, e);
+                lagMillis = UNAVAILABLE;
+                return null;
+            }
+        }
+    }
+
+    /**
+     * A connection to a replica, to be closed once the query results have been read.
+     */
+    public static class ReplicaConnection implements AutoCloseable {
+
+        protected final Replica replica;
+
+        public final Connection connection;
+
+        protected ReplicaConnection(Replica replica, Connection connection) {
+            this.replica = replica;
+            this.connection = connection;
+        }
+
+        public String getDataSourceName() {
+            return replica.dataSourceName;
+        }
+
+        @Override
+        public void close() {
+            replica.active.decrementAndGet();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.error("Cannot close connection to replica: {}", replica.dataSourceName, e);
+            }
+        }
+    }
+
+}
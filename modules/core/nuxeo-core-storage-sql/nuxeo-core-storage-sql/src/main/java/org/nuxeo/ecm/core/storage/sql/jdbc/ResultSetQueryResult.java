@@ -19,6 +19,7 @@
 package org.nuxeo.ecm.core.storage.sql.jdbc;
 
 import java.io.Serializable;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -29,6 +30,9 @@ import java.util.NoSuchElementException;
 import org.nuxeo.ecm.core.api.IterableQueryResult;
 import org.nuxeo.ecm.core.query.QueryFilter;
 import org.nuxeo.ecm.core.storage.sql.Session.PathResolver;
+import org.nuxeo.ecm.core.storage.sql.jdbc.ReadReplicaRouter.ReplicaConnection;
+
+import io.dropwizard.metrics5.Timer;
 
 /**
  * Iterable query result implemented as a cursor on a SQL {@link ResultSet}.
@@ -41,6 +45,9 @@ public class ResultSetQueryResult implements IterableQueryResult, Iterator<Map<S
 
     private ResultSet rs;
 
+    // kept open until the results are closed
+    private ReplicaConnection replicaConnection;
+
     private Map<String, Serializable> next;
 
     private boolean eof;
@@ -54,7 +61,7 @@ public class ResultSetQueryResult implements IterableQueryResult, Iterator<Map<S
     public ResultSetQueryResult(QueryMaker queryMaker, String query, QueryFilter queryFilter, PathResolver pathResolver,
             JDBCMapper mapper, Object... params) throws SQLException {
         logger = mapper.logger;
-        q = queryMaker.buildQuery(mapper.sqlInfo, mapper.model, pathResolver, query, queryFilter, params);
+        q = mapper.buildQuery(queryMaker, query, queryFilter, params);
         if (q == null) {
             // no result
             size = 0;
@@ -68,13 +75,25 @@ public class ResultSetQueryResult implements IterableQueryResult, Iterator<Map<S
         if (logger.isLogEnabled()) {
             logger.logSQL(q.selectInfo.sql, q.selectParams);
         }
-        ps = mapper.connection.prepareStatement(q.selectInfo.sql, ResultSet.TYPE_SCROLL_INSENSITIVE,
-                ResultSet.CONCUR_READ_ONLY);
-        int i = 1;
-        for (Serializable object : q.selectParams) {
-            mapper.setToPreparedStatement(ps, i++, object);
+        replicaConnection = mapper.getReplicaConnection();
+        Connection connection = replicaConnection == null ? mapper.connection : replicaConnection.connection;
+        Timer.Context timerContext = mapper.timeQuery(replicaConnection);
+        try {
+            ps = connection.prepareStatement(q.selectInfo.sql, ResultSet.TYPE_SCROLL_INSENSITIVE,
+                    ResultSet.CONCUR_READ_ONLY);
+            int i = 1;
+            for (Serializable object : q.selectParams) {
+                mapper.setToPreparedStatement(ps, i++, object);
+            }
+            rs = ps.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            closeReplicaConnection();
+            throw e;
+        } finally {
+            if (timerContext != null) {
+                timerContext.stop();
+            }
         }
-        rs = ps.executeQuery();
         mapper.countExecute();
         // rs.setFetchDirection(ResultSet.FETCH_UNKNOWN); fails in H2
     }
@@ -102,6 +121,14 @@ public class ResultSetQueryResult implements IterableQueryResult, Iterator<Map<S
             pos = -1;
             rs = null;
             ps = null;
+            closeReplicaConnection();
+        }
+    }
+
+    protected void closeReplicaConnection() {
+        if (replicaConnection != null) {
+            replicaConnection.close();
+            replicaConnection = null;
         }
     }
 
@@ -29,6 +29,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -83,6 +84,18 @@ public class SQLInfo {
 
     public final boolean proxiesEnabled;
 
+    /** @since 11.5 */
+    public final boolean joinedFetchEnabled;
+
+    /** @since 11.5 */
+    public final int joinedFetchMaxColumns;
+
+    /** @since 11.5 */
+    public final boolean copyInsertEnabled;
+
+    /** @since 11.5 */
+    public final int copyInsertMinRows;
+
     private final Model model;
 
     private String selectRootIdSql;
@@ -91,6 +104,8 @@ public class SQLInfo {
 
     private final Map<String, String> insertSqlMap; // statement
 
+    private final Map<String, String> copyInsertSqlMap; // statement
+
     private final Map<String, List<Column>> insertColumnsMap;
 
     private final Map<String, String> deleteSqlMap; // statement
@@ -151,6 +166,10 @@ public class SQLInfo {
         RepositoryDescriptor repositoryDescriptor = model.getRepositoryDescriptor();
         softDeleteEnabled = repositoryDescriptor.getSoftDeleteEnabled();
         proxiesEnabled = repositoryDescriptor.getProxiesEnabled();
+        joinedFetchEnabled = repositoryDescriptor.getJoinedFetchEnabled();
+        joinedFetchMaxColumns = repositoryDescriptor.getJoinedFetchMaxColumns();
+        copyInsertEnabled = repositoryDescriptor.getCopyInsertEnabled();
+        copyInsertMinRows = repositoryDescriptor.getCopyInsertMinRows();
 
         database = new Database(dialect);
 
@@ -168,6 +187,7 @@ public class SQLInfo {
         selectComplexChildrenIdsAndTypesSqlIncludeSpecialChildren = null;
 
         insertSqlMap = new HashMap<>();
+        copyInsertSqlMap = new HashMap<>();
         insertColumnsMap = new HashMap<>();
 
         deleteSqlMap = new HashMap<>();
@@ -284,6 +304,18 @@ public class SQLInfo {
         return insertSqlMap.get(tableName);
     }
 
+    /**
+     * Returns the SQL to bulk copy rows, using the same columns as the {@code INSERT} statement
+     * {@link #getInsertSql}.
+     *
+     * @param tableName the table name
+     * @return the SQL statement, or {@code null} if the database cannot bulk copy rows in this table
+     * @since 11.5
+     */
+    public String getCopyInsertSql(String tableName) {
+        return copyInsertSqlMap.get(tableName);
+    }
+
     /**
      * Returns the list of columns to use for an {@code INSERT} statement {@link #getInsertSql}.
      *
@@ -445,6 +477,62 @@ public class SQLInfo {
                 opaqueColumns.isEmpty() ? null : opaqueColumns);
     }
 
+    /**
+     * Select by ids for all values of several simple fragments in a single query, each fragment table being left joined
+     * to the hierarchy table. The row of a fragment is absent for an id if its id column is {@code null}.
+     * <p>
+     * If the hierarchy table is one of the fragments, the soft delete clause applies to all the fragments.
+     *
+     * @since 11.5
+     */
+    public SQLInfoJoinedSelect getSelectJoinedFragmentsByIds(List<String> tableNames, int nids) {
+        Table hierTable = database.getTable(Model.HIER_TABLE_NAME);
+        Column whereColumn = hierTable.getColumn(Model.MAIN_KEY);
+        Map<String, List<Column>> whatColumns = new LinkedHashMap<>();
+        Map<String, List<Column>> opaqueColumns = new HashMap<>();
+        List<String> whats = new LinkedList<>();
+        StringBuilder from = new StringBuilder(hierTable.getQuotedName());
+        for (String tableName : tableNames) {
+            Table table = database.getTable(tableName);
+            List<Column> columns = new ArrayList<>();
+            List<Column> opaques = new ArrayList<>();
+            for (Column column : table.getColumns()) {
+                if (column.isOpaque()) {
+                    opaques.add(column);
+                } else {
+                    columns.add(column);
+                    whats.add(column.getFullQuotedName());
+                }
+            }
+            whatColumns.put(tableName, columns);
+            if (!opaques.isEmpty()) {
+                opaqueColumns.put(tableName, opaques);
+            }
+            if (!tableName.equals(Model.HIER_TABLE_NAME)) {
+                Join join = new Join(Join.LEFT, table.getQuotedName(), null, null, table.getColumn(Model.MAIN_KEY),
+                        whereColumn);
+                from.append(join.toSql(dialect));
+            }
+        }
+        StringBuilder where = new StringBuilder(whereColumn.getFullQuotedName());
+        where.append(" IN (");
+        for (int i = 0; i < nids; i++) {
+            if (i != 0) {
+                where.append(", ");
+            }
+            where.append('?');
+        }
+        where.append(')');
+        if (whatColumns.containsKey(Model.HIER_TABLE_NAME)) {
+            where.append(getSoftDeleteClause(Model.HIER_TABLE_NAME));
+        }
+        Select select = new Select(hierTable);
+        select.setWhat(String.join(", ", whats));
+        select.setFrom(from.toString());
+        select.setWhere(where.toString());
+        return new SQLInfoJoinedSelect(select.getStatement(), whatColumns, opaqueColumns);
+    }
+
     /**
      * Select all ancestors ids for several fragments.
      * <p>
@@ -1076,6 +1164,12 @@ public class SQLInfo {
             }
             insertSqlMap.put(tableName, insert.getStatement());
             insertColumnsMap.put(tableName, insertColumns);
+            if (copyInsertEnabled) {
+                String copySql = dialect.getCopyInSql(table, insertColumns);
+                if (copySql != null) {
+                    copyInsertSqlMap.put(tableName, copySql);
+                }
+            }
         }
 
         protected void postProcessDelete() {
@@ -1159,6 +1253,29 @@ public class SQLInfo {
         }
     }
 
+    /**
+     * Info about a select reading the rows of several tables with the same id.
+     *
+     * @since 11.5
+     */
+    public static class SQLInfoJoinedSelect {
+
+        public final String sql;
+
+        /** The columns read for each table, in the order of the result set. */
+        public final Map<String, List<Column>> whatColumns;
+
+        /** The opaque columns of each table, if any. */
+        public final Map<String, List<Column>> opaqueColumns;
+
+        public SQLInfoJoinedSelect(String sql, Map<String, List<Column>> whatColumns,
+                Map<String, List<Column>> opaqueColumns) {
+            this.sql = sql;
+            this.whatColumns = whatColumns;
+            this.opaqueColumns = opaqueColumns;
+        }
+    }
+
     /**
      * Info about how to do the query to get a {@link Selection}.
      */
@@ -690,6 +690,37 @@ public abstract class Dialect {
         return "VALUES ( )";
     }
 
+    /**
+     * Gets the statement used by {@link #copyIn} to insert rows in a table by streaming them to the database.
+     *
+     * @param table the table
+     * @param columns the columns to insert
+     * @return the statement, or {@code null} if the dialect cannot stream rows to this table
+     * @since 11.5
+     */
+    public String getCopyInSql(Table table, List<Column> columns) {
+        return null;
+    }
+
+    /**
+     * Inserts rows in a table by streaming them to the database, which is much faster than batched inserts for large
+     * numbers of rows.
+     * <p>
+     * Only called for the statements returned by {@link #getCopyInSql}, so dialects returning one must implement it.
+     *
+     * @param connection the connection
+     * @param sql the statement returned by {@link #getCopyInSql}
+     * @param columns the columns to insert
+     * @param rows the values of the rows, in the order of the columns
+     * @return the number of rows inserted
+     * @since 11.5
+     */
+    public long copyIn(Connection connection, String sql, List<Column> columns, List<Serializable[]> rows)
+            throws SQLException {
+        throw new UnsupportedOperationException(
+                "Copy inserts are not supported by " + getClass().getSimpleName() + ": " + sql);
+    }
+
     public String getNullColumnString() {
         return "";
     }
@@ -1148,6 +1179,16 @@ public abstract class Dialect {
         return null;
     }
 
+    /**
+     * Gets the SQL query returning the replication lag of a read-only replica, in seconds.
+     *
+     * @return the SQL query, or {@code null} if the lag of a replica cannot be known
+     * @since 11.5
+     */
+    public String getReplicationLagSql() {
+        return null;
+    }
+
     /**
      * Gets the sql statements to execute after the repository init (at startup).
      * <p>
@@ -19,7 +19,10 @@
  */
 package org.nuxeo.ecm.core.storage.sql.jdbc.dialect;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
 import java.sql.Array;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -31,9 +34,11 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -67,6 +72,7 @@ import org.nuxeo.ecm.core.storage.sql.jdbc.db.Join;
 import org.nuxeo.ecm.core.storage.sql.jdbc.db.Table;
 import org.nuxeo.ecm.core.storage.sql.jdbc.db.TableAlias;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.datasource.ConnectionHelper;
 
 /**
  * PostgreSQL-specific dialect.
@@ -92,6 +98,8 @@ public class DialectPostgreSQL extends Dialect {
 
     private static final String UNLOGGED_KEYWORD = "UNLOGGED";
 
+    private static final String PG_CONNECTION_CLASS = "org.postgresql.PGConnection";
+
     protected final String fulltextAnalyzer;
 
     protected final boolean supportsWith;
@@ -199,6 +207,186 @@ public class DialectPostgreSQL extends Dialect {
         return "DEFAULT VALUES";
     }
 
+    @Override
+    public String getCopyInSql(Table table, List<Column> columns) {
+        if (columns.isEmpty()) {
+            return null;
+        }
+        List<String> columnNames = new ArrayList<>(columns.size());
+        for (Column column : columns) {
+            if (!"?".equals(column.getFreeVariableSetter())) {
+                // value computed by the database
+                return null;
+            }
+            columnNames.add(column.getQuotedName());
+        }
+        return "COPY " + table.getQuotedName() + " (" + String.join(", ", columnNames)
+                + ") FROM STDIN WITH (FORMAT csv)";
+    }
+
+    @Override
+    public long copyIn(Connection connection, String sql, List<Column> columns, List<Serializable[]> rows)
+            throws SQLException {
+        // the COPY API is specific to the PostgreSQL driver
+        Connection pgConnection = ConnectionHelper.unwrap(connection);
+        try {
+            Class<?> klass = Class.forName(PG_CONNECTION_CLASS, true, pgConnection.getClass().getClassLoader());
+            Object copyManager = klass.getMethod("getCopyAPI").invoke(pgConnection.unwrap(klass));
+            Object count = copyManager.getClass()
+                                      .getMethod("copyIn", String.class, Reader.class)
+                                      .invoke(copyManager, sql, new CopyInReader(columns, rows));
+            return ((Long) count).longValue();
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException && cause.getCause() instanceof SQLException) {
+                // value that cannot be encoded, see CopyInReader
+                cause = cause.getCause();
+            }
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException(cause);
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * Reader of the rows in the CSV format of COPY, encoding each row when the driver reads it so that the rows are
+     * never all held as text in memory.
+     *
+     * @since 11.5
+     */
+    protected class CopyInReader extends Reader {
+
+        protected final List<Column> columns;
+
+        protected final Iterator<Serializable[]> rows;
+
+        protected final StringBuilder row = new StringBuilder();
+
+        protected int pos;
+
+        protected CopyInReader(List<Column> columns, List<Serializable[]> rows) {
+            this.columns = columns;
+            this.rows = rows.iterator();
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (pos == row.length()) {
+                if (!rows.hasNext()) {
+                    return -1;
+                }
+                row.setLength(0);
+                pos = 0;
+                Serializable[] values = rows.next();
+                try {
+                    for (int i = 0; i < values.length; i++) {
+                        if (i != 0) {
+                            row.append(',');
+                        }
+                        appendCopyValue(row, values[i], columns.get(i));
+                    }
+                } catch (SQLException e) {
+                    throw new IOException(e);
+                }
+                row.append('\n');
+            }
+            int n = Math.min(len, row.length() - pos);
+            row.getChars(pos, pos + n, cbuf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // nothing to close
+        }
+    }
+
+    /**
+     * Appends a value in the CSV format of COPY, where an unquoted empty value is {@code NULL}.
+     */
+    protected void appendCopyValue(StringBuilder csv, Serializable value, Column column) throws SQLException {
+        if (value == null) {
+            return;
+        }
+        switch (column.getJdbcType()) {
+        case Types.VARCHAR:
+        case Types.CLOB:
+            if (value instanceof String[]) {
+                // implementation when arrays aren't supported
+                StringBuilder sb = new StringBuilder(ARRAY_SEP);
+                for (String string : (String[]) value) {
+                    sb.append(string);
+                    sb.append(ARRAY_SEP);
+                }
+                value = sb.toString();
+            }
+            appendCopyQuoted(csv, (String) value);
+            return;
+        case Types.BIT:
+            csv.append(((Boolean) value).booleanValue() ? 't' : 'f');
+            return;
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+        case Types.DOUBLE:
+            csv.append(value);
+            return;
+        case Types.TIMESTAMP:
+            // default timezone, as for setTimestamp
+            csv.append(getTimestampFromCalendar((Calendar) value));
+            return;
+        case Types.ARRAY:
+            StringBuilder sb = new StringBuilder("{");
+            for (Object element : (Object[]) value) {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                if (element == null) {
+                    sb.append("NULL");
+                    continue;
+                }
+                if (element instanceof Calendar) {
+                    element = getTimestampFromCalendar((Calendar) element);
+                }
+                sb.append('"');
+                sb.append(element.toString().replace("\\", "\\\\").replace("\"", "\\\""));
+                sb.append('"');
+            }
+            sb.append('}');
+            appendCopyQuoted(csv, sb.toString());
+            return;
+        case Types.BINARY:
+            csv.append("\\x");
+            for (byte b : (byte[]) value) {
+                csv.append(Character.forDigit((b >> 4) & 0xF, 16));
+                csv.append(Character.forDigit(b & 0xF, 16));
+            }
+            return;
+        case Types.OTHER:
+            ColumnType type = column.getType();
+            if (type.isId() || type == ColumnType.FTSTORED) {
+                appendCopyQuoted(csv, value.toString());
+                return;
+            }
+            throw new SQLException("Unhandled type: " + column.getType());
+        default:
+            throw new SQLException("Unhandled JDBC type: " + column.getJdbcType());
+        }
+    }
+
+    protected static void appendCopyQuoted(StringBuilder csv, String value) {
+        csv.append('"');
+        csv.append(value.replace("\"", "\"\""));
+        csv.append('"');
+    }
+
     @Override
     public String getCascadeDropConstraintsString() {
         return "CASCADE";
@@ -827,6 +1015,13 @@ public class DialectPostgreSQL extends Dialect {
         return "SELECT nx_prepare_user_read_acls(?)";
     }
 
+    @Override
+    public String getReplicationLagSql() {
+        // no lag if all the received WAL has been replayed, even if the primary has been idle for a while
+        return "SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+                + " ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+    }
+
     @Override
     public String getReadAclsCheckSql(String userIdCol) {
         return String.format("%s = md5(array_to_string(?, '%s'))", userIdCol, getUsersSeparator());
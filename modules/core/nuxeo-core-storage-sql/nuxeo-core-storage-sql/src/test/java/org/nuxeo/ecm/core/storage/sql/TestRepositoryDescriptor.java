@@ -19,6 +19,7 @@
 package org.nuxeo.ecm.core.storage.sql;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -58,6 +59,12 @@ public class TestRepositoryDescriptor {
     @Test
     public void testBasic() throws Exception {
         assertEquals("foo", desc.name);
+        assertFalse(desc.getQueryPlanCacheEnabled());
+        assertEquals(RepositoryDescriptor.DEFAULT_QUERY_PLAN_CACHE_MAX_SIZE, desc.getQueryPlanCacheMaxSize());
+        assertFalse(desc.getJoinedFetchEnabled());
+        assertFalse(desc.getCopyInsertEnabled());
+        assertEquals(RepositoryDescriptor.DEFAULT_COPY_INSERT_MIN_ROWS, desc.getCopyInsertMinRows());
+        assertTrue(desc.readReplicas.isEmpty());
     }
 
     @Test
@@ -148,6 +155,16 @@ public class TestRepositoryDescriptor {
         assertEquals(Arrays.asList("file1", "file2", "file3"), desc.sqlInitFiles);
         assertTrue(desc.getPathOptimizationsEnabled());
         assertEquals(2, desc.getPathOptimizationsVersion());
+        assertTrue(desc.getQueryPlanCacheEnabled());
+        assertEquals(50, desc.getQueryPlanCacheMaxSize());
+        assertTrue(desc.getJoinedFetchEnabled());
+        assertEquals(RepositoryDescriptor.DEFAULT_JOINED_FETCH_MAX_COLUMNS, desc.getJoinedFetchMaxColumns());
+        assertTrue(desc.getCopyInsertEnabled());
+        assertEquals(20, desc.getCopyInsertMinRows());
+        assertEquals(Arrays.asList("jdbc/replica1", "jdbc/replica2"), desc.readReplicas);
+        assertEquals(30, desc.getReadReplicasMaxLag());
+        assertEquals(RepositoryDescriptor.DEFAULT_READ_REPLICAS_LAG_CHECK_INTERVAL,
+                desc.getReadReplicasLagCheckInterval());
 
         // pool
 
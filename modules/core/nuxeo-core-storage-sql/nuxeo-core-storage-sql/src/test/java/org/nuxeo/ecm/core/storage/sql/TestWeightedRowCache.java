@@ -0,0 +1,167 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TestWeightedRowCache {
+
+    protected WeightedRowCache cache;
+
+    @After
+    public void tearDown() {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    protected static Row row(String id, String value) {
+        return new Row("dublincore", id, new Serializable[] { value });
+    }
+
+    protected WeightedRowCache newCache(String maxBytes) {
+        return new WeightedRowCache("test", Map.of(WeightedRowCache.MAX_BYTES_PROP, maxBytes));
+    }
+
+    @Test
+    public void testAdmission() {
+        cache = newCache("1000000");
+        RowId rowId = new RowId("dublincore", "id1");
+        Row row = row("id1", "foo");
+
+        // first read, not admitted
+        assertNull(cache.get(rowId));
+        assertFalse(cache.put(rowId, row, cache.getGenerations()));
+        assertNull(cache.get(rowId));
+
+        // second read, admitted
+        assertTrue(cache.put(rowId, row, cache.getGenerations()));
+        assertNotNull(cache.get(rowId));
+        assertEquals(1, cache.getSize());
+
+        cache.invalidate(rowId);
+        assertNull(cache.get(rowId));
+    }
+
+    @Test
+    public void testConcurrentInvalidation() {
+        cache = newCache("1000000");
+        RowId rowId = new RowId("dublincore", "id1");
+        cache.get(rowId);
+        cache.get(rowId);
+
+        // the row is read from the database while another session commits a change to it
+        long generation = cache.getGenerations();
+        cache.invalidate(rowId);
+        assertFalse(cache.put(rowId, row("id1", "stale"), generations));
+        assertNull(cache.get(rowId));
+
+        assertTrue(cache.put(rowId, row("id1", "fresh"), cache.getGenerations()));
+        cache.invalidateAll();
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testInvalidationIsStriped() {
+        cache = newCache("1000000");
+        RowId rowId = new RowId("dublincore", "id1");
+        RowId other = null;
+        for (int i = 2; other == null; i++) {
+            RowId candidate = new RowId("dublincore", "id" + i);
+            if (WeightedRowCache.stripe(candidate) != WeightedRowCache.stripe(rowId)) {
+                other = candidate;
+            }
+        }
+        cache.get(other);
+        cache.get(other);
+
+        // a commit invalidating a row doesn't prevent caching the rows of other stripes
+        long[] generations = cache.getGenerations();
+        cache.invalidate(rowId);
+        assertTrue(cache.put(other, row((String) other.id, "foo"), generations));
+    }
+
+    @Test
+    public void testEvictionDoesNotInvalidateReads() {
+        cache = newCache("1000000");
+        RowId rowId = new RowId("dublincore", "id1");
+        cache.get(rowId);
+        cache.get(rowId);
+
+        // an uncommitted write evicts the row, the committed row read by another session is still valid
+        long[] generations = cache.getGenerations();
+        cache.evict(rowId);
+        assertTrue(cache.put(rowId, row("id1", "committed"), generations));
+        cache.evict(rowId);
+        assertNull(cache.get(rowId));
+    }
+
+    @Test
+    public void testConcurrentFrequency() throws Exception {
+        WeightedRowCache.FrequencySketch sketch = new WeightedRowCache.FrequencySketch(1000);
+        RowId rowId = new RowId("dublincore", "id1");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    sketch.increment(new RowId("dublincore", "id" + i));
+                    sketch.increment(rowId);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // several resets happened, the frequently used row is still seen as such
+        assertTrue(sketch.frequency(rowId) >= WeightedRowCache.DEFAULT_ADMISSION_FREQUENCY);
+        assertTrue(sketch.additions.get() < 10 * 1000);
+    }
+
+    @Test
+    public void testWeight() {
+        int small = WeightedRowCache.weigh(row("id1", "foo"));
+        int large = WeightedRowCache.weigh(row("id1", "foo".repeat(1000)));
+        assertTrue(small + " " + large, large > small + 2000);
+
+        // a cache that can hold about 10 large rows
+        cache = newCache(String.valueOf(10 * large));
+        for (int i = 0; i < 100; i++) {
+            RowId rowId = new RowId("dublincore", "id" + i);
+            cache.get(rowId);
+            cache.get(rowId);
+            cache.put(rowId, row("id" + i, "foo".repeat(1000)), cache.getGenerations());
+        }
+        assertTrue(String.valueOf(cache.getSize()), cache.getSize() <= 10);
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.NuxeoPrincipal;
+import org.nuxeo.ecm.core.api.impl.FacetFilter;
+import org.nuxeo.ecm.core.api.impl.UserPrincipal;
+import org.nuxeo.ecm.core.query.QueryFilter;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryMaker.Query;
+import org.nuxeo.ecm.core.storage.sql.jdbc.SQLInfo.SQLInfoSelect;
+
+public class TestQueryPlanCache {
+
+    protected static final String QUERY = "SELECT * FROM Document WHERE dc:title = 'foo'";
+
+    protected final AtomicInteger builds = new AtomicInteger();
+
+    protected Supplier<Query> builder(boolean cacheable) {
+        return () -> {
+            builds.incrementAndGet();
+            Query q = new Query();
+            q.selectInfo = new SQLInfoSelect("SELECT id FROM hierarchy WHERE title = ?", null);
+            q.selectParams.add("foo");
+            q.cacheable = cacheable;
+            return q;
+        };
+    }
+
+    protected static QueryFilter filter(String... principals) {
+        return new QueryFilter(null, principals, new String[] { "Browse" }, null, Collections.emptyList(), 0, 0);
+    }
+
+    @Test
+    public void testCache() {
+        QueryPlanCache cache = new QueryPlanCache("test", 10);
+        Query q1 = cache.getQuery(QUERY, filter("bob", "members"), builder(true));
+        assertEquals(1, builds.get());
+        // same query and filter, limit and offset don't matter
+        QueryFilter filter = new QueryFilter(null, new String[] { "bob", "members" }, new String[] { "Browse" }, null,
+                Collections.emptyList(), 10, 20);
+        Query q2 = cache.getQuery(QUERY, filter, builder(true));
+        assertEquals(1, builds.get());
+        assertSame(q1.selectInfo, q2.selectInfo);
+        // parameters are copied
+        assertNotSame(q1.selectParams, q2.selectParams);
+        assertEquals(q1.selectParams, q2.selectParams);
+
+        // other principals
+        cache.getQuery(QUERY, filter("alice", "members"), builder(true));
+        assertEquals(2, builds.get());
+        // other facet filter
+        filter = new QueryFilter(null, new String[] { "bob", "members" }, new String[] { "Browse" },
+                new FacetFilter("Folderish", false), Collections.emptyList(), 0, 0);
+        cache.getQuery(QUERY, filter, builder(true));
+        assertEquals(3, builds.get());
+        // other query
+        cache.getQuery(QUERY + " AND ecm:isVersion = 0", filter("bob", "members"), builder(true));
+        assertEquals(4, builds.get());
+        assertEquals(4, cache.getSize());
+    }
+
+    @Test
+    public void testNotCacheable() {
+        QueryPlanCache cache = new QueryPlanCache("test", 10);
+        cache.getQuery(QUERY, filter("bob"), builder(false));
+        cache.getQuery(QUERY, filter("bob"), builder(false));
+        assertEquals(2, builds.get());
+        assertEquals(0, cache.getSize());
+
+        // query that cannot match
+        assertNull(cache.getQuery(QUERY, filter("bob"), () -> null));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testEviction() {
+        QueryPlanCache cache = new QueryPlanCache("test", 2);
+        cache.getQuery(QUERY + " AND dc:title = 'a'", filter("bob"), builder(true));
+        cache.getQuery(QUERY + " AND dc:title = 'b'", filter("bob"), builder(true));
+        // a is the most recently used
+        cache.getQuery(QUERY + " AND dc:title = 'a'", filter("bob"), builder(true));
+        cache.getQuery(QUERY + " AND dc:title = 'c'", filter("bob"), builder(true));
+        assertEquals(3, builds.get());
+        assertEquals(2, cache.getSize());
+        cache.getQuery(QUERY + " AND dc:title = 'a'", filter("bob"), builder(true));
+        assertEquals(3, builds.get());
+        cache.getQuery(QUERY + " AND dc:title = 'b'", filter("bob"), builder(true));
+        assertEquals(4, builds.get());
+    }
+
+    @Test
+    public void testTransformersDependOnPrincipal() {
+        QueryPlanCache cache = new QueryPlanCache("test", 10);
+        List<SQLQuery.Transformer> transformers = Collections.singletonList(SQLQuery.Transformer.IDENTITY);
+        NuxeoPrincipal admin1 = new UserPrincipal("admin1", Collections.emptyList(), false, true);
+        NuxeoPrincipal admin2 = new UserPrincipal("admin2", Collections.emptyList(), false, true);
+        // administrators have no principals in the filter
+        cache.getQuery(QUERY, new QueryFilter(admin1, null, null, null, transformers, 0, 0), builder(true));
+        cache.getQuery(QUERY, new QueryFilter(admin1, null, null, null, transformers, 0, 0), builder(true));
+        assertEquals(1, builds.get());
+        // the transformers may give another query for another principal
+        cache.getQuery(QUERY, new QueryFilter(admin2, null, null, null, transformers, 0, 0), builder(true));
+        assertEquals(2, builds.get());
+        assertEquals(2, cache.getSize());
+
+        // without transformers the principal doesn't matter
+        cache.getQuery(QUERY, new QueryFilter(admin1, null, null, null, Collections.emptyList(), 0, 0),
+                builder(true));
+        cache.getQuery(QUERY, new QueryFilter(admin2, null, null, null, Collections.emptyList(), 0, 0),
+                builder(true));
+        assertEquals(3, builds.get());
+        assertEquals(3, cache.getSize());
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql.jdbc.dialect;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.Reader;
+import java.io.Serializable;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.storage.sql.ColumnType;
+import org.nuxeo.ecm.core.storage.sql.RepositoryDescriptor;
+import org.nuxeo.ecm.core.storage.sql.jdbc.db.Column;
+import org.nuxeo.ecm.core.storage.sql.jdbc.db.TableImpl;
+
+/**
+ * Tests the values written by the PostgreSQL dialect for the COPY protocol, in CSV format.
+ *
+ * @since 11.5
+ */
+@RunWith(JMock.class)
+public class TestDialectPostgreSQLCopy {
+
+    Mockery jmcontext = new JUnit4Mockery();
+
+    protected DialectPostgreSQL dialect;
+
+    protected TableImpl table;
+
+    @Before
+    public void setUp() throws SQLException {
+        dialect = new DialectPostgreSQL(getMockDatabaseMetaData(), new RepositoryDescriptor());
+        table = new TableImpl(dialect, "test", "test");
+    }
+
+    protected DatabaseMetaData getMockDatabaseMetaData() throws SQLException {
+        final DatabaseMetaData m = jmcontext.mock(DatabaseMetaData.class);
+        final ResultSet rs = jmcontext.mock(ResultSet.class, "empty");
+        jmcontext.checking(new Expectations() {
+            {
+                allowing(m).storesUpperCaseIdentifiers();
+                will(returnValue(false));
+
+                allowing(m).getDatabaseMajorVersion();
+                will(returnValue(9));
+
+                allowing(m).getDatabaseMinorVersion();
+                will(returnValue(0));
+
+                allowing(m).getColumns(with(aNull(String.class)), with(aNull(String.class)), with(any(String.class)),
+                        with(any(String.class)));
+                will(returnValue(rs));
+
+                allowing(rs).next();
+                will(returnValue(false));
+
+                allowing(rs).close();
+            }
+        });
+        return m;
+    }
+
+    protected String copyValue(ColumnType type, Serializable value) throws SQLException {
+        Column column = new Column(table, "col", type, "col");
+        StringBuilder csv = new StringBuilder();
+        dialect.appendCopyValue(csv, value, column);
+        return csv.toString();
+    }
+
+    @Test
+    public void testNull() throws Exception {
+        // an unquoted empty value is NULL
+        assertEquals("", copyValue(ColumnType.STRING, null));
+        assertEquals("", copyValue(ColumnType.LONG, null));
+        assertEquals("", copyValue(ColumnType.ARRAY_STRING, null));
+        // a quoted empty value is the empty string
+        assertEquals("\"\"", copyValue(ColumnType.STRING, ""));
+    }
+
+    @Test
+    public void testStrings() throws Exception {
+        assertEquals("\"foo\"", copyValue(ColumnType.STRING, "foo"));
+        assertEquals("\"a,b\"", copyValue(ColumnType.STRING, "a,b"));
+        // quotes are doubled
+        assertEquals("\"say \"\"hi\"\"\"", copyValue(ColumnType.STRING, "say \"hi\""));
+        // backslashes are not escapes in CSV format
+        assertEquals("\"C:\\dir\\\\N\"", copyValue(ColumnType.STRING, "C:\\dir\\\\N"));
+        assertEquals("\"\\N\"", copyValue(ColumnType.CLOB, "\\N"));
+        // tabs and newlines are kept in the quoted value
+        assertEquals("\"a\tb\nc\r\nd\"", copyValue(ColumnType.CLOB, "a\tb\nc\r\nd"));
+        // string array stored in a string column
+        assertEquals("\"|a|b\"\"c|\"", copyValue(ColumnType.STRING, new String[] { "a", "b\"c" }));
+    }
+
+    @Test
+    public void testScalars() throws Exception {
+        assertEquals("t", copyValue(ColumnType.BOOLEAN, Boolean.TRUE));
+        assertEquals("f", copyValue(ColumnType.BOOLEAN, Boolean.FALSE));
+        assertEquals("-123", copyValue(ColumnType.LONG, Long.valueOf(-123)));
+        assertEquals("1.5", copyValue(ColumnType.DOUBLE, Double.valueOf(1.5)));
+        assertEquals("\\x00ff10", copyValue(ColumnType.BLOB, new byte[] { 0, (byte) 0xff, 0x10 }));
+    }
+
+    @Test
+    public void testTimestamps() throws Exception {
+        // written in the default timezone, as for setTimestamp
+        Calendar cal = new GregorianCalendar(2021, Calendar.MARCH, 4, 5, 6, 7);
+        cal.set(Calendar.MILLISECOND, 89);
+        assertEquals("2021-03-04 05:06:07.089", copyValue(ColumnType.TIMESTAMP, cal));
+        assertEquals("\"{\"\"2021-03-04 05:06:07.089\"\",NULL}\"",
+                copyValue(ColumnType.ARRAY_TIMESTAMP, new Calendar[] { cal, null }));
+    }
+
+    @Test
+    public void testArrays() throws Exception {
+        assertEquals("\"{}\"", copyValue(ColumnType.ARRAY_STRING, new String[0]));
+        assertEquals("\"{\"\"a\"\",\"\"b\"\"}\"", copyValue(ColumnType.ARRAY_STRING, new String[] { "a", "b" }));
+        // NULL elements are unquoted, quotes and backslashes are escaped in the array literal
+        assertEquals("\"{\"\"a\\\\b\"\",NULL,\"\"c\\\"\"d\"\",\"\"NULL\"\"}\"",
+                copyValue(ColumnType.ARRAY_STRING, new String[] { "a\\b", null, "c\"d", "NULL" }));
+        // commas and braces are quoted in the array literal
+        assertEquals("\"{\"\"a,b\"\",\"\"{c}\"\"}\"",
+                copyValue(ColumnType.ARRAY_STRING, new String[] { "a,b", "{c}" }));
+        assertEquals("\"{\"\"1\"\",\"\"2\"\"}\"", copyValue(ColumnType.ARRAY_LONG, new Long[] { 1L, 2L }));
+    }
+
+    @Test
+    public void testReader() throws Exception {
+        List<Column> columns = Arrays.asList(new Column(table, "id", ColumnType.STRING, "id"),
+                new Column(table, "num", ColumnType.LONG, "num"));
+        List<Serializable[]> rows = Arrays.asList(new Serializable[] { "a", Long.valueOf(1) },
+                new Serializable[] { "b\nc", null }, new Serializable[] { "", Long.valueOf(-2) });
+        StringBuilder csv = new StringBuilder();
+        // small buffer, rows are read in several chunks
+        char[] buf = new char[3];
+        try (Reader reader = dialect.new CopyInReader(columns, rows)) {
+            int n;
+            while ((n = reader.read(buf, 0, buf.length)) != -1) {
+                csv.append(buf, 0, n);
+            }
+        }
+        assertEquals("\"a\",1\n\"b\nc\",\n\"\",-2\n", csv.toString());
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.ConcurrentUpdateException;
+import org.nuxeo.ecm.core.api.CoreInstance;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.PathRef;
+import org.nuxeo.ecm.core.event.EventService;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+/**
+ * Tests saves writing more documents than a single batch of the storage bulk writes.
+ *
+ * @since 11.5
+ */
+@RunWith(FeaturesRunner.class)
+@Features(CoreFeature.class)
+@RepositoryConfig(cleanup = Granularity.METHOD)
+public class TestSQLRepositoryBulkWrite {
+
+    // more than one MongoDB bulk write batch with the default batch size
+    protected static final int COUNT = 1100;
+
+    @Inject
+    protected CoreFeature coreFeature;
+
+    @Inject
+    protected EventService eventService;
+
+    @Inject
+    protected CoreSession session;
+
+    protected void reopenSession() {
+        session = coreFeature.reopenCoreSession();
+    }
+
+    protected void waitForAsyncCompletion() {
+        nextTransaction();
+        eventService.waitForAsyncCompletion();
+    }
+
+    protected void nextTransaction() {
+        if (TransactionHelper.isTransactionActiveOrMarkedRollback()) {
+            TransactionHelper.commitOrRollbackTransaction();
+            TransactionHelper.startTransaction();
+        }
+    }
+
+    protected static String name(String prefix, int i) {
+        return String.format("%s%04d", prefix, i);
+    }
+
+    protected List<DocumentRef> createDocuments(String prefix, int count) {
+        List<DocumentRef> refs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            DocumentModel doc = session.createDocumentModel("/folder", name(prefix, i), "File");
+            doc.setPropertyValue("dc:title", "title " + i);
+            refs.add(session.createDocument(doc).getRef());
+        }
+        return refs;
+    }
+
+    @Test
+    public void testMixedCreatesUpdatesDeletes() {
+        DocumentModel folder = session.createDocument(session.createDocumentModel("/", "folder", "Folder"));
+        List<DocumentRef> refs = createDocuments("doc", COUNT);
+        session.save();
+        nextTransaction();
+        assertEquals(COUNT, session.getChildrenRefs(folder.getRef(), null).size());
+
+        // a single save updating, deleting and creating documents
+        int deleted = 0;
+        for (int i = 0; i < COUNT; i++) {
+            if (i % 2 == 0) {
+                DocumentModel doc = session.getDocument(refs.get(i));
+                doc.setPropertyValue("dc:title", "updated " + i);
+                session.saveDocument(doc);
+            } else if (i % 10 == 1) {
+                session.removeDocument(refs.get(i));
+                deleted++;
+            }
+        }
+        createDocuments("new", COUNT);
+        session.save();
+        nextTransaction();
+        reopenSession();
+
+        assertEquals(2 * COUNT - deleted, session.getChildrenRefs(folder.getRef(), null).size());
+        for (int i = 0; i < COUNT; i++) {
+            if (i % 10 == 1) {
+                assertFalse(session.exists(refs.get(i)));
+                continue;
+            }
+            String expected = i % 2 == 0 ? "updated " + i : "title " + i;
+            assertEquals(expected, session.getDocument(refs.get(i)).getTitle());
+            DocumentModel created = session.getDocument(new PathRef("/folder/" + name("new", i)));
+            assertEquals("title " + i, created.getTitle());
+        }
+    }
+
+    @Test
+    public void testConcurrentUpdateInBatch() throws Exception {
+        assumeTrue("change token is not enabled", coreFeature.getStorageConfiguration().isChangeTokenEnabled());
+
+        session.createDocument(session.createDocumentModel("/", "folder", "Folder"));
+        List<DocumentRef> refs = createDocuments("doc", COUNT);
+        session.save();
+
+        // re-start a new transaction that hasn't done any writes
+        nextTransaction();
+        waitForAsyncCompletion();
+        reopenSession();
+
+        List<DocumentModel> docs = new ArrayList<>(COUNT);
+        for (DocumentRef ref : refs) {
+            docs.add(session.getDocument(ref));
+        }
+
+        // in other thread, update one of the docs as a user change
+        DocumentRef conflictRef = refs.get(COUNT / 2);
+        MutableObject<RuntimeException> me = new MutableObject<>();
+        Thread thread = new Thread(() -> {
+            TransactionHelper.runInTransaction(() -> {
+                try {
+                    CoreSession session2 = CoreInstance.getCoreSession(coreFeature.getRepositoryName());
+                    DocumentModel doc2 = session2.getDocument(conflictRef);
+                    doc2.setPropertyValue("dc:title", "parallel");
+                    doc2.putContextData(CoreSession.USER_CHANGE, Boolean.TRUE);
+                    session2.saveDocument(doc2);
+                    session2.save();
+                } catch (RuntimeException e) {
+                    me.setValue(e);
+                }
+            });
+        });
+        thread.start();
+        thread.join();
+        if (me.getValue() != null) {
+            throw me.getValue();
+        }
+
+        // now update all the docs as user changes, one of them fails its change token condition
+        for (DocumentModel doc : docs) {
+            doc.setPropertyValue("dc:title", "bar");
+            doc.putContextData(CoreSession.USER_CHANGE, Boolean.TRUE);
+            session.saveDocument(doc);
+        }
+        try {
+            session.save();
+            fail("save should fail because of concurrent update in other transaction");
+        } catch (ConcurrentUpdateException e) {
+            TransactionHelper.setTransactionRollbackOnly();
+        }
+        nextTransaction();
+        reopenSession();
+
+        // the concurrent update was not overwritten
+        assertEquals("parallel", session.getDocument(conflictRef).getTitle());
+        assertTrue(session.exists(refs.get(0)));
+    }
+
+}
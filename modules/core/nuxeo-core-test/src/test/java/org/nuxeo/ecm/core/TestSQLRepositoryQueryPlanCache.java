@@ -0,0 +1,119 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeTrue;
+
+import javax.inject.Inject;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.PathRef;
+import org.nuxeo.ecm.core.storage.sql.coremodel.SQLRepositoryService;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryPlanCache;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.HotDeployer;
+
+/**
+ * Tests which NXQL queries are kept in the query plan cache.
+ *
+ * @since 11.5
+ */
+@RunWith(FeaturesRunner.class)
+@Features(CoreFeature.class)
+@RepositoryConfig(cleanup = Granularity.METHOD)
+public class TestSQLRepositoryQueryPlanCache {
+
+    @Inject
+    protected CoreFeature coreFeature;
+
+    @Inject
+    protected CoreSession session;
+
+    @Inject
+    protected SQLRepositoryService sqlRepositoryService;
+
+    @Inject
+    protected HotDeployer deployer;
+
+    protected QueryPlanCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        // cannot be done through @Deploy, because the framework variables
+        // about repository configuration aren't ready yet
+        assumeTrue(coreFeature.getStorageConfiguration().isVCS());
+        deployer.deploy("org.nuxeo.ecm.core.test.tests:OSGI-INF/test-repo-query-plan-cache-contrib.xml");
+        cache = sqlRepositoryService.getRepositoryImpl(session.getRepositoryName()).getQueryPlanCache();
+        assertNotNull("Query plan cache should be enabled", cache);
+        DocumentModel folder = session.createDocumentModel("/", "folder", "Folder");
+        folder = session.createDocument(folder);
+        DocumentModel file = session.createDocumentModel("/folder", "file", "File");
+        file.setPropertyValue("dc:title", "foo");
+        session.createDocument(file);
+        session.save();
+        cache.clear();
+    }
+
+    protected void assertCached(int expectedSize, String query, int expectedCount) {
+        // the second run gets the query from the cache if it was kept
+        assertEquals(expectedCount, session.query(query).size());
+        assertEquals(expectedCount, session.query(query).size());
+        assertEquals(query, expectedSize, cache.getSize());
+    }
+
+    @Test
+    public void testCached() {
+        assertCached(1, "SELECT * FROM File WHERE dc:title = 'foo'", 1);
+        assertCached(1, "SELECT * FROM File WHERE dc:title = 'foo'", 1);
+        assertCached(2, "SELECT * FROM File WHERE dc:title = 'bar'", 0);
+    }
+
+    @Test
+    public void testPathNotCached() {
+        assertCached(0, "SELECT * FROM File WHERE ecm:path STARTSWITH '/folder'", 1);
+        assertCached(0, "SELECT * FROM Folder WHERE ecm:path = '/folder'", 1);
+        // the resolved path changes when the folder is moved
+        session.move(new PathRef("/folder"), session.getRootDocument().getRef(), "other");
+        session.save();
+        assertCached(0, "SELECT * FROM File WHERE ecm:path STARTSWITH '/folder'", 0);
+    }
+
+    @Test
+    public void testNowNotCached() {
+        assertCached(0, "SELECT * FROM File WHERE dc:modified < NOW('PT1H')", 1);
+        assertCached(0, "SELECT * FROM File WHERE dc:modified > NOW('PT1H')", 0);
+    }
+
+    @Test
+    public void testTrashNotCached() {
+        assertCached(0, "SELECT * FROM File WHERE ecm:isTrashed = 0", 1);
+        assertCached(0, "SELECT * FROM File WHERE ecm:isTrashed = 1", 0);
+    }
+
+}
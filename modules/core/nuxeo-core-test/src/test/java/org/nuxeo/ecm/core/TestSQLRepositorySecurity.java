@@ -26,6 +26,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 import static org.nuxeo.ecm.core.api.security.Access.DENY;
 import static org.nuxeo.ecm.core.api.security.Access.GRANT;
 import static org.nuxeo.ecm.core.api.security.Access.UNKNOWN;
@@ -64,6 +65,7 @@ import org.nuxeo.ecm.core.api.DocumentSecurityException;
 import org.nuxeo.ecm.core.api.NuxeoPrincipal;
 import org.nuxeo.ecm.core.api.PartialList;
 import org.nuxeo.ecm.core.api.PathRef;
+import org.nuxeo.ecm.core.api.VersioningOption;
 import org.nuxeo.ecm.core.api.impl.UserPrincipal;
 import org.nuxeo.ecm.core.api.security.ACE;
 import org.nuxeo.ecm.core.api.security.ACL;
@@ -75,6 +77,7 @@ import org.nuxeo.ecm.core.api.security.impl.ACPImpl;
 import org.nuxeo.ecm.core.api.security.impl.UserEntryImpl;
 import org.nuxeo.ecm.core.event.EventService;
 import org.nuxeo.ecm.core.security.SecurityService;
+import org.nuxeo.ecm.core.storage.dbs.DBSReadAclsPropagation;
 import org.nuxeo.ecm.core.storage.sql.coremodel.SQLSession;
 import org.nuxeo.ecm.core.test.CoreFeature;
 import org.nuxeo.ecm.core.test.annotations.Granularity;
@@ -834,6 +837,23 @@ public class TestSQLRepositorySecurity {
         }
     }
 
+    @Test
+    public void testReadAclOnLargeTreeWithWorks() {
+        String enabledProp = "nuxeo.core.readacl.async.enabled";
+        String thresholdProp = "nuxeo.core.readacl.async.threshold";
+        String bulkEnabledProp = "nuxeo.core.readacl.async.bulk.enabled";
+        Framework.getProperties().put(enabledProp, "true");
+        Framework.getProperties().put(thresholdProp, "10");
+        Framework.getProperties().put(bulkEnabledProp, "false");
+        try {
+            doTestReadAclOnLargeTree();
+        } finally {
+            Framework.getProperties().remove(enabledProp);
+            Framework.getProperties().remove(thresholdProp);
+            Framework.getProperties().remove(bulkEnabledProp);
+        }
+    }
+
     protected void doTestReadAclOnLargeTree() {
         DocumentModel rootFolder = session.createDocumentModel("/", "folder", "Folder");
         rootFolder = session.createDocument(rootFolder);
@@ -880,6 +900,115 @@ public class TestSQLRepositorySecurity {
         assertEquals(nbDocs, numberOfReadableDocuments(secondUser));
     }
 
+    protected void runWithAsyncReadAcls(Runnable runnable) {
+        assumeTrue("Read ACLs propagation is specific to DBS", coreFeature.getStorageConfiguration().isDBS());
+        assumeTrue(DBSReadAclsPropagation.isAvailable());
+        String enabledProp = "nuxeo.core.readacl.async.enabled";
+        String thresholdProp = "nuxeo.core.readacl.async.threshold";
+        Framework.getProperties().put(enabledProp, "true");
+        Framework.getProperties().put(thresholdProp, "10");
+        try {
+            runnable.run();
+        } finally {
+            Framework.getProperties().remove(enabledProp);
+            Framework.getProperties().remove(thresholdProp);
+        }
+    }
+
+    @Test
+    public void testReadAclPagingWhilePropagationPending() {
+        runWithAsyncReadAcls(this::doTestReadAclPagingWhilePropagationPending);
+    }
+
+    @Test
+    public void testReadAclVersionWhilePropagationPending() {
+        runWithAsyncReadAcls(this::doTestReadAclVersionWhilePropagationPending);
+    }
+
+    protected void doTestReadAclVersionWhilePropagationPending() {
+        String username = "mickey";
+        ACP acp = new ACPImpl();
+        acp.addACE(ACL.LOCAL_ACL, new ACE(username, READ, true));
+        DocumentModel revoked = session.createDocument(session.createDocumentModel("/", "revoked", "Folder"));
+        revoked.setACP(acp, true);
+        session.createDocument(session.createDocumentModel("/revoked", "sub", "Folder"));
+        DocumentModel doc = null;
+        for (int i = 0; i < 20; i++) {
+            doc = session.createDocument(session.createDocumentModel("/revoked/sub", "doc-" + i, "File"));
+        }
+        DocumentRef verRef = doc.checkIn(VersioningOption.MAJOR, null);
+        session.save();
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+        String nxql = "SELECT * FROM File WHERE ecm:isVersion = 1";
+        assertEquals(1, openSessionAs(username).query(nxql).size());
+
+        // revoke access, the version keeps its Read ACLs until the propagation is done
+        ACP otherAcp = new ACPImpl();
+        otherAcp.addACE(ACL.LOCAL_ACL, new ACE("minnie", READ, true));
+        revoked.setACP(otherAcp, true);
+        session.save();
+        assertTrue(DBSReadAclsPropagation.get(session.getRepositoryName())
+                                         .getPendingRoots()
+                                         .contains(revoked.getId()));
+
+        // the version is rechecked through its live document
+        CoreSession userSession = openSessionAs(username);
+        assertEquals(0, userSession.query(nxql).size());
+        assertEquals(0, userSession.queryProjection(nxql, 10, 0).size());
+        assertTrue(session.exists(verRef));
+    }
+
+    protected void doTestReadAclPagingWhilePropagationPending() {
+        String username = "mickey";
+        ACP acp = new ACPImpl();
+        acp.addACE(ACL.LOCAL_ACL, new ACE(username, READ, true));
+        DocumentModel readable = session.createDocument(session.createDocumentModel("/", "readable", "Folder"));
+        readable.setACP(acp, true);
+        DocumentModel revoked = session.createDocument(session.createDocumentModel("/", "revoked", "Folder"));
+        revoked.setACP(acp, true);
+        session.createDocument(session.createDocumentModel("/revoked", "sub", "Folder"));
+        int nbDocs = 30;
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < nbDocs; i++) {
+            // interleaved titles, so that the revoked documents are spread over all the pages
+            DocumentModel doc = session.createDocumentModel("/readable", "doc-" + i, "File");
+            doc.setPropertyValue("dc:title", String.format("title %02d a", i));
+            session.createDocument(doc);
+            expected.add(String.format("title %02d a", i));
+            doc = session.createDocumentModel("/revoked/sub", "doc-" + i, "File");
+            doc.setPropertyValue("dc:title", String.format("title %02d b", i));
+            session.createDocument(doc);
+        }
+        session.save();
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+
+        // revoke access, the children of the sub folder keep their Read ACLs until the propagation is done
+        ACP otherAcp = new ACPImpl();
+        otherAcp.addACE(ACL.LOCAL_ACL, new ACE("minnie", READ, true));
+        revoked.setACP(otherAcp, true);
+        session.save();
+        assertTrue(DBSReadAclsPropagation.get(session.getRepositoryName())
+                                         .getPendingRoots()
+                                         .contains(revoked.getId()));
+
+        // pages are full and don't contain revoked documents
+        CoreSession userSession = openSessionAs(username);
+        String nxql = "SELECT dc:title FROM File ORDER BY dc:title";
+        int pageSize = 7;
+        List<String> titles = new ArrayList<>();
+        for (int offset = 0;; offset += pageSize) {
+            PartialList<Map<String, Serializable>> page = userSession.queryProjection(nxql, pageSize, offset);
+            assertEquals(Math.max(0, Math.min(pageSize, nbDocs - offset)), page.size());
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(map -> titles.add((String) map.get("dc:title")));
+        }
+        assertEquals(expected, titles);
+    }
+
     protected int numberOfReadableDocuments(String username) {
         CoreSession userSession = openSessionAs(username);
         String nxql = "SELECT ecm:uuid FROM Document";
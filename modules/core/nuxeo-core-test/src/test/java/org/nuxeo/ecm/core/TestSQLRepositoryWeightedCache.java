@@ -0,0 +1,189 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.function.Function;
+
+import javax.inject.Inject;
+
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.CoreInstance;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.storage.sql.WeightedRowCache;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.HotDeployer;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+/**
+ * Tests the rows seen by the sessions of a repository using the weighted caching mapper, whose cache is shared by all
+ * the sessions.
+ *
+ * @since 11.5
+ */
+@RunWith(FeaturesRunner.class)
+@Features(CoreFeature.class)
+@RepositoryConfig(cleanup = Granularity.METHOD)
+public class TestSQLRepositoryWeightedCache {
+
+    @Inject
+    protected CoreFeature coreFeature;
+
+    @Inject
+    protected CoreSession session;
+
+    @Inject
+    protected HotDeployer deployer;
+
+    protected DocumentRef ref;
+
+    @Before
+    public void setUp() throws Exception {
+        // cannot be done through @Deploy, because the framework variables
+        // about repository configuration aren't ready yet
+        assumeTrue(coreFeature.getStorageConfiguration().isVCS());
+        deployer.deploy("org.nuxeo.ecm.core.test.tests:OSGI-INF/test-repo-weighted-caching-mapper-contrib.xml");
+        DocumentModel doc = session.createDocumentModel("/", "doc", "File");
+        doc.setPropertyValue("dc:title", "foo");
+        ref = session.createDocument(doc).getRef();
+        session.save();
+        nextTransaction();
+    }
+
+    protected void nextTransaction() {
+        if (TransactionHelper.isTransactionActiveOrMarkedRollback()) {
+            TransactionHelper.commitOrRollbackTransaction();
+            TransactionHelper.startTransaction();
+        }
+    }
+
+    protected WeightedRowCache getSharedCache() {
+        return WeightedRowCache.get(coreFeature.getRepositoryName(), null);
+    }
+
+    /**
+     * Runs a function with a session in its own transaction, in another thread.
+     */
+    protected <R> R runInOtherSession(Function<CoreSession, R> function) throws InterruptedException {
+        MutableObject<R> result = new MutableObject<>();
+        MutableObject<RuntimeException> me = new MutableObject<>();
+        Thread thread = new Thread(() -> TransactionHelper.runInTransaction(() -> {
+            try {
+                result.setValue(function.apply(CoreInstance.getCoreSession(coreFeature.getRepositoryName())));
+            } catch (RuntimeException e) {
+                me.setValue(e);
+            }
+        }));
+        thread.start();
+        thread.join();
+        if (me.getValue() != null) {
+            throw me.getValue();
+        }
+        return result.getValue();
+    }
+
+    protected String readTitleInOtherSession() throws InterruptedException {
+        return runInOtherSession(s -> s.getDocument(ref).getTitle());
+    }
+
+    @Test
+    public void testInvalidationAcrossSessions() throws Exception {
+        // the row is shared once read
+        assertEquals("foo", session.getDocument(ref).getTitle());
+        assertEquals("foo", readTitleInOtherSession());
+        assertTrue(getSharedCache().getSize() > 0);
+
+        // another session commits a change
+        runInOtherSession(s -> {
+            DocumentModel doc = s.getDocument(ref);
+            doc.setPropertyValue("dc:title", "bar");
+            s.saveDocument(doc);
+            s.save();
+            return null;
+        });
+
+        // the change is seen by the other sessions once committed, not a stale shared row
+        nextTransaction();
+        assertEquals("bar", session.getDocument(ref).getTitle());
+        assertEquals("bar", readTitleInOtherSession());
+    }
+
+    @Test
+    public void testCommit() throws Exception {
+        assertEquals("foo", readTitleInOtherSession());
+
+        DocumentModel doc = session.getDocument(ref);
+        doc.setPropertyValue("dc:title", "bar");
+        session.saveDocument(doc);
+        session.save();
+        // the write is seen by this session only until committed
+        assertEquals("bar", session.getDocument(ref).getTitle());
+        assertEquals("foo", readTitleInOtherSession());
+
+        nextTransaction();
+        assertEquals("bar", readTitleInOtherSession());
+        assertEquals("bar", session.getDocument(ref).getTitle());
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        assertEquals("foo", readTitleInOtherSession());
+
+        DocumentModel doc = session.getDocument(ref);
+        doc.setPropertyValue("dc:title", "bar");
+        session.saveDocument(doc);
+        session.save();
+        assertEquals("bar", session.getDocument(ref).getTitle());
+        assertEquals("foo", readTitleInOtherSession());
+
+        TransactionHelper.setTransactionRollbackOnly();
+        nextTransaction();
+        // the rolled back write is seen by no session
+        assertEquals("foo", session.getDocument(ref).getTitle());
+        assertEquals("foo", readTitleInOtherSession());
+    }
+
+    @Test
+    public void testDeletion() throws Exception {
+        assertTrue(runInOtherSession(s -> s.exists(ref)));
+
+        session.removeDocument(ref);
+        session.save();
+        assertFalse(session.exists(ref));
+        assertTrue(runInOtherSession(s -> s.exists(ref)));
+
+        nextTransaction();
+        assertFalse(runInOtherSession(s -> s.exists(ref)));
+        assertFalse(session.exists(ref));
+    }
+
+}
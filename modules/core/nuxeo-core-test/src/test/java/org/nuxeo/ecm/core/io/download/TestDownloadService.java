@@ -44,6 +44,7 @@ import static org.nuxeo.ecm.core.io.download.DownloadService.REQUEST_ATTR_DOWNLO
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.nio.file.Files;
@@ -87,11 +88,17 @@ import org.nuxeo.ecm.core.transientstore.api.TransientStore;
 import org.nuxeo.ecm.core.transientstore.api.TransientStoreService;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.api.login.LoginComponent;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.test.runner.ConditionalIgnoreRule;
 import org.nuxeo.runtime.test.runner.Deploy;
 import org.nuxeo.runtime.test.runner.Features;
 import org.nuxeo.runtime.test.runner.FeaturesRunner;
 
+import io.dropwizard.metrics5.Counter;
+import io.dropwizard.metrics5.MetricName;
+import io.dropwizard.metrics5.MetricRegistry;
+import io.dropwizard.metrics5.SharedMetricRegistries;
+
 @RunWith(FeaturesRunner.class)
 @Features(CoreFeature.class)
 @Deploy("org.nuxeo.ecm.core.cache")
@@ -783,6 +790,74 @@ public class TestDownloadService {
         }
     }
 
+    protected HttpServletResponse mockResponse(OutputStream out) throws IOException {
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        ServletOutputStream sos = new DummyServletOutputStream(out);
+        @SuppressWarnings("resource")
+        PrintWriter printWriter = new PrintWriter(sos);
+        when(resp.getOutputStream()).thenReturn(sos);
+        when(resp.getWriter()).thenReturn(printWriter);
+        return resp;
+    }
+
+    @Test
+    public void testDownloadFileBlobWithByteRange() throws IOException {
+        FileBlob blob = new FileBlob(new ByteArrayInputStream("Hello World".getBytes("UTF-8")));
+        blob.setFilename("myFile.txt");
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        MetricName name = MetricName.build("nuxeo", "download", "bytes");
+        Counter sendfileCounter = registry.counter(name.tagged("transfer", "sendfile_requested"));
+        Counter copyCounter = registry.counter(name.tagged("transfer", "copy"));
+        long sendfileBytes = sendfileCounter.getCount();
+        long copiedBytes = copyCounter.getCount();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getMethod()).thenReturn("GET");
+        when(req.getHeader("Range")).thenReturn("bytes=6-10");
+        HttpServletResponse resp = mockResponse(out);
+
+        DownloadContext context = DownloadContext.builder(req, resp).blob(blob).reason("test").build();
+        downloadService.downloadBlob(context);
+
+        // without sendfile support, the file is copied from its stream
+        assertEquals("World", out.toString("UTF-8"));
+        verify(resp).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        assertEquals(sendfileBytes, sendfileCounter.getCount());
+        assertEquals(copiedBytes + 5, copyCounter.getCount());
+    }
+
+    @Test
+    @Deploy("org.nuxeo.ecm.core.test.tests:OSGI-INF/test-download-service-sendfile.xml")
+    public void testDownloadFileBlobWithSendfile() throws IOException {
+        FileBlob blob = new FileBlob(new ByteArrayInputStream("Hello World".getBytes("UTF-8")));
+        blob.setFilename("myFile.txt");
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        MetricName name = MetricName.build("nuxeo", "download", "bytes");
+        Counter sendfileCounter = registry.counter(name.tagged("transfer", "sendfile_requested"));
+        Counter copyCounter = registry.counter(name.tagged("transfer", "copy"));
+        long sendfileBytes = sendfileCounter.getCount();
+        long copiedBytes = copyCounter.getCount();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getMethod()).thenReturn("GET");
+        when(req.getHeader("Range")).thenReturn("bytes=6-10");
+        when(req.getAttribute("org.apache.tomcat.sendfile.support")).thenReturn(Boolean.TRUE);
+        HttpServletResponse resp = mockResponse(out);
+
+        DownloadContext context = DownloadContext.builder(req, resp).blob(blob).reason("test").build();
+        downloadService.downloadBlob(context);
+
+        // the file is left to the container
+        assertEquals("", out.toString("UTF-8"));
+        verify(req).setAttribute("org.apache.tomcat.sendfile.filename", blob.getFile().getAbsolutePath());
+        verify(req).setAttribute("org.apache.tomcat.sendfile.start", Long.valueOf(6));
+        verify(req).setAttribute("org.apache.tomcat.sendfile.end", Long.valueOf(11));
+        assertEquals(sendfileBytes + 5, sendfileCounter.getCount());
+        assertEquals(copiedBytes, copyCounter.getCount());
+    }
+
     @Test
     @Deploy("org.nuxeo.ecm.core.api.tests:OSGI-INF/test-default-blob-provider.xml")
     public void testDownloadWithNginxAccel() throws IOException {
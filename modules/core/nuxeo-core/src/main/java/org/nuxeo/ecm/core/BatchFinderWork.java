@@ -48,6 +48,7 @@ public abstract class BatchFinderWork extends AbstractWork {
         this.repositoryName = repositoryName;
         this.nxql = nxql;
         setOriginatingUsername(originatingUsername);
+        setPriority(Priority.BACKGROUND);
     }
 
     @Override
@@ -39,6 +39,7 @@ public abstract class BatchProcessorWork extends AbstractWork {
     public BatchProcessorWork(String repositoryName, List<String> docIds, String originatingUsername) {
         setDocuments(repositoryName, docIds);
         setOriginatingUsername(originatingUsername);
+        setPriority(Priority.BACKGROUND);
     }
 
     @Override
@@ -76,7 +76,8 @@ public class BlobListZipWork extends TransientStoreWork {
         if (StringUtils.isNotBlank(filename)) {
             this.filename = filename.toLowerCase().endsWith(".zip") ? filename : filename + ".zip";
         }
-
+        // the zip is waited for by the user who requested the download
+        setPriority(Priority.INTERACTIVE);
     }
 
     @Override
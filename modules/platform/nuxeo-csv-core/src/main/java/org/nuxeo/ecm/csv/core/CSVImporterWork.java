@@ -187,6 +187,7 @@ public class CSVImporterWork extends TransientStoreWork {
 
     public CSVImporterWork(String id) {
         super(id);
+        setPriority(Priority.BACKGROUND);
     }
 
     public CSVImporterWork(String repositoryName, String parentPath, String username, Blob csvBlob,
@@ -202,6 +203,7 @@ public class CSVImporterWork extends TransientStoreWork {
         }
         this.options = options;
         startDate = new Date();
+        setPriority(Priority.BACKGROUND);
     }
 
     @Override
@@ -118,13 +118,14 @@ public class StreamAuditEventListener implements EventListener, Synchronization
         if (entries.get().isEmpty()) {
             return;
         }
-        StreamManager streamManager = getStreamManager();
+        List<Record> records = new ArrayList<>(entries.get().size());
         for (LogEntry entry : entries.get()) {
-            if (entry != null) {
-                Record record = recordOf(entry);
-                streamManager.append(STREAM_NAME, record);
+            Record record = entry == null ? null : recordOf(entry);
+            if (record != null) {
+                records.add(record);
             }
         }
+        getStreamManager().append(STREAM_NAME, records);
     }
 
     protected Record recordOf(LogEntry entry) {
@@ -41,6 +41,7 @@ public class ImagingRecomputeWork extends AbstractWork {
     public ImagingRecomputeWork(String repositoryName, String nxqlQuery) {
         this.repositoryName = repositoryName;
         this.nxqlQuery = nxqlQuery;
+        setPriority(Priority.BACKGROUND);
     }
 
     @Override
@@ -22,7 +22,9 @@ package org.nuxeo.ecm.platform.tag;
 
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 import static org.nuxeo.ecm.platform.tag.TagConstants.TAG_LIST;
 
 import java.io.Serializable;
@@ -34,6 +36,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.inject.Inject;
+
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -44,7 +48,11 @@ import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.PathRef;
 import org.nuxeo.ecm.core.api.VersioningOption;
 import org.nuxeo.ecm.core.api.versioning.VersioningService;
+import org.nuxeo.ecm.core.storage.sql.coremodel.SQLRepositoryService;
+import org.nuxeo.ecm.core.storage.sql.jdbc.QueryPlanCache;
+import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.test.runner.Deploy;
+import org.nuxeo.runtime.test.runner.HotDeployer;
 import org.nuxeo.runtime.test.runner.LogCaptureFeature;
 
 /**
@@ -57,6 +65,9 @@ public class TestFacetedTagService extends AbstractTestTagService {
     @Rule
     public ExpectedException exceptionRule = ExpectedException.none();
 
+    @Inject
+    protected HotDeployer deployer;
+
     @Override
     protected void createTags() {
         DocumentModel file1 = session.getDocument(new PathRef("/file1"));
@@ -272,4 +283,29 @@ public class TestFacetedTagService extends AbstractTestTagService {
         tags = (List<Map<String, Serializable>>) doc.getPropertyValue(TAG_LIST);
         assertTrue(tags.isEmpty());
     }
+
+    @Test
+    public void testQueryOnTagsNotInQueryPlanCache() throws Exception {
+        assumeTrue(coreFeature.getStorageConfiguration().isVCS());
+        deployer.deploy("org.nuxeo.ecm.tag.tests:test-query-plan-cache-contrib.xml");
+        QueryPlanCache cache = Framework.getService(SQLRepositoryService.class)
+                                        .getRepositoryImpl(session.getRepositoryName())
+                                        .getQueryPlanCache();
+        assertNotNull(cache);
+        DocumentModel file1 = session.createDocumentModel("/", "file1", "File");
+        session.createDocument(file1);
+        DocumentModel file2 = session.createDocumentModel("/", "file2", "File");
+        session.createDocument(file2);
+        createTags();
+        txFeature.nextTransaction();
+        cache.clear();
+
+        // the generated SQL depends on the tag storage migration state
+        assertEquals(2, session.query("SELECT * FROM File WHERE ecm:tag = 'tag1'").size());
+        assertEquals(1, session.query("SELECT * FROM File WHERE ecm:tag/* = 'tag2'").size());
+        assertEquals(0, cache.getSize());
+        // other queries are cached
+        assertEquals(2, session.query("SELECT * FROM File WHERE ecm:isVersion = 0").size());
+        assertEquals(1, cache.getSize());
+    }
 }
@@ -43,6 +43,7 @@ public class ThumbnailRecomputeWork extends AbstractWork {
     public ThumbnailRecomputeWork(String repositoryName, String nxqlQuery) {
         this.repositoryName = repositoryName;
         this.nxqlQuery = nxqlQuery;
+        setPriority(Priority.BACKGROUND);
     }
 
     @Override
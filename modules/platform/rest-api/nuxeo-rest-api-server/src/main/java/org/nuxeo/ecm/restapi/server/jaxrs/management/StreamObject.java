@@ -22,11 +22,17 @@ import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static org.nuxeo.ecm.core.bulk.introspection.StreamIntrospectionComputation.INTROSPECTION_KEY;
 import static org.nuxeo.ecm.core.bulk.introspection.StreamIntrospectionComputation.INTROSPECTION_KV_STORE;
 
+import java.util.Collections;
+import java.util.Map;
+
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 
+import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.bulk.introspection.StreamIntrospectionConverter;
+import org.nuxeo.ecm.core.work.StreamWorkManager;
+import org.nuxeo.ecm.core.work.api.WorkManager;
 import org.nuxeo.ecm.webengine.model.WebObject;
 import org.nuxeo.ecm.webengine.model.impl.AbstractResource;
 import org.nuxeo.ecm.webengine.model.impl.ResourceTypeImpl;
@@ -34,6 +40,7 @@ import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.kv.KeyValueService;
 import org.nuxeo.runtime.kv.KeyValueStore;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
@@ -59,6 +66,26 @@ public class StreamObject extends AbstractResource<ResourceTypeImpl> {
         return new StreamIntrospectionConverter(json).getPuml();
     }
 
+    /**
+     * Gets the backpressure status of the work queues.
+     *
+     * @since 11.5
+     */
+    @GET
+    @Path("/backpressure")
+    public String doGetBackpressure() {
+        Map<String, Map<String, Object>> status = Collections.emptyMap();
+        WorkManager workManager = Framework.getService(WorkManager.class);
+        if (workManager instanceof StreamWorkManager) {
+            status = ((StreamWorkManager) workManager).getBackpressureStatus();
+        }
+        try {
+            return OBJECT_MAPPER.writeValueAsString(status);
+        } catch (JsonProcessingException e) {
+            throw new NuxeoException(e);
+        }
+    }
+
     protected String getJson() {
         return getKvStore().getString(INTROSPECTION_KEY);
     }
@@ -40,6 +40,8 @@ import org.w3c.dom.Node;
  * <li><b>name</b>: the JNDI name (for instance {@code jdbc/foo})</li>
  * <li><b>driverClassName</b>: the JDBC driver class name (only for a non-XA datasource)</li>
  * <li><b>xaDataSource</b>: the XA datasource class name (only for a XA datasource)</li>
+ * <li><b>readOnly</b>: {@code true} for a datasource on a read-only replica of a database, its connections are then
+ * read-only by default (since 11.5)</li>
  * </ul>
  * <p>
  * To configure the characteristics of the pool:
@@ -104,6 +104,8 @@ public class PooledDataSourceRegistry {
         // JavaBeans sucks
         properties.computeIfAbsent("XADataSource", k -> properties.get("xaDataSource"));
         properties.computeIfAbsent("URL", k -> properties.get("url"));
+        // read-only replica
+        properties.computeIfAbsent("defaultReadOnly", k -> properties.get("readOnly"));
 
         BasicManagedDataSource ds = new ConfigurableManagedDataSource(properties);
 
@@ -0,0 +1,68 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.runtime.codec;
+
+import java.util.Map;
+
+import org.nuxeo.lib.stream.codec.Codec;
+import org.nuxeo.lib.stream.codec.CompressedCodec;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Factory of codecs compressing the output of another registered codec.
+ *
+ * @since 11.5
+ */
+public class CompressedCodecFactory implements CodecFactory {
+
+    public static final String KEY_COMPRESSION = "compression";
+
+    public static final String DEFAULT_COMPRESSION = "lz4";
+
+    public static final String KEY_CODEC = "codec";
+
+    public static final String DEFAULT_CODEC = "avro";
+
+    public static final String KEY_THRESHOLD = "threshold";
+
+    public static final String KEY_LEVEL = "level";
+
+    protected CompressedCodec.Algorithm algorithm;
+
+    protected String codecName;
+
+    protected int threshold;
+
+    protected int level;
+
+    @Override
+    public void init(Map<String, String> options) {
+        algorithm = CompressedCodec.Algorithm.of(options.getOrDefault(KEY_COMPRESSION, DEFAULT_COMPRESSION));
+        codecName = options.getOrDefault(KEY_CODEC, DEFAULT_CODEC);
+        threshold = Integer.parseInt(
+                options.getOrDefault(KEY_THRESHOLD, String.valueOf(CompressedCodec.DEFAULT_THRESHOLD)));
+        level = Integer.parseInt(options.getOrDefault(KEY_LEVEL, String.valueOf(CompressedCodec.DEFAULT_ZSTD_LEVEL)));
+    }
+
+    @Override
+    public <T> Codec<T> newCodec(Class<T> objectClass) {
+        Codec<T> codec = Framework.getService(CodecService.class).getCodec(codecName, objectClass);
+        return new CompressedCodec<>(codec, algorithm, threshold, level);
+    }
+}
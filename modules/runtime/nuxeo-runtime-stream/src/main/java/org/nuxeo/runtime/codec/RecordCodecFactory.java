@@ -0,0 +1,48 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.runtime.codec;
+
+import java.util.Map;
+
+import org.nuxeo.lib.stream.codec.Codec;
+import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.computation.RecordCodec;
+
+/**
+ * Provides the compact {@link RecordCodec}, only available for {@link Record}.
+ *
+ * @since 11.5
+ */
+public class RecordCodecFactory implements CodecFactory {
+
+    @Override
+    public void init(Map<String, String> options) {
+        // nothing to init
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> Codec<T> newCodec(Class<T> objectClass) {
+        if (!Record.class.equals(objectClass)) {
+            throw new IllegalArgumentException(
+                    "Codec " + RecordCodec.NAME + " can only encode records, not: " + objectClass);
+        }
+        return (Codec<T>) RecordCodec.RECORD_CODEC;
+    }
+}
@@ -66,6 +66,22 @@ public class StreamProcessorDescriptor {
         @XNode("@concurrency")
         public Integer concurrency = DEFAULT_CONCURRENCY;
 
+        /**
+         * When greater than the concurrency, the number of threads is adapted to the lag up to this maximum.
+         *
+         * @since 11.5
+         */
+        @XNode("@maxConcurrency")
+        public Integer maxConcurrency;
+
+        /**
+         * Runs the computation threads as virtual threads when supported by the JVM.
+         *
+         * @since 11.5
+         */
+        @XNode("@virtualThreads")
+        public boolean virtualThreads;
+
         public String getId() {
             return name;
         }
@@ -174,6 +190,10 @@ public class StreamProcessorDescriptor {
         @XNode("@batchThreshold")
         public Duration batchThreshold = DEFAULT_BATCH_THRESHOLD;
 
+        // Commit the output records and the input positions atomically, @since 11.5
+        @XNode("@exactlyOnce")
+        public Boolean exactlyOnce = Boolean.FALSE;
+
         protected int getSkipFirstFailures() {
             return Integer.parseInt(
                     Framework.getProperty(RECOVERY_SKIP_FIRST_FAILURES_OPTION, Integer.toString(skipFirstFailures)));
@@ -186,7 +206,8 @@ public class StreamProcessorDescriptor {
             return new ComputationPolicyBuilder().retryPolicy(retryPolicy)
                                                  .batchPolicy(batchCapacity, batchThreshold)
                                                  .continueOnFailure(continueOnFailure)
-                                                 .skipFirstFailures(getSkipFirstFailures());
+                                                 .skipFirstFailures(getSkipFirstFailures())
+                                                 .exactlyOnce(exactlyOnce);
         }
     }
 
@@ -203,7 +203,15 @@ public class StreamServiceImpl extends DefaultComponent implements StreamService
                 : codecService.getCodec(descriptor.defaultCodec, Record.class);
         Settings settings = new Settings(descriptor.defaultConcurrency, descriptor.defaultPartitions, actualCodec,
                 descriptor.getDefaultPolicy(), null, descriptor.defaultExternal);
-        descriptor.computations.forEach(comp -> settings.setConcurrency(comp.name, comp.concurrency));
+        descriptor.computations.forEach(comp -> {
+            settings.setConcurrency(comp.name, comp.concurrency);
+            if (comp.maxConcurrency != null) {
+                settings.setMaxConcurrency(comp.name, comp.maxConcurrency);
+            }
+            if (comp.virtualThreads) {
+                settings.setVirtualThreads(comp.name, true);
+            }
+        });
         descriptor.policies.forEach(policy -> settings.setPolicy(policy.name, descriptor.getPolicy(policy.name)));
         for (StreamProcessorDescriptor.StreamDescriptor streamDescriptor : descriptor.streams) {
             settings.setPartitions(streamDescriptor.name,
@@ -63,6 +63,8 @@ public class TestCodecService {
         checkCodec(record, codec, 23);
         codec = service.getCodec("avroJson", Record.class);
         checkCodec(record, codec, 127);
+        codec = service.getCodec("record", Record.class);
+        checkCodec(record, codec, 24);
 
         codec = service.getCodec("java", Record.class);
         checkCodec(record, codec, 90);
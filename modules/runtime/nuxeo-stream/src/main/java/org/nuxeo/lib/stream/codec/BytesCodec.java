@@ -0,0 +1,49 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.codec;
+
+import net.openhft.chronicle.bytes.BytesIn;
+import net.openhft.chronicle.bytes.BytesOut;
+
+/**
+ * A codec that can encode and decode directly to and from Chronicle bytes.
+ * <p>
+ * A Chronicle Log using such a codec writes the encoded object straight into the queue, and decodes it straight from
+ * the mapped queue file, without going through an intermediate byte array.
+ * <p>
+ * The byte array representation must be the same as the one written to bytes, so that the codec can be used with other
+ * Log implementations.
+ *
+ * @since 11.5
+ */
+public interface BytesCodec<T> extends Codec<T> {
+
+    /**
+     * Encodes the object into the bytes.
+     */
+    void encode(T object, BytesOut<?> out);
+
+    /**
+     * Decodes an object from the bytes, reading all the remaining bytes. The bytes must not be referenced once the
+     * method returns.
+     *
+     * @throws IllegalArgumentException if data are invalid.
+     */
+    T decode(BytesIn<?> in);
+}
@@ -0,0 +1,232 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     bdelbosc
+ */
+package org.nuxeo.lib.stream.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import com.github.luben.zstd.Zstd;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * Codec compressing the output of another codec when it is larger than a threshold, using LZ4 or Zstd.
+ * <p>
+ * Each encoded value starts with a header byte telling if and how the payload is compressed, a compressed payload is
+ * followed by its uncompressed length on 4 bytes and the compressed bytes. Small values, or values that don't compress,
+ * are stored uncompressed so the cost is a single byte. Data written by the inner codec without this header, for
+ * instance before compression was enabled on a stream, can still be decoded.
+ *
+ * @since 11.5
+ */
+public class CompressedCodec<T> implements Codec<T> {
+
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    public static final int DEFAULT_ZSTD_LEVEL = 3;
+
+    protected static final byte HEADER_NONE = (byte) 0xF0;
+
+    protected static final byte HEADER_LZ4 = (byte) 0xF1;
+
+    protected static final byte HEADER_ZSTD = (byte) 0xF2;
+
+    protected static final int HEADER_SIZE = 5;
+
+    // LZ4 cannot compress more than this, bounds the allocation when the header is in fact raw data
+    protected static final int MAX_LZ4_RATIO = 255;
+
+    public enum Algorithm {
+        LZ4("lz4", HEADER_LZ4), ZSTD("zstd", HEADER_ZSTD);
+
+        protected final String name;
+
+        protected final byte header;
+
+        Algorithm(String name, byte header) {
+            this.name = name;
+            this.header = header;
+        }
+
+        public static Algorithm of(String name) {
+            for (Algorithm algorithm : values()) {
+                if (algorithm.name.equalsIgnoreCase(name)) {
+                    return algorithm;
+                }
+            }
+            throw new IllegalArgumentException("Unknown compression: " + name);
+        }
+    }
+
+    protected final Codec<T> codec;
+
+    protected final Algorithm algorithm;
+
+    protected final int threshold;
+
+    protected final int level;
+
+    public CompressedCodec(Codec<T> codec, Algorithm algorithm) {
+        this(codec, algorithm, DEFAULT_THRESHOLD, DEFAULT_ZSTD_LEVEL);
+    }
+
+    /**
+     * @param codec the codec producing the bytes to compress
+     * @param algorithm the compression algorithm used to encode, any of them can be decoded
+     * @param threshold the minimum size in bytes of a payload to try to compress it
+     * @param level the compression level, used only by Zstd
+     */
+    public CompressedCodec(Codec<T> codec, Algorithm algorithm, int threshold, int level) {
+        this.codec = codec;
+        this.algorithm = algorithm;
+        this.threshold = threshold;
+        this.level = level;
+    }
+
+    @Override
+    public String getName() {
+        return algorithm.name + "-" + codec.getName();
+    }
+
+    public Codec<T> getCodec() {
+        return codec;
+    }
+
+    @Override
+    public byte[] encode(T object) {
+        byte[] data = codec.encode(object);
+        if (data.length >= threshold) {
+            byte[] compressed = compress(data);
+            if (compressed != null) {
+                return compressed;
+            }
+        }
+        byte[] ret = new byte[data.length + 1];
+        ret[0] = HEADER_NONE;
+        System.arraycopy(data, 0, ret, 1, data.length);
+        return ret;
+    }
+
+    /**
+     * Returns the compressed payload with its header, or {@code null} if compression doesn't save space.
+     */
+    protected byte[] compress(byte[] data) {
+        byte[] ret;
+        int size;
+        switch (algorithm) {
+        case LZ4:
+            LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+            ret = new byte[HEADER_SIZE + compressor.maxCompressedLength(data.length)];
+            size = compressor.compress(data, 0, data.length, ret, HEADER_SIZE);
+            break;
+        case ZSTD:
+            ret = new byte[HEADER_SIZE + (int) Zstd.compressBound(data.length)];
+            long res = Zstd.compressByteArray(ret, HEADER_SIZE, ret.length - HEADER_SIZE, data, 0, data.length,
+                    level);
+            if (Zstd.isError(res)) {
+                throw new IllegalArgumentException("Zstd compression failed: " + Zstd.getErrorName(res));
+            }
+            size = (int) res;
+            break;
+        default:
+            throw new IllegalStateException(algorithm.toString());
+        }
+        if (HEADER_SIZE + size >= data.length + 1) {
+            return null;
+        }
+        ret[0] = algorithm.header;
+        ByteBuffer.wrap(ret, 1, 4).putInt(data.length);
+        return Arrays.copyOf(ret, HEADER_SIZE + size);
+    }
+
+    @Override
+    public T decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return codec.decode(data);
+        }
+        byte[] payload;
+        try {
+            payload = uncompress(data);
+        } catch (IllegalArgumentException | LZ4Exception e) {
+            payload = null;
+        }
+        if (payload == null) {
+            // no header, written directly by the inner codec
+            return codec.decode(data);
+        }
+        try {
+            return codec.decode(payload);
+        } catch (IllegalArgumentException e) {
+            if (data[0] == HEADER_NONE) {
+                // the first byte of raw data can look like a header
+                return codec.decode(data);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the payload without header, uncompressed, or {@code null} if there is no known header.
+     */
+    protected byte[] uncompress(byte[] data) {
+        byte header = data[0];
+        if (header == HEADER_NONE) {
+            return Arrays.copyOfRange(data, 1, data.length);
+        }
+        if ((header != HEADER_LZ4 && header != HEADER_ZSTD) || data.length < HEADER_SIZE) {
+            return null;
+        }
+        int length = ByteBuffer.wrap(data, 1, 4).getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (header == HEADER_LZ4) {
+            return uncompressLZ4(data, length);
+        }
+        return uncompressZstd(data, length);
+    }
+
+    protected byte[] uncompressLZ4(byte[] data, int length) {
+        if (length > MAX_LZ4_RATIO * (data.length - HEADER_SIZE)) {
+            return null;
+        }
+        byte[] ret = new byte[length];
+        LZ4SafeDecompressor decompressor = LZ4Factory.fastestInstance().safeDecompressor();
+        int size = decompressor.decompress(data, HEADER_SIZE, data.length - HEADER_SIZE, ret, 0, length);
+        return size == length ? ret : null;
+    }
+
+    protected byte[] uncompressZstd(byte[] data, int length) {
+        if (data.length < HEADER_SIZE + 4) {
+            return null;
+        }
+        int magic = ByteBuffer.wrap(data, HEADER_SIZE, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        if (magic != Zstd.magicNumber()) {
+            return null;
+        }
+        byte[] ret = new byte[length];
+        long res = Zstd.decompressByteArray(ret, 0, length, data, HEADER_SIZE, data.length - HEADER_SIZE);
+        return Zstd.isError(res) || res != length ? null : ret;
+    }
+
+}
@@ -90,6 +90,8 @@ public abstract class AbstractBatchComputation extends AbstractComputation {
         if (!TIMER_BATCH.equals(key)) {
             return;
         }
+        // the policy can be adapted while running
+        thresholdMillis = context.getPolicy().getBatchThreshold().toMillis();
         if (!batchRecords.isEmpty()) {
             batchProcess(context);
         }
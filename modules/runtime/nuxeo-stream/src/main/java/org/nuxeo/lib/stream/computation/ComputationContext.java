@@ -89,4 +89,11 @@ public interface ComputationContext {
      * @since 11.1
      */
     boolean isSpareComputation();
+
+    /**
+     * Gets the state store of the computation, its changes are saved on checkpoint.
+     *
+     * @since 11.5
+     */
+    StateStore getState();
 }
@@ -46,12 +46,16 @@ public class ComputationPolicy {
 
     protected final int skipFirstFailures;
 
+    // @since 11.5
+    protected final boolean exactlyOnce;
+
     public ComputationPolicy(ComputationPolicyBuilder builder) {
         batchCapacity = builder.batchCapacity;
         batchThreshold = builder.batchThreshold;
         skipFailure = builder.skipFailure;
         retryPolicy = builder.retryPolicy;
         skipFirstFailures = builder.skipFirstFailures;
+        exactlyOnce = builder.exactlyOnce;
     }
 
     public RetryPolicy getRetryPolicy() {
@@ -74,6 +78,29 @@ public class ComputationPolicy {
         return skipFirstFailures;
     }
 
+    /**
+     * Returns {@code true} if the records produced and the input positions must be committed atomically.
+     *
+     * @since 11.5
+     */
+    public boolean isExactlyOnce() {
+        return exactlyOnce;
+    }
+
+    /**
+     * Returns a copy of this policy with a different batch capacity.
+     *
+     * @since 11.5
+     */
+    public ComputationPolicy withBatchCapacity(int capacity) {
+        ComputationPolicyBuilder builder = new ComputationPolicyBuilder().batchPolicy(capacity, batchThreshold)
+                                                                         .retryPolicy(retryPolicy)
+                                                                         .continueOnFailure(skipFailure)
+                                                                         .skipFirstFailures(skipFirstFailures)
+                                                                         .exactlyOnce(exactlyOnce);
+        return builder.build();
+    }
+
     /**
      * @deprecated since 10.3 use {@link #continueOnFailure()} instead
      */
@@ -86,6 +113,6 @@ public class ComputationPolicy {
     public String toString() {
         return "ComputationPolicy{" + "maxRetries=" + retryPolicy.getMaxRetries() + ", delay=" + retryPolicy.getDelay()
                 + ", delayMax=" + retryPolicy.getMaxDelay() + ", continueOnFailure=" + skipFailure + ", batchCapacity="
-                + batchCapacity + ", batchThreshold=" + batchThreshold + '}';
+                + batchCapacity + ", batchThreshold=" + batchThreshold + ", exactlyOnce=" + exactlyOnce + '}';
     }
 }
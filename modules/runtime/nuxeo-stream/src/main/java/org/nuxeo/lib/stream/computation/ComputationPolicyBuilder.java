@@ -39,6 +39,8 @@ public class ComputationPolicyBuilder {
 
     protected int skipFirstFailures = 0;
 
+    protected boolean exactlyOnce = false;
+
     protected int batchCapacity = DEFAULT_BATCH_CAPACITY;
 
     protected Duration batchThreshold = Duration.ofSeconds(DEFAULT_BATCH_THRESHOLD_SECOND);
@@ -93,6 +95,18 @@ public class ComputationPolicyBuilder {
         return this;
     }
 
+    /**
+     * Commits the records produced by the computation and the positions of its input streams atomically, so that a
+     * failure between the two doesn't replay records whose output has already been appended. This is ignored when the
+     * Log implementation doesn't support transactions.
+     *
+     * @since 11.5
+     */
+    public ComputationPolicyBuilder exactlyOnce(boolean value) {
+        exactlyOnce = value;
+        return this;
+    }
+
     /**
      * Creates the policy.
      */
@@ -0,0 +1,131 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.computation;
+
+import java.nio.BufferUnderflowException;
+
+import org.nuxeo.lib.stream.codec.BytesCodec;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesIn;
+import net.openhft.chronicle.bytes.BytesOut;
+import net.openhft.chronicle.bytes.OnHeapBytes;
+import net.openhft.chronicle.core.io.IORuntimeException;
+
+/**
+ * Compact binary codec for {@link Record}.
+ * <p>
+ * On a Chronicle Log, records are written into and read from the queue file without intermediate buffer, so the only
+ * copy of the payload is the record data itself. The encoding is: version byte, watermark, flags, key, data, trace
+ * context and appender thread.
+ *
+ * @since 11.5
+ */
+public class RecordCodec implements BytesCodec<Record> {
+
+    public static final String NAME = "record";
+
+    public static final RecordCodec RECORD_CODEC = new RecordCodec();
+
+    protected static final byte VERSION = 1;
+
+    // version + watermark + flags + lengths
+    protected static final int HEADER_SIZE = 32;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Record record) {
+        byte[] data = record.data;
+        OnHeapBytes bytes = Bytes.allocateElasticOnHeap(HEADER_SIZE + (data == null ? 0 : data.length));
+        try {
+            encode(record, bytes);
+            return bytes.toByteArray();
+        } finally {
+            bytes.releaseLast();
+        }
+    }
+
+    @Override
+    public void encode(Record record, BytesOut<?> out) {
+        out.writeByte(VERSION);
+        out.writeLong(record.watermark);
+        out.writeByte(record.flagsAsByte);
+        out.writeUtf8(record.key);
+        writeBytes(out, record.data == null || record.data.length == 0 ? null : record.data);
+        writeBytes(out, record.traceContext);
+        out.writeUtf8(record.appenderThread);
+    }
+
+    protected void writeBytes(BytesOut<?> out, byte[] bytes) {
+        if (bytes == null) {
+            out.writeStopBit(-1);
+        } else {
+            out.writeStopBit(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public Record decode(byte[] data) {
+        Bytes<byte[]> bytes = Bytes.wrapForRead(data);
+        try {
+            return decode(bytes);
+        } finally {
+            bytes.releaseLast();
+        }
+    }
+
+    @Override
+    public Record decode(BytesIn<?> in) {
+        try {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported record encoding version: " + version);
+            }
+            Record record = new Record();
+            record.watermark = in.readLong();
+            record.flagsAsByte = in.readByte();
+            record.key = in.readUtf8();
+            record.data = readBytes(in);
+            record.traceContext = readBytes(in);
+            record.appenderThread = in.readUtf8();
+            return record;
+        } catch (BufferUnderflowException | IORuntimeException e) {
+            throw new IllegalArgumentException("Invalid record", e);
+        }
+    }
+
+    protected byte[] readBytes(BytesIn<?> in) {
+        long length = in.readStopBit();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.readRemaining()) {
+            throw new IllegalArgumentException("Invalid record, length: " + length + " > " + in.readRemaining());
+        }
+        byte[] bytes = new byte[(int) length];
+        in.read(bytes);
+        return bytes;
+    }
+
+}
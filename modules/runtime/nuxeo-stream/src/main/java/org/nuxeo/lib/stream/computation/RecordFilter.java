@@ -50,7 +50,7 @@ public interface RecordFilter {
      * Called after a record is appended to a stream.
      *
      * @param record the written record
-     * @param offset the record's offset
+     * @param offset the record's offset, {@code null} when the record is appended within a transaction (since 11.5)
      */
     default void afterAppend(Record record, LogOffset offset) {
         // nothing
@@ -56,6 +56,10 @@ public class Settings {
 
     protected final Map<Name, Integer> concurrencies = new HashMap<>();
 
+    protected final Map<Name, Integer> maxConcurrencies = new HashMap<>();
+
+    protected final Map<Name, Boolean> virtualThreads = new HashMap<>();
+
     protected final ComputationPolicy defaultPolicy;
 
     protected final Map<Name, ComputationPolicy> policies = new HashMap<>();
@@ -131,6 +135,72 @@ public class Settings {
         return concurrencies.getOrDefault(computationName, defaultConcurrency);
     }
 
+    /**
+     * Sets the maximum computation thread pool size. When greater than the concurrency, the number of threads is
+     * adapted between the concurrency and this maximum depending on the lag of the computation.
+     *
+     * @since 11.5
+     */
+    public Settings setMaxConcurrency(String computationName, int maxConcurrency) {
+        return setMaxConcurrency(Name.ofUrn(computationName), maxConcurrency);
+    }
+
+    /**
+     * @since 11.5
+     */
+    public Settings setMaxConcurrency(Name computationName, int maxConcurrency) {
+        maxConcurrencies.put(computationName, maxConcurrency);
+        return this;
+    }
+
+    /**
+     * Returns the maximum computation thread pool size, which is the concurrency if autoscaling is not enabled.
+     *
+     * @since 11.5
+     */
+    public int getMaxConcurrency(String computationName) {
+        return getMaxConcurrency(Name.ofUrn(computationName));
+    }
+
+    /**
+     * @since 11.5
+     */
+    public int getMaxConcurrency(Name computationName) {
+        return Math.max(getConcurrency(computationName), maxConcurrencies.getOrDefault(computationName, 0));
+    }
+
+    /**
+     * Runs the computation threads as virtual threads, when supported by the JVM. This is suited to computations that
+     * are mostly blocked on I/O.
+     *
+     * @since 11.5
+     */
+    public Settings setVirtualThreads(String computationName, boolean enabled) {
+        return setVirtualThreads(Name.ofUrn(computationName), enabled);
+    }
+
+    /**
+     * @since 11.5
+     */
+    public Settings setVirtualThreads(Name computationName, boolean enabled) {
+        virtualThreads.put(computationName, enabled);
+        return this;
+    }
+
+    /**
+     * @since 11.5
+     */
+    public boolean isVirtualThreads(String computationName) {
+        return isVirtualThreads(Name.ofUrn(computationName));
+    }
+
+    /**
+     * @since 11.5
+     */
+    public boolean isVirtualThreads(Name computationName) {
+        return virtualThreads.getOrDefault(computationName, false);
+    }
+
     /**
      * Sets the number of partitions for a stream.
      */
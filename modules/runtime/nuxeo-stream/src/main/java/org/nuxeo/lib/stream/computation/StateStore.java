@@ -0,0 +1,50 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.computation;
+
+/**
+ * A key value store local to a computation.
+ * <p>
+ * The store is partitioned using a hash of the keys, the same way records are routed to the partitions of a stream.
+ * When the keys of the state are the keys of the input records, each computation instance only accesses the partitions
+ * of the store matching its assigned input partitions, so the state is kept in memory and updated without remote
+ * calls.
+ * <p>
+ * Changes are saved on checkpoint together with the input positions and restored after a failure or a rebalancing.
+ *
+ * @since 11.5
+ */
+public interface StateStore {
+
+    /**
+     * Returns the value of a key, or {@code null} if there is no value.
+     */
+    byte[] get(String key);
+
+    /**
+     * Sets the value of a key, a {@code null} or empty value removes the key.
+     */
+    void put(String key, byte[] value);
+
+    /**
+     * Removes a key.
+     */
+    void remove(String key);
+
+}
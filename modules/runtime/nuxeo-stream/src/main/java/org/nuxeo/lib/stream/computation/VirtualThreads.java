@@ -0,0 +1,98 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.computation;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads when the running JVM supports them.
+ * <p>
+ * Virtual threads are cheap to create and to block, they are suited to tasks that spend most of their time waiting for
+ * I/O. As the code is compiled for a JVM without virtual threads, they are created by reflection, {@link #isSupported}
+ * must be checked before asking for a factory.
+ *
+ * @since 11.5
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+
+    private static final Method NAME;
+
+    private static final Method UNCAUGHT_EXCEPTION_HANDLER;
+
+    private static final Method FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method handler = null;
+        Method factory = null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builderClass.getMethod("name", String.class, long.class);
+            handler = builderClass.getMethod("uncaughtExceptionHandler", Thread.UncaughtExceptionHandler.class);
+            factory = builderClass.getMethod("factory");
+            // fails when virtual threads are a preview feature that is not enabled
+            ofVirtual.invoke(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNCAUGHT_EXCEPTION_HANDLER = handler;
+        FACTORY = factory;
+    }
+
+    private VirtualThreads() {
+        // utility class
+    }
+
+    /**
+     * Returns {@code true} if the JVM can create virtual threads.
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Returns a factory of virtual threads named with the given prefix followed by a counter.
+     *
+     * @throws UnsupportedOperationException if the JVM doesn't support virtual threads
+     */
+    public static ThreadFactory newThreadFactory(String prefix, Thread.UncaughtExceptionHandler handler) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM");
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = NAME.invoke(builder, prefix, 0L);
+            if (handler != null) {
+                builder = UNCAUGHT_EXCEPTION_HANDLER.invoke(builder, handler);
+            }
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException("Cannot create virtual thread factory", e);
+        }
+    }
+
+}
@@ -31,6 +31,7 @@ import org.nuxeo.lib.stream.computation.ComputationContext;
 import org.nuxeo.lib.stream.computation.ComputationMetadataMapping;
 import org.nuxeo.lib.stream.computation.ComputationPolicy;
 import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.computation.StateStore;
 import org.nuxeo.lib.stream.computation.StreamManager;
 import org.nuxeo.lib.stream.log.LogOffset;
 
@@ -46,7 +47,7 @@ public class ComputationContextImpl implements ComputationContext {
 
     protected final StreamManager manager;
 
-    protected final ComputationPolicy policy;
+    protected ComputationPolicy policy;
 
     protected final boolean isSpare;
 
@@ -58,6 +59,8 @@ public class ComputationContextImpl implements ComputationContext {
 
     protected LogOffset lastOffset;
 
+    protected StateStore state;
+
     public ComputationContextImpl(StreamManager streamManager, ComputationMetadataMapping metadata,
             ComputationPolicy policy, boolean isSpare) {
         this.manager = streamManager;
@@ -135,11 +138,35 @@ public class ComputationContextImpl implements ComputationContext {
         return policy;
     }
 
+    /**
+     * Changes the policy, used to adapt the batch capacity while running.
+     *
+     * @since 11.5
+     */
+    public void setPolicy(ComputationPolicy policy) {
+        this.policy = policy;
+    }
+
     @Override
     public boolean isSpareComputation() {
         return isSpare;
     }
 
+    @Override
+    public StateStore getState() {
+        if (state == null) {
+            throw new IllegalStateException("No state store provided in context");
+        }
+        return state;
+    }
+
+    /**
+     * @since 11.5
+     */
+    public void setState(StateStore state) {
+        this.state = state;
+    }
+
     public void setLastOffset(LogOffset lastOffset) {
         this.lastOffset = lastOffset;
     }
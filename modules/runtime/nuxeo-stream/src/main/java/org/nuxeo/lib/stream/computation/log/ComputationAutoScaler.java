@@ -0,0 +1,128 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.computation.log;
+
+import java.time.Duration;
+
+/**
+ * Decides the number of threads and the batch capacity factor of a computation from its lag and record processing
+ * time.
+ * <p>
+ * The lag is turned into an estimated time to drain: {@code lag * processing time / threads}. When it exceeds the
+ * target, threads are added in proportion, up to the maximum, and once the maximum is reached the batch capacity is
+ * doubled. When the lag is drained, the batch capacity is brought back to the policy one, then threads are removed one
+ * at a time down to the minimum. After each change a few checks are skipped so that the rebalancing can settle.
+ * <p>
+ * This class is not thread safe, it is called periodically by a single thread.
+ *
+ * @since 11.5
+ */
+public class ComputationAutoScaler {
+
+    public static final Duration DEFAULT_TARGET_DRAIN_TIME = Duration.ofSeconds(30);
+
+    public static final int DEFAULT_COOLDOWN_CHECKS = 3;
+
+    public static final int MAX_BATCH_FACTOR = 8;
+
+    protected final int minThreads;
+
+    protected final int maxThreads;
+
+    protected final long targetDrainTimeNanos;
+
+    protected final int cooldownChecks;
+
+    protected int cooldown;
+
+    protected int idleChecks;
+
+    protected int batchFactor = 1;
+
+    public ComputationAutoScaler(int minThreads, int maxThreads) {
+        this(minThreads, maxThreads, DEFAULT_TARGET_DRAIN_TIME, DEFAULT_COOLDOWN_CHECKS);
+    }
+
+    public ComputationAutoScaler(int minThreads, int maxThreads, Duration targetDrainTime, int cooldownChecks) {
+        if (minThreads < 1 || maxThreads < minThreads) {
+            throw new IllegalArgumentException("Invalid thread bounds: " + minThreads + ", " + maxThreads);
+        }
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.targetDrainTimeNanos = targetDrainTime.toNanos();
+        this.cooldownChecks = cooldownChecks;
+    }
+
+    /**
+     * Returns the number of threads to use.
+     *
+     * @param threads the current number of threads
+     * @param lag the number of records to process
+     * @param processingTimeNanos the mean time to process a record, 0 if unknown
+     */
+    public int getThreads(int threads, long lag, double processingTimeNanos) {
+        idleChecks = lag == 0 ? idleChecks + 1 : 0;
+        if (cooldown > 0) {
+            cooldown--;
+            return threads;
+        }
+        double drainTime = getDrainTimeNanos(threads, lag, processingTimeNanos);
+        int ret = threads;
+        if (drainTime > targetDrainTimeNanos) {
+            if (threads < maxThreads) {
+                // add threads in proportion of the excess, at most doubling
+                int needed = (int) Math.ceil(threads * Math.min(2.0, drainTime / targetDrainTimeNanos));
+                ret = Math.min(maxThreads, Math.max(threads + 1, needed));
+            } else if (batchFactor < MAX_BATCH_FACTOR) {
+                batchFactor *= 2;
+                cooldown = cooldownChecks;
+            }
+        } else if (drainTime < targetDrainTimeNanos / 10.0) {
+            if (batchFactor > 1) {
+                batchFactor /= 2;
+                cooldown = cooldownChecks;
+            } else if (threads > minThreads && idleChecks > cooldownChecks) {
+                ret = threads - 1;
+            }
+        }
+        if (ret != threads) {
+            cooldown = cooldownChecks;
+        }
+        return ret;
+    }
+
+    protected double getDrainTimeNanos(int threads, long lag, double processingTimeNanos) {
+        if (lag == 0) {
+            return 0;
+        }
+        if (processingTimeNanos <= 0) {
+            // nothing processed yet, we can't tell
+            return targetDrainTimeNanos;
+        }
+        return lag * processingTimeNanos / Math.max(1, threads);
+    }
+
+    /**
+     * Returns the factor to apply to the batch capacity of the policy.
+     */
+    public int getBatchFactor() {
+        return batchFactor;
+    }
+
+}
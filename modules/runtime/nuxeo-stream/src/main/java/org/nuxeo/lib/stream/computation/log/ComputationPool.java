@@ -21,11 +21,15 @@ package org.nuxeo.lib.stream.computation.log;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 
 import java.time.Duration;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -37,11 +41,27 @@ import org.apache.commons.logging.LogFactory;
 import org.nuxeo.lib.stream.computation.Computation;
 import org.nuxeo.lib.stream.computation.ComputationMetadataMapping;
 import org.nuxeo.lib.stream.computation.ComputationPolicy;
+import org.nuxeo.lib.stream.computation.VirtualThreads;
 import org.nuxeo.lib.stream.computation.Watermark;
+import org.nuxeo.lib.stream.log.LogManager;
 import org.nuxeo.lib.stream.log.LogPartition;
+import org.nuxeo.lib.stream.log.Name;
+
+import io.dropwizard.metrics5.Counter;
+import io.dropwizard.metrics5.Gauge;
+import io.dropwizard.metrics5.MetricName;
+import io.dropwizard.metrics5.MetricRegistry;
+import io.dropwizard.metrics5.SharedMetricRegistries;
 
 /**
  * Pool of ComputationRunner
+ * <p>
+ * When the maximum number of threads is greater than the number of threads and the Log supports subscription, the pool
+ * is autoscaled: {@link #autoScale()} is called periodically to add or remove runners, and to adapt the batch capacity,
+ * according to the decisions of a {@link ComputationAutoScaler}.
+ * <p>
+ * The runners can be executed on {@link VirtualThreads virtual threads}, this falls back to platform threads when the
+ * JVM doesn't support them.
  *
  * @since 9.3
  */
@@ -64,8 +84,54 @@ public class ComputationPool {
 
     protected ExecutorService threadPool;
 
+    // @since 11.5
+    protected final int maxThreads;
+
+    // @since 11.5
+    protected final boolean autoScale;
+
+    // @since 11.5
+    protected final Map<ComputationRunner, Future<?>> futures = new ConcurrentHashMap<>();
+
+    // @since 11.5
+    protected final boolean virtualThreads;
+
+    // @since 11.5
+    protected ComputationAutoScaler autoScaler;
+
+    // @since 11.5
+    protected volatile ComputationPolicy currentPolicy;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(
+            ComputationRunner.NUXEO_METRICS_REGISTRY_NAME);
+
+    protected Counter scaleUpCount;
+
+    protected Counter scaleDownCount;
+
     public ComputationPool(Supplier<Computation> supplier, ComputationMetadataMapping metadata,
             List<List<LogPartition>> defaultAssignments, LogStreamManager streamManager, ComputationPolicy policy) {
+        this(supplier, metadata, defaultAssignments, streamManager, policy, defaultAssignments.size());
+    }
+
+    /**
+     * @param maxThreads the maximum number of threads when autoscaling
+     * @since 11.5
+     */
+    public ComputationPool(Supplier<Computation> supplier, ComputationMetadataMapping metadata,
+            List<List<LogPartition>> defaultAssignments, LogStreamManager streamManager, ComputationPolicy policy,
+            int maxThreads) {
+        this(supplier, metadata, defaultAssignments, streamManager, policy, maxThreads, false);
+    }
+
+    /**
+     * @param maxThreads the maximum number of threads when autoscaling
+     * @param virtualThreads whether to run the runners on virtual threads
+     * @since 11.5
+     */
+    public ComputationPool(Supplier<Computation> supplier, ComputationMetadataMapping metadata,
+            List<List<LogPartition>> defaultAssignments, LogStreamManager streamManager, ComputationPolicy policy,
+            int maxThreads, boolean virtualThreads) {
         Objects.requireNonNull(policy);
         this.supplier = supplier;
         this.metadata = metadata;
@@ -73,7 +139,16 @@ public class ComputationPool {
         this.streamManager = streamManager;
         this.defaultAssignments = defaultAssignments;
         this.policy = policy;
-        this.runners = new ArrayList<>(threads);
+        this.currentPolicy = policy;
+        this.runners = new CopyOnWriteArrayList<>();
+        this.maxThreads = Math.max(threads, maxThreads);
+        boolean scalable = threads > 0 && this.maxThreads > threads && !metadata.inputStreams().isEmpty();
+        if (scalable && !streamManager.supportSubscribe()) {
+            log.warn(metadata.name() + ": Autoscaling requires a Log with subscription, using " + threads + " threads");
+            scalable = false;
+        }
+        this.autoScale = scalable;
+        this.virtualThreads = virtualThreads;
     }
 
     public String getComputationName() {
@@ -87,7 +162,11 @@ public class ComputationPool {
             return;
         }
         log.info(metadata.name() + ": Starting pool");
-        threadPool = newFixedThreadPool(threads, new NamedThreadFactory(metadata.name() + "Pool"));
+        if (autoScale) {
+            startAutoScaled();
+            return;
+        }
+        threadPool = newFixedThreadPool(threads, newThreadFactory());
         defaultAssignments.forEach(assignments -> {
             ComputationRunner runner = new ComputationRunner(supplier, metadata, assignments, streamManager, policy);
             threadPool.submit(runner);
@@ -98,8 +177,137 @@ public class ComputationPool {
         log.debug(metadata.name() + ": Pool started, threads: " + threads);
     }
 
+    protected synchronized void startAutoScaled() {
+        autoScaler = new ComputationAutoScaler(threads, maxThreads);
+        threadPool = newFixedThreadPool(maxThreads, newThreadFactory());
+        // the pool stays open to admit new runners
+        defaultAssignments.forEach(this::addRunner);
+        registerAutoScaleMetrics();
+        log.debug(metadata.name() + ": Pool started, threads: " + threads + ", max threads: " + maxThreads);
+    }
+
+    protected ThreadFactory newThreadFactory() {
+        String prefix = metadata.name() + "Pool";
+        if (virtualThreads) {
+            if (VirtualThreads.isSupported()) {
+                return VirtualThreads.newThreadFactory(prefix + "-", NamedThreadFactory::handleUncaughtException);
+            }
+            log.warn(metadata.name() + ": Virtual threads are not supported by this JVM, using platform threads");
+        }
+        return new NamedThreadFactory(prefix);
+    }
+
+    protected void addRunner(List<LogPartition> assignments) {
+        ComputationRunner runner = new ComputationRunner(supplier, metadata, assignments, streamManager,
+                currentPolicy);
+        futures.put(runner, threadPool.submit(runner));
+        runners.add(runner);
+    }
+
+    protected void registerAutoScaleMetrics() {
+        String name = Name.ofUrn(metadata.name()).getId();
+        scaleUpCount = registry.counter(
+                MetricName.build("nuxeo.streams.computation.autoscale.up").tagged("computation", name));
+        scaleDownCount = registry.counter(
+                MetricName.build("nuxeo.streams.computation.autoscale.down").tagged("computation", name));
+        MetricName threadsName = getThreadsMetricName();
+        registry.remove(threadsName);
+        registry.register(threadsName, (Gauge<Integer>) runners::size);
+        MetricName batchName = getBatchCapacityMetricName();
+        registry.remove(batchName);
+        registry.register(batchName, (Gauge<Integer>) () -> currentPolicy.getBatchCapacity());
+    }
+
+    protected MetricName getThreadsMetricName() {
+        return MetricName.build("nuxeo.streams.computation.autoscale.threads")
+                         .tagged("computation", Name.ofUrn(metadata.name()).getId());
+    }
+
+    protected MetricName getBatchCapacityMetricName() {
+        return MetricName.build("nuxeo.streams.computation.autoscale.batchCapacity")
+                         .tagged("computation", Name.ofUrn(metadata.name()).getId());
+    }
+
+    /**
+     * Adapts the number of runners and the batch capacity to the current lag. Does nothing if the pool is not
+     * autoscaled.
+     *
+     * @since 11.5
+     */
+    public synchronized void autoScale() {
+        if (!autoScale || threadPool == null || threadPool.isShutdown()) {
+            return;
+        }
+        if (futures.values().stream().anyMatch(Future::isDone)) {
+            // a runner has terminated by itself (failure, poison pill), don't bring it back
+            log.warn(metadata.name() + ": Runner terminated, stop autoscaling");
+            threadPool.shutdown();
+            return;
+        }
+        long lag = getLag();
+        MetricName timerName = MetricName.build("nuxeo.streams.computation.processRecord")
+                                         .tagged("computation", Name.ofUrn(metadata.name()).getId());
+        double processingTime = registry.timer(timerName).getSnapshot().getMean();
+        int current = runners.size();
+        int target = autoScaler.getThreads(current, lag, processingTime);
+        if (target > current) {
+            log.info(String.format("%s: Scaling up from %d to %d threads, lag: %d", metadata.name(), current, target,
+                    lag));
+            for (int i = current; i < target; i++) {
+                addRunner(Collections.emptyList());
+            }
+            scaleUpCount.inc(target - current);
+        } else if (target < current) {
+            log.info(String.format("%s: Scaling down from %d to %d threads, lag: %d", metadata.name(), current,
+                    target, lag));
+            for (int i = target; i < current; i++) {
+                ComputationRunner runner = runners.remove(runners.size() - 1);
+                futures.remove(runner);
+                runner.stop();
+            }
+            scaleDownCount.inc(current - target);
+        }
+        int capacity = policy.getBatchCapacity() * autoScaler.getBatchFactor();
+        if (policy.getBatchCapacity() > 1 && capacity != currentPolicy.getBatchCapacity()) {
+            log.info(String.format("%s: Changing batch capacity from %d to %d, lag: %d", metadata.name(),
+                    currentPolicy.getBatchCapacity(), capacity, lag));
+            currentPolicy = policy.withBatchCapacity(capacity);
+            runners.forEach(runner -> runner.setPolicy(currentPolicy));
+        }
+    }
+
+    protected long getLag() {
+        LogManager manager = streamManager.getLogManager();
+        Name group = Name.ofUrn(metadata.name());
+        return metadata.inputStreams()
+                       .stream()
+                       .mapToLong(stream -> manager.getLag(Name.ofUrn(stream), group).lag())
+                       .sum();
+    }
+
+    /**
+     * Returns {@code true} if the pool adapts its number of threads.
+     *
+     * @since 11.5
+     */
+    public boolean isAutoScaled() {
+        return autoScale;
+    }
+
+    protected synchronized void closeAdmission() {
+        if (autoScale && threadPool != null) {
+            threadPool.shutdown();
+        }
+    }
+
     public boolean isTerminated() {
-        return threadPool == null ? true : threadPool.isTerminated();
+        if (threadPool == null) {
+            return true;
+        }
+        if (autoScale && !threadPool.isShutdown()) {
+            return futures.values().stream().allMatch(Future::isDone);
+        }
+        return threadPool.isTerminated();
     }
 
     public boolean waitForAssignments(Duration timeout) throws InterruptedException {
@@ -120,6 +328,7 @@ public class ComputationPool {
             return true;
         }
         log.info(metadata.name() + ": Draining");
+        closeAdmission();
         runners.forEach(ComputationRunner::drain);
         boolean ret = awaitPoolTermination(timeout);
         stop(Duration.ofSeconds(1));
@@ -131,6 +340,7 @@ public class ComputationPool {
             return true;
         }
         log.info(metadata.name() + ": Stopping");
+        closeAdmission();
         runners.forEach(ComputationRunner::stop);
         boolean ret = awaitPoolTermination(timeout);
         shutdown();
@@ -150,6 +360,11 @@ public class ComputationPool {
             }
         }
         runners.clear();
+        futures.clear();
+        if (autoScale) {
+            registry.remove(getThreadsMetricName());
+            registry.remove(getBatchCapacityMetricName());
+        }
         threadPool = null;
     }
 
@@ -199,9 +414,13 @@ public class ComputationPool {
         @Override
         public Thread newThread(Runnable r) {
             Thread t = new Thread(r, String.format("%s-%02d", prefix, count.getAndIncrement()));
-            t.setUncaughtExceptionHandler((t1, e) -> log.error("Uncaught exception: " + e.getMessage(), e));
+            t.setUncaughtExceptionHandler(NamedThreadFactory::handleUncaughtException);
             return t;
         }
+
+        protected static void handleUncaughtException(Thread t, Throwable e) {
+            log.error("Uncaught exception: " + e.getMessage(), e);
+        }
     }
 
 }
@@ -43,6 +43,7 @@ import org.nuxeo.lib.stream.computation.internals.WatermarkMonotonicInterval;
 import org.nuxeo.lib.stream.log.LogPartition;
 import org.nuxeo.lib.stream.log.LogRecord;
 import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.LogTransaction;
 import org.nuxeo.lib.stream.log.Name;
 import org.nuxeo.lib.stream.log.RebalanceException;
 import org.nuxeo.lib.stream.log.RebalanceListener;
@@ -80,19 +81,32 @@ public class ComputationRunner implements Runnable, RebalanceListener {
 
     private static final Log log = LogFactory.getLog(ComputationRunner.class);
 
+    // the name of the computation run by the current thread
+    // @since 11.5
+    protected static final ThreadLocal<String> CURRENT_COMPUTATION = new ThreadLocal<>();
+
     protected final LogStreamManager streamManager;
 
     protected final ComputationMetadataMapping metadata;
 
     protected final LogTailer<Record> tailer;
 
+    // @since 11.5
+    protected final LogTransaction<Record> transaction;
+
+    // @since 11.5
+    protected final LogStateStore state;
+
     protected final Supplier<Computation> supplier;
 
     protected final CountDownLatch assignmentLatch = new CountDownLatch(1);
 
     protected final WatermarkMonotonicInterval lowWatermark = new WatermarkMonotonicInterval();
 
-    protected final ComputationPolicy policy;
+    protected ComputationPolicy policy;
+
+    // @since 11.5
+    protected volatile ComputationPolicy newPolicy;
 
     protected ComputationContextImpl context;
 
@@ -154,6 +168,8 @@ public class ComputationRunner implements Runnable, RebalanceListener {
         this.metadata = metadata;
         this.streamManager = streamManager;
         this.policy = policy;
+        this.state = new LogStateStore(streamManager.getLogManager(), Name.ofUrn(metadata.name()),
+                metadata.inputStreams().stream().map(Name::ofUrn).collect(Collectors.toList()));
         if (metadata.inputStreams().isEmpty()) {
             this.tailer = null;
             this.context = new ComputationContextImpl(streamManager, metadata, policy, false);
@@ -168,7 +184,26 @@ public class ComputationRunner implements Runnable, RebalanceListener {
             this.tailer = streamManager.createTailer(Name.ofUrn(metadata.name()), defaultAssignment);
             assignmentLatch.countDown();
         }
+        this.context.setState(state);
         this.defaultAssignment = defaultAssignment;
+        this.transaction = createTransaction();
+    }
+
+    /**
+     * Creates a transaction to commit the output records and the input positions atomically when the policy requires
+     * it.
+     *
+     * @since 11.5
+     */
+    protected LogTransaction<Record> createTransaction() {
+        if (tailer == null || !policy.isExactlyOnce()) {
+            return null;
+        }
+        if (!streamManager.supportTransaction()) {
+            log.warn(metadata.name() + ": Transactions are not supported, exactly once policy is ignored");
+            return null;
+        }
+        return streamManager.createTransaction(tailer);
     }
 
     public void stop() {
@@ -184,6 +219,23 @@ public class ComputationRunner implements Runnable, RebalanceListener {
         drain = true;
     }
 
+    /**
+     * Changes the policy of the computation, it is applied by the runner thread on its next loop.
+     *
+     * @since 11.5
+     */
+    public void setPolicy(ComputationPolicy policy) {
+        newPolicy = policy;
+    }
+
+    protected void applyNewPolicy() {
+        ComputationPolicy p = newPolicy;
+        if (p != null && p != policy) {
+            policy = p;
+            context.setPolicy(p);
+        }
+    }
+
     public boolean waitForAssignments(Duration timeout) throws InterruptedException {
         if (!assignmentLatch.await(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
             log.warn(metadata.name() + ": Timeout waiting for assignment");
@@ -192,9 +244,20 @@ public class ComputationRunner implements Runnable, RebalanceListener {
         return true;
     }
 
+    /**
+     * Gets the name of the computation run by the current thread, {@code null} if the current thread doesn't run a
+     * computation.
+     *
+     * @since 11.5
+     */
+    public static String getCurrentComputation() {
+        return CURRENT_COMPUTATION.get();
+    }
+
     @Override
     public void run() {
         threadName = Thread.currentThread().getName();
+        CURRENT_COMPUTATION.set(metadata.name());
         boolean interrupted = false;
         boolean normalTermination = false;
         computation = supplier.get();
@@ -225,6 +288,7 @@ public class ComputationRunner implements Runnable, RebalanceListener {
                 throw e;
             }
         } finally {
+            CURRENT_COMPUTATION.remove();
             try {
                 computation.destroy();
                 closeTailer();
@@ -260,6 +324,9 @@ public class ComputationRunner implements Runnable, RebalanceListener {
     }
 
     protected void closeTailer() {
+        if (transaction != null) {
+            transaction.close();
+        }
         if (tailer != null && !tailer.closed()) {
             tailer.close();
         }
@@ -268,6 +335,7 @@ public class ComputationRunner implements Runnable, RebalanceListener {
     protected void processLoop() throws InterruptedException {
         boolean timerActivity;
         while (continueLoop()) {
+            applyNewPolicy();
             timerActivity = processTimer();
             recordActivity = processRecord();
             counter++;
@@ -555,11 +623,16 @@ public class ComputationRunner implements Runnable, RebalanceListener {
     }
 
     protected void saveState() {
-        // TODO: save key value store NXP-22112
+        state.flush(transaction);
     }
 
     protected void saveOffsets() {
-        if (tailer != null) {
+        if (transaction != null) {
+            // commits the records sent within the transaction
+            transaction.commit();
+            Span span = Tracing.getTracer().getCurrentSpan();
+            span.addAnnotation("Checkpoint transaction at " + Instant.now());
+        } else if (tailer != null) {
             tailer.commit();
             Span span = Tracing.getTracer().getCurrentSpan();
             span.addAnnotation("Checkpoint positions at " + Instant.now());
@@ -569,20 +642,28 @@ public class ComputationRunner implements Runnable, RebalanceListener {
     protected void sendRecords() {
         boolean firstRecord = true;
         for (String stream : metadata.outputStreams()) {
-            for (Record record : context.getRecords(stream)) {
+            List<Record> records = context.getRecords(stream);
+            if (records.isEmpty()) {
+                continue;
+            }
+            for (Record record : records) {
                 if (record.getWatermark() == 0) {
                     // use low watermark when not set
                     record.setWatermark(lowWatermark.getLow().getValue());
                 }
-                if (firstRecord) {
-                    Span span = Tracing.getTracer().getCurrentSpan();
-                    span.addAnnotation("Sending records at " + Instant.now());
-                    firstRecord = false;
-                }
-                streamManager.append(stream, record);
-                outRecords++;
             }
-            context.getRecords(stream).clear();
+            if (firstRecord) {
+                Span span = Tracing.getTracer().getCurrentSpan();
+                span.addAnnotation("Sending records at " + Instant.now());
+                firstRecord = false;
+            }
+            if (transaction != null) {
+                streamManager.append(stream, records, transaction);
+            } else {
+                streamManager.append(stream, records);
+            }
+            outRecords += records.size();
+            records.clear();
         }
     }
 
@@ -610,8 +691,10 @@ public class ComputationRunner implements Runnable, RebalanceListener {
         lastReadTime = System.currentTimeMillis();
         boolean isSpare = partitions.isEmpty();
         setThreadName("rebalance assigned");
-        // reset the context
+        // reset the context, the state of the new partitions is restored on access
+        state.reset();
         this.context = new ComputationContextImpl(streamManager, metadata, policy, partitions.isEmpty());
+        context.setState(state);
         log.debug(metadata.name() + ": Init isSpare=" + isSpare);
         computation.init(context);
         lastReadTime = System.currentTimeMillis();
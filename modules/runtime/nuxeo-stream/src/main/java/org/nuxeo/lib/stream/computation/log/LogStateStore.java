@@ -0,0 +1,216 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.computation.log;
+
+import static org.nuxeo.lib.stream.computation.log.LogStreamManager.INTERNAL_CODEC;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.StreamRuntimeException;
+import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.computation.StateStore;
+import org.nuxeo.lib.stream.log.LogLag;
+import org.nuxeo.lib.stream.log.LogManager;
+import org.nuxeo.lib.stream.log.LogPartition;
+import org.nuxeo.lib.stream.log.LogRecord;
+import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.LogTransaction;
+import org.nuxeo.lib.stream.log.Name;
+
+/**
+ * A {@link StateStore} kept in memory and saved in a compacted changelog Log, using the partitions of the input
+ * streams.
+ * <p>
+ * A partition of the store is restored from its changelog partition the first time one of its keys is accessed. The
+ * changes are appended to the changelog on checkpoint, within the checkpoint transaction when there is one. The
+ * changelog is created on first access, so a computation that doesn't use its state doesn't have any.
+ * <p>
+ * This class is not thread safe, it is used by the thread of a {@link ComputationRunner}.
+ *
+ * @since 11.5
+ */
+public class LogStateStore implements StateStore {
+    private static final Log log = LogFactory.getLog(LogStateStore.class);
+
+    public static final String CHANGELOG_SUFFIX = "_state";
+
+    protected static final Duration RESTORE_READ_TIMEOUT = Duration.ofSeconds(1);
+
+    // how long to wait for the end of the changelog partition to be reached before failing
+    protected static final Duration RESTORE_TIMEOUT = Duration.ofMinutes(1);
+
+    protected final LogManager manager;
+
+    protected final Name computation;
+
+    protected final Name changelog;
+
+    protected final Collection<Name> inputStreams;
+
+    protected final Map<Integer, Map<String, byte[]>> partitions = new HashMap<>();
+
+    // changes since the last checkpoint, a null value is a removal
+    protected final Map<String, byte[]> changes = new LinkedHashMap<>();
+
+    protected int size;
+
+    public LogStateStore(LogManager manager, Name computation, Collection<Name> inputStreams) {
+        this.manager = manager;
+        this.computation = computation;
+        this.changelog = getChangelogName(computation);
+        this.inputStreams = inputStreams;
+    }
+
+    /**
+     * Returns the name of the Log where the state of a computation is saved.
+     */
+    public static Name getChangelogName(Name computation) {
+        return Name.of(computation.getNamespace(), computation.getName() + CHANGELOG_SUFFIX);
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return getPartition(key).get(key);
+    }
+
+    @Override
+    public void put(String key, byte[] value) {
+        if (value == null || value.length == 0) {
+            remove(key);
+            return;
+        }
+        getPartition(key).put(key, value);
+        changes.put(key, value);
+    }
+
+    @Override
+    public void remove(String key) {
+        getPartition(key).remove(key);
+        changes.put(key, null);
+    }
+
+    protected Map<String, byte[]> getPartition(String key) {
+        if (size == 0) {
+            init();
+        }
+        int partition = (key.hashCode() & 0x7fffffff) % size;
+        return partitions.computeIfAbsent(partition, this::restore);
+    }
+
+    protected void init() {
+        // use the same partitioning as the input streams
+        int partitions = inputStreams.stream().mapToInt(manager::size).max().orElse(1);
+        if (manager.createCompactedIfNotExists(changelog, partitions)) {
+            log.debug("Creating state changelog: " + changelog + " with " + partitions + " partitions");
+        }
+        manager.getAppender(changelog, INTERNAL_CODEC);
+        size = manager.size(changelog);
+        if (size != partitions) {
+            log.warn(String.format("State changelog: %s has %d partitions, input streams have %d", changelog, size,
+                    partitions));
+        }
+    }
+
+    protected Map<String, byte[]> restore(int partition) {
+        Map<String, byte[]> ret = new HashMap<>();
+        long count = 0;
+        LogPartition logPartition = LogPartition.of(changelog, partition);
+        // the state is complete once the end of the changelog partition at the time of the restore is reached
+        LogLag lag = manager.getLagPerPartition(changelog, computation).get(partition);
+        if (lag.upper() == 0) {
+            log.debug("Empty state: " + changelog + ":" + partition);
+            return ret;
+        }
+        long end = lag.upperOffset();
+        try (LogTailer<Record> tailer = manager.createTailer(computation, logPartition, INTERNAL_CODEC)) {
+            tailer.toStart();
+            long deadline = System.currentTimeMillis() + RESTORE_TIMEOUT.toMillis();
+            for (;;) {
+                LogRecord<Record> logRecord = tailer.read(RESTORE_READ_TIMEOUT);
+                if (logRecord == null) {
+                    // the last entries may not be records, like transaction markers
+                    if (tailer.position(logPartition).offset() >= end) {
+                        break;
+                    }
+                    if (System.currentTimeMillis() > deadline) {
+                        throw new IllegalStateException(String.format(
+                                "Cannot restore state: %s:%d, end offset: %d not reached after %s, position: %s",
+                                changelog, partition, end, RESTORE_TIMEOUT, tailer.position(logPartition)));
+                    }
+                    continue;
+                }
+                Record record = logRecord.message();
+                if (record.getData().length == 0) {
+                    ret.remove(record.getKey());
+                } else {
+                    ret.put(record.getKey(), record.getData());
+                }
+                count++;
+                if (logRecord.offset().nextOffset().offset() >= end) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StreamRuntimeException("Interrupted while restoring state: " + changelog + ":" + partition, e);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Restored state %s:%d with %d keys from %d records", changelog, partition,
+                    ret.size(), count));
+        }
+        return ret;
+    }
+
+    /**
+     * Appends the changes since the last call to the changelog.
+     *
+     * @param transaction the checkpoint transaction, can be {@code null}
+     */
+    public void flush(LogTransaction<Record> transaction) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(changes.keySet());
+        List<Record> records = new ArrayList<>(changes.size());
+        changes.forEach((key, value) -> records.add(Record.of(key, value)));
+        if (transaction != null) {
+            transaction.append(changelog, keys, records);
+        } else {
+            manager.getAppender(changelog, INTERNAL_CODEC).append(keys, records);
+        }
+        changes.clear();
+    }
+
+    /**
+     * Discards the state in memory, it is restored from the changelog on next access. Changes not flushed are lost.
+     */
+    public void reset() {
+        partitions.clear();
+        changes.clear();
+    }
+
+}
@@ -22,6 +22,8 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -46,6 +48,7 @@ import org.nuxeo.lib.stream.log.LogManager;
 import org.nuxeo.lib.stream.log.LogOffset;
 import org.nuxeo.lib.stream.log.LogPartition;
 import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.LogTransaction;
 import org.nuxeo.lib.stream.log.Name;
 import org.nuxeo.lib.stream.log.RebalanceListener;
 import org.nuxeo.lib.stream.log.internals.LogOffsetImpl;
@@ -158,10 +161,81 @@ public class LogStreamManager implements StreamManager {
         return offset;
     }
 
+    @Override
+    public List<LogOffset> append(String streamUrn, List<Record> records) {
+        Name stream = Name.ofUrn(streamUrn);
+        RecordFilterChain filter = filters.get(stream);
+        if (filter == null) {
+            throw new IllegalArgumentException("Unknown stream: " + stream);
+        }
+        LogOffset[] offsets = new LogOffset[records.size()];
+        List<Integer> indexes = new ArrayList<>(records.size());
+        List<Record> toAppend = new ArrayList<>(records.size());
+        List<String> keys = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            Record record = filter.beforeAppend(records.get(i));
+            if (record == null) {
+                offsets[i] = new LogOffsetImpl(stream, 0, 0);
+                continue;
+            }
+            indexes.add(i);
+            toAppend.add(record);
+            keys.add(record.getKey());
+        }
+        if (!toAppend.isEmpty()) {
+            List<LogOffset> appended = logManager.<Record> getAppender(stream).append(keys, toAppend);
+            for (int i = 0; i < toAppend.size(); i++) {
+                filter.afterAppend(toAppend.get(i), appended.get(i));
+                offsets[indexes.get(i)] = appended.get(i);
+            }
+        }
+        return Arrays.asList(offsets);
+    }
+
+    /**
+     * Appends records to a stream as part of a transaction, they are written when the transaction is committed.
+     *
+     * @since 11.5
+     */
+    public void append(String streamUrn, List<Record> records, LogTransaction<Record> transaction) {
+        Name stream = Name.ofUrn(streamUrn);
+        RecordFilterChain filter = filters.get(stream);
+        if (filter == null) {
+            throw new IllegalArgumentException("Unknown stream: " + stream);
+        }
+        List<Record> toAppend = new ArrayList<>(records.size());
+        List<String> keys = new ArrayList<>(records.size());
+        for (Record record : records) {
+            record = filter.beforeAppend(record);
+            if (record != null) {
+                toAppend.add(record);
+                keys.add(record.getKey());
+            }
+        }
+        if (!toAppend.isEmpty()) {
+            transaction.append(stream, keys, toAppend);
+            toAppend.forEach(record -> filter.afterAppend(record, null));
+        }
+    }
+
     public boolean supportSubscribe() {
         return logManager.supportSubscribe();
     }
 
+    /**
+     * @since 11.5
+     */
+    public boolean supportTransaction() {
+        return logManager.supportTransaction();
+    }
+
+    /**
+     * @since 11.5
+     */
+    public LogTransaction<Record> createTransaction(LogTailer<Record> tailer) {
+        return logManager.createTransaction(tailer);
+    }
+
     public LogTailer<Record> subscribe(Name computationName, Collection<Name> streams, RebalanceListener listener) {
         Codec<Record> codec = getCodec(streams);
         return logManager.subscribe(computationName, streams, listener, codec);
@@ -31,6 +31,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
@@ -76,6 +79,12 @@ public class LogStreamProcessor implements StreamProcessor {
 
     protected static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+    // @since 11.5
+    public static final Duration AUTOSCALE_INTERVAL = Duration.ofSeconds(10);
+
+    // @since 11.5
+    protected ScheduledExecutorService autoScaler;
+
     @Deprecated
     public LogStreamProcessor(LogManager manager) {
         needRegister = true;
@@ -107,6 +116,37 @@ public class LogStreamProcessor implements StreamProcessor {
         this.pools = initPools();
         Objects.requireNonNull(pools);
         pools.forEach(ComputationPool::start);
+        startAutoScaler();
+    }
+
+    protected void startAutoScaler() {
+        if (pools.stream().noneMatch(ComputationPool::isAutoScaled)) {
+            return;
+        }
+        autoScaler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Nuxeo-Stream-AutoScaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = AUTOSCALE_INTERVAL.toMillis();
+        autoScaler.scheduleWithFixedDelay(this::autoScale, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    protected void autoScale() {
+        for (ComputationPool pool : pools) {
+            try {
+                pool.autoScale();
+            } catch (RuntimeException e) {
+                log.warn("Fail to autoscale computation: " + pool.getComputationName(), e);
+            }
+        }
+    }
+
+    protected void stopAutoScaler() {
+        if (autoScaler != null) {
+            autoScaler.shutdownNow();
+            autoScaler = null;
+        }
     }
 
     @Override
@@ -148,6 +188,12 @@ public class LogStreamProcessor implements StreamProcessor {
                 ObjectNode item = OBJECT_MAPPER.createObjectNode();
                 item.put("name", comp.name());
                 item.put("threads", settings.getConcurrency(comp.name()));
+                if (settings.getMaxConcurrency(comp.name()) > settings.getConcurrency(comp.name())) {
+                    item.put("maxThreads", settings.getMaxConcurrency(comp.name()));
+                }
+                if (settings.isVirtualThreads(comp.name())) {
+                    item.put("virtualThreads", true);
+                }
                 item.put("continueOnFailure", settings.getPolicy(comp.name()).continueOnFailure());
                 item.put("batchCapacity", settings.getPolicy(comp.name()).getBatchCapacity());
                 item.put("batchThresholdMs", settings.getPolicy(comp.name()).getBatchThreshold().toMillis());
@@ -186,6 +232,7 @@ public class LogStreamProcessor implements StreamProcessor {
         if (pools == null) {
             return true;
         }
+        stopAutoScaler();
         long failures = pools.parallelStream().filter(comp -> !comp.stop(timeout)).count();
         log.debug(String.format("Stopped %d failure", failures));
         return failures == 0;
@@ -198,6 +245,7 @@ public class LogStreamProcessor implements StreamProcessor {
         if (pools == null) {
             return true;
         }
+        stopAutoScaler();
         long failures = pools.stream().filter(comp -> !comp.drainAndStop(timeout)).count();
         log.debug(String.format("Drained and stopped %d failure", failures));
         return failures == 0;
@@ -209,6 +257,7 @@ public class LogStreamProcessor implements StreamProcessor {
         if (pools == null) {
             return;
         }
+        stopAutoScaler();
         pools.parallelStream().forEach(ComputationPool::shutdown);
         log.debug("Shutdown done");
     }
@@ -275,7 +324,8 @@ public class LogStreamProcessor implements StreamProcessor {
                        .stream()
                        .map(meta -> new ComputationPool(topology.getSupplier(meta.name()), meta,
                                getDefaultAssignments(meta), streamManager,
-                               settings.getPolicy(meta.name())))
+                               settings.getPolicy(meta.name()), settings.getMaxConcurrency(meta.name()),
+                               settings.isVirtualThreads(meta.name())))
                        .collect(Collectors.toList());
     }
 
@@ -20,6 +20,9 @@ package org.nuxeo.lib.stream.log;
 
 import java.io.Externalizable;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 import org.nuxeo.lib.stream.codec.Codec;
@@ -62,6 +65,69 @@ public interface LogAppender<M extends Externalizable> {
         return append(partition, message);
     }
 
+    /**
+     * Appends a batch of messages into a partition, returns the {@link LogOffset} positions of the messages in the same
+     * order. The messages are appended in order, implementations should pay the synchronization and acknowledgement
+     * costs once per batch instead of once per message.
+     *
+     * @param partition index lower than {@link #size()}
+     * @since 11.5
+     */
+    default List<LogOffset> append(int partition, List<M> messages) {
+        List<LogOffset> offsets = new ArrayList<>(messages.size());
+        for (M message : messages) {
+            offsets.add(append(partition, message));
+        }
+        return offsets;
+    }
+
+    /**
+     * Checks that there is one key per message.
+     *
+     * @throws IllegalArgumentException if the lists have different sizes
+     * @since 11.5
+     */
+    static void checkOneKeyPerMessage(List<String> keys, List<?> messages) {
+        if (keys.size() != messages.size()) {
+            throw new IllegalArgumentException(
+                    "Expecting one key per message: " + keys.size() + " != " + messages.size());
+        }
+    }
+
+    /**
+     * Same as {@link #append(int, List)}, the partition of each message is chosen using a hash of its key, as done by
+     * {@link #append(String, Externalizable)}. Messages with the same key are appended in order.
+     *
+     * @param keys the keys of the messages, same size as messages
+     * @since 11.5
+     */
+    default List<LogOffset> append(List<String> keys, List<M> messages) {
+        checkOneKeyPerMessage(keys, messages);
+        int size = size();
+        List<List<Integer>> indexes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            indexes.add(new ArrayList<>());
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            String key = Objects.requireNonNull(keys.get(i));
+            indexes.get((key.hashCode() & 0x7fffffff) % size).add(i);
+        }
+        LogOffset[] offsets = new LogOffset[messages.size()];
+        for (int partition = 0; partition < size; partition++) {
+            List<Integer> partitionIndexes = indexes.get(partition);
+            if (partitionIndexes.isEmpty()) {
+                continue;
+            }
+            List<M> batch = new ArrayList<>(partitionIndexes.size());
+            partitionIndexes.forEach(i -> batch.add(messages.get(i)));
+            List<LogOffset> batchOffsets = append(partition, batch);
+            for (int i = 0; i < partitionIndexes.size(); i++) {
+                offsets[partitionIndexes.get(i)] = batchOffsets.get(i);
+            }
+        }
+        return Arrays.asList(offsets);
+    }
+
     /**
      * Wait for consumer to process a message up to the offset. The message is processed if a consumer of the group
      * commits a greater or equals offset. Return {@code true} if the message has been consumed, {@code false} in case
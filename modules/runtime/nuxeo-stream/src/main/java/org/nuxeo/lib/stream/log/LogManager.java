@@ -70,6 +70,18 @@ public interface LogManager extends AutoCloseable {
         return createIfNotExists(Name.ofUrn(name), size);
     }
 
+    /**
+     * Creates a new compacted Log with {@code size} partitions if the Log does not exists. In a compacted Log only the
+     * last message of each key is guaranteed to be retained. Returns true if the Log has been created.
+     * <p>
+     * Implementations that don't support compaction create a Log without retention.
+     *
+     * @since 11.5
+     */
+    default boolean createCompactedIfNotExists(Name name, int size) {
+        return createIfNotExists(name, size);
+    }
+
     /**
      * Tries to delete a Log. Returns true if successfully deleted, might not be possible depending on the
      * implementation.
@@ -290,6 +302,25 @@ public interface LogManager extends AutoCloseable {
      */
     boolean supportSubscribe();
 
+    /**
+     * Returns {@code true} if the {@link #createTransaction} method is supported.
+     *
+     * @since 11.5
+     */
+    default boolean supportTransaction() {
+        return false;
+    }
+
+    /**
+     * Creates a transaction appending messages to Logs and committing the positions of the {@code tailer} atomically.
+     *
+     * @throws UnsupportedOperationException if the implementation doesn't support transactions
+     * @since 11.5
+     */
+    default <M extends Externalizable> LogTransaction<M> createTransaction(LogTailer<M> tailer) {
+        throw new UnsupportedOperationException("Transactions are not supported by: " + getClass().getSimpleName());
+    }
+
     /**
      * Creates a tailer for a consumer {@code group} and subscribe to multiple Logs. The partitions assignment is done
      * dynamically depending on the number of subscribers. The partitions can change during tailers life, this is called
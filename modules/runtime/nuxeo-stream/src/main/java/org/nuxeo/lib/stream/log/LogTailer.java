@@ -95,6 +95,18 @@ public interface LogTailer<M extends Externalizable> extends AutoCloseable {
      */
     LogOffset offsetForTimestamp(LogPartition partition, long timestamp);
 
+    /**
+     * Returns the offset of the next record that will be read from the partition.
+     * <p>
+     * Unlike the offset of the last record read, this position takes into account the entries of the Log that are not
+     * returned by {@link #read}, like the markers of Kafka transactions.
+     *
+     * @since 11.5
+     */
+    default LogOffset position(LogPartition partition) {
+        throw new UnsupportedOperationException("Position not supported by tailer: " + this);
+    }
+
     /**
      * Reset all committed positions for this group, next read will be done from beginning.
      *
@@ -0,0 +1,55 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.log;
+
+import java.io.Externalizable;
+import java.util.List;
+
+/**
+ * Appends messages to Logs and commits the positions of a tailer in a single unit of work: after a failure either the
+ * messages are appended and the positions committed, or none of them are, so that the input is not processed twice.
+ * <p>
+ * A transaction is bound to a tailer and must be used by the thread owning it, it is NOT thread safe. The Logs must be
+ * handled by the same implementation as the tailer.
+ *
+ * @since 11.5
+ */
+public interface LogTransaction<M extends Externalizable> extends AutoCloseable {
+
+    /**
+     * Appends messages to a Log, the partitions are chosen using a hash of the keys. The messages are part of the
+     * transaction, they are only guaranteed to be visible once the transaction is committed.
+     */
+    void append(Name name, List<String> keys, List<M> messages);
+
+    /**
+     * Commits the messages appended since the last commit together with the current positions of the tailer.
+     */
+    void commit();
+
+    /**
+     * Discards the messages appended since the last commit when possible and moves the tailer back to its last
+     * committed positions.
+     */
+    void abort();
+
+    @Override
+    void close();
+
+}
@@ -122,6 +122,11 @@ public class UnifiedLogManager implements LogManager {
         return getManager(name).createIfNotExists(name, size);
     }
 
+    @Override
+    public boolean createCompactedIfNotExists(Name name, int size) {
+        return getManager(name).createCompactedIfNotExists(name, size);
+    }
+
     @Override
     public boolean delete(Name name) {
         return getManager(name).delete(name);
@@ -159,6 +164,20 @@ public class UnifiedLogManager implements LogManager {
         return getManager(name, group).subscribe(group, names, listener, codec);
     }
 
+    @Override
+    public boolean supportTransaction() {
+        return managers.values().stream().allMatch(LogManager::supportTransaction);
+    }
+
+    @Override
+    public <M extends Externalizable> LogTransaction<M> createTransaction(LogTailer<M> tailer) {
+        if (tailer.assignments().isEmpty()) {
+            return defaultManager.createTransaction(tailer);
+        }
+        Name name = tailer.assignments().iterator().next().name();
+        return getManager(name, tailer.group()).createTransaction(tailer);
+    }
+
     @Override
     public List<LogLag> getLagPerPartition(Name name, Name group) {
         return getManager(name, group).getLagPerPartition(name, group);
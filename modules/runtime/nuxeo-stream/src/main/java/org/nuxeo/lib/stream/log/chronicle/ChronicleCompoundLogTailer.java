@@ -165,6 +165,17 @@ public class ChronicleCompoundLogTailer<M extends Externalizable> implements Log
         throw new UnsupportedOperationException("ChronicleLog does not support seek by timestamp");
     }
 
+    @Override
+    public LogOffset position(LogPartition partition) {
+        for (LogTailer<M> tailer : tailers) {
+            if (tailer.assignments().contains(partition)) {
+                return tailer.position(partition);
+            }
+        }
+        throw new IllegalArgumentException(
+                "Cannot get position, tailer " + this + " has no assignment for partition: " + partition);
+    }
+
     @Override
     public void reset() {
         tailers.forEach(ChronicleLogTailer::reset);
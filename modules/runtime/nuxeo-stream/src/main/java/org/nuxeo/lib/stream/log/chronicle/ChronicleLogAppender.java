@@ -39,6 +39,7 @@ import java.util.stream.Stream;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.lib.stream.StreamRuntimeException;
+import org.nuxeo.lib.stream.codec.BytesCodec;
 import org.nuxeo.lib.stream.codec.Codec;
 import org.nuxeo.lib.stream.log.LogOffset;
 import org.nuxeo.lib.stream.log.LogPartition;
@@ -53,6 +54,7 @@ import net.openhft.chronicle.queue.ExcerptAppender;
 import net.openhft.chronicle.queue.ExcerptTailer;
 import net.openhft.chronicle.queue.impl.single.SingleChronicleQueue;
 import net.openhft.chronicle.queue.impl.single.SingleChronicleQueueBuilder;
+import net.openhft.chronicle.wire.DocumentContext;
 
 /**
  * Chronicle Queue implementation of LogAppender.
@@ -72,6 +74,9 @@ public class ChronicleLogAppender<M extends Externalizable> implements Closeable
 
     public static final String MSG_KEY = "msg";
 
+    // @since 11.5
+    public static final String TRANSACTION_KEY = "txn";
+
     // The block size determines the initial cq4 spare file size and the maximum message size.
     // A 4M block size creates a 5M file and enable a 1MB message
     public static final int CQ_BLOCK_SIZE = 4_194_304;
@@ -82,6 +87,9 @@ public class ChronicleLogAppender<M extends Externalizable> implements Closeable
 
     public static final String BLOCK_SIZE_KEY = "blockSize";
 
+    /** @since 11.5 */
+    public static final String COMPACTED_KEY = "compacted";
+
     protected final List<ChronicleQueue> partitions;
 
     protected final int nbPartitions;
@@ -99,6 +107,9 @@ public class ChronicleLogAppender<M extends Externalizable> implements Closeable
 
     protected final Codec<M> codec;
 
+    // @since 11.5
+    protected final boolean compacted;
+
     protected volatile boolean closed;
 
     /**
@@ -124,7 +135,8 @@ public class ChronicleLogAppender<M extends Externalizable> implements Closeable
                     String.format("Cannot open Log %s: no metadata file %s", this.name, metadataPath));
         }
         Properties metadata = readMetadata(getMetadataPath());
-        if (!withRetention) {
+        this.compacted = Boolean.parseBoolean(metadata.getProperty(COMPACTED_KEY));
+        if (!withRetention || compacted) {
             this.retention = ChronicleRetentionDuration.disableOf(config.getRetention());
         } else {
             ChronicleRetentionDuration storedRetention = new ChronicleRetentionDuration(
@@ -146,6 +158,15 @@ public class ChronicleLogAppender<M extends Externalizable> implements Closeable
      * Create a new Log
      */
     protected ChronicleLogAppender(ChronicleLogConfig config, Name name, int size, Codec<M> codec) {
+        this(config, name, size, codec, false);
+    }
+
+    /**
+     * Create a new Log, a compacted Log is never purged by the retention because Chronicle Queue cannot compact it.
+     *
+     * @since 11.5
+     */
+    protected ChronicleLogAppender(ChronicleLogConfig config, Name name, int size, Codec<M> codec, boolean compacted) {
         if (size <= 0) {
             throw new IllegalArgumentException("Number of partitions must be > 0");
         }
@@ -164,7 +185,9 @@ public class ChronicleLogAppender<M extends Externalizable> implements Closeable
         Objects.requireNonNull(codec);
         this.nbPartitions = size;
         this.codec = codec;
-        this.retention = config.getRetention();
+        this.compacted = compacted;
+        this.retention = compacted ? ChronicleRetentionDuration.disableOf(config.getRetention())
+                : config.getRetention();
         this.partitions = new ArrayList<>(nbPartitions);
         this.name = name;
         this.blockSize = CQ_BLOCK_SIZE;
@@ -210,6 +233,9 @@ public class ChronicleLogAppender<M extends Externalizable> implements Closeable
         builder.append(String.format("%s=%d%n", PARTITIONS_KEY, nbPartitions));
         builder.append(String.format("%s=%s%n", RETENTION_KEY, retention));
         builder.append(String.format("%s=%d%n", BLOCK_SIZE_KEY, blockSize));
+        if (compacted) {
+            builder.append(String.format("%s=%s%n", COMPACTED_KEY, compacted));
+        }
         try {
             Files.write(metadata, builder.toString().getBytes(), StandardOpenOption.CREATE_NEW);
         } catch (IOException e) {
@@ -247,6 +273,16 @@ public class ChronicleLogAppender<M extends Externalizable> implements Closeable
         return new ChronicleLogAppender<>(config, name, size, codec);
     }
 
+    /**
+     * Create a new log where only the last message of a key matters, it is kept without retention.
+     *
+     * @since 11.5
+     */
+    public static <M extends Externalizable> ChronicleLogAppender<M> createCompacted(ChronicleLogConfig config,
+            Name name, int size, Codec<M> codec) {
+        return new ChronicleLogAppender<>(config, name, size, codec, true);
+    }
+
     /**
      * Open an existing log.
      */
@@ -275,19 +311,29 @@ public class ChronicleLogAppender<M extends Externalizable> implements Closeable
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public LogOffset append(int partition, M message) {
-        ExcerptAppender appender = partitions.get(partition).acquireAppender();
-        try {
-            if (NO_CODEC.equals(codec)) {
-                // default format for backward compatibility
-                appender.writeDocument(w -> w.write(MSG_KEY).object(message));
-            } else {
-                appender.writeDocument(w -> w.write().bytes(codec.encode(message)));
+        ChronicleQueue queue = partitions.get(partition);
+        ExcerptAppender appender = queue.acquireAppender();
+        byte[] bytes = NO_CODEC.equals(codec) || codec instanceof BytesCodec ? null : codec.encode(message);
+        long offset;
+        // same monitor as the batch append, see below
+        synchronized (queue) {
+            try {
+                if (NO_CODEC.equals(codec)) {
+                    // default format for backward compatibility
+                    appender.writeDocument(w -> w.write(MSG_KEY).object(message));
+                } else if (bytes == null) {
+                    // encode directly into the queue
+                    appender.writeBytes(b -> ((BytesCodec<M>) codec).encode(message, b));
+                } else {
+                    appender.writeDocument(w -> w.write().bytes(bytes));
+                }
+            } catch (DecoratedBufferOverflowException e) {
+                throw new StreamRuntimeException(e);
             }
-        } catch (DecoratedBufferOverflowException e) {
-            throw new StreamRuntimeException(e);
+            offset = appender.lastIndexAppended();
         }
-        long offset = appender.lastIndexAppended();
         LogOffset ret = new LogOffsetImpl(name, partition, offset);
         if (log.isDebugEnabled()) {
             log.debug(String.format("append to %s, value: %s", ret, message));
@@ -295,6 +341,89 @@ public class ChronicleLogAppender<M extends Externalizable> implements Closeable
         return ret;
     }
 
+    @Override
+    public List<LogOffset> append(int partition, List<M> messages) {
+        return append(partition, messages, null);
+    }
+
+    /**
+     * Appends a batch of messages into a partition followed by a metadata document marking the end of a transaction.
+     * Metadata documents are not visible to tailers, see {@link #hasTransactionMarker}.
+     *
+     * @param transactionId the transaction id, no marker is written when {@code null}
+     * @since 11.5
+     */
+    @SuppressWarnings("unchecked")
+    public List<LogOffset> append(int partition, List<M> messages, String transactionId) {
+        List<LogOffset> ret = new ArrayList<>(messages.size());
+        if (messages.isEmpty()) {
+            return ret;
+        }
+        List<byte[]> encoded = null;
+        if (!NO_CODEC.equals(codec) && !(codec instanceof BytesCodec)) {
+            // encode outside of the write section
+            encoded = new ArrayList<>(messages.size());
+            for (M message : messages) {
+                encoded.add(codec.encode(message));
+            }
+        }
+        ChronicleQueue queue = partitions.get(partition);
+        ExcerptAppender appender = queue.acquireAppender();
+        // all the appends of this JVM to the partition hold the queue monitor, so the batch is written without being
+        // interleaved with other producers of this JVM and the queue write lock is acquired uncontended
+        synchronized (queue) {
+            for (int i = 0; i < messages.size(); i++) {
+                M message = messages.get(i);
+                try {
+                    if (NO_CODEC.equals(codec)) {
+                        appender.writeDocument(w -> w.write(MSG_KEY).object(message));
+                    } else if (encoded == null) {
+                        appender.writeBytes(b -> ((BytesCodec<M>) codec).encode(message, b));
+                    } else {
+                        byte[] bytes = encoded.get(i);
+                        appender.writeDocument(w -> w.write().bytes(bytes));
+                    }
+                } catch (DecoratedBufferOverflowException e) {
+                    throw new StreamRuntimeException(e);
+                }
+                ret.add(new LogOffsetImpl(name, partition, appender.lastIndexAppended()));
+            }
+            if (transactionId != null) {
+                try (DocumentContext dc = appender.writingDocument(true)) {
+                    dc.wire().write(TRANSACTION_KEY).text(transactionId);
+                }
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("append batch of %d messages to %s-%02d, last: %s", messages.size(), name,
+                    partition, ret.get(ret.size() - 1)));
+        }
+        return ret;
+    }
+
+    /**
+     * Returns {@code true} if the marker of a transaction has been written in the partition after the given offset.
+     *
+     * @since 11.5
+     */
+    public boolean hasTransactionMarker(int partition, long offset, String transactionId) {
+        try (ExcerptTailer tailer = partitions.get(partition).createTailer()) {
+            if (offset <= 0 || !tailer.moveToIndex(offset)) {
+                tailer.toStart();
+            }
+            for (;;) {
+                try (DocumentContext dc = tailer.readingDocument(true)) {
+                    if (!dc.isPresent()) {
+                        return false;
+                    }
+                    if (dc.isMetaData() && transactionId.equals(dc.wire().read(TRANSACTION_KEY).text())) {
+                        return true;
+                    }
+                }
+            }
+        }
+    }
+
     public LogTailer<M> createTailer(LogPartition partition, Name group, Codec<M> codec) {
         return addTailer(new ChronicleLogTailer<>(codec, basePath.toString(),
                 partitions.get(partition.partition()).createTailer(), partition, group, retention));
@@ -42,6 +42,7 @@ import org.nuxeo.lib.stream.log.LogConfig;
 import org.nuxeo.lib.stream.log.LogLag;
 import org.nuxeo.lib.stream.log.LogPartition;
 import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.LogTransaction;
 import org.nuxeo.lib.stream.log.Name;
 import org.nuxeo.lib.stream.log.RebalanceListener;
 import org.nuxeo.lib.stream.log.internals.AbstractLogManager;
@@ -146,6 +147,13 @@ public class ChronicleLogManager extends AbstractLogManager {
         ChronicleLogAppender.create(config, name, size, NO_CODEC).close();
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void createCompacted(Name name, int size) {
+        ChronicleLogConfig config = getConfig(name);
+        ChronicleLogAppender.createCompacted(config, name, size, NO_CODEC).close();
+    }
+
     @Override
     protected int getSize(Name name) {
         ChronicleLogConfig config = getConfig(name);
@@ -264,6 +272,30 @@ public class ChronicleLogManager extends AbstractLogManager {
         return new ChronicleCompoundLogTailer<>(pTailers, group);
     }
 
+    @Override
+    public boolean supportTransaction() {
+        return true;
+    }
+
+    @Override
+    public <M extends Externalizable> LogTransaction<M> createTransaction(LogTailer<M> tailer) {
+        return new ChronicleLogTransaction<>(this, tailer);
+    }
+
+    /**
+     * Returns {@code true} if the marker of a transaction has been written in the partition after the given offset.
+     *
+     * @since 11.5
+     */
+    @SuppressWarnings("unchecked")
+    protected boolean hasTransactionMarker(LogPartition partition, long offset, String transactionId) {
+        ChronicleLogConfig config = getConfig(partition.name());
+        try (ChronicleLogAppender<Externalizable> appender = ChronicleLogAppender.openWithoutRetention(config,
+                partition.name(), NO_CODEC)) {
+            return appender.hasTransactionMarker(partition.partition(), offset, transactionId);
+        }
+    }
+
     @Override
     protected <M extends Externalizable> LogTailer<M> doSubscribe(Name group, Collection<Name> names,
             RebalanceListener listener, Codec<M> codec) {
@@ -34,6 +34,7 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.codec.BytesCodec;
 import org.nuxeo.lib.stream.codec.Codec;
 import org.nuxeo.lib.stream.log.LogOffset;
 import org.nuxeo.lib.stream.log.LogPartition;
@@ -147,6 +148,14 @@ public class ChronicleLogTailer<M extends Externalizable> implements LogTailer<M
             } catch (ClassCastException e) {
                 throw new IllegalArgumentException(e);
             }
+        } else if (codec instanceof BytesCodec) {
+            // decode directly from the queue
+            if (!cqTailer.readBytes(b -> {
+                offset.set(cqTailer.index());
+                value.add(((BytesCodec<M>) codec).decode(b));
+            })) {
+                return null;
+            }
         } else {
             if (!cqTailer.readDocument(w -> {
                 offset.set(cqTailer.index());
@@ -235,6 +244,15 @@ public class ChronicleLogTailer<M extends Externalizable> implements LogTailer<M
         initialized = true;
     }
 
+    @Override
+    public LogOffset position(LogPartition partition) {
+        checkInitialized();
+        if (!this.partition.equals(partition)) {
+            throw new IllegalArgumentException("Cannot get position of this partition: " + partition + " from " + id);
+        }
+        return new LogOffsetImpl(partition, cqTailer.index());
+    }
+
     @Override
     public void reset() {
         reset(new LogPartition(id.name, id.partition));
@@ -0,0 +1,253 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.log.chronicle;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.nuxeo.lib.stream.log.chronicle.ChronicleLogOffsetTracker.OFFSET_QUEUE_PREFIX;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.StreamRuntimeException;
+import org.nuxeo.lib.stream.log.LogAppender;
+import org.nuxeo.lib.stream.log.LogPartition;
+import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.LogTransaction;
+import org.nuxeo.lib.stream.log.Name;
+import org.nuxeo.lib.stream.log.internals.LogOffsetImpl;
+
+/**
+ * Chronicle implementation of a transaction.
+ * <p>
+ * Chronicle Queue has no transaction, so the messages are kept in memory until the commit, then:
+ * <ol>
+ * <li>the tailer positions to commit and the current end of the output partitions are saved in a transaction file
+ * next to the tailer offsets</li>
+ * <li>the messages are appended to each output partition followed by a metadata document with the transaction id,
+ * which is not visible to tailers</li>
+ * <li>the tailer positions are committed and the transaction file is removed</li>
+ * </ol>
+ * If the process stops before the end, the transaction file is found when the transaction is created again for the
+ * same tailer: if all the output partitions contain the transaction marker, the saved tailer positions are committed
+ * so that the input is not processed twice, otherwise the input is processed again.
+ *
+ * @since 11.5
+ */
+public class ChronicleLogTransaction<M extends Externalizable> implements LogTransaction<M> {
+    private static final Log log = LogFactory.getLog(ChronicleLogTransaction.class);
+
+    protected static final String TRANSACTION_FILE_PREFIX = "txn-";
+
+    protected static final String TRANSACTION_ID = "id";
+
+    protected static final String INPUT = "input.";
+
+    protected static final String OUTPUT = "output.";
+
+    protected final ChronicleLogManager manager;
+
+    protected final LogTailer<M> tailer;
+
+    protected final List<ChronicleLogTailer<M>> tailers;
+
+    protected final Path file;
+
+    protected final Map<LogPartition, List<M>> pending = new LinkedHashMap<>();
+
+    public ChronicleLogTransaction(ChronicleLogManager manager, LogTailer<M> tailer) {
+        this.manager = manager;
+        this.tailer = tailer;
+        if (tailer instanceof ChronicleCompoundLogTailer) {
+            tailers = ((ChronicleCompoundLogTailer<M>) tailer).tailers;
+        } else if (tailer instanceof ChronicleLogTailer) {
+            tailers = Collections.singletonList((ChronicleLogTailer<M>) tailer);
+        } else {
+            throw new IllegalArgumentException("Not a Chronicle tailer: " + tailer);
+        }
+        file = getTransactionFile();
+        recover();
+    }
+
+    protected Path getTransactionFile() {
+        if (tailers.isEmpty()) {
+            return null;
+        }
+        String assignments = tailers.stream()
+                                    .map(t -> t.partition.toString())
+                                    .sorted()
+                                    .collect(Collectors.joining(","));
+        return Paths.get(tailers.get(0).basePath, OFFSET_QUEUE_PREFIX + tailer.group().getId(),
+                TRANSACTION_FILE_PREFIX + Integer.toHexString(assignments.hashCode()));
+    }
+
+    @Override
+    public void append(Name name, List<String> keys, List<M> messages) {
+        LogAppender.checkOneKeyPerMessage(keys, messages);
+        int size = manager.size(name);
+        for (int i = 0; i < messages.size(); i++) {
+            int partition = (keys.get(i).hashCode() & 0x7fffffff) % size;
+            pending.computeIfAbsent(LogPartition.of(name, partition), p -> new ArrayList<>()).add(messages.get(i));
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void commit() {
+        if (pending.isEmpty() || file == null) {
+            appendPending(null);
+            tailer.commit();
+            return;
+        }
+        String id = UUID.randomUUID().toString();
+        Properties props = new Properties();
+        props.setProperty(TRANSACTION_ID, id);
+        int i = 0;
+        for (ChronicleLogTailer<M> partitionTailer : tailers) {
+            if (partitionTailer.initialized) {
+                setPartition(props, INPUT + i++, partitionTailer.partition, partitionTailer.cqTailer.index());
+            }
+        }
+        i = 0;
+        for (LogPartition partition : pending.keySet()) {
+            ChronicleLogAppender<M> appender = (ChronicleLogAppender<M>) manager.getAppender(partition.name());
+            setPartition(props, OUTPUT + i++, partition, appender.endOffset(partition.partition()));
+        }
+        save(props);
+        appendPending(id);
+        tailer.commit();
+        delete();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void appendPending(String id) {
+        pending.forEach((partition, messages) -> ((ChronicleLogAppender<M>) manager.getAppender(
+                partition.name())).append(partition.partition(), messages, id));
+        pending.clear();
+    }
+
+    @Override
+    public void abort() {
+        pending.clear();
+        tailer.toLastCommitted();
+    }
+
+    @Override
+    public void close() {
+        if (!pending.isEmpty()) {
+            log.warn("Discarding " + pending.size() + " uncommitted partitions for tailer: " + tailer);
+            pending.clear();
+        }
+    }
+
+    /**
+     * Completes a transaction interrupted before its end.
+     */
+    protected void recover() {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        Properties props = load();
+        String id = props.getProperty(TRANSACTION_ID);
+        int outputs = 0;
+        int found = 0;
+        for (int i = 0; props.containsKey(OUTPUT + i + ".name"); i++) {
+            outputs++;
+            LogPartition partition = getPartition(props, OUTPUT + i);
+            long offset = Long.parseLong(props.getProperty(OUTPUT + i + ".offset"));
+            if (manager.hasTransactionMarker(partition, offset, id)) {
+                found++;
+            }
+        }
+        if (found == outputs) {
+            for (int i = 0; props.containsKey(INPUT + i + ".name"); i++) {
+                LogPartition partition = getPartition(props, INPUT + i);
+                long offset = Long.parseLong(props.getProperty(INPUT + i + ".offset"));
+                tailer.seek(new LogOffsetImpl(partition, offset));
+                tailer.commit(partition);
+            }
+            log.warn("Completed interrupted transaction: " + id + " of tailer: " + tailer);
+        } else if (found == 0) {
+            log.warn("Discarded interrupted transaction: " + id + " of tailer: " + tailer
+                    + ", the input will be processed again");
+        } else {
+            log.error("Interrupted transaction: " + id + " of tailer: " + tailer + " has been appended to " + found
+                    + "/" + outputs + " partitions, the input will be processed again creating duplicates");
+        }
+        delete();
+    }
+
+    protected static void setPartition(Properties props, String prefix, LogPartition partition, long offset) {
+        props.setProperty(prefix + ".name", partition.name().getId());
+        props.setProperty(prefix + ".partition", String.valueOf(partition.partition()));
+        props.setProperty(prefix + ".offset", String.valueOf(offset));
+    }
+
+    protected static LogPartition getPartition(Properties props, String prefix) {
+        return LogPartition.of(Name.ofId(props.getProperty(prefix + ".name")),
+                Integer.parseInt(props.getProperty(prefix + ".partition")));
+    }
+
+    protected void save(Properties props) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), TRANSACTION_FILE_PREFIX, ".tmp");
+            try (Writer writer = Files.newBufferedWriter(tmp, UTF_8)) {
+                props.store(writer, null);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new StreamRuntimeException("Cannot save transaction: " + file, e);
+        }
+    }
+
+    protected Properties load() {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, UTF_8)) {
+            props.load(reader);
+        } catch (IOException e) {
+            throw new StreamRuntimeException("Cannot read transaction: " + file, e);
+        }
+        return props;
+    }
+
+    protected void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new StreamRuntimeException("Cannot delete transaction: " + file, e);
+        }
+    }
+
+}
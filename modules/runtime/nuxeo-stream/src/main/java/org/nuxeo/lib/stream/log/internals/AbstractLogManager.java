@@ -57,6 +57,13 @@ public abstract class AbstractLogManager implements LogManager {
 
     protected abstract void create(Name name, int size);
 
+    /**
+     * @since 11.5
+     */
+    protected void createCompacted(Name name, int size) {
+        create(name, size);
+    }
+
     protected abstract int getSize(Name name);
 
     protected abstract <M extends Externalizable> CloseableLogAppender<M> createAppender(Name name, Codec<M> codec);
@@ -78,6 +85,15 @@ public abstract class AbstractLogManager implements LogManager {
         return false;
     }
 
+    @Override
+    public synchronized boolean createCompactedIfNotExists(Name name, int size) {
+        if (!exists(name)) {
+            createCompacted(name, size);
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public boolean delete(Name name) {
         return false;
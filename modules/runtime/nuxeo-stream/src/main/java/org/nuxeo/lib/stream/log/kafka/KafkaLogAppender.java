@@ -22,7 +22,9 @@ import static org.nuxeo.lib.stream.codec.NoCodec.NO_CODEC;
 
 import java.io.Externalizable;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -43,6 +45,7 @@ import org.apache.kafka.common.utils.Bytes;
 import org.nuxeo.lib.stream.StreamRuntimeException;
 import org.nuxeo.lib.stream.codec.Codec;
 import org.nuxeo.lib.stream.codec.SerializableCodec;
+import org.nuxeo.lib.stream.log.LogAppender;
 import org.nuxeo.lib.stream.log.LogOffset;
 import org.nuxeo.lib.stream.log.Name;
 import org.nuxeo.lib.stream.log.NameResolver;
@@ -159,6 +162,69 @@ public class KafkaLogAppender<M extends Externalizable> implements CloseableLogA
         return ret;
     }
 
+    @Override
+    public List<LogOffset> append(int partition, List<M> messages) {
+        String key = String.valueOf(partition);
+        List<ProducerRecord<String, Bytes>> records = new ArrayList<>(messages.size());
+        for (M message : messages) {
+            records.add(new ProducerRecord<>(topic, partition, key, Bytes.wrap(encodingCodec.encode(message))));
+        }
+        return send(records);
+    }
+
+    @Override
+    public List<LogOffset> append(List<String> keys, List<M> messages) {
+        LogAppender.checkOneKeyPerMessage(keys, messages);
+        List<ProducerRecord<String, Bytes>> records = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            records.add(newRecord(keys.get(i), messages.get(i)));
+        }
+        return send(records);
+    }
+
+    /**
+     * Creates the record for a message, the partition is chosen using a hash of the key.
+     *
+     * @since 11.5
+     */
+    protected ProducerRecord<String, Bytes> newRecord(String key, M message) {
+        Objects.requireNonNull(key);
+        int partition = (key.hashCode() & 0x7fffffff) % size;
+        return new ProducerRecord<>(topic, partition, key, Bytes.wrap(encodingCodec.encode(message)));
+    }
+
+    /**
+     * Sends all the records before waiting for the acknowledgements, so that the producer can group them into batches
+     * (see {@code linger.ms} and {@code batch.size}) and pipeline the requests.
+     *
+     * @since 11.5
+     */
+    protected List<LogOffset> send(List<ProducerRecord<String, Bytes>> records) {
+        List<Future<RecordMetadata>> futures = new ArrayList<>(records.size());
+        for (ProducerRecord<String, Bytes> record : records) {
+            futures.add(producer.send(record));
+        }
+        List<LogOffset> ret = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            ProducerRecord<String, Bytes> record = records.get(i);
+            RecordMetadata result;
+            try {
+                result = futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StreamRuntimeException("Unable to send record: " + record, e);
+            } catch (ExecutionException e) {
+                throw new StreamRuntimeException("Unable to send record: " + record, e);
+            }
+            ret.add(new LogOffsetImpl(name, record.partition(), result.offset()));
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Append batch of %d records to %s, last: %s", records.size(), name,
+                    ret.isEmpty() ? null : ret.get(ret.size() - 1)));
+        }
+        return ret;
+    }
+
     @Override
     public boolean waitFor(LogOffset offset, Name group, Duration timeout) throws InterruptedException {
         boolean ret = false;
@@ -31,16 +31,20 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.config.TopicConfig;
 import org.apache.kafka.common.utils.Bytes;
 import org.nuxeo.lib.stream.codec.Codec;
 import org.nuxeo.lib.stream.log.LogConfig;
 import org.nuxeo.lib.stream.log.LogLag;
 import org.nuxeo.lib.stream.log.LogPartition;
 import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.LogTransaction;
 import org.nuxeo.lib.stream.log.Name;
 import org.nuxeo.lib.stream.log.RebalanceListener;
 import org.nuxeo.lib.stream.log.internals.AbstractLogManager;
@@ -50,6 +54,8 @@ import org.nuxeo.lib.stream.log.internals.CloseableLogAppender;
  * @since 9.3
  */
 public class KafkaLogManager extends AbstractLogManager {
+    private static final Log log = LogFactory.getLog(KafkaLogManager.class);
+
     public static final String DISABLE_SUBSCRIBE_PROP = "subscribe.disable";
 
     protected final List<KafkaLogConfig> configs;
@@ -103,6 +109,13 @@ public class KafkaLogManager extends AbstractLogManager {
         kUtils.get(config).createTopic(config.getResolver().getId(name), size, config.getReplicatorFactor());
     }
 
+    @Override
+    protected void createCompacted(Name name, int size) {
+        KafkaLogConfig config = getConfig(name);
+        kUtils.get(config).createTopic(config.getResolver().getId(name), size, config.getReplicatorFactor(),
+                Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+    }
+
     @Override
     protected int getSize(Name name) {
         KafkaLogConfig config = getConfig(name);
@@ -154,6 +167,30 @@ public class KafkaLogManager extends AbstractLogManager {
         return !defaultConfig.getDisableSubscribe();
     }
 
+    @Override
+    public boolean supportTransaction() {
+        return true;
+    }
+
+    @Override
+    public <M extends Externalizable> LogTransaction<M> createTransaction(LogTailer<M> tailer) {
+        if (!(tailer instanceof KafkaLogTailer)) {
+            throw new IllegalArgumentException("Not a Kafka tailer: " + tailer);
+        }
+        KafkaLogTailer<M> kafkaTailer = (KafkaLogTailer<M>) tailer;
+        KafkaLogConfig config = defaultConfig;
+        if (kafkaTailer.names != null && !kafkaTailer.names.isEmpty()) {
+            config = getConfig(kafkaTailer.names.iterator().next(), tailer.group());
+        } else if (!kafkaTailer.partitions.isEmpty()) {
+            config = getConfig(kafkaTailer.partitions.iterator().next().name(), tailer.group());
+        }
+        if (!"read_committed".equals(config.getConsumerProperties().get(ConsumerConfig.ISOLATION_LEVEL_CONFIG))) {
+            log.warn("Using transactions for: " + tailer.group() + " without consumer property "
+                    + ConsumerConfig.ISOLATION_LEVEL_CONFIG + "=read_committed, aborted records will be visible");
+        }
+        return new KafkaLogTransaction<>(this, kafkaTailer, config.getProducerProperties());
+    }
+
     @Override
     protected <M extends Externalizable> LogTailer<M> doSubscribe(Name group, Collection<Name> names,
             RebalanceListener listener, Codec<M> codec) {
@@ -307,6 +307,18 @@ public class KafkaLogTailer<M extends Externalizable> implements LogTailer<M>, C
         consumerMoved = true;
     }
 
+    @Override
+    public LogOffset position(LogPartition partition) {
+        // records already polled for the partition have not been read yet
+        for (ConsumerRecord<String, Bytes> record : records) {
+            if (record.partition() == partition.partition()) {
+                return new LogOffsetImpl(partition, record.offset());
+            }
+        }
+        TopicPartition topicPartition = new TopicPartition(resolver.getId(partition.name()), partition.partition());
+        return new LogOffsetImpl(partition, consumer.position(topicPartition));
+    }
+
     @Override
     public void reset() {
         // we just commit the first offset
@@ -377,6 +389,33 @@ public class KafkaLogTailer<M extends Externalizable> implements LogTailer<M>, C
         }
     }
 
+    /**
+     * Returns the offsets to commit for the records read since the last commit, this is used to commit the offsets
+     * within a producer transaction.
+     *
+     * @since 11.5
+     */
+    protected Map<TopicPartition, OffsetAndMetadata> getOffsetsToCommit() {
+        if (consumerMoved) {
+            return topicPartitions.stream()
+                                  .collect(toMap(tp -> tp, tp -> new OffsetAndMetadata(consumer.position(tp))));
+        }
+        Map<TopicPartition, OffsetAndMetadata> ret = new HashMap<>();
+        lastOffsets.forEach((tp, offset) -> ret.put(tp, new OffsetAndMetadata(offset + 1)));
+        return ret;
+    }
+
+    /**
+     * Updates the tailer state once the offsets have been committed by a producer transaction.
+     *
+     * @since 11.5
+     */
+    protected void offsetsCommitted(Map<TopicPartition, OffsetAndMetadata> offsets) {
+        offsets.forEach((topicPartition, offset) -> lastCommittedOffsets.put(topicPartition, offset.offset()));
+        lastOffsets.clear();
+        consumerMoved = false;
+    }
+
     /**
      * Commits the consumer at its current position regardless of lastOffsets or lastCommittedOffsets
      */
@@ -0,0 +1,143 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.log.kafka;
+
+import java.io.Externalizable;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.AuthorizationException;
+import org.apache.kafka.common.errors.OutOfOrderSequenceException;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.apache.kafka.common.utils.Bytes;
+import org.nuxeo.lib.stream.StreamRuntimeException;
+import org.nuxeo.lib.stream.log.LogAppender;
+import org.nuxeo.lib.stream.log.LogTransaction;
+import org.nuxeo.lib.stream.log.Name;
+
+/**
+ * Kafka implementation of a transaction, using a transactional producer that commits the consumer offsets of the
+ * tailer with the records.
+ * <p>
+ * Consumers must use the {@code read_committed} isolation level to skip the records of aborted transactions.
+ *
+ * @since 11.5
+ */
+public class KafkaLogTransaction<M extends Externalizable> implements LogTransaction<M> {
+    private static final Log log = LogFactory.getLog(KafkaLogTransaction.class);
+
+    protected final KafkaLogManager manager;
+
+    protected final KafkaLogTailer<M> tailer;
+
+    protected final String transactionalId;
+
+    protected KafkaProducer<String, Bytes> producer;
+
+    protected boolean inTransaction;
+
+    public KafkaLogTransaction(KafkaLogManager manager, KafkaLogTailer<M> tailer, Properties producerProperties) {
+        this.manager = manager;
+        this.tailer = tailer;
+        // zombie producers are fenced using the consumer group metadata, the id only needs to be unique
+        transactionalId = tailer.resolver.getId(tailer.group()) + "-txn-" + UUID.randomUUID();
+        Properties props = (Properties) producerProperties.clone();
+        props.setProperty(ProducerConfig.TRANSACTIONAL_ID_CONFIG, transactionalId);
+        props.setProperty(ProducerConfig.CLIENT_ID_CONFIG, transactionalId);
+        producer = new KafkaProducer<>(props);
+        producer.initTransactions();
+        log.debug("Created transactional producer: " + transactionalId);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void append(Name name, List<String> keys, List<M> messages) {
+        LogAppender.checkOneKeyPerMessage(keys, messages);
+        KafkaLogAppender<M> appender = (KafkaLogAppender<M>) manager.<M> getAppender(name);
+        begin();
+        for (int i = 0; i < messages.size(); i++) {
+            producer.send(appender.newRecord(keys.get(i), messages.get(i)));
+        }
+    }
+
+    protected void begin() {
+        if (!inTransaction) {
+            producer.beginTransaction();
+            inTransaction = true;
+        }
+    }
+
+    @Override
+    public void commit() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = tailer.getOffsetsToCommit();
+        if (!inTransaction && offsets.isEmpty()) {
+            return;
+        }
+        begin();
+        try {
+            if (!offsets.isEmpty()) {
+                producer.sendOffsetsToTransaction(offsets, tailer.consumer.groupMetadata());
+            }
+            // fails if one of the records has not been sent
+            producer.commitTransaction();
+            inTransaction = false;
+        } catch (ProducerFencedException | OutOfOrderSequenceException | AuthorizationException e) {
+            // the producer cannot be used anymore
+            close();
+            throw new StreamRuntimeException("Fatal error on transaction: " + transactionalId, e);
+        } catch (KafkaException e) {
+            abort();
+            throw new StreamRuntimeException("Transaction aborted: " + transactionalId, e);
+        }
+        tailer.offsetsCommitted(offsets);
+    }
+
+    @Override
+    public void abort() {
+        if (inTransaction) {
+            producer.abortTransaction();
+            inTransaction = false;
+        }
+        tailer.toLastCommitted();
+    }
+
+    @Override
+    public void close() {
+        if (producer != null) {
+            log.debug("Closing transactional producer: " + transactionalId);
+            producer.close();
+            producer = null;
+            inTransaction = false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "KafkaLogTransaction{" + "transactionalId=" + transactionalId + ", tailer=" + tailer + '}';
+    }
+}
@@ -78,7 +78,8 @@ public class AppendCommand extends Command {
                                 .build());
         options.addOption(Option.builder()
                                 .longOpt("codec")
-                                .desc("Codec used to write the records, can be: java, avro, avroBinary, avroJson")
+                                .desc("Codec used to write the records, can be: java, avro, avroBinary, avroJson, "
+                                        + "record")
                                 .required()
                                 .hasArg()
                                 .argName("CODEC")
@@ -28,6 +28,7 @@ import org.nuxeo.lib.stream.codec.AvroMessageCodec;
 import org.nuxeo.lib.stream.codec.Codec;
 import org.nuxeo.lib.stream.codec.SerializableCodec;
 import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.computation.RecordCodec;
 import org.nuxeo.lib.stream.log.LogManager;
 import org.nuxeo.lib.stream.tools.renderer.MarkdownRenderer;
 import org.nuxeo.lib.stream.tools.renderer.Renderer;
@@ -65,6 +66,8 @@ public abstract class Command {
             return new AvroJsonCodec<>(Record.class);
         case "avroBinary":
             return new AvroBinaryCodec<>(Record.class);
+        case RecordCodec.NAME:
+            return RecordCodec.RECORD_CODEC;
         default:
             throw new IllegalArgumentException("Unknown codec: " + codec);
         }
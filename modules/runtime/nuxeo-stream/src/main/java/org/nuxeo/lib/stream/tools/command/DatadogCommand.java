@@ -95,7 +95,7 @@ public class DatadogCommand extends MonitorCommand {
                                 .build());
         options.addOption(Option.builder()
                                 .longOpt("codec")
-                                .desc("Codec used to read record, can be: java, avro, avroBinary, avroJson")
+                                .desc("Codec used to read record, can be: java, avro, avroBinary, avroJson, record")
                                 .hasArg()
                                 .argName("CODEC")
                                 .build());
@@ -76,7 +76,7 @@ public class DumpCommand extends Command {
                 Option.builder("g").longOpt("group").desc("Consumer group").hasArg().argName("GROUP").build());
         options.addOption(Option.builder()
                                 .longOpt("codec")
-                                .desc("Codec used to read record, can be: java, avro, avroBinary, avroJson")
+                                .desc("Codec used to read record, can be: java, avro, avroBinary, avroJson, record")
                                 .hasArg()
                                 .argName("CODEC")
                                 .build());
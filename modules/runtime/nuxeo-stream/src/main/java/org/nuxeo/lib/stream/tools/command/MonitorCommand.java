@@ -133,7 +133,7 @@ public class MonitorCommand extends Command {
                                 .build());
         options.addOption(Option.builder()
                                 .longOpt("codec")
-                                .desc("Codec used to read record, can be: java, avro, avroBinary, avroJson")
+                                .desc("Codec used to read record, can be: java, avro, avroBinary, avroJson, record")
                                 .hasArg()
                                 .argName("CODEC")
                                 .build());
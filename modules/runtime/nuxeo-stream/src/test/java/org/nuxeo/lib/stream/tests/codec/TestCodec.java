@@ -19,6 +19,7 @@
 package org.nuxeo.lib.stream.tests.codec;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -32,6 +33,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.EnumSet;
+import java.util.Random;
 
 import org.apache.avro.message.MissingSchemaException;
 import org.apache.avro.reflect.ReflectData;
@@ -46,9 +48,11 @@ import org.nuxeo.lib.stream.codec.AvroJsonCodec;
 import org.nuxeo.lib.stream.codec.AvroMessageCodec;
 import org.nuxeo.lib.stream.codec.AvroSchemaStore;
 import org.nuxeo.lib.stream.codec.Codec;
+import org.nuxeo.lib.stream.codec.CompressedCodec;
 import org.nuxeo.lib.stream.codec.FileAvroSchemaStore;
 import org.nuxeo.lib.stream.codec.SerializableCodec;
 import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.computation.RecordCodec;
 
 /**
  * @since 10.2
@@ -159,6 +163,54 @@ public class TestCodec {
         testCodecFromFile("data/record-avro.json", codec);
     }
 
+    @Test
+    public void testRecordCodec() throws Exception {
+        Record src = getRecord();
+        Codec<Record> codec = RecordCodec.RECORD_CODEC;
+        Record dest = testCodec(src, codec);
+        assertEquals(src.toString(), dest.toString());
+        testCodecFromFile("data/record-binary.bin", codec);
+
+        // no data
+        src = new Record("key", null);
+        assertEquals(0, testCodec(src, codec).getData().length);
+    }
+
+    @Test
+    public void testCompressedCodec() throws Exception {
+        for (CompressedCodec.Algorithm algorithm : CompressedCodec.Algorithm.values()) {
+            Codec<Record> avro = new AvroMessageCodec<>(Record.class);
+            Codec<Record> codec = new CompressedCodec<>(avro, algorithm);
+            // small record is not compressed
+            Record src = getRecord();
+            assertEquals(avro.encode(src).length + 1, codec.encode(src).length);
+            assertEquals(src.toString(), testCodec(src, codec).toString());
+
+            // large record is compressed
+            byte[] payload = "some repeated payload ".repeat(1000).getBytes(UTF_8);
+            src = Record.of("key", payload);
+            byte[] data = codec.encode(src);
+            assertTrue(algorithm + ": " + data.length, data.length < payload.length / 10);
+            assertArrayEquals(payload, testCodec(src, codec).getData());
+
+            // large record that doesn't compress is kept as is
+            payload = new byte[10_000];
+            new Random(1).nextBytes(payload);
+            src = Record.of("key", payload);
+            assertEquals(avro.encode(src).length + 1, codec.encode(src).length);
+            assertArrayEquals(payload, testCodec(src, codec).getData());
+
+            // records written without compression are still readable
+            assertArrayEquals(payload, codec.decode(avro.encode(src)).getData());
+            testCodecFromFile("data/record-avro-message.bin", new CompressedCodec<>(avro, algorithm));
+        }
+        // any algorithm can be decoded
+        Record src = Record.of("key", "some repeated payload ".repeat(1000).getBytes(UTF_8));
+        Codec<Record> avro = new AvroMessageCodec<>(Record.class);
+        byte[] data = new CompressedCodec<>(avro, CompressedCodec.Algorithm.ZSTD).encode(src);
+        assertEquals(src, new CompressedCodec<>(avro, CompressedCodec.Algorithm.LZ4).decode(data));
+    }
+
     @Test
     public void testRecordConfluentAvro() throws Exception {
         assumeConfluentRegistryEnabled();
@@ -198,6 +250,13 @@ public class TestCodec {
         } catch (IllegalArgumentException e) {
             // expected
         }
+        codec = RecordCodec.RECORD_CODEC;
+        try {
+            codec.decode(data);
+            fail("failure expected on decode");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
     }
 
     protected void testCodecFromFile(String path, Codec<Record> codec) throws IOException {
@@ -264,6 +323,11 @@ public class TestCodec {
         path = Paths.get("/tmp/record-avro.json");
         Files.write(path, data);
 
+        codec = RecordCodec.RECORD_CODEC;
+        data = codec.encode(src);
+        path = Paths.get("/tmp/record-binary.bin");
+        Files.write(path, data);
+
         // note that the schema id used for write will not be found if the message is read using another schema store
         codec = new AvroConfluentCodec<>(Record.class, "http://localhost:8081");
         data = codec.encode(src);
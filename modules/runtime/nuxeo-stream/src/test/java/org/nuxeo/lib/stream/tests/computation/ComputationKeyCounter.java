@@ -0,0 +1,54 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.tests.computation;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import org.nuxeo.lib.stream.computation.AbstractComputation;
+import org.nuxeo.lib.stream.computation.ComputationContext;
+import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.computation.StateStore;
+
+/**
+ * Computation that counts the input records per key in its state store, a record with a "reset" data removes the key.
+ *
+ * @since 11.5
+ */
+public class ComputationKeyCounter extends AbstractComputation {
+
+    public static final String RESET = "reset";
+
+    public ComputationKeyCounter(String name) {
+        super(name, 1, 0);
+    }
+
+    @Override
+    public void processRecord(ComputationContext context, String inputStreamName, Record record) {
+        StateStore state = context.getState();
+        if (RESET.equals(new String(record.getData(), UTF_8))) {
+            state.remove(record.getKey());
+        } else {
+            byte[] value = state.get(record.getKey());
+            long count = value == null ? 0 : Long.parseLong(new String(value, UTF_8));
+            state.put(record.getKey(), Long.toString(count + 1).getBytes(UTF_8));
+        }
+        context.askForCheckpoint();
+    }
+
+}
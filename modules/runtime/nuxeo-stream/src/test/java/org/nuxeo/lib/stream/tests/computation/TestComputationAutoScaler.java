@@ -0,0 +1,102 @@
+/*
+ * (C) Copyright 2021 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.tests.computation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Duration;
+
+import org.junit.Test;
+import org.nuxeo.lib.stream.computation.ComputationPolicy;
+import org.nuxeo.lib.stream.computation.ComputationPolicyBuilder;
+import org.nuxeo.lib.stream.computation.Settings;
+import org.nuxeo.lib.stream.computation.log.ComputationAutoScaler;
+
+public class TestComputationAutoScaler {
+
+    // 1ms per record
+    protected static final double PROCESSING_TIME = 1_000_000;
+
+    @Test
+    public void testScaleUpAndDown() {
+        ComputationAutoScaler scaler = new ComputationAutoScaler(2, 8, Duration.ofSeconds(30), 1);
+        // 100k records at 1ms with 2 threads is 50s to drain, needs more threads
+        int threads = scaler.getThreads(2, 100_000, PROCESSING_TIME);
+        assertEquals(4, threads);
+        // cooldown
+        assertEquals(4, scaler.getThreads(4, 100_000, PROCESSING_TIME));
+        // at most doubling
+        assertEquals(8, scaler.getThreads(4, 1_000_000, PROCESSING_TIME));
+        assertEquals(8, scaler.getThreads(8, 1_000_000, PROCESSING_TIME));
+        // at max threads, the batch capacity grows
+        assertEquals(1, scaler.getBatchFactor());
+        assertEquals(8, scaler.getThreads(8, 1_000_000, PROCESSING_TIME));
+        assertEquals(2, scaler.getBatchFactor());
+        assertEquals(8, scaler.getThreads(8, 1_000_000, PROCESSING_TIME));
+        assertEquals(2, scaler.getBatchFactor());
+
+        // within the target, nothing changes
+        assertEquals(8, scaler.getThreads(8, 100_000, PROCESSING_TIME));
+        assertEquals(2, scaler.getBatchFactor());
+
+        // drained: the batch capacity goes back first
+        assertEquals(8, scaler.getThreads(8, 0, PROCESSING_TIME));
+        assertEquals(1, scaler.getBatchFactor());
+        // cooldown
+        assertEquals(8, scaler.getThreads(8, 0, PROCESSING_TIME));
+        // then threads are removed one by one, down to the minimum
+        assertEquals(7, scaler.getThreads(8, 0, PROCESSING_TIME));
+        assertEquals(7, scaler.getThreads(7, 0, PROCESSING_TIME));
+        assertEquals(6, scaler.getThreads(7, 0, PROCESSING_TIME));
+        threads = 6;
+        for (int i = 0; i < 20; i++) {
+            threads = scaler.getThreads(threads, 0, PROCESSING_TIME);
+        }
+        assertEquals(2, threads);
+    }
+
+    @Test
+    public void testNoScaleDownOnSmallLag() {
+        ComputationAutoScaler scaler = new ComputationAutoScaler(1, 4, Duration.ofSeconds(30), 0);
+        // a small lag is not idle, threads are kept
+        for (int i = 0; i < 10; i++) {
+            assertEquals(4, scaler.getThreads(4, 10, PROCESSING_TIME));
+        }
+        // unknown processing time, no decision
+        assertEquals(1, scaler.getThreads(1, 1_000_000, 0));
+    }
+
+    @Test
+    public void testSettingsAndPolicy() {
+        Settings settings = new Settings(2, 4).setMaxConcurrency("comp1", 6).setMaxConcurrency("comp2", 1);
+        assertEquals(6, settings.getMaxConcurrency("comp1"));
+        // never below the concurrency
+        assertEquals(2, settings.getMaxConcurrency("comp2"));
+        assertEquals(2, settings.getMaxConcurrency("comp3"));
+
+        ComputationPolicy policy = new ComputationPolicyBuilder().batchPolicy(10, Duration.ofSeconds(2))
+                                                                 .continueOnFailure(true)
+                                                                 .build();
+        ComputationPolicy adapted = policy.withBatchCapacity(40);
+        assertEquals(40, adapted.getBatchCapacity());
+        assertEquals(policy.getBatchThreshold(), adapted.getBatchThreshold());
+        assertEquals(policy.continueOnFailure(), adapted.continueOnFailure());
+    }
+
+}
@@ -19,7 +19,9 @@
 package org.nuxeo.lib.stream.tests.computation;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.nuxeo.lib.stream.codec.NoCodec.NO_CODEC;
@@ -42,10 +44,12 @@ import org.nuxeo.lib.stream.computation.ComputationPolicy;
 import org.nuxeo.lib.stream.computation.ComputationPolicyBuilder;
 import org.nuxeo.lib.stream.computation.Record;
 import org.nuxeo.lib.stream.computation.Settings;
+import org.nuxeo.lib.stream.computation.StateStore;
 import org.nuxeo.lib.stream.computation.StreamManager;
 import org.nuxeo.lib.stream.computation.StreamProcessor;
 import org.nuxeo.lib.stream.computation.Topology;
 import org.nuxeo.lib.stream.computation.Watermark;
+import org.nuxeo.lib.stream.computation.log.LogStateStore;
 import org.nuxeo.lib.stream.computation.log.LogStreamManager;
 import org.nuxeo.lib.stream.log.Latency;
 import org.nuxeo.lib.stream.log.LogAppender;
@@ -297,6 +301,111 @@ public abstract class TestStreamProcessor {
         testComplexTopo(100, 6, 8);
     }
 
+    @Test
+    public void testVirtualThreads() throws Exception {
+        final int nbRecords = 101;
+        final long targetTimestamp = System.currentTimeMillis();
+        Topology topology = Topology.builder()
+                                    .addComputation(
+                                            () -> new ComputationSource("GENERATOR", 1, nbRecords, 5, targetTimestamp),
+                                            Collections.singletonList("o1:s1"))
+                                    .addComputation(() -> new ComputationForward("C1", 1, 1),
+                                            Arrays.asList("i1:s1", "o1:s2"))
+                                    .addComputation(
+                                            () -> new ComputationRecordCounter("COUNTER", Duration.ofMillis(100)),
+                                            Arrays.asList("i1:s2", "o1:" + OUTPUT_STREAM))
+                                    .build();
+        // falls back to platform threads when the JVM doesn't support virtual threads
+        Settings settings = new Settings(4, 4, codec).setConcurrency("GENERATOR", 1)
+                                                     .setPartitions(OUTPUT_STREAM, 1)
+                                                     .setVirtualThreads("C1", true)
+                                                     .setVirtualThreads("COUNTER", true);
+        assertTrue(settings.isVirtualThreads("C1"));
+        assertFalse(settings.isVirtualThreads("GENERATOR"));
+        try (LogManager manager = getLogManager()) {
+            StreamManager streamManager = new LogStreamManager(manager);
+            StreamProcessor processor = streamManager.registerAndCreateProcessor("processor", topology, settings);
+            processor.start();
+            assertTrue(processor.waitForAssignments(Duration.ofSeconds(10)));
+            assertTrue(processor.drainAndStop(Duration.ofSeconds(60)));
+            assertEquals(nbRecords, readOutputCounter(manager));
+        }
+    }
+
+    @Test
+    public void testExactlyOnce() throws Exception {
+        final int nbRecords = 101;
+        final long targetTimestamp = System.currentTimeMillis();
+        Topology topology = Topology.builder()
+                                    .addComputation(
+                                            () -> new ComputationSource("GENERATOR", 1, nbRecords, 5, targetTimestamp),
+                                            Collections.singletonList("o1:s1"))
+                                    .addComputation(() -> new ComputationForward("C1", 1, 1),
+                                            Arrays.asList("i1:s1", "o1:s2"))
+                                    .addComputation(
+                                            () -> new ComputationRecordCounter("COUNTER", Duration.ofMillis(100)),
+                                            Arrays.asList("i1:s2", "o1:" + OUTPUT_STREAM))
+                                    .build();
+        ComputationPolicy policy = new ComputationPolicyBuilder().exactlyOnce(true).build();
+        assertTrue(policy.isExactlyOnce());
+        // both Chronicle and Kafka Log implementations support transactions
+        Settings settings = new Settings(2, 2, codec).setConcurrency("GENERATOR", 1)
+                                                     .setPartitions(OUTPUT_STREAM, 1)
+                                                     .setPolicy("C1", policy)
+                                                     .setPolicy("COUNTER", policy);
+        try (LogManager manager = getLogManager()) {
+            StreamManager streamManager = new LogStreamManager(manager);
+            StreamProcessor processor = streamManager.registerAndCreateProcessor("processor", topology, settings);
+            processor.start();
+            assertTrue(processor.waitForAssignments(Duration.ofSeconds(10)));
+            assertTrue(processor.drainAndStop(Duration.ofSeconds(60)));
+            assertEquals(nbRecords, readOutputCounter(manager));
+        }
+    }
+
+    @Test
+    public void testStateStore() throws Exception {
+        final int nbKeys = 10;
+        Topology topology = Topology.builder()
+                                    .addComputation(() -> new ComputationKeyCounter("COUNTER"),
+                                            Collections.singletonList("i1:s1"))
+                                    .build();
+        Settings settings = new Settings(2, 2, codec);
+        // 1. count records per key
+        try (LogManager manager = getLogManager()) {
+            runKeyCounter(manager, topology, settings, nbKeys, false);
+        }
+        // 2. resume, the counters are restored from the changelog
+        try (LogManager manager = getSameLogManager()) {
+            runKeyCounter(manager, topology, settings, nbKeys, true);
+            StateStore state = new LogStateStore(manager, Name.ofUrn("COUNTER"),
+                    Collections.singletonList(Name.ofUrn("s1")));
+            assertNull(state.get("key0"));
+            for (int i = 1; i < nbKeys; i++) {
+                assertEquals("key" + i, "4", new String(state.get("key" + i), StandardCharsets.UTF_8));
+            }
+            assertNull(state.get("unknown"));
+        }
+    }
+
+    protected void runKeyCounter(LogManager manager, Topology topology, Settings settings, int nbKeys, boolean reset)
+            throws InterruptedException {
+        StreamManager streamManager = new LogStreamManager(manager);
+        StreamProcessor processor = streamManager.registerAndCreateProcessor("processor", topology, settings);
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < nbKeys; i++) {
+                streamManager.append("s1", Record.of("key" + i, null));
+            }
+        }
+        if (reset) {
+            streamManager.append("s1",
+                    Record.of("key0", ComputationKeyCounter.RESET.getBytes(StandardCharsets.UTF_8)));
+        }
+        processor.start();
+        assertTrue(processor.waitForAssignments(Duration.ofSeconds(10)));
+        assertTrue(processor.drainAndStop(Duration.ofSeconds(60)));
+    }
+
     @Test
     public void testStopAndResume() throws Exception {
         final long targetTimestamp = System.currentTimeMillis();
@@ -23,11 +23,13 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 import static org.nuxeo.lib.stream.codec.NoCodec.NO_CODEC;
 
 import java.io.UnsupportedEncodingException;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -48,6 +50,7 @@ import org.nuxeo.lib.stream.codec.AvroMessageCodec;
 import org.nuxeo.lib.stream.codec.Codec;
 import org.nuxeo.lib.stream.codec.SerializableCodec;
 import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.computation.RecordCodec;
 import org.nuxeo.lib.stream.computation.Watermark;
 import org.nuxeo.lib.stream.log.Latency;
 import org.nuxeo.lib.stream.log.LogAppender;
@@ -57,6 +60,7 @@ import org.nuxeo.lib.stream.log.LogOffset;
 import org.nuxeo.lib.stream.log.LogPartition;
 import org.nuxeo.lib.stream.log.LogRecord;
 import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.LogTransaction;
 import org.nuxeo.lib.stream.log.Name;
 import org.nuxeo.lib.stream.log.RebalanceException;
 import org.nuxeo.lib.stream.tests.KeyValueMessage;
@@ -297,6 +301,46 @@ public abstract class TestLog {
         assertEquals(LogLag.of(3), manager.getLag(logName, GROUP));
     }
 
+    @Test
+    public void testBatchAppend() throws Exception {
+        final int LOG_SIZE = 3;
+        final int NB_MSG = 20;
+        final Name group = Name.ofUrn("test/defaultTest");
+        manager.createIfNotExists(logName, LOG_SIZE);
+        LogAppender<KeyValueMessage> appender = manager.getAppender(logName);
+
+        List<KeyValueMessage> messages = new ArrayList<>();
+        for (int i = 0; i < NB_MSG; i++) {
+            messages.add(KeyValueMessage.of("id" + i));
+        }
+        List<LogOffset> offsets = appender.append(1, messages);
+        assertEquals(NB_MSG, offsets.size());
+        for (int i = 1; i < NB_MSG; i++) {
+            assertEquals(1, offsets.get(i).partition().partition());
+            assertTrue(offsets.get(i).offset() > offsets.get(i - 1).offset());
+        }
+        assertTrue(appender.append(1, Collections.emptyList()).isEmpty());
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer(group, LogPartition.of(logName, 1))) {
+            for (int i = 0; i < NB_MSG; i++) {
+                LogRecord<KeyValueMessage> record = tailer.read(DEF_TIMEOUT);
+                assertEquals(messages.get(i), record.message());
+                assertEquals(offsets.get(i), record.offset());
+            }
+            assertNull(tailer.read(SMALL_TIMEOUT));
+        }
+
+        // keyed batch goes to the same partitions as single keyed appends
+        List<String> keys = new ArrayList<>();
+        messages.forEach(msg -> keys.add(msg.key()));
+        offsets = appender.append(keys, messages);
+        assertEquals(NB_MSG, offsets.size());
+        for (int i = 0; i < NB_MSG; i++) {
+            int partition = (keys.get(i).hashCode() & 0x7fffffff) % LOG_SIZE;
+            assertEquals(partition, offsets.get(i).partition().partition());
+        }
+        assertEquals(LogLag.of(2 * NB_MSG), manager.getLag(logName, group));
+    }
+
     @Test
     public void testCommitAndSeek() throws Exception {
         final int LOG_SIZE = 5;
@@ -360,6 +404,47 @@ public abstract class TestLog {
         assertEquals(LogLag.of(3, 5), manager.getLag(logName, GROUP));
     }
 
+    @Test
+    public void testTransaction() throws Exception {
+        assumeTrue("Transaction not supported", manager.supportTransaction());
+        final Name GROUP = Name.ofUrn("test/defaultTest");
+        final Name OUTPUT = Name.ofUrn("test/output");
+        manager.createIfNotExists(logName, 1);
+        manager.createIfNotExists(OUTPUT, 2);
+        LogAppender<KeyValueMessage> appender = manager.getAppender(logName);
+        appender.append(0, KeyValueMessage.of("id1"));
+        appender.append(0, KeyValueMessage.of("id2"));
+        appender.append(0, KeyValueMessage.of("id3"));
+        manager.getAppender(OUTPUT);
+
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer(GROUP, LogPartition.of(logName, 0));
+                LogTransaction<KeyValueMessage> transaction = manager.createTransaction(tailer)) {
+            for (int i = 0; i < 2; i++) {
+                KeyValueMessage message = tailer.read(DEF_TIMEOUT).message();
+                transaction.append(OUTPUT, Collections.singletonList(message.key()),
+                        Collections.singletonList(message));
+            }
+            transaction.commit();
+        }
+        resetManager();
+
+        // the input position is committed with the output
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer(GROUP, LogPartition.of(logName, 0))) {
+            assertEquals("id3", tailer.read(DEF_TIMEOUT).message().key());
+        }
+        assertEquals(2, readAll(OUTPUT, GROUP).size());
+    }
+
+    protected List<String> readAll(Name name, Name group) throws InterruptedException {
+        List<String> ret = new ArrayList<>();
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer(group, name)) {
+            for (LogRecord<KeyValueMessage> record; (record = tailer.read(Duration.ofSeconds(1))) != null;) {
+                ret.add(record.message().key());
+            }
+        }
+        return ret;
+    }
+
     @Test
     public void testMoreCommit() throws Exception {
         final int LOG_SIZE = 5;
@@ -671,6 +756,27 @@ public abstract class TestLog {
         assertEquals(LogLag.of(0), manager.getLag(logName, GROUP));
     }
 
+    @Test
+    public void testPosition() throws Exception {
+        final Name GROUP = Name.ofUrn("test/defaultTest");
+        LogPartition partition = LogPartition.of(logName, 0);
+        manager.createIfNotExists(logName, 1);
+        LogAppender<KeyValueMessage> appender = manager.getAppender(logName);
+        appender.append(0, KeyValueMessage.of("id1"));
+        appender.append(0, KeyValueMessage.of("id2"));
+        long end = manager.getLagPerPartition(logName, GROUP).get(0).upperOffset();
+
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer(GROUP, partition)) {
+            tailer.toStart();
+            LogRecord<KeyValueMessage> record = tailer.read(DEF_TIMEOUT);
+            assertEquals("id1", record.message().key());
+            assertEquals(record.offset().nextOffset(), tailer.position(partition));
+            assertEquals("id2", tailer.read(DEF_TIMEOUT).message().key());
+            assertNull(tailer.read(Duration.ofSeconds(1)));
+            assertEquals(end, tailer.position(partition).offset());
+        }
+    }
+
     @Test
     public void testLagLeak() {
         final int LOG_SIZE = 1;
@@ -851,6 +957,28 @@ public abstract class TestLog {
         testCodec(codec);
     }
 
+    @Test
+    public void testRecordCodec() throws Exception {
+        final int LOG_SIZE = 1;
+        final Name GROUP = Name.ofUrn("test/defaultTest");
+        manager.createIfNotExists(logName, LOG_SIZE);
+
+        LogAppender<Record> appender = manager.getAppender(logName, RecordCodec.RECORD_CODEC);
+        Record record1 = createRecord("key1");
+        Record record2 = new Record("key2", null);
+        Record record3 = createRecord("key3");
+        appender.append(0, record1);
+        appender.append(0, Arrays.asList(record2, record3));
+
+        try (LogTailer<Record> tailer = manager.createTailer(GROUP, LogPartition.of(logName, 0),
+                RecordCodec.RECORD_CODEC)) {
+            assertEquals(record1, tailer.read(DEF_TIMEOUT).message());
+            assertEquals(record2, tailer.read(DEF_TIMEOUT).message());
+            assertEquals(record3, tailer.read(DEF_TIMEOUT).message());
+            assertNull(tailer.read(SMALL_TIMEOUT));
+        }
+    }
+
     protected void testCodec(Codec<KeyValueMessage> codec) throws Exception {
         final int LOG_SIZE = 1;
         final Name GROUP = Name.ofUrn("test/defaultTest");
@@ -29,6 +29,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -41,9 +43,12 @@ import org.junit.rules.TemporaryFolder;
 import org.nuxeo.lib.stream.log.LogAppender;
 import org.nuxeo.lib.stream.log.LogLag;
 import org.nuxeo.lib.stream.log.LogManager;
+import org.nuxeo.lib.stream.log.LogPartition;
 import org.nuxeo.lib.stream.log.LogTailer;
+import org.nuxeo.lib.stream.log.LogTransaction;
 import org.nuxeo.lib.stream.log.Name;
 import org.nuxeo.lib.stream.log.chronicle.ChronicleLogManager;
+import org.nuxeo.lib.stream.log.chronicle.ChronicleLogTransaction;
 import org.nuxeo.lib.stream.tests.KeyValueMessage;
 
 /**
@@ -95,6 +100,53 @@ public class TestLogChronicle extends TestLog {
         }
     }
 
+    @Test
+    public void testTransactionRecovery() throws Exception {
+        final Name GROUP = Name.ofUrn("test/defaultTest");
+        final Name OUTPUT = Name.ofUrn("test/output");
+        ChronicleLogManager cqManager = (ChronicleLogManager) manager;
+        cqManager.createIfNotExists(logName, 1);
+        cqManager.createIfNotExists(OUTPUT, 2);
+        LogAppender<KeyValueMessage> appender = cqManager.getAppender(logName);
+        appender.append(0, KeyValueMessage.of("id1"));
+        appender.append(0, KeyValueMessage.of("id2"));
+        cqManager.getAppender(OUTPUT);
+
+        // stop after appending the output, before committing the input position
+        processAndStop("id1", OUTPUT, GROUP, true);
+        // the interrupted transaction is completed
+        processAndStop("id2", OUTPUT, GROUP, false);
+        // the interrupted transaction is discarded, the input is processed again
+        processAndStop("id2", OUTPUT, GROUP, true);
+        List<String> keys = readAll(OUTPUT, GROUP);
+        Collections.sort(keys);
+        assertEquals(Arrays.asList("id1", "id2"), keys);
+    }
+
+    protected void processAndStop(String expectedKey, Name output, Name group, boolean appended) throws Exception {
+        LogPartition partition = LogPartition.of(logName, 0);
+        try (LogTailer<KeyValueMessage> tailer = manager.createTailer(group, partition);
+                LogTransaction<KeyValueMessage> transaction = new ChronicleLogTransaction<>(
+                        (ChronicleLogManager) manager, tailer) {
+                    @Override
+                    protected void appendPending(String id) {
+                        if (appended) {
+                            super.appendPending(id);
+                        }
+                        throw new IllegalStateException("stop");
+                    }
+                }) {
+            KeyValueMessage message = tailer.read(DEF_TIMEOUT).message();
+            assertEquals(expectedKey, message.key());
+            transaction.append(output, Collections.singletonList(message.key()), Collections.singletonList(message));
+            transaction.commit();
+            fail("Expecting the transaction to stop");
+        } catch (IllegalStateException e) {
+            assertEquals("stop", e.getMessage());
+        }
+        resetManager();
+    }
+
     @Test
     public void testFileRetention() throws Exception {
         KeyValueMessage msg = KeyValueMessage.of("id");